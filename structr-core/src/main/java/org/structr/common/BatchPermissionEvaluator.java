@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
+import org.structr.api.NativeResult;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Principal;
+import org.structr.core.entity.Security;
+import org.structr.core.entity.relationship.PrincipalOwnsNode;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * Set-based permission evaluation for a batch of nodes.
+ *
+ * Instead of resolving the ownership and the security relationships of each
+ * node individually, the evaluator resolves them for a whole batch of nodes
+ * and all principals the current user belongs to with one graph query each.
+ * Nodes that are not granted by ownership, security relationships or group
+ * membership and whose type does not take part in permission propagation
+ * are denied without further graph access. All other nodes are left to the
+ * regular permission resolution of {@link AbstractNode#isGranted}.
+ */
+public class BatchPermissionEvaluator {
+
+	private static final Logger logger      = LoggerFactory.getLogger(BatchPermissionEvaluator.class);
+	private static final int MIN_BATCH_SIZE = 2;
+
+	private final Map<Class, Boolean> propagatingTypes = new HashMap<>();
+	private final Set<Long> evaluated                  = new HashSet<>();
+	private final Set<Long> granted                    = new HashSet<>();
+	private SecurityContext securityContext            = null;
+	private Permission permission                      = null;
+
+	public BatchPermissionEvaluator(final SecurityContext securityContext, final Permission permission) {
+
+		this.securityContext = securityContext;
+		this.permission      = permission;
+	}
+
+	/**
+	 * Evaluates the permission for the given candidates. Candidates that are
+	 * visible to public or authenticated users are skipped because their
+	 * permissions can depend on settings that are not known here.
+	 *
+	 * @param candidates
+	 */
+	public void evaluate(final List<? extends NodeInterface> candidates) {
+
+		if (securityContext == null || securityContext.isSuperUser()) {
+			return;
+		}
+
+		final Principal user = securityContext.getUser(false);
+		if (user == null) {
+			return;
+		}
+
+		final List<Long> ids = new ArrayList<>(candidates.size());
+
+		for (final NodeInterface candidate : candidates) {
+
+			if (!candidate.isVisibleToPublicUsers() && !candidate.isVisibleToAuthenticatedUsers()) {
+				ids.add(candidate.getId());
+			}
+		}
+
+		if (ids.size() < MIN_BATCH_SIZE) {
+			return;
+		}
+
+		final Set<Long> principals = getPrincipalIds(user);
+		if (principals == null) {
+			return;
+		}
+
+		try {
+
+			final Set<Long> result = new HashSet<>();
+			final String owns      = AbstractNode.getRelationshipForType(PrincipalOwnsNode.class).name();
+			final String security  = AbstractNode.getRelationshipForType(Security.class).name();
+
+			// principals can always access themselves and read their groups
+			for (final Long id : ids) {
+
+				if (id == user.getId() || (Permission.read.equals(permission) && principals.contains(id))) {
+					result.add(id);
+				}
+			}
+
+			query("MATCH (p)-[:`" + owns + "`]->(n) WHERE ID(p) IN {principals} AND ID(n) IN {ids} RETURN DISTINCT ID(n) AS id", principals, ids, result);
+			query("MATCH (p)-[s:`" + security + "`]->(n) WHERE ID(p) IN {principals} AND ID(n) IN {ids} AND {permission} IN s.allowed RETURN DISTINCT ID(n) AS id", principals, ids, result);
+
+			evaluated.addAll(ids);
+			granted.addAll(result);
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to evaluate permissions for batch of {} nodes: {}", ids.size(), t.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the result of the batch evaluation for the given node, or
+	 * null if the permission needs to be resolved individually.
+	 *
+	 * @param node
+	 * @return the result or null
+	 */
+	public Boolean isGranted(final NodeInterface node) {
+
+		final long id = node.getId();
+
+		if (granted.contains(id)) {
+			return true;
+		}
+
+		if (evaluated.contains(id) && !isPropagatingType(node.getClass())) {
+			return false;
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private void query(final String cypher, final Set<Long> principals, final List<Long> ids, final Set<Long> result) {
+
+		final DatabaseService db             = StructrApp.getInstance(securityContext).getDatabaseService();
+		final Map<String, Object> parameters = new HashMap<>();
+
+		parameters.put("principals", new ArrayList<>(principals));
+		parameters.put("ids",        ids);
+		parameters.put("permission", permission.name());
+
+		try (final NativeResult rows = db.execute(cypher, parameters)) {
+
+			while (rows.hasNext()) {
+
+				final Object value = rows.next().get("id");
+				if (value instanceof Number) {
+
+					result.add(((Number)value).longValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the ids of the given user and all its (transitive) parents,
+	 * or returns null if one of the principals is an admin or has a custom
+	 * permission query, which must be evaluated individually.
+	 */
+	private Set<Long> getPrincipalIds(final Principal user) {
+
+		final PropertyKey<String> customQueryKey = StructrApp.getConfiguration().getPropertyKeyForJSONName(Principal.class, "customPermissionQuery" + StringUtils.capitalize(permission.name()));
+		final Queue<Principal> queue             = new LinkedList<>();
+		final Set<Long> ids                      = new HashSet<>();
+
+		queue.add(user);
+
+		while (!queue.isEmpty()) {
+
+			final Principal principal = queue.poll();
+
+			if (principal.isAdmin() || StringUtils.isNotEmpty(principal.getProperty(customQueryKey))) {
+				return null;
+			}
+
+			if (ids.add(principal.getId())) {
+
+				queue.addAll(principal.getParents());
+			}
+		}
+
+		return ids;
+	}
+
+	private boolean isPropagatingType(final Class type) {
+
+		Boolean value = propagatingTypes.get(type);
+		if (value == null) {
+
+			value = AbstractNode.isPermissionPropagationParticipant(type);
+			propagatingTypes.put(type, value);
+		}
+
+		return value;
+	}
+}
@@ -21,6 +21,7 @@ package org.structr.common;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Encapsulates all information stored for Action-/SecurityContexts which are available via scripting
@@ -33,6 +34,40 @@ public class ContextStore {
 	protected Map<String, Date> timerStore         = new HashMap<>();
 	protected Map<Integer, Integer> counters       = new HashMap<>();
 
+	public ContextStore() {
+	}
+
+	/**
+	 * Creates a copy of the given context store with its own maps.
+	 *
+	 * @param other the context store to copy from
+	 */
+	public ContextStore(final ContextStore other) {
+
+		this.headers.putAll(other.headers);
+		this.constants.putAll(other.constants);
+		this.tmpStore.putAll(other.tmpStore);
+		this.timerStore.putAll(other.timerStore);
+		this.counters.putAll(other.counters);
+	}
+
+	/**
+	 * Applies the values that were changed in or removed from the given
+	 * copy of this store (compared to the given initial state of the copy)
+	 * to this store.
+	 *
+	 * @param initial the state of the copy when it was created
+	 * @param copy the modified copy
+	 */
+	public void applyChanges(final ContextStore initial, final ContextStore copy) {
+
+		applyChanges(headers,    initial.headers,    copy.headers);
+		applyChanges(constants,  initial.constants,  copy.constants);
+		applyChanges(tmpStore,   initial.tmpStore,   copy.tmpStore);
+		applyChanges(timerStore, initial.timerStore, copy.timerStore);
+		applyChanges(counters,   initial.counters,   copy.counters);
+	}
+
 
 	// --- Headers ---
 	public void addHeader(final String key, final String value) {
@@ -109,4 +144,25 @@ public class ContextStore {
 		return timerStore.get(key);
 	}
 
+	// ----- private methods -----
+	private <K, V> void applyChanges(final Map<K, V> target, final Map<K, V> initial, final Map<K, V> copy) {
+
+		for (final Map.Entry<K, V> entry : copy.entrySet()) {
+
+			final K key   = entry.getKey();
+			final V value = entry.getValue();
+
+			if (!initial.containsKey(key) || !Objects.equals(initial.get(key), value)) {
+				target.put(key, value);
+			}
+		}
+
+		for (final K key : initial.keySet()) {
+
+			if (!copy.containsKey(key)) {
+				target.remove(key);
+			}
+		}
+	}
+
 }
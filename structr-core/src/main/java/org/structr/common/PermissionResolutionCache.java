@@ -0,0 +1,336 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe, size-bounded cache for the results of the permission
+ * resolution along permission-propagating relationships.
+ *
+ * Entries are keyed by (node id, principal id, permission) and stored in
+ * primitive arrays, organized as a set-associative table with a fixed
+ * number of entries per set. When a set is full, the next entry replaces
+ * one of the existing entries in round-robin order, so the memory usage
+ * of the cache never exceeds its initial size.
+ *
+ * Invalidation works with epochs: each entry records the global epoch and
+ * the epoch of its node at the time it was stored, and is only returned
+ * if both are still current. This allows the invalidation of all entries
+ * or of all entries of a single node in constant time.
+ *
+ * A resolution that was started before an invalidation must not store its
+ * (possibly outdated) results under the new epochs. Callers therefore take
+ * a stamp with {@link #getStamp()} before resolving and pass it to
+ * {@link #put(long, long, Permission, boolean, long)}, which rejects the
+ * result if any invalidation happened in the meantime.
+ */
+public class PermissionResolutionCache {
+
+	private static final int WAYS          = 4;
+	private static final int LOCK_COUNT    = 64;
+	private static final int NODE_EPOCHS   = 1 << 16;
+	private static final byte EMPTY        = 0;
+	private static final byte DENIED       = 1;
+	private static final byte GRANTED      = 2;
+
+	private final AtomicIntegerArray nodeEpochs = new AtomicIntegerArray(NODE_EPOCHS);
+	private final AtomicInteger globalEpoch     = new AtomicInteger();
+	private final AtomicLong stamp              = new AtomicLong();
+	private final Object[] locks                = new Object[LOCK_COUNT];
+	private final LongAdder lookups             = new LongAdder();
+	private final LongAdder hits                = new LongAdder();
+	private final LongAdder evictions           = new LongAdder();
+	private final LongAdder invalidations       = new LongAdder();
+	private final LongAdder rejections          = new LongAdder();
+	private final LongAdder bfsRuns             = new LongAdder();
+	private final LongAdder bfsAvoided          = new LongAdder();
+	private long[] nodeIds                      = null;
+	private long[] principalKeys                = null;
+	private int[] epochs                        = null;
+	private int[] nodeEpochStamps               = null;
+	private byte[] values                       = null;
+	private byte[] replacement                  = null;
+	private int setMask                         = 0;
+
+	public PermissionResolutionCache(final int maxSize) {
+
+		// number of sets is a power of two, so the set index can be masked
+		int sets = 1;
+		while (sets * WAYS < maxSize) {
+			sets <<= 1;
+		}
+
+		final int size = sets * WAYS;
+
+		this.nodeIds         = new long[size];
+		this.principalKeys   = new long[size];
+		this.epochs          = new int[size];
+		this.nodeEpochStamps = new int[size];
+		this.values          = new byte[size];
+		this.replacement     = new byte[sets];
+		this.setMask         = sets - 1;
+
+		for (int i=0; i<LOCK_COUNT; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Returns the cached permission resolution result for the given
+	 * node, principal and permission, or null if there is no (valid)
+	 * cached result.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 *
+	 * @return the cached result or null
+	 */
+	public Boolean get(final long nodeId, final long principalId, final Permission permission) {
+
+		final int permissionIndex = getPermissionIndex(permission);
+		if (permissionIndex < 0) {
+			return null;
+		}
+
+		final long principalKey = (principalId << 2) | permissionIndex;
+		final int set           = getSet(nodeId, principalKey);
+		final int base          = set * WAYS;
+		final int epoch         = globalEpoch.get();
+		final int nodeEpoch     = nodeEpochs.get(getNodeEpochIndex(nodeId));
+
+		lookups.increment();
+
+		synchronized (locks[set & (LOCK_COUNT - 1)]) {
+
+			for (int i=base; i<base+WAYS; i++) {
+
+				if (values[i] != EMPTY && nodeIds[i] == nodeId && principalKeys[i] == principalKey) {
+
+					if (epochs[i] == epoch && nodeEpochStamps[i] == nodeEpoch) {
+
+						hits.increment();
+
+						return values[i] == GRANTED ? Boolean.TRUE : Boolean.FALSE;
+					}
+
+					// stale entry
+					values[i] = EMPTY;
+
+					return null;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the current invalidation stamp. Take the stamp before
+	 * resolving a permission and pass it to put(), so results that were
+	 * resolved before an invalidation are not stored.
+	 *
+	 * @return the current stamp
+	 */
+	public long getStamp() {
+		return stamp.get();
+	}
+
+	/**
+	 * Stores the given permission resolution result. A positive result
+	 * is never overwritten by a negative result for the same key, as
+	 * long as it is valid.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 * @param value
+	 */
+	public void put(final long nodeId, final long principalId, final Permission permission, final boolean value) {
+		put(nodeId, principalId, permission, value, getStamp());
+	}
+
+	/**
+	 * Stores the given permission resolution result if no invalidation
+	 * happened since the given stamp was taken.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 * @param value
+	 * @param resolutionStamp the stamp taken before the resolution started
+	 */
+	public void put(final long nodeId, final long principalId, final Permission permission, final boolean value, final long resolutionStamp) {
+
+		final int permissionIndex = getPermissionIndex(permission);
+		if (permissionIndex < 0) {
+			return;
+		}
+
+		final long principalKey = (principalId << 2) | permissionIndex;
+		final int set           = getSet(nodeId, principalKey);
+		final int base          = set * WAYS;
+		final int epoch         = globalEpoch.get();
+		final int nodeEpoch     = nodeEpochs.get(getNodeEpochIndex(nodeId));
+
+		// the epochs must be read before the stamp is checked: invalidations
+		// advance the stamp before the epochs, so a result that passes the
+		// check below is stored with epochs that the invalidation makes stale
+		if (stamp.get() != resolutionStamp) {
+			rejections.increment();
+			return;
+		}
+
+		synchronized (locks[set & (LOCK_COUNT - 1)]) {
+
+			int slot = -1;
+
+			for (int i=base; i<base+WAYS; i++) {
+
+				if (values[i] != EMPTY && nodeIds[i] == nodeId && principalKeys[i] == principalKey) {
+
+					final boolean valid = epochs[i] == epoch && nodeEpochStamps[i] == nodeEpoch;
+
+					// keep valid positive results
+					if (valid && values[i] == GRANTED) {
+						return;
+					}
+
+					slot = i;
+					break;
+				}
+
+				if (slot < 0 && values[i] == EMPTY) {
+					slot = i;
+				}
+			}
+
+			if (slot < 0) {
+
+				// set is full, replace in round-robin order
+				slot = base + replacement[set];
+				replacement[set] = (byte)((replacement[set] + 1) % WAYS);
+
+				evictions.increment();
+			}
+
+			nodeIds[slot]         = nodeId;
+			principalKeys[slot]   = principalKey;
+			epochs[slot]          = epoch;
+			nodeEpochStamps[slot] = nodeEpoch;
+			values[slot]          = value ? GRANTED : DENIED;
+		}
+	}
+
+	/**
+	 * Invalidates all cached results of the given node.
+	 *
+	 * @param nodeId
+	 */
+	public void invalidateNode(final long nodeId) {
+
+		stamp.incrementAndGet();
+		nodeEpochs.incrementAndGet(getNodeEpochIndex(nodeId));
+		invalidations.increment();
+	}
+
+	/**
+	 * Invalidates all cached results.
+	 */
+	public void invalidateAll() {
+
+		stamp.incrementAndGet();
+		globalEpoch.incrementAndGet();
+		invalidations.increment();
+	}
+
+	public void countBfsRun() {
+		bfsRuns.increment();
+	}
+
+	public void countBfsAvoided() {
+		bfsAvoided.increment();
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("size",          values.length);
+		statistics.put("lookups",       lookups.sum());
+		statistics.put("hits",          hits.sum());
+		statistics.put("evictions",     evictions.sum());
+		statistics.put("invalidations", invalidations.sum());
+		statistics.put("rejections",    rejections.sum());
+		statistics.put("bfsRuns",       bfsRuns.sum());
+		statistics.put("bfsAvoided",    bfsAvoided.sum());
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private int getSet(final long nodeId, final long principalKey) {
+
+		final long hash = mix(nodeId * 0x9E3779B97F4A7C15L + principalKey);
+
+		return (int)(hash ^ (hash >>> 32)) & setMask;
+	}
+
+	private int getNodeEpochIndex(final long nodeId) {
+
+		final long hash = mix(nodeId);
+
+		return (int)(hash ^ (hash >>> 32)) & (NODE_EPOCHS - 1);
+	}
+
+	private long mix(long value) {
+
+		value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+		value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+
+		return value ^ (value >>> 33);
+	}
+
+	private int getPermissionIndex(final Permission permission) {
+
+		if (Permission.read.equals(permission)) {
+			return 0;
+		}
+
+		if (Permission.write.equals(permission)) {
+			return 1;
+		}
+
+		if (Permission.delete.equals(permission)) {
+			return 2;
+		}
+
+		if (Permission.accessControl.equals(permission)) {
+			return 3;
+		}
+
+		return -1;
+	}
+}
@@ -457,6 +457,10 @@ public class SecurityContext {
 	}
 
 	public boolean isReadable(final NodeInterface node, final boolean includeDeletedAndHidden, final boolean publicOnly) {
+		return isReadable(node, includeDeletedAndHidden, publicOnly, null);
+	}
+
+	public boolean isReadable(final NodeInterface node, final boolean includeDeletedAndHidden, final boolean publicOnly, final BatchPermissionEvaluator evaluator) {
 
 		/**
 		 * The if-clauses in the following lines have been split for
@@ -488,6 +492,16 @@ public class SecurityContext {
 			return true;
 		}
 
+		// use result of batch evaluation if available
+		if (evaluator != null) {
+
+			final Boolean granted = evaluator.isGranted(node);
+			if (granted != null) {
+
+				return granted;
+			}
+		}
+
 		return node.isGranted(Permission.read, this);
 	}
 
@@ -852,6 +866,48 @@ public class SecurityContext {
 		this.contextStore = contextStore;
 	}
 
+	/**
+	 * Creates a copy of this security context for use in a different
+	 * thread. The copy has its own context store, initialized with the
+	 * values of this context.
+	 *
+	 * @return the copy
+	 */
+	public SecurityContext copy() {
+		return copyTo(new SecurityContext());
+	}
+
+	protected SecurityContext copyTo(final SecurityContext copy) {
+
+		copy.uuidWasSetManually         = uuidWasSetManually;
+		copy.doTransactionNotifications = doTransactionNotifications;
+		copy.modifyAccessTime           = modifyAccessTime;
+		copy.ignoreResultCount          = ignoreResultCount;
+		copy.ensureCardinality          = ensureCardinality;
+		copy.serializationDepth         = serializationDepth;
+		copy.accessMode                 = accessMode;
+		copy.authenticator              = authenticator;
+		copy.cachedUser                 = cachedUser;
+		copy.request                    = request;
+		copy.response                   = response;
+		copy.cachedUserName             = cachedUserName;
+		copy.cachedUserId               = cachedUserId;
+		copy.sessionId                  = sessionId;
+
+		copy.ranges.putAll(ranges);
+		copy.attrs.putAll(attrs);
+
+		if (customView != null) {
+			copy.customView = new LinkedHashSet<>(customView);
+		}
+
+		if (contextStore != null) {
+			copy.contextStore = new ContextStore(contextStore);
+		}
+
+		return copy;
+	}
+
 	// ----- nested classes -----
 	private static class SuperUserSecurityContext extends SecurityContext {
 
@@ -901,6 +957,12 @@ public class SecurityContext {
 			return true;
 		}
 
+		@Override
+		public boolean isReadable(final NodeInterface node, final boolean includeDeletedAndHidden, final boolean publicOnly, final BatchPermissionEvaluator evaluator) {
+
+			return true;
+		}
+
 		@Override
 		public boolean isVisible(AccessControllable node) {
 
@@ -915,6 +977,11 @@ public class SecurityContext {
 
 		}
 
+		@Override
+		public SecurityContext copy() {
+			return copyTo(new SuperUserSecurityContext());
+		}
+
 	}
 
 }
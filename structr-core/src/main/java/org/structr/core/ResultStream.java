@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The results of a query as an iterable that can be filled lazily while
+ * it is being consumed.
+ *
+ * In contrast to {@link Result}, the overall number of results is only
+ * known after the results were consumed.
+ */
+public interface ResultStream<T extends GraphObject> extends Iterable<T> {
+
+	/**
+	 * Returns the overall number of results, not only the number of
+	 * results on the requested page. Must only be called after the
+	 * results were consumed, as it may read the remaining query results
+	 * to count them.
+	 *
+	 * @return the overall number of results
+	 */
+	int getResultCount();
+
+	/**
+	 * Returns a stream of the given materialized result.
+	 *
+	 * @param <T>
+	 * @param result
+	 *
+	 * @return the stream
+	 */
+	public static <T extends GraphObject> ResultStream<T> of(final Result<T> result) {
+
+		final List<T> results = (result != null && result.getResults() != null) ? result.getResults() : Collections.emptyList();
+		final int resultCount = (result != null && result.getRawResultCount() != null) ? result.getRawResultCount() : results.size();
+
+		return new ResultStream<T>() {
+
+			@Override
+			public Iterator<T> iterator() {
+				return results.iterator();
+			}
+
+			@Override
+			public int getResultCount() {
+				return resultCount;
+			}
+		};
+	}
+}
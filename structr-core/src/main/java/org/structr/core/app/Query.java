@@ -25,6 +25,7 @@ import org.structr.api.search.QueryContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.ResultStream;
 import org.structr.core.graph.search.SearchAttribute;
 import org.structr.core.graph.search.SearchAttributeGroup;
 import org.structr.core.property.PropertyKey;
@@ -43,6 +44,18 @@ public interface Query<T extends GraphObject> extends Iterable<T> {
 
 	public Result<T> getResult() throws FrameworkException;
 	public List<T> getAsList() throws FrameworkException;
+
+	/**
+	 * Returns the results of this query as an iterable that is filled
+	 * lazily while it is being consumed, if the query allows it. Must
+	 * be consumed in the transaction the query was executed in.
+	 *
+	 * @return the results
+	 * @throws FrameworkException
+	 */
+	default public ResultStream<T> getResultStream() throws FrameworkException {
+		return ResultStream.of(getResult());
+	}
 	public T getFirst() throws FrameworkException;
 
 	// ----- builder methods -----
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.auth;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index from session id to the UUID of the principal the
+ * session belongs to.
+ *
+ * The index is maintained when session ids are added to or removed from
+ * principals, and filled lazily for sessions that existed before the
+ * index was created. Entries are hints only, callers must verify that
+ * the principal still holds the session id.
+ */
+public class SessionIndex {
+
+	private static final Map<String, String> sessions = new ConcurrentHashMap<>();
+
+	public static void put(final String sessionId, final String principalId) {
+
+		if (sessionId != null && principalId != null) {
+			sessions.put(sessionId, principalId);
+		}
+	}
+
+	public static String get(final String sessionId) {
+
+		if (sessionId != null) {
+			return sessions.get(sessionId);
+		}
+
+		return null;
+	}
+
+	public static void remove(final String sessionId) {
+
+		if (sessionId != null) {
+			sessions.remove(sessionId);
+		}
+	}
+
+	public static void remove(final String sessionId, final String principalId) {
+
+		if (sessionId != null && principalId != null) {
+			sessions.remove(sessionId, principalId);
+		}
+	}
+
+	public static void clear() {
+		sessions.clear();
+	}
+}
@@ -69,6 +69,7 @@ import org.structr.common.GraphObjectComparator;
 import org.structr.common.IdSorter;
 import org.structr.common.Permission;
 import org.structr.common.PermissionPropagation;
+import org.structr.common.PermissionResolutionCache;
 import org.structr.common.PermissionResolutionMask;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
@@ -108,7 +109,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	private static final int permissionResolutionMaxLevel                                                 = Settings.ResolutionDepth.getValue();
 	private static final Logger logger                                                                    = LoggerFactory.getLogger(AbstractNode.class.getName());
 	private static final FixedSizeCache<String, Object> relationshipTemplateInstanceCache                 = new FixedSizeCache<>(1000);
-	private static final Map<Long, Map<Long, PermissionResolutionResult>> globalPermissionResolutionCache = new HashMap<>();
+	private static final PermissionResolutionCache permissionResolutionCache                              = new PermissionResolutionCache(Settings.ResolutionCacheSize.getValue());
 
 	public static final View defaultView = new View(AbstractNode.class, PropertyView.Public, id, type);
 
@@ -885,8 +886,11 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			// Check permissions from domain relationships
 			if (resolvePermissions) {
 
+				// results resolved before a concurrent invalidation must not be cached
+				final long stamp                = permissionResolutionCache.getStamp();
 				final Queue<BFSInfo> bfsNodes   = new LinkedList<>();
 				final BFSInfo root              = new BFSInfo(null, this);
+				boolean traversed               = false;
 
 				// add initial element
 				bfsNodes.add(root);
@@ -899,21 +903,32 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 						final Boolean value = info.node.getPermissionResolutionResult(accessingUser.getId(), permission);
 						if (value != null) {
 
+							// cached result for the node itself, no traversal needed
+							if (info.parent == null) {
+								permissionResolutionCache.countBfsAvoided();
+							}
+
 							// returning immediately
 							if (Boolean.TRUE.equals(value)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getId(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getId(), permission, true, 0, stamp, doLog);
 
 								return true;
 							}
 
 						} else {
 
-							if (info.node.hasEffectivePermissions(info, accessingUser, permission, mask, level, alreadyTraversed, bfsNodes, doLog)) {
+							if (!traversed) {
+
+								permissionResolutionCache.countBfsRun();
+								traversed = true;
+							}
+
+							if (info.node.hasEffectivePermissions(info, accessingUser, permission, mask, level, alreadyTraversed, bfsNodes, stamp, doLog)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getId(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getId(), permission, true, 0, stamp, doLog);
 
 								return true;
 							}
@@ -923,7 +938,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 				} while (!bfsNodes.isEmpty());
 
 				// do backtracking
-				backtrack(root, accessingUser.getId(), permission, false, 0, doLog);
+				backtrack(root, accessingUser.getId(), permission, false, 0, stamp, doLog);
 			}
 
 			// Last: recursively check possible parent principals
@@ -938,7 +953,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		return false;
 	}
 
-	private void backtrack(final BFSInfo info, final long principalId, final Permission permission, final boolean value, final int level, final boolean doLog) {
+	private void backtrack(final BFSInfo info, final long principalId, final Permission permission, final boolean value, final int level, final long stamp, final boolean doLog) {
 
 		if (doLog) {
 
@@ -957,12 +972,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			System.out.print(info.node.getType() + " (" + info.node.getUuid() + ") --> ");
 		}
 
-		info.node.storePermissionResolutionResult(principalId, permission, value);
+		info.node.storePermissionResolutionResult(principalId, permission, value, stamp);
 
 		// go to parent(s)
 		if (info.parent != null) {
 
-			backtrack(info.parent, principalId, permission, value, level+1, doLog);
+			backtrack(info.parent, principalId, permission, value, level+1, stamp, doLog);
 		}
 
 		if (doLog && level == 0) {
@@ -971,7 +986,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	}
 
 
-	private boolean hasEffectivePermissions(final BFSInfo parent, final Principal principal, final Permission permission, final PermissionResolutionMask mask, final int level, final AlreadyTraversed alreadyTraversed, final Queue<BFSInfo> bfsNodes, final boolean doLog) {
+	private boolean hasEffectivePermissions(final BFSInfo parent, final Principal principal, final Permission permission, final PermissionResolutionMask mask, final int level, final AlreadyTraversed alreadyTraversed, final Queue<BFSInfo> bfsNodes, final long stamp, final boolean doLog) {
 
 		// check nodes here to avoid circles in permission-propagating relationships
 		if (alreadyTraversed.contains("Node", dbNode.getId())) {
@@ -980,11 +995,10 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 		for (final Class<Relation> propagatingType : SchemaRelationshipNode.getPropagatingRelationshipTypes()) {
 
-			final Relation template           = getRelationshipForType(propagatingType);
-			final Direction direction         = template.getDirectionForType(entityType);
+			final Relation template = getRelationshipForType(propagatingType);
 
 			// skip relationship type if it is not applicable for the current node type
-			if (Direction.BOTH.equals(direction)) {
+			if (!isPropagationEndpoint(template, entityType)) {
 				continue;
 			}
 
@@ -1008,7 +1022,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 							if (otherNode.isGranted(permission, principal, mask, level+1, alreadyTraversed, false, doLog)) {
 
-								otherNode.storePermissionResolutionResult(principal.getId(), permission, true);
+								otherNode.storePermissionResolutionResult(principal.getId(), permission, true, stamp);
 
 								// break early
 								return true;
@@ -1150,68 +1164,65 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	}
 
 	private Boolean getPermissionResolutionResult(final long principalId, final Permission permission) {
+		return permissionResolutionCache.get(getId(), principalId, permission);
+	}
 
-		Map<Long, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getId());
-		if (permissionResolutionCache == null) {
+	private void storePermissionResolutionResult(final long principalId, final Permission permission, final boolean value, final long stamp) {
+		permissionResolutionCache.put(getId(), principalId, permission, value, stamp);
+	}
 
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getId(), permissionResolutionCache);
-		}
+	/**
+	 * Invalidates the cached permission resolution results that can be
+	 * affected by a change of this node. Results of other nodes can only
+	 * depend on this node if it is a principal or if permissions can be
+	 * propagated through it, otherwise only the results of this node are
+	 * invalidated.
+	 */
+	private void invalidatePermissionResolutionCache() {
 
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result != null) {
+		if (this instanceof Principal || isPermissionPropagationParticipant(entityType)) {
 
-			if (permission.equals(Permission.read)) {
-				return result.read;
-			}
+			permissionResolutionCache.invalidateAll();
 
-			if (permission.equals(Permission.write)) {
-				return result.write;
-			}
-
-			if (permission.equals(Permission.delete)) {
-				return result.delete;
-			}
+		} else {
 
-			if (permission.equals(Permission.accessControl)) {
-				return result.accessControl;
-			}
+			permissionResolutionCache.invalidateNode(getId());
 		}
-
-		return null;
 	}
 
-	private void storePermissionResolutionResult(final long principalId, final Permission permission, final boolean value) {
-
-		Map<Long, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getId());
-		if (permissionResolutionCache == null) {
-
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getId(), permissionResolutionCache);
-		}
-
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result == null) {
+	/**
+	 * Indicates whether permissions can be propagated to or through nodes
+	 * of the given type, i.e. whether the type can be the source or the
+	 * target of a propagating relationship. This includes relationships
+	 * that connect a type to itself.
+	 *
+	 * @param type
+	 * @return whether the type takes part in permission propagation
+	 */
+	public static boolean isPermissionPropagationParticipant(final Class type) {
 
-			result = new PermissionResolutionResult();
-			permissionResolutionCache.put(principalId, result);
-		}
+		for (final Class<Relation> propagatingType : SchemaRelationshipNode.getPropagatingRelationshipTypes()) {
 
-		if (permission.equals(Permission.read) && (result.read == null || result.read == false)) {
-			result.read = value;
+			if (isPropagationEndpoint(getRelationshipForType(propagatingType), type)) {
+				return true;
+			}
 		}
 
-		if (permission.equals(Permission.write) && (result.write == null || result.write == false)) {
-			result.write = value;
-		}
+		return false;
+	}
 
-		if (permission.equals(Permission.delete) && (result.delete == null || result.delete == false)) {
-			result.delete = value;
-		}
+	/**
+	 * Indicates whether nodes of the given type can be the source or the
+	 * target of the given relationship. Relation.getDirectionForType can
+	 * not be used here because it returns BOTH for unrelated types as well
+	 * as for relationships that connect a type to itself.
+	 */
+	private static boolean isPropagationEndpoint(final Relation template, final Class type) {
+		return isAssignable(template.getSourceType(), type) || isAssignable(template.getTargetType(), type);
+	}
 
-		if (permission.equals(Permission.accessControl) && (result.accessControl == null || result.accessControl == false)) {
-			result.accessControl = value;
-		}
+	private static boolean isAssignable(final Class endpointType, final Class type) {
+		return endpointType != null && (endpointType.isAssignableFrom(type) || type.isAssignableFrom(endpointType));
 	}
 
 	/**
@@ -1251,12 +1262,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void onModification(SecurityContext securityContext, ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
-		clearPermissionResolutionCache();
+		invalidatePermissionResolutionCache();
 	}
 
 	@Override
 	public void onDeletion(SecurityContext securityContext, ErrorBuffer errorBuffer, PropertyMap properties) throws FrameworkException {
-		clearPermissionResolutionCache();
+		invalidatePermissionResolutionCache();
 	}
 
 	@Override
@@ -1273,22 +1284,22 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void ownerModified(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
+		invalidatePermissionResolutionCache();
 	}
 
 	@Override
 	public void securityModified(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
+		invalidatePermissionResolutionCache();
 	}
 
 	@Override
 	public void locationModified(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
+		invalidatePermissionResolutionCache();
 	}
 
 	@Override
 	public void propagatedModification(SecurityContext securityContext) {
-		clearPermissionResolutionCache();
+		invalidatePermissionResolutionCache();
 	}
 
 	@Override
@@ -1530,7 +1541,15 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	}
 
 	public static void clearPermissionResolutionCache() {
-		globalPermissionResolutionCache.clear();
+		permissionResolutionCache.invalidateAll();
+	}
+
+	public static void invalidatePermissionResolutionCache(final long nodeId) {
+		permissionResolutionCache.invalidateNode(nodeId);
+	}
+
+	public static Map<String, Object> getPermissionResolutionStatistics() {
+		return permissionResolutionCache.getStatistics();
 	}
 
 	public static <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R getRelationshipForType(final Class<R> type) {
@@ -2115,12 +2134,4 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			}
 		}
 	}
-
-	private static class PermissionResolutionResult {
-
-		Boolean read          = false;
-		Boolean write         = false;
-		Boolean delete        = false;
-		Boolean accessControl = false;
-	}
 }
@@ -37,6 +37,7 @@ import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 import org.structr.cmis.CMISInfo;
 import org.structr.common.GraphObjectComparator;
+import org.structr.common.PermissionPropagation;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.ValidationHelper;
@@ -478,14 +479,17 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 
 	@Override
 	public void onCreation(SecurityContext securityContext, ErrorBuffer errorBuffer) throws FrameworkException {
+		invalidatePermissionResolutionCache();
 	}
 
 	@Override
 	public void onModification(SecurityContext securityContext, ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
+		invalidatePermissionResolutionCache();
 	}
 
 	@Override
 	public void onDeletion(SecurityContext securityContext, ErrorBuffer errorBuffer, PropertyMap properties) throws FrameworkException {
+		invalidatePermissionResolutionCache();
 	}
 
 	@Override
@@ -842,4 +846,18 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 
 		return propertyMap;
 	}
+
+	// ----- private methods -----
+	/**
+	 * Invalidates all cached permission resolution results if this is a
+	 * permission-propagating relationship. Changes of security relationships
+	 * are handled by the securityModified() callback of the target node.
+	 */
+	private void invalidatePermissionResolutionCache() {
+
+		if (this instanceof PermissionPropagation) {
+
+			AbstractNode.clearPermissionResolutionCache();
+		}
+	}
 }
@@ -32,6 +32,7 @@ import org.structr.common.PropertyView;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
 import org.structr.core.auth.HashHelper;
+import org.structr.core.auth.SessionIndex;
 import org.structr.core.entity.relationship.PrincipalOwnsNode;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.EndNodes;
@@ -182,6 +183,8 @@ public interface Principal extends NodeInterface, AccessControllable {
 				principal.setProperty(key, new String[] {  sessionId } );
 			}
 
+			SessionIndex.put(sessionId, principal.getUuid());
+
 
 		} catch (FrameworkException ex) {
 			logger.error("Could not add sessionId " + sessionId + " to array of sessionIds", ex);
@@ -209,6 +212,8 @@ public interface Principal extends NodeInterface, AccessControllable {
 
 			principal.setProperty(key, (String[]) newSessionIds.toArray(new String[0]));
 
+			SessionIndex.remove(sessionId, principal.getUuid());
+
 		} catch (FrameworkException ex) {
 			logger.error("Could not remove sessionId " + sessionId + " from array of sessionIds", ex);
 		}
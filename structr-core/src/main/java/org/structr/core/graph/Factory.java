@@ -22,6 +22,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
@@ -36,6 +38,7 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.Adapter;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.ResultStream;
 import org.structr.core.app.StructrApp;
 import org.structr.schema.SchemaHelper;
 
@@ -46,6 +49,12 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 	public static final int DEFAULT_PAGE_SIZE = Integer.MAX_VALUE;
 	public static final int DEFAULT_PAGE      = 1;
 
+	/**
+	 * The number of database objects that are instantiated and checked
+	 * for visibility together.
+	 */
+	public static final int BATCH_SIZE = 100;
+
 	/**
 	 * This limit is the number of objects up to which the overall count
 	 * will be accurate.
@@ -85,6 +94,44 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 	public abstract T instantiate(final S obj, final boolean includeDeletedAndHidden, final boolean publicOnly) throws FrameworkException;
 	public abstract T instantiateDummy(final S entity, final String entityType) throws FrameworkException;
 
+	/**
+	 * Create structr nodes lazily from the underlying database nodes
+	 *
+	 * Returns an iterable that instantiates the nodes (including the
+	 * security check and paging) while it is being consumed, so the
+	 * caller can process results without holding the whole result in
+	 * memory. The iterable can only be consumed once, within the
+	 * transaction the query was executed in.
+	 *
+	 * Negative page numbers count from the end of the result, like in
+	 * {@link #instantiate(org.structr.api.QueryResult)}, so the raw
+	 * results are read completely in this case.
+	 *
+	 * @param input
+	 * @return a lazy iterable of the readable nodes
+	 */
+	public ResultStream<T> stream(final QueryResult<S> input) {
+
+		final int pageSize = disablePaging ? Integer.MAX_VALUE : factoryProfile.getPageSize();
+		final int page     = factoryProfile.getPage();
+
+		if (page < 0 && !disablePaging) {
+
+			final List<S> rawNodes = read(input);
+			final int size         = rawNodes.size();
+			final int fromIndex    = (int)Math.max(0L, size + ((long)page * pageSize));
+			final int toIndex      = (int)Math.min(size, (long)fromIndex + pageSize);
+
+			input.close();
+
+			return new InstantiatingStream(rawNodes.subList(fromIndex, toIndex), 0, Integer.MAX_VALUE, size);
+		}
+
+		final int offset = (disablePaging || pageSize == Integer.MAX_VALUE) ? 0 : (page - 1) * pageSize;
+
+		return new InstantiatingStream(input, offset, pageSize, -1);
+	}
+
 	/**
 	 * Create structr nodes from all given underlying database nodes
 	 * No paging, but security check
@@ -165,14 +212,20 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		if ((input != null) && input.iterator().hasNext()) {
 
+			final List<S> batch = new ArrayList<>(BATCH_SIZE);
+
 			for (S node : input) {
 
-				T n = instantiate(node);
-				if (n != null) {
+				batch.add(node);
+
+				if (batch.size() == BATCH_SIZE) {
 
-					nodes.add(n);
+					nodes.addAll(instantiateBatch(batch));
+					batch.clear();
 				}
 			}
+
+			nodes.addAll(instantiateBatch(batch));
 		}
 
 		return nodes;
@@ -220,10 +273,22 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		try (final QueryResult<S> tmp = input) {
 
-			for (final S item : tmp) {
+			final Iterator<S> iterator = tmp.iterator();
+			final List<S> batch        = new ArrayList<>(BATCH_SIZE);
+			boolean done               = false;
+
+			while (!done && iterator.hasNext()) {
 
-				final T n = instantiate(item);
-				if (n != null) {
+				// don't read more objects than needed if the count is not checked
+				final int batchSize = (dontCheckCount && !disablePaging) ? getBatchSize(offset, pageSize, position) : BATCH_SIZE;
+
+				batch.clear();
+
+				while (batch.size() < batchSize && iterator.hasNext()) {
+					batch.add(iterator.next());
+				}
+
+				for (final T n : instantiateBatch(batch)) {
 
 					overallCount++;
 					position++;
@@ -234,6 +299,8 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 						// stop if we got enough nodes
 						if (++count == pageSize && dontCheckCount && !disablePaging) {
+
+							done = true;
 							break;
 						}
 					}
@@ -248,8 +315,200 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 		return new Result(nodes, overallCount, true, false);
 	}
 
+	/**
+	 * Instantiates the given batch of database objects and returns the
+	 * objects that are visible in the current security context, in the
+	 * same order. Subclasses can override this method to check the
+	 * visibility of the whole batch at once.
+	 *
+	 * @param batch
+	 * @return the visible objects
+	 */
+	protected List<T> instantiateBatch(final List<S> batch) {
+
+		final List<T> objects = new ArrayList<>(batch.size());
+
+		for (final S item : batch) {
+
+			final T n = instantiate(item);
+			if (n != null) {
+
+				objects.add(n);
+			}
+		}
+
+		return objects;
+	}
+
+	// ----- private methods -----
+	private int getBatchSize(final int offset, final int pageSize, final int position) {
+		return (int)Math.min(BATCH_SIZE, Math.max(1L, (long)offset + pageSize - position));
+	}
+
 
 	// ----- nested classes -----
+	private class InstantiatingStream implements ResultStream<T> {
+
+		private InstantiatingIterator iterator = null;
+		private Iterable<S> input              = null;
+		private int resultCount                = -1;
+		private int pageSize                   = 0;
+		private int offset                     = 0;
+
+		public InstantiatingStream(final Iterable<S> input, final int offset, final int pageSize, final int resultCount) {
+
+			this.input       = input;
+			this.offset      = offset;
+			this.pageSize    = pageSize;
+			this.resultCount = resultCount;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+
+			if (iterator != null) {
+				throw new IllegalStateException("Result stream can only be consumed once");
+			}
+
+			iterator = new InstantiatingIterator(input, offset, pageSize);
+
+			return iterator;
+		}
+
+		@Override
+		public int getResultCount() {
+
+			if (resultCount < 0) {
+
+				if (iterator == null) {
+					iterator = new InstantiatingIterator(input, offset, pageSize);
+				}
+
+				resultCount = iterator.countAll();
+			}
+
+			return resultCount;
+		}
+	}
+
+	private class InstantiatingIterator implements Iterator<T> {
+
+		private final Queue<T> buffer = new LinkedList<>();
+		private Iterable<S> input     = null;
+		private Iterator<S> iterator  = null;
+		private T next                = null;
+		private int position          = 0;
+		private int count             = 0;
+		private int pageSize          = 0;
+		private int offset            = 0;
+
+		public InstantiatingIterator(final Iterable<S> input, final int offset, final int pageSize) {
+
+			this.iterator = input.iterator();
+			this.pageSize = pageSize;
+			this.offset   = offset;
+			this.input    = input;
+		}
+
+		/**
+		 * Returns the number of readable objects in the whole input,
+		 * reading and checking the objects after the current page.
+		 */
+		public int countAll() {
+
+			int total = position + buffer.size() + (next != null ? 1 : 0);
+
+			if (input != null) {
+
+				final List<S> batch = new ArrayList<>(BATCH_SIZE);
+
+				while (iterator.hasNext()) {
+
+					batch.clear();
+
+					while (batch.size() < BATCH_SIZE && iterator.hasNext()) {
+						batch.add(iterator.next());
+					}
+
+					total += instantiateBatch(batch).size();
+				}
+
+				close();
+			}
+
+			return total;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			while (next == null && count < pageSize && (!buffer.isEmpty() || (input != null && iterator.hasNext()))) {
+
+				if (buffer.isEmpty()) {
+
+					final int batchSize = getBatchSize(offset, pageSize, position);
+					final List<S> batch = new ArrayList<>(batchSize);
+
+					while (batch.size() < batchSize && iterator.hasNext()) {
+						batch.add(iterator.next());
+					}
+
+					// instantiateBatch applies the security check and drops unreadable objects
+					buffer.addAll(instantiateBatch(batch));
+
+				} else {
+
+					final T candidate = buffer.poll();
+					if (position++ >= offset) {
+
+						next = candidate;
+					}
+				}
+			}
+
+			if (next == null) {
+
+				// release database resources as soon as possible, unless the remaining
+				// objects are needed for the result count
+				if (input != null && (!iterator.hasNext() || !countResults())) {
+					close();
+				}
+
+				return false;
+			}
+
+			return true;
+		}
+
+		private boolean countResults() {
+			return !factoryProfile.getSecurityContext().ignoreResultCount();
+		}
+
+		private void close() {
+
+			if (input instanceof QueryResult) {
+				((QueryResult)input).close();
+			}
+
+			input = null;
+		}
+
+		@Override
+		public T next() {
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final T current = next;
+
+			next = null;
+			count++;
+
+			return current;
+		}
+	}
+
 	protected class FactoryProfile {
 
 		private boolean includeDeletedAndHidden = true;
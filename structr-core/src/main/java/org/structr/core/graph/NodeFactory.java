@@ -19,6 +19,7 @@
 package org.structr.core.graph;
 
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,8 @@ import org.slf4j.LoggerFactory;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.common.AccessControllable;
+import org.structr.common.BatchPermissionEvaluator;
+import org.structr.common.Permission;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
@@ -69,41 +72,17 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 			return null;
 		}
 
-		if (TransactionCommand.isDeleted(node)) {
-			return (T)instantiateWithType(node, null, pathSegment, false);
-		}
-
-		return (T) instantiateWithType(node, factoryDefinition.determineNodeType(node), pathSegment, false);
+		return (T) instantiateWithType(node, getNodeType(node), pathSegment, false);
 	}
 
 	@Override
 	public T instantiateWithType(final Node node, final Class<T> nodeClass, final Relationship pathSegment, boolean isCreation) {
 
-		// cannot instantiate node without type
-		if (nodeClass == null) {
-			return null;
-		}
-
-		SecurityContext securityContext = factoryProfile.getSecurityContext();
-		T newNode                       = null;
-
-		try {
-			newNode = nodeClass.newInstance();
-
-		} catch (NoClassDefFoundError|InstantiationException|IllegalAccessException itex) {
-			newNode = null;
-		}
-
-		if (newNode == null) {
-			newNode = (T)factoryDefinition.createGenericNode();
-		}
-
-		newNode.init(factoryProfile.getSecurityContext(), node, nodeClass, isCreation);
-		newNode.setRawPathSegment(pathSegment);
-		newNode.onNodeInstantiation(isCreation);
+		final SecurityContext securityContext = factoryProfile.getSecurityContext();
+		final T newNode                       = createNode(node, nodeClass, pathSegment, isCreation);
 
 		// check access
-		if (isCreation || securityContext.isReadable(newNode, factoryProfile.includeDeletedAndHidden(), factoryProfile.publicOnly())) {
+		if (newNode != null && (isCreation || securityContext.isReadable(newNode, factoryProfile.includeDeletedAndHidden(), factoryProfile.publicOnly()))) {
 
 			return newNode;
 		}
@@ -145,6 +124,51 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 
 	}
 
+	/**
+	 * Instantiates the given batch of database nodes and evaluates the read
+	 * permissions of the whole batch at once, see {@link BatchPermissionEvaluator}.
+	 *
+	 * @param batch
+	 * @return the readable nodes
+	 */
+	@Override
+	protected List<T> instantiateBatch(final List<Node> batch) {
+
+		final SecurityContext securityContext    = factoryProfile.getSecurityContext();
+		final BatchPermissionEvaluator evaluator = new BatchPermissionEvaluator(securityContext, Permission.read);
+		final boolean includeDeletedAndHidden    = factoryProfile.includeDeletedAndHidden();
+		final boolean publicOnly                 = factoryProfile.publicOnly();
+		final List<T> candidates                 = new ArrayList<>(batch.size());
+		final List<T> nodes                      = new ArrayList<>(batch.size());
+
+		for (final Node node : batch) {
+
+			if (node != null) {
+
+				final T candidate = createNode(node, getNodeType(node), null, false);
+				if (candidate != null) {
+
+					candidates.add(candidate);
+				}
+			}
+		}
+
+		// non-public nodes need a permission check
+		if (!publicOnly) {
+			evaluator.evaluate(candidates);
+		}
+
+		for (final T candidate : candidates) {
+
+			if (securityContext.isReadable(candidate, includeDeletedAndHidden, publicOnly, evaluator)) {
+
+				nodes.add(candidate);
+			}
+		}
+
+		return nodes;
+	}
+
 	/**
 	 * Return all nodes which are connected by an incoming IS_AT relationships
 	 *
@@ -168,4 +192,42 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 		return nodes;
 
 	}
+
+	// ----- private methods -----
+	private Class<T> getNodeType(final Node node) {
+
+		// deleted nodes cannot be instantiated
+		if (TransactionCommand.isDeleted(node)) {
+			return null;
+		}
+
+		return factoryDefinition.determineNodeType(node);
+	}
+
+	private T createNode(final Node node, final Class<T> nodeClass, final Relationship pathSegment, final boolean isCreation) {
+
+		// cannot instantiate node without type
+		if (nodeClass == null) {
+			return null;
+		}
+
+		T newNode = null;
+
+		try {
+			newNode = nodeClass.newInstance();
+
+		} catch (NoClassDefFoundError|InstantiationException|IllegalAccessException itex) {
+			newNode = null;
+		}
+
+		if (newNode == null) {
+			newNode = (T)factoryDefinition.createGenericNode();
+		}
+
+		newNode.init(factoryProfile.getSecurityContext(), node, nodeClass, isCreation);
+		newNode.setRawPathSegment(pathSegment);
+		newNode.onNodeInstantiation(isCreation);
+
+		return newNode;
+	}
 }
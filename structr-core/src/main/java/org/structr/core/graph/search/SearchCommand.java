@@ -43,6 +43,7 @@ import org.structr.common.geo.GeoCodingResult;
 import org.structr.common.geo.GeoHelper;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.ResultStream;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
@@ -115,22 +116,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		boolean hasGraphSources      = false;
 		boolean hasSpatialSource     = false;
 
-		if (securityContext.getUser(false) == null && !isRelationshipSearch()) {
-
-			rootGroup.add(new PropertySearchAttribute(GraphObject.visibleToPublicUsers, true, Occurrence.REQUIRED, true));
-
-		} else if (securityContext.getUser(false) == null && isRelationshipSearch()) {
-
-			rootGroup.add(new RelationshipVisibilitySearchAttribute());
-
-		}
-
-		// special handling of deleted and hidden flags
-		if (!includeDeletedAndHidden && !isRelationshipSearch()) {
-
-			rootGroup.add(new PropertySearchAttribute(NodeInterface.hidden,  true, Occurrence.FORBIDDEN, true));
-			rootGroup.add(new PropertySearchAttribute(NodeInterface.deleted, true, Occurrence.FORBIDDEN, true));
-		}
+		addVisibilityAttributes();
 
 		// At this point, all search attributes are ready
 		final List<SourceSearchAttribute> sources    = new ArrayList<>();
@@ -297,6 +283,62 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		}
 	}
 
+	private void addVisibilityAttributes() {
+
+		if (securityContext.getUser(false) == null && !isRelationshipSearch()) {
+
+			rootGroup.add(new PropertySearchAttribute(GraphObject.visibleToPublicUsers, true, Occurrence.REQUIRED, true));
+
+		} else if (securityContext.getUser(false) == null && isRelationshipSearch()) {
+
+			rootGroup.add(new RelationshipVisibilitySearchAttribute());
+
+		}
+
+		// special handling of deleted and hidden flags
+		if (!includeDeletedAndHidden && !isRelationshipSearch()) {
+
+			rootGroup.add(new PropertySearchAttribute(NodeInterface.hidden,  true, Occurrence.FORBIDDEN, true));
+			rootGroup.add(new PropertySearchAttribute(NodeInterface.deleted, true, Occurrence.FORBIDDEN, true));
+		}
+	}
+
+	/**
+	 * Indicates whether this query can be answered by the index alone,
+	 * i.e. without merging graph or spatial sources, post-filtering or
+	 * sorting in memory, so that its result can be streamed.
+	 */
+	private boolean isIndexOnlyQuery() {
+
+		if (comparator != null || getIndex() == null) {
+			return false;
+		}
+
+		// relationship visibility is filtered after the index query
+		if (securityContext.getUser(false) == null && isRelationshipSearch()) {
+			return false;
+		}
+
+		for (final SearchAttribute attr : rootGroup.getSearchAttributes()) {
+
+			if (attr instanceof SearchAttributeGroup) {
+
+				for (final SearchAttribute item : ((SearchAttributeGroup)attr).getSearchAttributes()) {
+
+					if (item instanceof SourceSearchAttribute || item instanceof EmptySearchAttribute) {
+						return false;
+					}
+				}
+			}
+
+			if (attr instanceof SourceSearchAttribute || attr instanceof DistanceSearchAttribute || attr instanceof EmptySearchAttribute || attr instanceof RelationshipVisibilitySearchAttribute) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	private Set<GraphObject> mergeSources(List<SourceSearchAttribute> sources) {
 
 		final Set<GraphObject> mergedResult = new LinkedHashSet<>();
@@ -353,6 +395,34 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return Collections.emptyList();
 	}
 
+	@Override
+	public ResultStream<T> getResultStream() throws FrameworkException {
+
+		if (page == 0 || pageSize <= 0) {
+
+			return ResultStream.of(Result.EMPTY_RESULT);
+		}
+
+		// queries that need post-processing are materialized
+		if (!isIndexOnlyQuery()) {
+
+			return ResultStream.of(getResult());
+		}
+
+		final Factory<S, T> factory = getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, page);
+
+		addVisibilityAttributes();
+
+		// apply sorting
+		if (sortKey != null && !doNotSort) {
+
+			rootGroup.setSortKey(sortKey);
+			rootGroup.sortDescending(sortDescending);
+		}
+
+		return factory.stream(getIndex().query(getQueryContext(), rootGroup));
+	}
+
 	@Override
 	public T getFirst() throws FrameworkException {
 
@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graphql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
+import org.structr.api.NativeResult;
+import org.structr.api.Predicate;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.common.SecurityContext;
+import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.search.SearchCommand;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.RelationProperty;
+
+/**
+ * Request-scoped batch loader for the relationship fields of a GraphQL query.
+ *
+ * Instead of resolving each relationship field once per parent object, the
+ * loader collects all parent nodes of a level, resolves the related nodes of
+ * each relationship field with a single graph query and caches the result
+ * by query path and parent node. The next level is then prefetched from the
+ * union of the resolved nodes, so the number of graph queries depends on the
+ * shape of the query, not on the size of the result.
+ */
+public class GraphQLDataLoader {
+
+	private static final Logger logger = LoggerFactory.getLogger(GraphQLDataLoader.class);
+	private static final int BATCH_SIZE = 1000;
+
+	private final Map<String, Map<Long, List<NodeInterface>>> cache = new HashMap<>();
+	private SecurityContext securityContext                          = null;
+	private GraphQLQuery query                                       = null;
+
+	public GraphQLDataLoader(final SecurityContext securityContext, final GraphQLQuery query) {
+
+		this.securityContext = securityContext;
+		this.query           = query;
+	}
+
+	/**
+	 * Resolves all relationship fields below the given path for the given
+	 * parent objects, level by level.
+	 *
+	 * @param path the query path of the parent objects
+	 * @param parents the parent objects
+	 */
+	public void prefetch(final String path, final Iterable<? extends GraphObject> parents) {
+
+		final GraphQLQueryConfiguration config = query.getQueryConfiguration(path);
+		if (config == null) {
+			return;
+		}
+
+		final Set<Long> parentIds = new LinkedHashSet<>();
+
+		for (final GraphObject parent : parents) {
+
+			if (parent instanceof NodeInterface) {
+				parentIds.add(parent.getId());
+			}
+		}
+
+		if (parentIds.isEmpty()) {
+			return;
+		}
+
+		for (final PropertyKey key : config.getPropertyKeys()) {
+
+			if (key instanceof RelationProperty) {
+
+				final String childPath = path + "/" + key.jsonName();
+
+				// only prefetch fields that select something
+				if (query.getQueryConfiguration(childPath) != null && !cache.containsKey(childPath)) {
+
+					final Map<Long, List<NodeInterface>> related = load((RelationProperty)key, parentIds);
+					final List<NodeInterface> children           = new LinkedList<>();
+
+					cache.put(childPath, related);
+
+					for (final List<NodeInterface> list : related.values()) {
+						children.addAll(list);
+					}
+
+					prefetch(childPath, children);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the prefetched value of the given key for the given object,
+	 * applying the predicate the same way as the relationship properties
+	 * themselves, or null if the value was not prefetched.
+	 *
+	 * @param path the query path of the value
+	 * @param source the parent object
+	 * @param key the relationship property key
+	 * @param predicate the predicate or null
+	 *
+	 * @return the value (a list or a single node), or null if the value was not prefetched
+	 */
+	public Object get(final String path, final GraphObject source, final PropertyKey key, final Predicate<GraphObject> predicate) {
+
+		final Map<Long, List<NodeInterface>> values = cache.get(path);
+		if (values != null) {
+
+			final List<NodeInterface> list = values.get(source.getId());
+			List<NodeInterface> result     = list != null ? new ArrayList<>(list) : new ArrayList<>();
+
+			if (predicate != null) {
+
+				if (predicate.comparator() != null) {
+
+					Collections.sort(result, predicate.comparator());
+				}
+
+				final List<NodeInterface> filtered = new ArrayList<>(result.size());
+
+				for (final NodeInterface node : result) {
+
+					if (predicate.accept(node)) {
+						filtered.add(node);
+					}
+				}
+
+				result = filtered;
+			}
+
+			if (key.isCollection()) {
+
+				return result;
+			}
+
+			return result.isEmpty() ? null : result.get(0);
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private Map<Long, List<NodeInterface>> load(final RelationProperty key, final Set<Long> parentIds) {
+
+		final Map<Long, List<NodeInterface>> result = new LinkedHashMap<>();
+		final DatabaseService db                    = StructrApp.getInstance(securityContext).getDatabaseService();
+		final NodeFactory<NodeInterface> factory    = new NodeFactory<>(securityContext);
+		final Set<String> subtypes                  = SearchCommand.getAllSubtypesAsStringSet(key.getTargetType().getSimpleName());
+		final boolean outgoing                      = "out".equals(key.getDirectionKey());
+		final String relType                        = key.getRelation().name();
+		final String pattern                        = outgoing ? "-[r:`" + relType + "`]->" : "<-[r:`" + relType + "`]-";
+		final String cypher                         = "MATCH (n)" + pattern + "(m) WHERE ID(n) IN {ids} RETURN r ORDER BY ID(r)";
+		final List<Long> batch                      = new ArrayList<>(BATCH_SIZE);
+
+		for (final Long id : parentIds) {
+
+			batch.add(id);
+
+			if (batch.size() >= BATCH_SIZE) {
+
+				load(db, factory, subtypes, outgoing, cypher, batch, result);
+				batch.clear();
+			}
+		}
+
+		if (!batch.isEmpty()) {
+
+			load(db, factory, subtypes, outgoing, cypher, batch, result);
+		}
+
+		return result;
+	}
+
+	private void load(final DatabaseService db, final NodeFactory<NodeInterface> factory, final Set<String> subtypes, final boolean outgoing, final String cypher, final List<Long> ids, final Map<Long, List<NodeInterface>> result) {
+
+		final Map<String, Object> parameters = new HashMap<>();
+
+		parameters.put("ids", ids);
+
+		try (final NativeResult rows = db.execute(cypher, parameters)) {
+
+			while (rows.hasNext()) {
+
+				final Object value = rows.next().get("r");
+				if (value instanceof Relationship) {
+
+					final Relationship rel    = (Relationship)value;
+					final Node parent         = outgoing ? rel.getStartNode() : rel.getEndNode();
+					final Node other          = outgoing ? rel.getEndNode()   : rel.getStartNode();
+					final NodeInterface node  = factory.instantiate(other, rel);
+
+					// the node factory applies the visibility rules of the security context
+					if (node != null && subtypes.contains(node.getClass().getSimpleName())) {
+
+						List<NodeInterface> list = result.get(parent.getId());
+						if (list == null) {
+
+							list = new ArrayList<>();
+							result.put(parent.getId(), list);
+						}
+
+						list.add(node);
+					}
+				}
+			}
+
+		} catch (Throwable t) {
+			logger.warn("Unable to prefetch related nodes for GraphQL query: {}", t.getMessage());
+		}
+	}
+}
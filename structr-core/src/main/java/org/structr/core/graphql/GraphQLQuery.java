@@ -38,8 +38,12 @@ import org.structr.core.property.PropertyKey;
 public class GraphQLQuery {
 
 	private static final Set<String> SchemaRequestFieldNames = new HashSet<>(Arrays.asList("__schema", "__directive", "__directiveLocation", "__type", "__field", "__inputvalue", "__enumvalue", "__typekind", "__typename"));
+	private static final int DEFAULT_FANOUT                  = 100;
+
 	private Map<String, QueryConfig> configurations          = new LinkedHashMap<>();
 	private String fieldName                                 = null;
+	private double estimatedCost                             = 0.0;
+	private int depth                                        = 0;
 
 	public GraphQLQuery(final SecurityContext securityContex, final Field field) throws FrameworkException {
 
@@ -48,7 +52,7 @@ public class GraphQLQuery {
 		final Class type = StructrApp.getConfiguration().getNodeEntityClass(fieldName);
 		if (type != null) {
 
-			init(securityContex, type, field, "/" + fieldName);
+			init(securityContex, type, field, "/" + fieldName, 1, 1.0, true);
 		}
 	}
 
@@ -75,6 +79,22 @@ public class GraphQLQuery {
 		return config.getPropertyKeys();
 	}
 
+	/**
+	 * Returns the estimated number of values this query resolves, based on
+	 * the page size of each list field (or a default fan-out for unpaged
+	 * lists) multiplied along the query path. Explicit page sizes are used
+	 * as they are, even if they are larger than the default fan-out.
+	 *
+	 * @return the estimated cost
+	 */
+	public double getEstimatedCost() {
+		return estimatedCost;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
 	public Iterable<GraphObject> getEntities(final SecurityContext securityContext) throws FrameworkException {
 
 		final Class type         = StructrApp.getConfiguration().getNodeEntityClass(fieldName);
@@ -87,12 +107,18 @@ public class GraphQLQuery {
 	}
 
 	// ----- private methods -----
-	private void init(final SecurityContext securityContext, final Class type, final Field field, final String path) throws FrameworkException {
+	private void init(final SecurityContext securityContext, final Class type, final Field field, final String path, final int level, final double parentMultiplier, final boolean isCollection) throws FrameworkException {
 
 		final QueryConfig config = getConfig(path);
 
 		config.handleTypeArguments(securityContext, type, field.getArguments());
 
+		final int pageSize      = config.getPageSize();
+		final int fanout        = pageSize == Integer.MAX_VALUE ? DEFAULT_FANOUT : Math.max(1, pageSize);
+		final double multiplier = isCollection ? parentMultiplier * fanout : parentMultiplier;
+
+		this.depth = Math.max(this.depth, level);
+
 		final SelectionSet selectionSet = field.getSelectionSet();
 		if (selectionSet != null) {
 
@@ -109,10 +135,13 @@ public class GraphQLQuery {
 					config.addPropertyKey(key);
 					config.handleFieldArguments(securityContext, relatedType, field, childField);
 
+					// every selected field is resolved once per object on this level
+					estimatedCost += multiplier;
+
 					// recurse
 					if (childSet != null) {
 
-						init(securityContext, relatedType, childField, path + "/" + childField.getName());
+						init(securityContext, relatedType, childField, path + "/" + childField.getName(), level + 1, multiplier, key.isCollection());
 					}
 				}
 			}
@@ -35,6 +35,7 @@ import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 
@@ -55,6 +56,7 @@ public class GraphQLRequest {
 
 		initialize(securityContext, document);
 		checkSchemaRequest();
+		checkQueryComplexity();
 	}
 
 	public boolean hasSchemaQuery() {
@@ -145,6 +147,42 @@ public class GraphQLRequest {
 		}
 	}
 
+	private void checkQueryComplexity() throws FrameworkException {
+
+		final int maxDepth = Settings.GraphQLMaxQueryDepth.getValue();
+		final int maxCost  = Settings.GraphQLMaxQueryCost.getValue();
+		double cost        = 0.0;
+
+		for (final GraphQLQuery query : queries) {
+
+			if (maxDepth > 0 && query.getDepth() > maxDepth) {
+
+				final FrameworkException fex   = new FrameworkException(422, "Query depth " + query.getDepth() + " of " + query.getFieldName() + " exceeds the maximum depth of " + maxDepth + ".");
+				final Map<String, String> data = new HashMap<>();
+
+				fex.setData(data);
+
+				data.put("query", originalQuery);
+
+				throw fex;
+			}
+
+			cost += query.getEstimatedCost();
+		}
+
+		if (maxCost > 0 && cost > maxCost) {
+
+			final FrameworkException fex   = new FrameworkException(422, "Estimated query cost " + (long)cost + " exceeds the maximum cost of " + maxCost + ", please use pageSize arguments to limit the result.");
+			final Map<String, String> data = new HashMap<>();
+
+			fex.setData(data);
+
+			data.put("query", originalQuery);
+
+			throw fex;
+		}
+	}
+
 	private void checkSchemaRequest() throws FrameworkException {
 
 		boolean hasDataQuery   = false;
@@ -264,7 +264,29 @@ public class CronEntry implements Delayed {
 
 	public long getDelayToNextExecutionInMillis() {
 
+		final long now = System.currentTimeMillis();
+
+		return getNextExecutionTime(now) - now;
+	}
+
+	/**
+	 * Returns the first point in time (in milliseconds, aligned to full
+	 * seconds) at or after the given time that matches this entry.
+	 *
+	 * @param time
+	 * @return the next execution time
+	 */
+	public long getNextExecutionTime(final long time) {
+
 		Calendar now       = GregorianCalendar.getInstance();
+
+		now.setTimeInMillis(time);
+		now.set(Calendar.MILLISECOND, 0);
+
+		if (now.getTimeInMillis() < time) {
+			now.add(Calendar.SECOND, 1);
+		}
+
 		int nowSeconds     = now.get(Calendar.SECOND);
 		int nowMinutes     = now.get(Calendar.MINUTE);
 		int nowHours       = now.get(Calendar.HOUR_OF_DAY);
@@ -334,7 +356,7 @@ public class CronEntry implements Delayed {
 			throw new IllegalArgumentException("Unable to determine next cron date for task " + name + ", aborting.");
 		}
 
-		return now.getTimeInMillis() - System.currentTimeMillis();
+		return now.getTimeInMillis();
 	}
 
 	public CronField getSeconds() {
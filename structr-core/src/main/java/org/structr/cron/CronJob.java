@@ -0,0 +1,400 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cron;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.agent.Task;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.schema.action.Actions;
+
+/**
+ * Scheduling state and execution statistics of a single cron entry.
+ *
+ * The job determines the due executions of its entry, applies the catch-up
+ * policy for executions that were missed, the overlap policy for executions
+ * that are due while a previous execution is still running, and submits the
+ * executions to the worker pool of the {@link CronService}.
+ */
+public class CronJob {
+
+	private static final Logger logger = LoggerFactory.getLogger(CronJob.class.getName());
+
+	public static final String OVERLAP_SKIP   = "skip";
+	public static final String OVERLAP_QUEUE  = "queue";
+	public static final String OVERLAP_ALLOW  = "allow";
+	public static final String CATCHUP_NONE   = "none";
+	public static final String CATCHUP_ONCE   = "once";
+	public static final String CATCHUP_ALL    = "all";
+
+	private static final int MAX_CATCHUP      = 100;
+	private static final int MAX_QUEUED       = 10;
+	private static final long TOLERANCE       = 2000L;
+
+	private final List<Execution> executions  = new LinkedList<>();
+	private final Queue<Long> queue           = new LinkedList<>();
+	private ScheduledExecutorService executor = null;
+	private CronEntry entry                   = null;
+	private String overlapPolicy              = OVERLAP_SKIP;
+	private String catchUpPolicy              = CATCHUP_ONCE;
+	private long timeout                      = 0L;
+	private long jitter                       = 0L;
+	private long nextExecution                = 0L;
+	private long runs                         = 0L;
+	private long failures                     = 0L;
+	private long skipped                      = 0L;
+	private long missed                       = 0L;
+	private long timeouts                     = 0L;
+	private long lastStart                    = 0L;
+	private long lastDuration                 = 0L;
+	private long maxDuration                  = 0L;
+	private long totalDuration                = 0L;
+	private long lastLag                      = 0L;
+	private long maxLag                       = 0L;
+
+	public CronJob(final CronEntry entry, final ScheduledExecutorService executor, final long now) {
+
+		this.entry         = entry;
+		this.executor      = executor;
+		this.nextExecution = entry.getNextExecutionTime(now);
+	}
+
+	/**
+	 * Sets the overlap policy: "skip" drops executions that are due while
+	 * a previous execution is still running, "queue" runs them after the
+	 * running execution finished, "allow" runs them concurrently. At most
+	 * 10 executions are queued, further executions are skipped.
+	 *
+	 * @param overlapPolicy
+	 */
+	public void setOverlapPolicy(final String overlapPolicy) {
+
+		if (OVERLAP_SKIP.equals(overlapPolicy) || OVERLAP_QUEUE.equals(overlapPolicy) || OVERLAP_ALLOW.equals(overlapPolicy)) {
+
+			this.overlapPolicy = overlapPolicy;
+
+		} else if (overlapPolicy != null) {
+
+			logger.warn("Invalid overlap policy {} for cron task {}, using {}.", overlapPolicy, entry.getName(), this.overlapPolicy);
+		}
+	}
+
+	/**
+	 * Sets the catch-up policy for executions that were missed: "none"
+	 * drops executions that are late, "once" runs a single execution for
+	 * all missed executions, "all" runs every missed execution.
+	 *
+	 * @param catchUpPolicy
+	 */
+	public void setCatchUpPolicy(final String catchUpPolicy) {
+
+		if (CATCHUP_NONE.equals(catchUpPolicy) || CATCHUP_ONCE.equals(catchUpPolicy) || CATCHUP_ALL.equals(catchUpPolicy)) {
+
+			this.catchUpPolicy = catchUpPolicy;
+
+		} else if (catchUpPolicy != null) {
+
+			logger.warn("Invalid catch-up policy {} for cron task {}, using {}.", catchUpPolicy, entry.getName(), this.catchUpPolicy);
+		}
+	}
+
+	/**
+	 * Sets the time after which a running execution is cancelled. Note
+	 * that cancelling only interrupts the worker thread, it can not stop
+	 * a task that does not react to interrupts. Such an execution keeps
+	 * running (and, depending on the overlap policy, keeps blocking the
+	 * next executions) until the task finishes by itself.
+	 *
+	 * @param timeout
+	 * @param unit
+	 */
+	public void setTimeout(final long timeout, final TimeUnit unit) {
+		this.timeout = unit.toMillis(timeout);
+	}
+
+	public void setJitter(final long jitter, final TimeUnit unit) {
+		this.jitter = unit.toMillis(jitter);
+	}
+
+	public String getName() {
+		return entry.getName();
+	}
+
+	/**
+	 * Submits the executions that are due at the given time and cancels
+	 * executions that exceeded the timeout.
+	 *
+	 * @param now
+	 */
+	public synchronized void check(final long now) {
+
+		checkTimeouts(now);
+
+		if (now < nextExecution) {
+			return;
+		}
+
+		final List<Long> due = new LinkedList<>();
+		long time            = nextExecution;
+
+		while (time <= now) {
+
+			if (due.size() < MAX_CATCHUP) {
+				due.add(time);
+			} else {
+				missed++;
+			}
+
+			time = entry.getNextExecutionTime(time + 1000L);
+		}
+
+		nextExecution = time;
+
+		final long latest = due.get(due.size() - 1);
+
+		switch (catchUpPolicy) {
+
+			case CATCHUP_ALL:
+
+				for (final Long scheduled : due) {
+					submit(scheduled);
+				}
+				break;
+
+			case CATCHUP_NONE:
+
+				missed += due.size() - 1;
+
+				if (now - latest <= TOLERANCE) {
+
+					submit(latest);
+
+				} else {
+
+					missed++;
+				}
+				break;
+
+			default:
+
+				missed += due.size() - 1;
+				submit(latest);
+				break;
+		}
+
+		if (due.size() > 1) {
+			logger.info("Cron task {} missed {} execution(s), catch-up policy is {}.", entry.getName(), due.size() - 1, catchUpPolicy);
+		}
+	}
+
+	public synchronized Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("name",            entry.getName());
+		statistics.put("expression",      entry.toString().trim());
+		statistics.put("overlapPolicy",   overlapPolicy);
+		statistics.put("catchUpPolicy",   catchUpPolicy);
+		statistics.put("timeout",         timeout);
+		statistics.put("jitter",          jitter);
+		statistics.put("nextExecution",   nextExecution);
+		statistics.put("running",         executions.size());
+		statistics.put("queued",          queue.size());
+		statistics.put("runs",            runs);
+		statistics.put("failures",        failures);
+		statistics.put("skipped",         skipped);
+		statistics.put("missed",          missed);
+		statistics.put("timeouts",        timeouts);
+		statistics.put("lastStart",       lastStart);
+		statistics.put("lastDuration",    lastDuration);
+		statistics.put("maxDuration",     maxDuration);
+		statistics.put("averageDuration", runs > 0 ? totalDuration / runs : 0L);
+		statistics.put("lastLag",         lastLag);
+		statistics.put("maxLag",          maxLag);
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private void submit(final long scheduled) {
+
+		if (!executions.isEmpty()) {
+
+			switch (overlapPolicy) {
+
+				case OVERLAP_ALLOW:
+					break;
+
+				case OVERLAP_QUEUE:
+
+					if (queue.size() < MAX_QUEUED) {
+
+						queue.add(scheduled);
+
+					} else {
+
+						logger.info("Cron task {} has {} queued executions, skipping execution.", entry.getName(), MAX_QUEUED);
+						skipped++;
+					}
+					return;
+
+				default:
+					logger.info("Cron task {} is still running, skipping execution.", entry.getName());
+					skipped++;
+					return;
+			}
+		}
+
+		start(scheduled);
+	}
+
+	private void start(final long scheduled) {
+
+		final Execution execution = new Execution(scheduled);
+		final long delay          = jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0L;
+
+		executions.add(execution);
+
+		execution.future = executor.schedule(() -> execute(execution), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void execute(final Execution execution) {
+
+		final long start = System.currentTimeMillis();
+		boolean success  = false;
+
+		synchronized (this) {
+
+			execution.started = start;
+			lastStart         = start;
+			lastLag           = start - execution.scheduled;
+			maxLag            = Math.max(maxLag, lastLag);
+		}
+
+		try {
+
+			runTask();
+			success = true;
+
+		} catch (Throwable t) {
+
+			logger.warn("Exception while executing cron task {}: {}", entry.getName(), t.getMessage());
+		}
+
+		synchronized (this) {
+
+			final long duration = System.currentTimeMillis() - start;
+
+			runs++;
+
+			if (!success) {
+				failures++;
+			}
+
+			lastDuration   = duration;
+			maxDuration    = Math.max(maxDuration, duration);
+			totalDuration += duration;
+
+			executions.remove(execution);
+
+			// start next queued execution
+			if (!queue.isEmpty() && executions.isEmpty()) {
+
+				start(queue.poll());
+			}
+		}
+	}
+
+	private void checkTimeouts(final long now) {
+
+		if (timeout > 0) {
+
+			for (final Execution execution : executions) {
+
+				if (!execution.cancelled && execution.started > 0 && now - execution.started > timeout) {
+
+					logger.warn("Cron task {} exceeded timeout of {} ms, interrupting.", entry.getName(), timeout);
+
+					execution.cancelled = true;
+					execution.future.cancel(true);
+					timeouts++;
+				}
+			}
+		}
+	}
+
+	protected void runTask() throws Throwable {
+
+		final String taskClassName = entry.getName();
+		final Class taskClass      = instantiate(taskClassName);
+
+		if (taskClass != null) {
+
+			Task task = (Task)taskClass.newInstance();
+
+			logger.debug("Starting task {}", taskClassName);
+			StructrApp.getInstance().processTasks(task);
+
+		} else {
+
+			try (final Tx tx = StructrApp.getInstance().tx()) {
+
+				// check for schema method with the given name
+				Actions.callAsSuperUser(taskClassName, Collections.EMPTY_MAP);
+
+				tx.success();
+			}
+		}
+	}
+
+	private Class instantiate(final String taskClass) {
+
+		try {
+
+			return Class.forName(taskClass);
+
+		} catch (Throwable ignore) {}
+
+		return null;
+	}
+
+	// ----- nested classes -----
+	private static class Execution {
+
+		private ScheduledFuture future = null;
+		private boolean cancelled      = false;
+		private long scheduled         = 0L;
+		private long started           = 0L;
+
+		public Execution(final long scheduled) {
+			this.scheduled = scheduled;
+		}
+	}
+}
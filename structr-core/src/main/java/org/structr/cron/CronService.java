@@ -18,26 +18,31 @@
  */
 package org.structr.cron;
 
-import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.structr.agent.Task;
 import org.structr.api.config.Settings;
 import org.structr.api.service.Command;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
 import org.structr.core.Services;
-import org.structr.core.app.StructrApp;
-import org.structr.core.graph.Tx;
-import org.structr.schema.action.Actions;
 
 /**
  * A service that keeps track of registered tasks and runs
  * them at their scheduled time.
  *
+ * The service thread only determines which tasks are due, the tasks
+ * themselves are executed in a pool of worker threads, so long-running
+ * tasks don't delay other tasks. See {@link CronJob} for the per-task
+ * overlap, catch-up, timeout and jitter settings.
+ *
  *
  */
 public class CronService extends Thread implements RunnableService {
@@ -45,12 +50,18 @@ public class CronService extends Thread implements RunnableService {
 	private static final Logger logger           = LoggerFactory.getLogger(CronService.class.getName());
 
 	public static final String   EXPRESSION_SUFFIX = "cronExpression";
+	public static final String   OVERLAP_SUFFIX    = "overlap";
+	public static final String   CATCHUP_SUFFIX    = "catchup";
+	public static final String   TIMEOUT_SUFFIX    = "timeout";
+	public static final String   JITTER_SUFFIX     = "jitter";
 	public static final TimeUnit GRANULARITY_UNIT  = TimeUnit.SECONDS;
 	public static final long     GRANULARITY       = 1;
 	public static final int      NUM_FIELDS        = 6;
 
-	private LinkedList<CronEntry> cronEntries = new LinkedList<>();
-	private boolean doRun = false;
+	private final List<CronEntry> cronEntries    = new LinkedList<>();
+	private final List<CronJob> cronJobs         = new LinkedList<>();
+	private ScheduledThreadPoolExecutor executor = null;
+	private boolean doRun                        = false;
 
 	public CronService() {
 		super("CronService");
@@ -70,44 +81,43 @@ public class CronService extends Thread implements RunnableService {
 		// sleep 5 seconds more
 		try { Thread.sleep(5000); } catch(InterruptedException iex) { }
 
+		createJobs(System.currentTimeMillis());
+
 		while (doRun) {
 
 			// sleep for some time
 			try { Thread.sleep(GRANULARITY_UNIT.toMillis(GRANULARITY)); } catch(InterruptedException iex) { }
 
-			for (CronEntry entry : cronEntries) {
-
-				if (entry.getDelayToNextExecutionInMillis() < GRANULARITY_UNIT.toMillis(GRANULARITY)) {
-
-					final String taskClassName = entry.getName();
-					final Class taskClass      = instantiate(taskClassName);
-
-					try {
+			final long now = System.currentTimeMillis();
 
-						if (taskClass != null) {
+			for (final CronJob job : getJobs()) {
 
-							Task task = (Task)taskClass.newInstance();
+				try {
 
-							logger.debug("Starting task {}", taskClassName);
-							StructrApp.getInstance().processTasks(task);
+					job.check(now);
 
-						} else {
-
-							try (final Tx tx = StructrApp.getInstance().tx()) {
+				} catch (Throwable t) {
+					logger.warn("Exception while scheduling cron task {}: {}", job.getName(), t.getMessage());
+				}
+			}
+		}
+	}
 
-								// check for schema method with the given name
-								Actions.callAsSuperUser(taskClassName, Collections.EMPTY_MAP);
+	/**
+	 * Returns the scheduling state and the execution statistics of all
+	 * cron tasks.
+	 *
+	 * @return a list of statistics, one per task
+	 */
+	public List<Map<String, Object>> getStatistics() {
 
-								tx.success();
-							}
-						}
+		final List<Map<String, Object>> statistics = new LinkedList<>();
 
-					} catch (Throwable t) {
-						logger.warn("Exception while executing cron task {}: {}", taskClassName, t.getMessage());
-					}
-				}
-			}
+		for (final CronJob job : getJobs()) {
+			statistics.add(job.getStatistics());
 		}
+
+		return statistics;
 	}
 
 	// ----- interface RunnableService -----
@@ -169,6 +179,9 @@ public class CronService extends Thread implements RunnableService {
 			}
 		}
 
+		executor = new ScheduledThreadPoolExecutor(Math.max(1, Settings.CronPoolSize.getValue()), new CronThreadFactory());
+		executor.setRemoveOnCancelPolicy(true);
+
 		return true;
 	}
 
@@ -177,7 +190,12 @@ public class CronService extends Thread implements RunnableService {
 
 	@Override
 	public void shutdown() {
+
 		this.doRun = false;
+
+		if (executor != null) {
+			executor.shutdownNow();
+		}
 	}
 
 	@Override
@@ -191,15 +209,38 @@ public class CronService extends Thread implements RunnableService {
 	}
 
 	// ----- private methods -----
-	private Class instantiate(final String taskClass) {
+	private void createJobs(final long now) {
 
-		try {
+		synchronized (cronJobs) {
 
-			return Class.forName(taskClass);
+			for (final CronEntry entry : cronEntries) {
 
-		} catch (Throwable ignore) {}
+				final String task     = entry.getName();
+				final CronJob job     = new CronJob(entry, executor, now);
+				final Integer timeout = Settings.getOrCreateIntegerSetting(task, TIMEOUT_SUFFIX).getValue();
+				final Integer jitter  = Settings.getOrCreateIntegerSetting(task, JITTER_SUFFIX).getValue();
 
-		return null;
+				job.setOverlapPolicy(Settings.getOrCreateStringSetting(task, OVERLAP_SUFFIX).getValue());
+				job.setCatchUpPolicy(Settings.getOrCreateStringSetting(task, CATCHUP_SUFFIX).getValue());
+
+				if (timeout != null) {
+					job.setTimeout(timeout, TimeUnit.SECONDS);
+				}
+
+				if (jitter != null) {
+					job.setJitter(jitter, TimeUnit.SECONDS);
+				}
+
+				cronJobs.add(job);
+			}
+		}
+	}
+
+	private List<CronJob> getJobs() {
+
+		synchronized (cronJobs) {
+			return new LinkedList<>(cronJobs);
+		}
 	}
 
 	// ----- interface Feature -----
@@ -207,4 +248,20 @@ public class CronService extends Thread implements RunnableService {
 	public String getModuleName() {
 		return "cron";
 	}
+
+	// ----- nested classes -----
+	private static class CronThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+
+			final Thread thread = new Thread(runnable, "CronWorker-" + count.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
 }
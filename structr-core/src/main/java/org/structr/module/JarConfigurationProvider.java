@@ -41,6 +41,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -115,6 +116,9 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	private final Set<PropertyKey> globalKnownPropertyKeys                                         = new LinkedHashSet<>();
 	private final Set<String> dynamicViews                                                         = new LinkedHashSet<>();
 
+	private final Map<Class, Set<Transformation<GraphObject>>> transformationCache                 = new ConcurrentHashMap<>(100);
+	private volatile TypeSnapshot typeSnapshot                                                     = new TypeSnapshot();
+
 	private FactoryDefinition factoryDefinition                                                    = new DefaultFactoryDefinition();
 	private LicenseManager licenseManager                                                          = null;
 
@@ -138,26 +142,17 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 	@Override
 	public Map<String, Class<? extends NodeInterface>> getNodeEntities() {
-
-		synchronized (SchemaService.class) {
-			return nodeEntityClassCache;
-		}
+		return typeSnapshot.getNodeTypes();
 	}
 
 	@Override
 	public Map<String, Class<? extends RelationshipInterface>> getRelationshipEntities() {
-
-		synchronized (SchemaService.class) {
-			return relationshipEntityClassCache;
-		}
+		return typeSnapshot.getRelationshipTypes();
 	}
 
 	@Override
 	public Set<Class> getClassesForInterface(final String simpleName) {
-
-		synchronized (SchemaService.class) {
-			return interfaceCache.get(simpleName);
-		}
+		return typeSnapshot.getClassesForInterface(simpleName);
 	}
 
 	@Override
@@ -167,34 +162,44 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		if ((simpleName != null) && (!simpleName.isEmpty())) {
 
-			synchronized (SchemaService.class) {
+			final TypeSnapshot snapshot = typeSnapshot;
+
+			nodeEntityClass = snapshot.getNodeType(simpleName);
+
+			if (nodeEntityClass == null) {
 
+				// resolved by a previous lookup or registered but not published yet
 				nodeEntityClass = nodeEntityClassCache.get(simpleName);
+			}
 
-				if (nodeEntityClass == null) {
+			if (nodeEntityClass == null && !snapshot.isUnknownNodeType(simpleName)) {
 
-					for (String possiblePath : nodeEntityPackages) {
+				for (String possiblePath : snapshot.getNodePackages()) {
 
-						if (possiblePath != null) {
+					if (possiblePath != null) {
 
-							try {
+						try {
 
-								Class nodeClass = Class.forName(possiblePath + "." + simpleName);
+							Class nodeClass = Class.forName(possiblePath + "." + simpleName);
 
-								if (!Modifier.isAbstract(nodeClass.getModifiers())) {
+							if (!Modifier.isAbstract(nodeClass.getModifiers())) {
 
-									nodeEntityClassCache.put(simpleName, nodeClass);
-									nodeEntityClass = nodeClass;
+								// the next published snapshot will contain this class
+								nodeEntityClassCache.put(simpleName, nodeClass);
+								nodeEntityClass = nodeClass;
 
-									// first match wins
-									break;
+								// first match wins
+								break;
 
-								}
+							}
 
-							} catch (ClassNotFoundException ex) {}
-						}
+						} catch (ClassNotFoundException ex) {}
 					}
 				}
+
+				if (nodeEntityClass == null) {
+					snapshot.addUnknownNodeType(simpleName);
+				}
 			}
 		}
 
@@ -209,36 +214,44 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		if ((name != null) && (name.length() > 0)) {
 
-			synchronized (SchemaService.class) {
+			final TypeSnapshot snapshot = typeSnapshot;
 
-				relationClass = relationshipEntityClassCache.get(name);
+			relationClass = snapshot.getRelationshipType(name);
 
-				if (relationClass == null) {
+			if (relationClass == null) {
 
-					for (String possiblePath : relationshipPackages) {
+				// resolved by a previous lookup or registered but not published yet
+				relationClass = relationshipEntityClassCache.get(name);
+			}
 
-						if (possiblePath != null) {
+			if (relationClass == null && !snapshot.isUnknownRelationshipType(name)) {
 
-							try {
+				for (String possiblePath : snapshot.getRelationshipPackages()) {
 
-								Class nodeClass = Class.forName(possiblePath + "." + name);
+					if (possiblePath != null) {
 
-								if (!Modifier.isAbstract(nodeClass.getModifiers())) {
+						try {
 
-									relationshipEntityClassCache.put(name, nodeClass);
+							Class nodeClass = Class.forName(possiblePath + "." + name);
 
-									// first match wins
-									return nodeClass;
+							if (!Modifier.isAbstract(nodeClass.getModifiers())) {
 
-								}
+								// the next published snapshot will contain this class
+								relationshipEntityClassCache.put(name, nodeClass);
 
-							} catch (ClassNotFoundException ex) {
+								// first match wins
+								return nodeClass;
 
-								// ignore
 							}
+
+						} catch (ClassNotFoundException ex) {
+
+							// ignore
 						}
 					}
 				}
+
+				snapshot.addUnknownRelationshipType(name);
 			}
 		}
 
@@ -512,16 +525,38 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 			// clear all
 			combinedTypeRelationClassCache.clear();
 
-			// clear interfaceCache manually..
-			for (final Set<Class> classes : interfaceCache.values()) {
+			// clear interfaceCache manually, the sets are shared with the type snapshot and must not be modified
+			for (final Entry<String, Set<Class>> entry : interfaceCache.entrySet()) {
 
+				final Set<Class> classes = entry.getValue();
 				if (classes.contains(oldType)) {
-					classes.remove(oldType);
+
+					final Set<Class> newClasses = new LinkedHashSet<>(classes);
+					newClasses.remove(oldType);
+
+					entry.setValue(newClasses);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Publishes the current state of the type registrations as a new
+	 * immutable snapshot. Readers use the snapshot without locking.
+	 *
+	 * Must be called by the thread that registers and unregisters the
+	 * types (the initial scan, or the schema reload while it holds the
+	 * schema lock), after all registrations are done.
+	 */
+	@Override
+	public void publishTypeRegistrations() {
+
+		typeSnapshot = new TypeSnapshot(nodeEntityClassCache, relationshipEntityClassCache, interfaceCache, nodeEntityPackages, relationshipPackages);
+
+		// cached transformations refer to the classes of the previous snapshot
+		transformationCache.clear();
+	}
+
 	@Override
 	public void registerEntityType(final Class type) {
 
@@ -557,17 +592,18 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		for (final Class interfaceClass : type.getInterfaces()) {
 
-			final String interfaceName     = interfaceClass.getSimpleName();
-			Set<Class> classesForInterface = interfaceCache.get(interfaceName);
+			final String interfaceName           = interfaceClass.getSimpleName();
+			final Set<Class> existingClasses     = interfaceCache.get(interfaceName);
+			final Set<Class> classesForInterface = new LinkedHashSet<>();
 
-			if (classesForInterface == null) {
-
-				classesForInterface = new LinkedHashSet<>();
-
-				interfaceCache.put(interfaceName, classesForInterface);
+			// copy on write, the sets are shared with the type snapshot
+			if (existingClasses != null) {
+				classesForInterface.addAll(existingClasses);
 			}
 
 			classesForInterface.add(type);
+
+			interfaceCache.put(interfaceName, classesForInterface);
 		}
 
 		try {
@@ -641,6 +677,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 			transformations.add(transformation);
 		}
+
+		transformationCache.clear();
 	}
 
 	@Override
@@ -710,18 +748,30 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	}
 
 	@Override
-	public synchronized Set<Transformation<GraphObject>> getEntityCreationTransformations(Class type) {
+	public Set<Transformation<GraphObject>> getEntityCreationTransformations(Class type) {
 
-		Set<Transformation<GraphObject>> transformations = new TreeSet<>();
-		Class localType = type;
+		Set<Transformation<GraphObject>> transformations = transformationCache.get(type);
+		if (transformations == null) {
 
-		// collect for all superclasses
-		while (localType != null && !localType.equals(Object.class)) {
+			final Set<Transformation<GraphObject>> collected = new TreeSet<>();
+			Class localType = type;
 
-			transformations.addAll(getEntityCreationTransformationsForType(localType));
+			// collect for all superclasses
+			while (localType != null && !localType.equals(Object.class)) {
 
-			localType = localType.getSuperclass();
+				final Set<Transformation<GraphObject>> typeTransformations = globalTransformationMap.get(localType.getName());
+				if (typeTransformations != null) {
+
+					collected.addAll(typeTransformations);
+				}
+
+				localType = localType.getSuperclass();
 
+			}
+
+			transformations = Collections.unmodifiableSet(collected);
+
+			transformationCache.put(type, transformations);
 		}
 
 		return transformations;
@@ -1016,6 +1066,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 			scanResource(resourcePath);
 		}
 
+		publishTypeRegistrations();
+
 		logger.info("{} JARs scanned", resourcePaths.size());
 
 	}
@@ -1440,18 +1492,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	}
 
 	private Set<Transformation<GraphObject>> getEntityCreationTransformationsForType(final Class type) {
-
-		final String name = type.getName();
-
-		Set<Transformation<GraphObject>> transformations = globalTransformationMap.get(name);
-		if (transformations == null) {
-
-			transformations = new LinkedHashSet<>();
-
-			globalTransformationMap.put(name, transformations);
-		}
-
-		return transformations;
+		return globalTransformationMap.computeIfAbsent(type.getName(), k -> new CopyOnWriteArraySet<>());
 	}
 
 	private Map<String, ViewTransformation> getViewTransformationMapForType(final Class type) {
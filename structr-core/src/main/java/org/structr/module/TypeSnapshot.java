@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.module;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipInterface;
+
+/**
+ * Immutable snapshot of the registered node and relationship types and the
+ * implementors of each interface, used for lock-free type lookups.
+ *
+ * A new snapshot is published by the configuration provider once all types
+ * of the initial scan or of a schema reload are registered, readers always
+ * see either the old or the new state. The names that could not be resolved are remembered for the
+ * lifetime of the snapshot, so the package scan runs at most once per name.
+ */
+class TypeSnapshot {
+
+	private final Map<String, Class<? extends NodeInterface>> nodeTypes                     = new LinkedHashMap<>();
+	private final Map<String, Class<? extends RelationshipInterface>> relationshipTypes     = new LinkedHashMap<>();
+	private final Map<String, Set<Class>> interfaces                                        = new LinkedHashMap<>();
+	private final Set<String> unknownNodeTypes                                              = ConcurrentHashMap.newKeySet();
+	private final Set<String> unknownRelationshipTypes                                      = ConcurrentHashMap.newKeySet();
+	private final List<String> nodePackages                                                 = new ArrayList<>();
+	private final List<String> relationshipPackages                                         = new ArrayList<>();
+	private final Map<String, Class<? extends NodeInterface>> nodeTypesView                 = Collections.unmodifiableMap(nodeTypes);
+	private final Map<String, Class<? extends RelationshipInterface>> relationshipTypesView = Collections.unmodifiableMap(relationshipTypes);
+
+	TypeSnapshot() {
+	}
+
+	TypeSnapshot(final Map<String, Class<? extends NodeInterface>> nodeTypes, final Map<String, Class<? extends RelationshipInterface>> relationshipTypes, final Map<String, Set<Class>> interfaces, final Collection<String> nodePackages, final Collection<String> relationshipPackages) {
+
+		this.nodeTypes.putAll(nodeTypes);
+		this.relationshipTypes.putAll(relationshipTypes);
+		this.nodePackages.addAll(nodePackages);
+		this.relationshipPackages.addAll(relationshipPackages);
+
+		// the sets are replaced (not modified) by the provider, so they can be shared
+		for (final Map.Entry<String, Set<Class>> entry : interfaces.entrySet()) {
+			this.interfaces.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+		}
+	}
+
+	Map<String, Class<? extends NodeInterface>> getNodeTypes() {
+		return nodeTypesView;
+	}
+
+	Map<String, Class<? extends RelationshipInterface>> getRelationshipTypes() {
+		return relationshipTypesView;
+	}
+
+	Class getNodeType(final String name) {
+		return nodeTypes.get(name);
+	}
+
+	Class getRelationshipType(final String name) {
+		return relationshipTypes.get(name);
+	}
+
+	Set<Class> getClassesForInterface(final String name) {
+		return interfaces.get(name);
+	}
+
+	List<String> getNodePackages() {
+		return nodePackages;
+	}
+
+	List<String> getRelationshipPackages() {
+		return relationshipPackages;
+	}
+
+	boolean isUnknownNodeType(final String name) {
+		return unknownNodeTypes.contains(name);
+	}
+
+	void addUnknownNodeType(final String name) {
+		unknownNodeTypes.add(name);
+	}
+
+	boolean isUnknownRelationshipType(final String name) {
+		return unknownRelationshipTypes.contains(name);
+	}
+
+	void addUnknownRelationshipType(final String name) {
+		unknownRelationshipTypes.add(name);
+	}
+}
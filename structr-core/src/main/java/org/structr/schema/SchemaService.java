@@ -165,19 +165,27 @@ public class SchemaService implements Service {
 						// clear propagating relationship cache
 						SchemaRelationshipNode.clearPropagatingRelationshipTypes();
 
-						// compile all classes at once and register
-						final Map<String, Class> newTypes = nodeExtender.compile(errorBuffer);
+						try {
 
-						for (final Class newType : newTypes.values()) {
+							// compile all classes at once and register
+							final Map<String, Class> newTypes = nodeExtender.compile(errorBuffer);
 
-							// instantiate classes to execute static initializer of helpers
-							try {
+							for (final Class newType : newTypes.values()) {
 
-								// do full reload
-								config.registerEntityType(newType);
-								newType.newInstance();
+								// instantiate classes to execute static initializer of helpers
+								try {
+
+									// do full reload
+									config.registerEntityType(newType);
+									newType.newInstance();
+
+								} catch (Throwable ignore) {}
+							}
+
+						} finally {
 
-							} catch (Throwable ignore) {}
+							// make the new types visible to the readers at once
+							config.publishTypeRegistrations();
 						}
 
 						// calculate difference between previous and new classes
@@ -18,6 +18,7 @@
  */
 package org.structr.common;
 
+import java.util.LinkedList;
 import java.util.List;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -41,9 +42,12 @@ import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Group;
 import org.structr.core.entity.Principal;
 import org.structr.core.entity.ResourceAccess;
+import org.structr.core.entity.SchemaNode;
+import org.structr.core.entity.SchemaRelationshipNode;
 import org.structr.core.entity.TestOne;
 import org.structr.core.entity.relationship.Ownership;
 import org.structr.core.entity.relationship.PrincipalOwnsNode;
+import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
@@ -1080,6 +1084,170 @@ public class AccessControlTest extends StructrTest {
 
 	}
 
+	@Test
+	public void test11BatchPermissionEvaluation() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		try {
+
+			final Principal owner              = createTestNode(Principal.class, "owner");
+			final Principal user               = createTestNode(Principal.class, "user");
+			final SecurityContext ownerContext = SecurityContext.getInstance(owner, AccessMode.Backend);
+			final SecurityContext userContext  = SecurityContext.getInstance(user, AccessMode.Backend);
+			final App ownerApp                 = StructrApp.getInstance(ownerContext);
+			final List<TestOne> nodes          = new LinkedList<>();
+
+			// more nodes than fit in one batch
+			try (final Tx tx = ownerApp.tx()) {
+
+				for (int i=0; i<250; i++) {
+					nodes.add(ownerApp.create(TestOne.class));
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final Group group = app.create(Group.class, "group");
+
+				group.addMember(user);
+
+				for (int i=0; i<250; i++) {
+
+					final TestOne node = nodes.get(i);
+
+					node.setProperty(AbstractNode.name, "node" + String.format("%03d", i));
+
+					// every fifth node is readable via group membership, every seventh node directly
+					if (i % 5 == 0) {
+						node.grant(Permission.read, group);
+					}
+
+					if (i % 7 == 0) {
+						node.grant(Permission.read, user);
+					}
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Owner must see all owned nodes", 250, StructrApp.getInstance(ownerContext).nodeQuery(TestOne.class).getResult().size());
+
+				final List<TestOne> result = StructrApp.getInstance(userContext).nodeQuery(TestOne.class).sort(AbstractNode.name).getAsList();
+
+				// 50 via group, 36 directly, 8 both
+				assertEquals("Invalid number of readable nodes", 78, result.size());
+
+				for (final TestOne node : result) {
+
+					final int index = Integer.valueOf(node.getName().substring(4));
+
+					assertTrue("Node without permission must not be readable", index % 5 == 0 || index % 7 == 0);
+				}
+
+				final Result page = StructrApp.getInstance(userContext).nodeQuery(TestOne.class).sort(AbstractNode.name).page(2).pageSize(20).getResult();
+
+				assertEquals("Invalid page size", 20, page.size());
+				assertEquals("Invalid first element of page", result.get(20).getUuid(), page.get(0).getUuid());
+
+				tx.success();
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void test12BatchPermissionEvaluationWithSelfReferentialPropagation() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		try {
+
+			final Principal user              = createTestNode(Principal.class, "user");
+			final SecurityContext userContext = SecurityContext.getInstance(user, AccessMode.Backend);
+			Class type                        = null;
+
+			try (final Tx tx = app.tx()) {
+
+				final SchemaNode t = app.create(SchemaNode.class, "Chapter");
+
+				app.create(SchemaRelationshipNode.class,
+					new NodeAttribute<>(SchemaRelationshipNode.sourceNode, t),
+					new NodeAttribute<>(SchemaRelationshipNode.targetNode, t),
+					new NodeAttribute<>(SchemaRelationshipNode.relationshipType, "CONTAINS"),
+					new NodeAttribute<>(SchemaRelationshipNode.sourceMultiplicity, "1"),
+					new NodeAttribute<>(SchemaRelationshipNode.targetMultiplicity, "*"),
+					new NodeAttribute<>(SchemaRelationshipNode.sourceJsonName, "parentChapter"),
+					new NodeAttribute<>(SchemaRelationshipNode.targetJsonName, "childChapters"),
+					new NodeAttribute<>(SchemaRelationshipNode.permissionPropagation, SchemaRelationshipNode.Direction.Out),
+					new NodeAttribute<>(SchemaRelationshipNode.readPropagation, SchemaRelationshipNode.Propagation.Add)
+				);
+
+				tx.success();
+			}
+
+			// more nodes than fit in one batch, in chains of ten nodes
+			try (final Tx tx = app.tx()) {
+
+				type = StructrApp.getConfiguration().getNodeEntityClass("Chapter");
+
+				final PropertyKey parentKey = StructrApp.key(type, "parentChapter");
+				NodeInterface previous      = null;
+
+				for (int i=0; i<250; i++) {
+
+					final NodeInterface node = app.create(type, "node" + String.format("%03d", i));
+
+					if (i % 10 == 0) {
+
+						// every third chain is readable via its first node
+						if (i % 30 == 0) {
+							node.grant(Permission.read, user);
+						}
+
+					} else {
+
+						node.setProperty(parentKey, previous);
+					}
+
+					previous = node;
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final List<NodeInterface> result = StructrApp.getInstance(userContext).nodeQuery(type).sort(AbstractNode.name).getAsList();
+
+				// chains 0, 30, 60, ..., 240
+				assertEquals("Invalid number of readable nodes", 90, result.size());
+
+				for (final NodeInterface node : (List<NodeInterface>)app.nodeQuery(type).getAsList()) {
+
+					assertEquals("Batch and single evaluation must be consistent for " + node.getName(), node.isGranted(Permission.read, userContext), result.contains(node));
+				}
+
+				tx.success();
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
 	// ----- private methods -----
 	public static void clearResourceAccess() {
 
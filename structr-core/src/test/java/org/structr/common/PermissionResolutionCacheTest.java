@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class PermissionResolutionCacheTest {
+
+	@Test
+	public void testGetAndPut() {
+
+		final PermissionResolutionCache cache = new PermissionResolutionCache(100);
+
+		assertNull(cache.get(1L, 2L, Permission.read));
+
+		cache.put(1L, 2L, Permission.read, false);
+		cache.put(1L, 2L, Permission.write, true);
+
+		assertEquals(Boolean.FALSE, cache.get(1L, 2L, Permission.read));
+		assertEquals(Boolean.TRUE,  cache.get(1L, 2L, Permission.write));
+		assertNull(cache.get(1L, 2L, Permission.delete));
+		assertNull(cache.get(1L, 3L, Permission.read));
+
+		// positive results must not be overwritten by negative results
+		cache.put(1L, 2L, Permission.write, false);
+		assertEquals(Boolean.TRUE, cache.get(1L, 2L, Permission.write));
+
+		// negative results can be overwritten
+		cache.put(1L, 2L, Permission.read, true);
+		assertEquals(Boolean.TRUE, cache.get(1L, 2L, Permission.read));
+	}
+
+	@Test
+	public void testInvalidation() {
+
+		final PermissionResolutionCache cache = new PermissionResolutionCache(100);
+
+		cache.put(1L, 10L, Permission.read, true);
+		cache.put(2L, 10L, Permission.read, true);
+
+		cache.invalidateNode(1L);
+
+		assertNull(cache.get(1L, 10L, Permission.read));
+		assertEquals(Boolean.TRUE, cache.get(2L, 10L, Permission.read));
+
+		// positive result can be replaced after invalidation
+		cache.put(1L, 10L, Permission.read, false);
+		assertEquals(Boolean.FALSE, cache.get(1L, 10L, Permission.read));
+
+		cache.invalidateAll();
+
+		assertNull(cache.get(1L, 10L, Permission.read));
+		assertNull(cache.get(2L, 10L, Permission.read));
+	}
+
+	@Test
+	public void testStaleResultsAreRejected() {
+
+		final PermissionResolutionCache cache = new PermissionResolutionCache(100);
+
+		// resolution starts, then the node is invalidated before the result is stored
+		final long nodeStamp = cache.getStamp();
+		cache.invalidateNode(1L);
+		cache.put(1L, 10L, Permission.read, true, nodeStamp);
+
+		assertNull("Result resolved before a node invalidation must not be cached", cache.get(1L, 10L, Permission.read));
+
+		// resolution starts, then all entries are invalidated (e.g. a revoked grant)
+		final long globalStamp = cache.getStamp();
+		cache.invalidateAll();
+		cache.put(2L, 10L, Permission.read, true, globalStamp);
+
+		assertNull("Result resolved before a global invalidation must not be cached", cache.get(2L, 10L, Permission.read));
+		assertEquals(2L, cache.getStatistics().get("rejections"));
+
+		// a resolution that starts after the invalidation is cached
+		cache.put(2L, 10L, Permission.read, true, cache.getStamp());
+		assertEquals(Boolean.TRUE, cache.get(2L, 10L, Permission.read));
+	}
+
+	@Test
+	public void testBoundedSize() {
+
+		final PermissionResolutionCache cache = new PermissionResolutionCache(1000);
+		final int size                        = (Integer)cache.getStatistics().get("size");
+
+		for (long i=0; i<100000; i++) {
+			cache.put(i, 1L, Permission.read, true);
+		}
+
+		int count = 0;
+
+		for (long i=0; i<100000; i++) {
+
+			if (cache.get(i, 1L, Permission.read) != null) {
+				count++;
+			}
+		}
+
+		assertTrue("Cache must not exceed its size", count <= size);
+		assertTrue("Cache must contain recent entries", cache.get(99999L, 1L, Permission.read) != null);
+		assertTrue("Evictions must be counted", (Long)cache.getStatistics().get("evictions") > 0);
+	}
+}
@@ -234,6 +234,105 @@ public class PermissionResolutionTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void test02SelfReferentialPermissionPropagation() {
+
+		Principal user1 = null;
+		Class type      = null;
+		String parentId = null;
+		String childId  = null;
+
+		try (final Tx tx = app.tx()) {
+
+			// create a test user
+			user1 = app.create(Principal.class, "user1");
+
+			// create schema setup with permission propagation between nodes of the same type
+			final SchemaNode t = app.create(SchemaNode.class, "Section");
+
+			app.create(SchemaRelationshipNode.class,
+				new NodeAttribute<>(SchemaRelationshipNode.sourceNode, t),
+				new NodeAttribute<>(SchemaRelationshipNode.targetNode, t),
+				new NodeAttribute<>(SchemaRelationshipNode.relationshipType, "CONTAINS"),
+				new NodeAttribute<>(SchemaRelationshipNode.sourceMultiplicity, "1"),
+				new NodeAttribute<>(SchemaRelationshipNode.targetMultiplicity, "*"),
+				new NodeAttribute<>(SchemaRelationshipNode.sourceJsonName, "parentSection"),
+				new NodeAttribute<>(SchemaRelationshipNode.targetJsonName, "childSections"),
+				new NodeAttribute<>(SchemaRelationshipNode.permissionPropagation, Direction.Out),
+				new NodeAttribute<>(SchemaRelationshipNode.readPropagation, Propagation.Add)
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// create and link objects, make parent visible, expect child to be visible as well
+		try (final Tx tx = app.tx()) {
+
+			type = StructrApp.getConfiguration().getNodeEntityClass("Section");
+
+			Assert.assertNotNull("Node type Section should exist.", type);
+
+			final NodeInterface parent = app.create(type, "parent");
+			final NodeInterface child  = app.create(type, "child");
+
+			child.setProperty(StructrApp.key(type, "parentSection"), parent);
+
+			parent.grant(Permission.read, user1);
+
+			parentId = parent.getUuid();
+			childId  = child.getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final App userApp = StructrApp.getInstance(SecurityContext.getInstance(user1, AccessMode.Backend));
+		try (final Tx tx = userApp.tx()) {
+
+			Assert.assertNotNull("User1 should be able to find the parent", userApp.get(type, parentId));
+			Assert.assertNotNull("User1 should be able to find the child via propagation", userApp.get(type, childId));
+			Assert.assertEquals("User1 should be able to find both instances", 2, userApp.nodeQuery(type).getAsList().size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// revoke the permission on the parent, the cached result of the child must be invalidated
+		try (final Tx tx = app.tx()) {
+
+			((NodeInterface)app.get(type, parentId)).revoke(Permission.read, user1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = userApp.tx()) {
+
+			Assert.assertNull("User1 should NOT be able to find the parent after revocation", userApp.get(type, parentId));
+			Assert.assertNull("User1 should NOT be able to find the child after revocation", userApp.get(type, childId));
+			Assert.assertEquals("User1 should NOT be able to find any instance after revocation", 0, userApp.nodeQuery(type).getAsList().size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
 	// ----- private methods -----
 	public static void clearResourceAccess() {
 
@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cron;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the catch-up, overlap and timeout policies of {@link CronJob}
+ * with a task that does not need the service layer.
+ */
+public class CronJobTest {
+
+	private ScheduledThreadPoolExecutor executor = null;
+
+	@Before
+	public void setUp() {
+		executor = new ScheduledThreadPoolExecutor(4);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testCatchUpAll() throws InterruptedException {
+
+		final long start  = alignedNow();
+		final TestJob job = new TestJob(CronEntry.parse("test", "* * * * * *"), start, null);
+
+		job.setCatchUpPolicy(CronJob.CATCHUP_ALL);
+		job.setOverlapPolicy(CronJob.OVERLAP_QUEUE);
+
+		// six executions are due (start, start+1s, ..., start+5s)
+		job.check(start + 5000L);
+
+		assertTrue(waitFor(() -> job.count.get() == 6));
+		assertTrue(waitFor(() -> get(job, "running").equals(0)));
+		assertEquals(0L, get(job, "missed"));
+	}
+
+	@Test
+	public void testCatchUpOnce() throws InterruptedException {
+
+		final long start  = alignedNow();
+		final TestJob job = new TestJob(CronEntry.parse("test", "* * * * * *"), start, null);
+
+		job.setCatchUpPolicy(CronJob.CATCHUP_ONCE);
+
+		job.check(start + 5000L);
+
+		assertTrue(waitFor(() -> get(job, "running").equals(0)));
+		assertEquals(1, job.count.get());
+		assertEquals(5L, get(job, "missed"));
+		assertEquals(start + 6000L, get(job, "nextExecution"));
+	}
+
+	@Test
+	public void testCatchUpNone() throws InterruptedException {
+
+		final long start  = alignedNow();
+		final TestJob job = new TestJob(CronEntry.parse("test", "0 * * * * *"), start - (start % 60000L), null);
+
+		job.setCatchUpPolicy(CronJob.CATCHUP_NONE);
+
+		// the only due execution is 30 seconds late and must be dropped
+		job.check(start - (start % 60000L) + 30000L);
+
+		assertTrue(waitFor(() -> get(job, "running").equals(0)));
+		assertEquals(0, job.count.get());
+		assertEquals(1L, get(job, "missed"));
+	}
+
+	@Test
+	public void testOverlapSkip() throws InterruptedException {
+
+		final CountDownLatch release = new CountDownLatch(1);
+		final long start             = alignedNow();
+		final TestJob job            = new TestJob(CronEntry.parse("test", "* * * * * *"), start, release);
+
+		job.check(start);
+		job.check(start + 1000L);
+		job.check(start + 2000L);
+
+		assertEquals(1, get(job, "running"));
+		assertEquals(2L, get(job, "skipped"));
+
+		release.countDown();
+
+		assertTrue(waitFor(() -> get(job, "running").equals(0)));
+		assertEquals(1, job.count.get());
+	}
+
+	@Test
+	public void testOverlapQueueIsBounded() throws InterruptedException {
+
+		final CountDownLatch release = new CountDownLatch(1);
+		final long start             = alignedNow();
+		final TestJob job            = new TestJob(CronEntry.parse("test", "* * * * * *"), start, release);
+
+		job.setOverlapPolicy(CronJob.OVERLAP_QUEUE);
+
+		for (int i=0; i<=20; i++) {
+			job.check(start + i * 1000L);
+		}
+
+		assertEquals(1, get(job, "running"));
+		assertEquals(10, get(job, "queued"));
+		assertEquals(10L, get(job, "skipped"));
+
+		release.countDown();
+
+		// queued executions run one after another
+		assertTrue(waitFor(() -> job.count.get() == 11));
+		assertTrue(waitFor(() -> get(job, "running").equals(0)));
+		assertEquals(1, job.maxConcurrent.get());
+	}
+
+	@Test
+	public void testOverlapAllow() throws InterruptedException {
+
+		final CountDownLatch release = new CountDownLatch(1);
+		final long start             = alignedNow();
+		final TestJob job            = new TestJob(CronEntry.parse("test", "* * * * * *"), start, release);
+
+		job.setOverlapPolicy(CronJob.OVERLAP_ALLOW);
+
+		job.check(start);
+		job.check(start + 1000L);
+
+		assertTrue(waitFor(() -> job.concurrent.get() == 2));
+		assertEquals(2, get(job, "running"));
+		assertEquals(0L, get(job, "skipped"));
+
+		release.countDown();
+
+		assertTrue(waitFor(() -> job.count.get() == 2));
+	}
+
+	@Test
+	public void testTimeout() throws InterruptedException {
+
+		final CountDownLatch release = new CountDownLatch(1);
+		final long start             = alignedNow();
+		final TestJob job            = new TestJob(CronEntry.parse("test", "* * * * * *"), start, release);
+
+		job.setTimeout(1, TimeUnit.SECONDS);
+
+		job.check(start);
+
+		assertTrue(waitFor(() -> job.concurrent.get() == 1));
+
+		job.check(System.currentTimeMillis() + 2000L);
+
+		// the task reacts to the interrupt and finishes
+		assertTrue(waitFor(() -> get(job, "running").equals(0)));
+		assertEquals(1L, get(job, "timeouts"));
+		assertEquals(1L, get(job, "failures"));
+		assertEquals(1, job.interrupted.get());
+	}
+
+	// ----- private methods -----
+	private long alignedNow() {
+
+		final long now = System.currentTimeMillis();
+
+		return now - (now % 1000L);
+	}
+
+	private Object get(final CronJob job, final String key) {
+
+		final Map<String, Object> statistics = job.getStatistics();
+
+		return statistics.get(key);
+	}
+
+	private boolean waitFor(final Condition condition) throws InterruptedException {
+
+		for (int i=0; i<100; i++) {
+
+			if (condition.isMet()) {
+				return true;
+			}
+
+			Thread.sleep(50);
+		}
+
+		return condition.isMet();
+	}
+
+	// ----- nested classes -----
+	private interface Condition {
+		boolean isMet();
+	}
+
+	private class TestJob extends CronJob {
+
+		private final AtomicInteger count         = new AtomicInteger();
+		private final AtomicInteger concurrent    = new AtomicInteger();
+		private final AtomicInteger maxConcurrent = new AtomicInteger();
+		private final AtomicInteger interrupted   = new AtomicInteger();
+		private CountDownLatch release            = null;
+
+		public TestJob(final CronEntry entry, final long now, final CountDownLatch release) {
+
+			super(entry, executor, now);
+
+			this.release = release;
+		}
+
+		@Override
+		protected void runTask() throws Throwable {
+
+			maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+
+			try {
+
+				if (release != null) {
+					release.await();
+				}
+
+				count.incrementAndGet();
+
+			} catch (InterruptedException iex) {
+
+				interrupted.incrementAndGet();
+				throw iex;
+
+			} finally {
+
+				concurrent.decrementAndGet();
+			}
+		}
+	}
+}
@@ -60,6 +60,7 @@ public class Settings {
 	public static final Setting<String> TmpPath               = new StringSetting(generalGroup,   "Paths",       "tmp.path",                   "/tmp");
 	public static final Setting<String> DatabasePath          = new StringSetting(generalGroup,   "Paths",       "database.path",              "db");
 	public static final Setting<String> FilesPath             = new StringSetting(generalGroup,   "Paths",       "files.path",                 System.getProperty("user.dir").concat(File.separator + "files"));
+	public static final Setting<String> FilesCachePath        = new StringSetting(generalGroup,   "Paths",       "files.cache.path",           "", "Path of a size-bounded local cache for file contents (e.g. on a fast local disk) in front of files.path, empty to disable the cache");
 	public static final Setting<String> DataExchangePath      = new StringSetting(generalGroup,   "Paths",       "data.exchange.path",         "exchange" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> SnapshotsPath         = new StringSetting(generalGroup,   "Paths",       "snapshot.path",              "snapshots" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> LayoutsPath           = new StringSetting(generalGroup,   "Paths",       "layouts.path",               "layouts" + File.separator, "IMPORTANT: Path is relative to base.path");
@@ -86,12 +87,16 @@ public class Settings {
 	public static final Setting<String> ResourceHandlers      = new StringSetting(serverGroup,  "hidden",        "HttpService.resourceHandlers",    "StructrUiHandler");
 	public static final Setting<String> LifecycleListeners    = new StringSetting(serverGroup,  "hidden",        "HttpService.lifecycle.listeners", "");
 	public static final Setting<Boolean> GzipCompression      = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.gzip.enabled",        true);
+	public static final Setting<Boolean> Http2Enabled         = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.http2.enabled",       true, "Enables HTTP/2 (h2c on the HTTP port, h2 via ALPN on the HTTPS port)");
+	public static final Setting<Boolean> Precompression       = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.precompression",      true, "Serve static resources and CSS/JavaScript files from pre-compressed variants that are stored next to the original files");
 	public static final Setting<Boolean> ForceHttps           = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.force.https",         false);
 	public static final Setting<Boolean> Async                = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.async",               true);
 	public static final Setting<Boolean> JsonIndentation      = new BooleanSetting(serverGroup, "HTTP Settings", "json.indentation",                true);
 	public static final Setting<Boolean> HtmlIndentation      = new BooleanSetting(serverGroup, "HTTP Settings", "html.indentation",                true);
 	public static final Setting<Boolean> WsIndentation        = new BooleanSetting(serverGroup, "HTTP Settings", "ws.indentation",                  true);
 	public static final Setting<Integer> SessionTimeout       = new IntegerSetting(serverGroup, "HTTP Settings", "application.session.timeout",     1800);
+	public static final Setting<String> SessionStore          = new ChoiceSetting(serverGroup,  "HTTP Settings", "application.session.store",       "file", "file", "memory", "graph");
+	public static final Setting<String> SessionStorePath      = new StringSetting(serverGroup,  "HTTP Settings", "application.session.store.path",  "sessions");
 
 	public static final Setting<String> AccessControlMaxAge           = new StringSetting(serverGroup, "CORS Settings", "access.control.max.age",           "3600");
 	public static final Setting<String> AccessControlAllowMethods     = new StringSetting(serverGroup, "CORS Settings", "access.control.allow.methods",     "");
@@ -122,6 +127,7 @@ public class Settings {
 
 	// application settings
 	public static final Setting<Integer> ResolutionDepth      = new IntegerSetting(applicationGroup, "Security",   "application.security.resolution.depth",       5);
+	public static final Setting<Integer> ResolutionCacheSize  = new IntegerSetting(applicationGroup, "Security",   "application.security.resolution.cachesize",   100000, "Maximum number of cached permission resolution results");
 	public static final Setting<String> OwnerlessNodes        = new StringSetting(applicationGroup,  "Security",   "application.security.ownerless.nodes",        "read");
 	public static final Setting<Boolean> ChangelogEnabled     = new BooleanSetting(applicationGroup, "Changelog",  "application.changelog.enabled",               false);
 	public static final Setting<Boolean> FilesystemEnabled    = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.enabled",              false);
@@ -132,6 +138,10 @@ public class Settings {
 	public static final Setting<Integer> IndexingMinLength    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.minlength",   3);
 	public static final Setting<Integer> IndexingMaxLength    = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.indexing.maxlength",   30);
 	public static final Setting<Boolean> FollowSymlinks       = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.mount.followSymlinks", true);
+	public static final Setting<Boolean> DeduplicateFiles     = new BooleanSetting(applicationGroup, "Filesystem", "application.filesystem.deduplication",         false, "Store identical file contents only once, in a content-addressed store below files.path (requires a file system with hard links)");
+	public static final Setting<Integer> FilesCacheSize       = new IntegerSetting(applicationGroup, "Filesystem", "application.filesystem.cache.size",            1024, "Maximum size of the local file cache in MB");
+	public static final Setting<String> FilesCachePolicy      = new StringSetting(applicationGroup,  "Filesystem", "application.filesystem.cache.policy",          "lru", "Eviction policy of the local file cache: lru (least recently used) or lfu (least frequently used)");
+	public static final Setting<String> FilesCacheWrites      = new StringSetting(applicationGroup,  "Filesystem", "application.filesystem.cache.writes",          "through", "Write policy of the local file cache: through (written content is stored in both tiers) or around (written content is only stored in files.path and cached on first read)");
 	public static final Setting<String> DefaultUploadFolder   = new StringSetting(applicationGroup,  "Filesystem", "application.uploads.folder",                  "");
 	public static final Setting<String> HttpProxyUrl          = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.url",                  "");
 	public static final Setting<String> HttpProxyUser         = new StringSetting(applicationGroup,  "Proxy",      "application.proxy.http.username",             "");
@@ -185,6 +195,8 @@ public class Settings {
 	public static final Setting<Boolean> HtmlUserAutocreate       = new BooleanSetting(servletsGroup, "HtmlServlet", "HtmlServlet.user.autocreate",       true);
 	public static final Setting<String> HtmlResolveProperties     = new StringSetting(servletsGroup,  "HtmlServlet", "HtmlServlet.resolveProperties",     "AbstractNode.name");
 	public static final Setting<String> HtmlCustomResponseHeaders = new TextSetting(servletsGroup,    "HtmlServlet", "HtmlServlet.customResponseHeaders", "Strict-Transport-Security:max-age=60,X-Content-Type-Options:nosniff,X-Frame-Options:SAMEORIGIN,X-XSS-Protection:1;mode=block");
+	public static final Setting<Integer> HtmlRenderThreads        = new IntegerSetting(servletsGroup, "HtmlServlet", "HtmlServlet.renderthreads",         8, "Number of threads that render independent page elements (elements with renderInParallel set) concurrently");
+	public static final Setting<Boolean> HtmlDataSourceCache      = new BooleanSetting(servletsGroup, "HtmlServlet", "HtmlServlet.datasourcecache",       true);
 
 	public static final Setting<String> WebsocketServletPath       = new StringSetting(servletsGroup,  "WebSocketServlet", "WebSocketServlet.path",              "/structr/ws/*");
 	public static final Setting<String> WebsocketServletClass      = new StringSetting(servletsGroup,  "WebSocketServlet", "WebSocketServlet.class",             "org.structr.websocket.servlet.WebSocketServlet");
@@ -217,11 +229,15 @@ public class Settings {
 	public static final Setting<Boolean> UploadAllowAnonymous   = new BooleanSetting(servletsGroup, "UploadServlet", "UploadServlet.allowAnonymousUploads", false);
 	public static final Setting<Integer> UploadMaxFileSize      = new IntegerSetting(servletsGroup, "UploadServlet", "UploadServlet.maxFileSize",           1000);
 	public static final Setting<Integer> UploadMaxRequestSize   = new IntegerSetting(servletsGroup, "UploadServlet", "UploadServlet.maxRequestSize",        1200);
+	public static final Setting<Integer> UploadChunkedTimeout   = new IntegerSetting(servletsGroup, "UploadServlet", "UploadServlet.chunkedUploadTimeout",  1440, "Number of minutes after which an incomplete chunked upload is discarded if no further chunks arrive");
 
 	public static final Setting<String> GraphQLServletPath       = new StringSetting(servletsGroup,  "GraphQLServlet", "GraphQLServlet.path",                  "/structr/graphql");
 	public static final Setting<String> GraphQLServletClass      = new StringSetting(servletsGroup,  "GraphQLServlet", "GraphQLServlet.class",                 "org.structr.rest.servlet.GraphQLServlet");
 	public static final Setting<String> GraphQLAuthenticator     = new StringSetting(servletsGroup,  "GraphQLServlet", "GraphQLServlet.authenticator",         "org.structr.web.auth.UiAuthenticator");
 	public static final Setting<String> GraphQLResourceProvider  = new StringSetting(servletsGroup,  "GraphQLServlet", "GraphQLServlet.resourceprovider",      "org.structr.web.common.UiResourceProvider");
+	public static final Setting<Integer> GraphQLMaxQueryDepth    = new IntegerSetting(servletsGroup, "GraphQLServlet", "GraphQLServlet.maxquerydepth",         10);
+	public static final Setting<Integer> GraphQLMaxQueryCost     = new IntegerSetting(servletsGroup, "GraphQLServlet", "GraphQLServlet.maxquerycost",          1000000);
+	public static final Setting<Boolean> GraphQLBatchLoading     = new BooleanSetting(servletsGroup, "GraphQLServlet", "GraphQLServlet.batchloading",          true);
 
 	public static final Setting<String> DeploymentServletPath                = new StringSetting(servletsGroup,  "DeploymentServlet", "DeploymentServlet.path",                      "/structr/deploy");
 	public static final Setting<String> DeploymentServletClass               = new StringSetting(servletsGroup,  "DeploymentServlet", "DeploymentServlet.class",                     "org.structr.web.servlet.DeploymentServlet");
@@ -250,6 +266,7 @@ public class Settings {
 
 	// cron settings
 	public static final Setting<String> CronTasks               = new StringSetting(cronGroup,  "CronService.tasks", "");
+	public static final Setting<Integer> CronPoolSize           = new IntegerSetting(cronGroup, "CronService.poolsize", 4);
 
 	// oauth settings
 	public static final Setting<String> OAuthServers            = new StringSetting(oauthGroup, "General", "oauth.servers", "github twitter linkedin google facebook");
@@ -304,6 +321,11 @@ public class Settings {
 	public static final Setting<String> RegistrationCustomUserClass               = new StringSetting(miscGroup,  "User Self Registration", "Registration.customUserClass",              "");
 	public static final Setting<Boolean> RegistrationAllowLoginBeforeConfirmation = new BooleanSetting(miscGroup, "User Self Registration", "Registration.allowLoginBeforeConfirmation", false);
 	public static final Setting<String> RegistrationCustomAttributes              = new StringSetting(miscGroup,  "User Self Registration", "Registration.customUserAttributes",         "name");
+	public static final Setting<Integer> MessagingBatchSize                       = new IntegerSetting(miscGroup, "Messaging Engine",       "messaging.batch.size",                      100, "Maximum number of received messages that are delivered to the subscribers in a single transaction");
+	public static final Setting<Integer> MessagingBatchTimeout                    = new IntegerSetting(miscGroup, "Messaging Engine",       "messaging.batch.timeout",                   50,  "Maximum time in milliseconds to wait for more messages before a batch is delivered");
+	public static final Setting<Integer> MessagingMaxInFlight                     = new IntegerSetting(miscGroup, "Messaging Engine",       "messaging.publish.maxinflight",             10,  "Maximum number of published messages that are not yet acknowledged by the broker (at most 10 for MQTT)");
+	public static final Setting<Integer> FeedUpdatePoolSize                       = new IntegerSetting(miscGroup, "Data Feeds",             "feeds.update.poolsize",                     8,   "Number of data feeds that are downloaded concurrently");
+	public static final Setting<Integer> FeedUpdateHostLimit                      = new IntegerSetting(miscGroup, "Data Feeds",             "feeds.update.hostlimit",                    2,   "Maximum number of concurrent downloads from a single host");
 
 	public static Collection<SettingsGroup> getGroups() {
 		return groups.values();
@@ -86,12 +86,16 @@ public class CloudConnection<T> extends Thread implements TransactionSource {
 	private final Map<String, String> idMap = new LinkedHashMap<>();
 	private final Map<String, Object> data = new LinkedHashMap<>();
 
+	// notified when the authentication, error or connection state changes
+	private final Object stateLock = new Object();
+
 	// private fields
 	private final ConfigurationProvider config = Services.getInstance().getConfigurationProvider();
 	private App app                            = null;
 	private CloudListener listener             = null;
 	private long transmissionAbortTime         = 0L;
 	private boolean authenticated              = false;
+	private boolean acknowledged               = false;
 	private String errorMessage                = null;
 	private String remoteAddress               = null;
 	private int errorCode                      = 0;
@@ -230,6 +234,8 @@ public class CloudConnection<T> extends Thread implements TransactionSource {
 		} catch (Throwable t) {
 			logger.warn("", t);
 		}
+
+		notifyStateChange();
 	}
 
 	public void waitForAuthentication() throws FrameworkException {
@@ -247,13 +253,7 @@ public class CloudConnection<T> extends Thread implements TransactionSource {
 				throw new FrameworkException(401, "Authentication failed");
 			}
 
-			try {
-
-				Thread.sleep(10);
-
-			} catch (Throwable t) {
-				logger.warn("", t);
-			}
+			waitForStateChange(abortTime);
 		}
 	}
 
@@ -276,13 +276,7 @@ public class CloudConnection<T> extends Thread implements TransactionSource {
 				throw new FrameworkException(504, "Timeout while waiting for response");
 			}
 
-			try {
-
-				Thread.sleep(10);
-
-			} catch (Throwable t) {
-				logger.warn("", t);
-			}
+			waitForStateChange(transmissionAbortTime);
 		}
 	}
 
@@ -292,13 +286,7 @@ public class CloudConnection<T> extends Thread implements TransactionSource {
 
 		while (isConnected() && System.currentTimeMillis() < abortTime) {
 
-			try {
-
-				Thread.sleep(10);
-
-			} catch (Throwable t) {
-				logger.warn("", t);
-			}
+			waitForStateChange(abortTime);
 		}
 
 	}
@@ -322,7 +310,26 @@ public class CloudConnection<T> extends Thread implements TransactionSource {
 	}
 
 	public void setAuthenticated() {
+
 		authenticated = true;
+
+		notifyStateChange();
+	}
+
+	/**
+	 * Marks the transmission as acknowledged. Called when the remote end
+	 * returned the End message, i.e. after it committed the transmitted
+	 * data.
+	 */
+	public void setAcknowledged() {
+
+		acknowledged = true;
+
+		notifyStateChange();
+	}
+
+	public boolean isAcknowledged() {
+		return acknowledged;
 	}
 
 	public void setPassword(final String password) {
@@ -618,23 +625,23 @@ public class CloudConnection<T> extends Thread implements TransactionSource {
 
 		if (types == null || types.isEmpty()) {
 
-			for (final Page page : app.nodeQuery(Page.class).includeDeletedAndHidden().getAsList()) {
+			for (final Page page : app.nodeQuery(Page.class).includeDeletedAndHidden().getResultStream()) {
 				syncables.add(new SyncableInfo(page));
 			}
 
-			for (final File file : app.nodeQuery(File.class).getAsList()) {
+			for (final File file : app.nodeQuery(File.class).getResultStream()) {
 				syncables.add(new SyncableInfo(file));
 			}
 
-			for (final Folder folder : app.nodeQuery(Folder.class).getAsList()) {
+			for (final Folder folder : app.nodeQuery(Folder.class).getResultStream()) {
 				syncables.add(new SyncableInfo(folder));
 			}
 
-			for (final SchemaNode schemaNode : app.nodeQuery(SchemaNode.class).getAsList()) {
+			for (final SchemaNode schemaNode : app.nodeQuery(SchemaNode.class).getResultStream()) {
 				syncables.add(new SyncableInfo(schemaNode));
 			}
 
-			for (final SchemaRelationshipNode schemaRelationship : app.nodeQuery(SchemaRelationshipNode.class).getAsList()) {
+			for (final SchemaRelationshipNode schemaRelationship : app.nodeQuery(SchemaRelationshipNode.class).getResultStream()) {
 				syncables.add(new SyncableInfo(schemaRelationship));
 			}
 		}
@@ -643,13 +650,13 @@ public class CloudConnection<T> extends Thread implements TransactionSource {
 
 			if (NodeInterface.class.isAssignableFrom(type)) {
 
-				for (final NodeInterface syncable : (Iterable<NodeInterface>) app.nodeQuery(type).includeDeletedAndHidden().getAsList()) {
+				for (final NodeInterface syncable : (Iterable<NodeInterface>) app.nodeQuery(type).includeDeletedAndHidden().getResultStream()) {
 					syncables.add(new SyncableInfo(syncable));
 				}
 
 			} else if (RelationshipInterface.class.isAssignableFrom(type)) {
 
-				for (final RelationshipInterface syncable : (Iterable<RelationshipInterface>) app.relationshipQuery(type).getAsList()) {
+				for (final RelationshipInterface syncable : (Iterable<RelationshipInterface>) app.relationshipQuery(type).getResultStream()) {
 					syncables.add(new SyncableInfo(syncable));
 				}
 			}
@@ -719,4 +726,27 @@ public class CloudConnection<T> extends Thread implements TransactionSource {
 	public int getTotal() {
 		return total;
 	}
+
+	// ----- private methods -----
+	private void waitForStateChange(final long abortTime) {
+
+		synchronized (stateLock) {
+
+			try {
+
+				// the transmission timeout can be refreshed without notification, so wait in short intervals
+				stateLock.wait(Math.max(1L, Math.min(100L, abortTime - System.currentTimeMillis())));
+
+			} catch (InterruptedException iex) {
+				logger.warn("", iex);
+			}
+		}
+	}
+
+	private void notifyStateChange() {
+
+		synchronized (stateLock) {
+			stateLock.notifyAll();
+		}
+	}
 }
@@ -21,6 +21,7 @@ package org.structr.cloud;
 import java.io.DataInputStream;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.structr.cloud.message.Message;
 
 /**
@@ -62,6 +63,13 @@ public class Receiver extends Thread {
 	}
 
 	public Message receive() {
-		return inputQueue.poll();
+
+		try {
+
+			return inputQueue.poll(100, TimeUnit.MILLISECONDS);
+
+		} catch (InterruptedException iex) {}
+
+		return null;
 	}
 }
@@ -20,13 +20,24 @@ package org.structr.cloud;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.cloud.message.Message;
 
 /**
+ * Sends the messages of a connection.
+ *
+ * The connection carries two logical streams: metadata (nodes, requests,
+ * control messages) and bulk data (file chunks). Metadata is sent with
+ * priority and interleaved with the bulk data message by message, so
+ * large files don't delay the rest of the transmission. Messages that
+ * must not overtake earlier file chunks are appended to the bulk data
+ * stream while it is not empty.
+ *
+ * The output stream is only flushed when there are no more messages to
+ * send, or after messages that change the state of the connection.
  *
  *
  */
@@ -34,9 +45,14 @@ public class Sender extends Thread {
 
 	private static final Logger logger = LoggerFactory.getLogger(Sender.class.getName());
 
-	private final BlockingQueue<Message> outputQueue = new ArrayBlockingQueue<>(10000);
-	private DataOutputStream outputStream            = null;
-	private CloudConnection connection               = null;
+	private static final int METADATA_QUEUE_SIZE = 10000;
+	private static final int BULK_WINDOW_SIZE    = 64;
+
+	private final Deque<Message> metadataQueue = new ArrayDeque<>();
+	private final Deque<Message> bulkQueue     = new ArrayDeque<>();
+	private final Object lock                  = new Object();
+	private DataOutputStream outputStream      = null;
+	private CloudConnection connection         = null;
 
 	public Sender(final CloudConnection connection, final DataOutputStream outputStream) {
 
@@ -59,38 +75,102 @@ public class Sender extends Thread {
 	@Override
 	public void run() {
 
+		boolean flushed = true;
+
 		while (connection.isConnected()) {
 
 			try {
 
-				while (!outputQueue.isEmpty()) {
+				final Message message = next(flushed);
+				if (message != null) {
+
+					message.serialize(outputStream);
 
-					final Message message = outputQueue.poll();
-					if (message != null) {
+					if (message.isBuffered()) {
 
-						message.serialize(outputStream);
-						message.afterSend(connection);
+						flushed = false;
+
+					} else {
+
+						outputStream.flush();
+						flushed = true;
 					}
-				}
 
-				outputStream.flush();
+					message.afterSend(connection);
+
+				} else if (!flushed) {
+
+					outputStream.flush();
+					flushed = true;
+				}
 
 			} catch (Throwable t) {
 
 				connection.close();
 			}
+		}
 
-			try { Thread.yield(); } catch (Throwable t) {}
+		synchronized (lock) {
+			lock.notifyAll();
 		}
 	}
 
 	public void send(final Message message) {
 
 		try {
-			outputQueue.put(message);
+
+			synchronized (lock) {
+
+				final boolean bulk = message.isBulkData() || (!message.mayOvertakeBulkData() && !bulkQueue.isEmpty());
+				final Deque<Message> queue = bulk ? bulkQueue : metadataQueue;
+				final int capacity         = bulk ? BULK_WINDOW_SIZE : METADATA_QUEUE_SIZE;
+
+				while (queue.size() >= capacity && connection.isConnected()) {
+					lock.wait(100);
+				}
+
+				queue.add(message);
+				lock.notifyAll();
+			}
 
 		} catch (InterruptedException iex) {
 			logger.warn("", iex);
 		}
 	}
+
+	// ----- private methods -----
+	private Message next(final boolean flushed) throws InterruptedException {
+
+		synchronized (lock) {
+
+			Message message = poll();
+
+			// wait for new messages only when everything is sent
+			if (message == null && flushed) {
+
+				lock.wait(100);
+
+				message = poll();
+			}
+
+			return message;
+		}
+	}
+
+	private Message poll() {
+
+		Message message = metadataQueue.poll();
+		if (message == null) {
+
+			message = bulkQueue.poll();
+		}
+
+		if (message != null) {
+
+			// wake up threads waiting for free space
+			lock.notifyAll();
+		}
+
+		return message;
+	}
 }
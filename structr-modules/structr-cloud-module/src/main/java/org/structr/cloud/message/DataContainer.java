@@ -56,6 +56,11 @@ public abstract class DataContainer extends Message {
 		return sequenceNumber;
 	}
 
+	@Override
+	public boolean isBuffered() {
+		return true;
+	}
+
 	// ----- protected methods -----
 	@Override
 	protected void deserializeFrom(DataInputStream inputStream) throws IOException {
@@ -43,6 +43,8 @@ public class End extends Message {
 
 	@Override
 	public void onResponse(CloudConnection clientConnection) throws IOException, FrameworkException {
+
+		clientConnection.setAcknowledged();
 		clientConnection.close();
 	}
 
@@ -73,6 +73,11 @@ public class FileNodeChunk extends DataContainer {
 		return "FileNodeChunk()";
 	}
 
+	@Override
+	public boolean isBulkData() {
+		return true;
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection) throws IOException, FrameworkException {
 		serverConnection.fileChunk(this);
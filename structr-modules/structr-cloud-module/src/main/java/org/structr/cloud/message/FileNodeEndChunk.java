@@ -55,6 +55,11 @@ public class FileNodeEndChunk extends DataContainer {
 		return (containerId);
 	}
 
+	@Override
+	public boolean isBulkData() {
+		return true;
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection) throws IOException, FrameworkException {
 		serverConnection.finishFile(this);
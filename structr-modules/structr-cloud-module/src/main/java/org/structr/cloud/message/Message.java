@@ -129,14 +129,47 @@ public abstract class Message<T> {
 
 		// write attributes
 		serializeTo(outputStream);
-
-		outputStream.flush();
 	}
 
 	public boolean wasSentFromHere() {
 		return sendCount > 1;
 	}
 
+	/**
+	 * Returns true if this message belongs to the bulk data stream of a
+	 * connection (file chunks), false if it belongs to the metadata
+	 * stream. Metadata is sent with priority, bulk data is sent in a
+	 * bounded window.
+	 *
+	 * @return whether this message is bulk data
+	 */
+	public boolean isBulkData() {
+		return false;
+	}
+
+	/**
+	 * Returns true if this message may be sent before bulk data messages
+	 * that were queued earlier. Messages that depend on the completion
+	 * of earlier file transfers (relationships, deletions, the end of a
+	 * transmission) must keep their position.
+	 *
+	 * @return whether this message may overtake bulk data
+	 */
+	public boolean mayOvertakeBulkData() {
+		return false;
+	}
+
+	/**
+	 * Returns true if this message can stay in the output buffer after it
+	 * was sent. Messages that change the state of the connection (e.g.
+	 * the encryption key) in afterSend() must be flushed immediately.
+	 *
+	 * @return whether this message can be buffered
+	 */
+	public boolean isBuffered() {
+		return false;
+	}
+
 	// ----- protected methods -----
 	protected String contentHashCode(final GraphObject graphObject)  {
 
@@ -70,6 +70,13 @@ public class NodeDataContainer extends DataContainer {
 		return type;
 	}
 
+	@Override
+	public boolean mayOvertakeBulkData() {
+
+		// nodes don't depend on other data
+		return true;
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection) throws IOException, FrameworkException {
 		serverConnection.storeNode(this);
@@ -42,6 +42,13 @@ public class Ping extends Message {
 		this.message = message;
 	}
 
+	@Override
+	public boolean mayOvertakeBulkData() {
+
+		// keepalive messages should not wait for file chunks
+		return true;
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection) throws IOException, FrameworkException {
 
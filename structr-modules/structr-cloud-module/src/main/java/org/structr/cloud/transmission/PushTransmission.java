@@ -19,7 +19,10 @@
 package org.structr.cloud.transmission;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.CloudService;
 import org.structr.cloud.CloudTransmission;
@@ -32,20 +35,37 @@ import org.structr.cloud.message.NodeDataContainer;
 import org.structr.cloud.message.RelationshipDataContainer;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
+import org.structr.core.app.App;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.dynamic.File;
 
 /**
+ * Pushes an export set to a remote instance.
+ *
+ * In delta mode, only the nodes and relationships that were modified
+ * after the given watermark (the start time of the last successful push)
+ * are transmitted, the remaining objects are assumed to exist on the
+ * remote instance already.
  *
  *
  */
 public class PushTransmission implements CloudTransmission {
 
+	private static final Logger logger = LoggerFactory.getLogger(PushTransmission.class.getName());
+
 	private ExportSet exportSet = null;
+	private long startTime      = System.currentTimeMillis();
+	private long watermark      = 0L;
 	private int sequenceNumber  = 0;
 
 	public PushTransmission(final GraphObject source, final boolean recursive) throws FrameworkException {
+		this(source, recursive, 0L);
+	}
+
+	public PushTransmission(final GraphObject source, final boolean recursive, final long watermark) throws FrameworkException {
+
+		this.watermark = watermark;
 
 		// create export set before first progress callback is called
 		// so the client gets the correct total from the beginning
@@ -61,6 +81,60 @@ public class PushTransmission implements CloudTransmission {
 		return exportSet;
 	}
 
+	/**
+	 * Returns the time this transmission was created, to be used as the
+	 * watermark of the next delta transmission after this transmission
+	 * was successful.
+	 *
+	 * @return the start time
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Returns the watermark stored under the given key, or 0 if no push
+	 * was successful yet. Global settings are stored as strings, so the
+	 * value is parsed.
+	 *
+	 * @param app the app
+	 * @param key the key of the watermark
+	 *
+	 * @return the watermark
+	 * @throws FrameworkException
+	 */
+	public static long getWatermark(final App app, final String key) throws FrameworkException {
+
+		final Object value = app.getGlobalSetting(key, null);
+		if (value != null) {
+
+			try {
+
+				return Long.parseLong(String.valueOf(value));
+
+			} catch (NumberFormatException nfex) {
+
+				logger.warn("Invalid push watermark {} for {}, pushing all objects", value, key);
+			}
+		}
+
+		return 0L;
+	}
+
+	/**
+	 * Stores the start time of the given successful transmission as the
+	 * watermark under the given key.
+	 *
+	 * @param app the app
+	 * @param key the key of the watermark
+	 * @param transmission the successful transmission
+	 *
+	 * @throws FrameworkException
+	 */
+	public static void setWatermark(final App app, final String key, final PushTransmission transmission) throws FrameworkException {
+		app.setGlobalSetting(key, Long.toString(transmission.getStartTime()));
+	}
+
 	@Override
 	public Boolean doRemote(final CloudConnection client) throws IOException, FrameworkException {
 
@@ -71,6 +145,10 @@ public class PushTransmission implements CloudTransmission {
 		final Set<NodeInterface> nodes = exportSet.getNodes();
 		for (final NodeInterface n : nodes) {
 
+			if (!isModified(n)) {
+				continue;
+			}
+
 			if (n instanceof File) {
 				sendFile(client, (File)n, CloudService.CHUNK_SIZE);
 
@@ -85,17 +163,27 @@ public class PushTransmission implements CloudTransmission {
 		for (RelationshipInterface r : rels) {
 
 			if (nodes.contains(r.getSourceNode()) && nodes.contains(r.getTargetNode())) {
-				client.send(new RelationshipDataContainer(r, sequenceNumber++));
+
+				if (isModified(r)) {
+					client.send(new RelationshipDataContainer(r, sequenceNumber++));
+				}
+
 			} else {
 				System.out.println("NOT sending relationship data container " + r + " because source or target node are not in the export set.");
 			}
 		}
 
-		client.send(new End());
+		sendEnd(client);
 
 		// wait for end of transmission
 		client.waitForTransmission();
 
+		// the wait also ends when the connection is dropped, only the returned End confirms that the remote end committed the data
+		if (!client.isAcknowledged()) {
+
+			throw new FrameworkException(504, "Connection closed before the transmission was acknowledged by the remote end");
+		}
+
 		return true;
 	}
 
@@ -124,4 +212,23 @@ public class PushTransmission implements CloudTransmission {
 		// mark end of file with special chunk
 		client.send(new FileNodeEndChunk(container.getSourceNodeId(), container.getFileSize()));
 	}
+
+	// ----- protected methods -----
+	protected void sendEnd(final CloudConnection client) throws IOException, FrameworkException {
+		client.send(new End());
+	}
+
+	protected boolean isModified(final GraphObject obj) {
+
+		if (watermark > 0L) {
+
+			final Date lastModified = obj.getProperty(GraphObject.lastModifiedDate);
+			if (lastModified != null) {
+
+				return lastModified.getTime() >= watermark;
+			}
+		}
+
+		return true;
+	}
 }
@@ -56,6 +56,7 @@ public class PushNodesCommand extends AbstractCommand {
 		final Map<String, Object> properties = webSocketData.getNodeData();
 		final String sourceId                = webSocketData.getId();
 		final Object recursiveSource         = properties.get("recursive");
+		final Object deltaSource             = properties.get("delta");
 		final String username                = (String)properties.get("username");
 		final String password                = (String)properties.get("password");
 		final String host                    = (String)properties.get("host");
@@ -76,13 +77,22 @@ public class PushNodesCommand extends AbstractCommand {
 						recursive = "true".equals(recursiveSource.toString());
 					}
 
+					// delta mode: only push objects modified since the last successful push of this root to this host
+					final boolean delta                 = deltaSource != null && "true".equals(deltaSource.toString());
+					final String watermarkKey           = "cloud.push." + host + ":" + port + "." + sourceId + ".watermark";
+					final long watermark                = delta ? PushTransmission.getWatermark(app, watermarkKey) : 0L;
+					final PushTransmission transmission = new PushTransmission(root, recursive, watermark);
+
 					CloudService.doRemote(
 						webSocket.getSecurityContext(),
-						new PushTransmission(root, recursive),
+						transmission,
 						new HostInfo(username, password, host, port.intValue()),
 						new WebsocketProgressListener(getWebSocket(), key, callback)
 					);
 
+					// doRemote throws an exception if the transmission failed or was not acknowledged
+					PushTransmission.setWatermark(app, watermarkKey, transmission);
+
 				} else {
 
 					getWebSocket().send(MessageBuilder.status().code(404).message("Entity with ID " + sourceId + " not found").build(), true);
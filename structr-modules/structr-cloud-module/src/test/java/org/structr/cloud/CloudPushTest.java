@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.cloud.transmission.PushTransmission;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+import org.structr.web.entity.Folder;
+import org.structr.web.entity.User;
+
+/**
+ * Pushes to the cloud service of the test instance itself.
+ */
+public class CloudPushTest extends StructrCloudModuleTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(CloudPushTest.class.getName());
+
+	@Test
+	public void testAcknowledgedPush() {
+
+		final Folder folder = setup();
+
+		try (final Tx tx = app.tx()) {
+
+			final PushTransmission transmission = new PushTransmission(folder, false);
+			final Boolean result                = CloudService.doRemote(securityContext, transmission, getHost(), null);
+
+			assertTrue("Acknowledged push must succeed", Boolean.TRUE.equals(result));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testDroppedPush() {
+
+		final Folder folder = setup();
+
+		try (final Tx tx = app.tx()) {
+
+			// the connection is dropped after the data was sent, before the remote end acknowledges the transmission
+			final PushTransmission transmission = new PushTransmission(folder, false) {
+
+				@Override
+				protected void sendEnd(final CloudConnection client) throws IOException, FrameworkException {
+					client.close();
+				}
+			};
+
+			CloudService.doRemote(securityContext, transmission, getHost(), null);
+
+			fail("A push without acknowledgement must fail, otherwise the delta watermark of the push would be advanced.");
+
+		} catch (FrameworkException fex) {
+
+			assertEquals("Invalid status code", 504, fex.getStatus());
+		}
+	}
+
+	@Test
+	public void testDeltaPush() {
+
+		final String watermarkKey = "cloud.push.test.watermark";
+		final Folder folder       = setup();
+		Folder unchanged          = null;
+		Folder changed            = null;
+
+		try (final Tx tx = app.tx()) {
+
+			unchanged = app.create(Folder.class, new NodeAttribute<>(AbstractNode.name, "unchanged"), new NodeAttribute<>(StructrApp.key(Folder.class, "parent"), folder));
+			changed   = app.create(Folder.class, new NodeAttribute<>(AbstractNode.name, "changed"),   new NodeAttribute<>(StructrApp.key(Folder.class, "parent"), folder));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		// first delta push without watermark sends everything
+		final Set<String> first = push(folder, watermarkKey);
+
+		assertTrue("First delta push must send all objects", first.contains(unchanged.getUuid()));
+		assertTrue("First delta push must send all objects", first.contains(changed.getUuid()));
+
+		try (final Tx tx = app.tx()) {
+
+			assertTrue("Watermark must be stored after a successful push", PushTransmission.getWatermark(app, watermarkKey) > 0L);
+
+			changed.setProperty(AbstractNode.name, "modified");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		// second delta push sends the modified node only
+		final Set<String> second = push(folder, watermarkKey);
+
+		assertTrue("Second delta push must send the modified node", second.contains(changed.getUuid()));
+		assertFalse("Second delta push must not send unmodified nodes", second.contains(unchanged.getUuid()));
+	}
+
+	// ----- private methods -----
+	private Set<String> push(final Folder folder, final String watermarkKey) {
+
+		final Set<String> sent = new HashSet<>();
+
+		try (final Tx tx = app.tx()) {
+
+			final PushTransmission transmission = new PushTransmission(folder, true, PushTransmission.getWatermark(app, watermarkKey)) {
+
+				@Override
+				protected boolean isModified(final GraphObject obj) {
+
+					final boolean modified = super.isModified(obj);
+					if (modified) {
+
+						sent.add(obj.getUuid());
+					}
+
+					return modified;
+				}
+			};
+
+			CloudService.doRemote(securityContext, transmission, getHost(), null);
+
+			PushTransmission.setWatermark(app, watermarkKey, transmission);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		return sent;
+	}
+
+	private Folder setup() {
+
+		try {
+
+			createTestNode(User.class,
+				new NodeAttribute<>(AbstractNode.name, "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"),  true)
+			);
+
+			return createTestNode(Folder.class, new NodeAttribute<>(AbstractNode.name, "push"));
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		return null;
+	}
+
+	private HostInfo getHost() {
+		return new HostInfo("admin", "admin", host, tcpPort);
+	}
+}
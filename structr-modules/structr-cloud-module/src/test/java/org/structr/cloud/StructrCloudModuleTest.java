@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
+
+/**
+ * Base class for cloud module tests, starts the cloud service on the
+ * test TCP port.
+ */
+public class StructrCloudModuleTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(StructrCloudModuleTest.class.getName());
+
+	protected static SecurityContext securityContext = null;
+	protected static String basePath                 = null;
+	protected static App app                         = null;
+
+	protected static final String host = "localhost";
+	protected static final int tcpPort = 54565;
+
+	@Rule
+	public TestRule watcher = new TestWatcher() {
+
+		@Override
+		protected void starting(Description description) {
+
+			System.out.println("######################################################################################");
+			System.out.println("# Starting " + description.getClassName() + "#" + description.getMethodName());
+			System.out.println("######################################################################################");
+		}
+
+		@Override
+		protected void finished(Description description) {
+
+			System.out.println("######################################################################################");
+			System.out.println("# Finished " + description.getClassName() + "#" + description.getMethodName());
+			System.out.println("######################################################################################");
+		}
+	};
+
+	@Before
+	public void cleanDatabase() {
+
+		try (final Tx tx = app.tx()) {
+
+			final List<? extends NodeInterface> nodes = app.nodeQuery().getAsList();
+
+			logger.info("Cleaning database: {} nodes", nodes.size());
+
+			for (final NodeInterface node : nodes) {
+				app.delete(node);
+			}
+
+			// delete remaining nodes without UUIDs etc.
+			app.cypher("MATCH (n)-[r]-(m) DELETE n, r, m", Collections.emptyMap());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.error("Exception while trying to clean database: {}", fex);
+		}
+	}
+
+	@BeforeClass
+	public static void startSystem() {
+
+		final Date now          = new Date();
+		final long timestamp    = now.getTime();
+
+		basePath = "/tmp/structr-test-" + timestamp;
+
+		Settings.Services.setValue("NodeService LogService SchemaService CloudService");
+		Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
+
+		// example for new configuration setup
+		Settings.BasePath.setValue(basePath);
+		Settings.DatabasePath.setValue(basePath + "/db");
+		Settings.FilesPath.setValue(basePath + "/files");
+
+		Settings.RelationshipCacheSize.setValue(1000);
+		Settings.NodeCacheSize.setValue(1000);
+
+		Settings.SuperUserName.setValue("superadmin");
+		Settings.SuperUserPassword.setValue("sehrgeheim");
+
+		Settings.TcpPort.setValue(tcpPort);
+
+		final Services services = Services.getInstance();
+
+		// wait for service layer to be initialized
+		do {
+			try {
+				Thread.sleep(100);
+			} catch (Throwable t) {
+			}
+
+		} while (!services.isInitialized());
+
+		securityContext = SecurityContext.getSuperUserInstance();
+		app = StructrApp.getInstance(securityContext);
+	}
+
+	@AfterClass
+	public static void stopSystem() {
+
+		Services.getInstance().shutdown();
+
+		try {
+			File testDir = new File(basePath);
+			if (testDir.isDirectory()) {
+
+				FileUtils.deleteDirectory(testDir);
+
+			} else {
+
+				testDir.delete();
+			}
+
+		} catch (Throwable t) {
+			logger.warn("", t);
+		}
+	}
+
+	protected <T extends AbstractNode> T createTestNode(final Class<T> type, final NodeAttribute... attributes) throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			final T newNode = app.create(type, attributes);
+
+			tx.success();
+
+			return newNode;
+		}
+	}
+}
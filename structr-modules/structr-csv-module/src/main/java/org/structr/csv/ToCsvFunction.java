@@ -18,13 +18,17 @@
  */
 package org.structr.csv;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -38,14 +42,15 @@ import org.structr.core.property.DateProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.parser.DatePropertyParser;
+import org.structr.web.common.OutputTarget;
 import org.structr.web.function.UiFunction;
 
 /**
  *
  */
 public class ToCsvFunction extends UiFunction {
-	public static final String ERROR_MESSAGE_TO_CSV    = "Usage: ${to_csv(nodes, propertiesOrView[, delimiterChar[, quoteChar[, recordSeparator[, includeHeader[, localizeHeader[, headerLocalizationDomain]]]])}. Example: ${to_csv(find('Page'), 'ui')}";
-	public static final String ERROR_MESSAGE_TO_CSV_JS = "Usage: ${{Structr.to_csv(nodes, propertiesOrView[, delimiterChar[, quoteChar[, recordSeparator[, includeHeader[, localizeHeader[, headerLocalizationDomain]]]])}}. Example: ${{Structr.to_csv(Structr.find('Page'), 'ui'))}}";
+	public static final String ERROR_MESSAGE_TO_CSV    = "Usage: ${to_csv(nodes, propertiesOrView[, delimiterChar[, quoteChar[, recordSeparator[, includeHeader[, localizeHeader[, headerLocalizationDomain[, target]]]]]])}. Example: ${to_csv(find('Page'), 'ui')}";
+	public static final String ERROR_MESSAGE_TO_CSV_JS = "Usage: ${{Structr.to_csv(nodes, propertiesOrView[, delimiterChar[, quoteChar[, recordSeparator[, includeHeader[, localizeHeader[, headerLocalizationDomain[, target]]]]]])}}. Example: ${{Structr.to_csv(Structr.find('Page'), 'ui'))}}";
 
 	@Override
 	public String getName() {
@@ -56,14 +61,14 @@ public class ToCsvFunction extends UiFunction {
 
 		try {
 
-			if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 2, 8)) {
+			if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 2, 9)) {
 
-				if ( !(sources[0] instanceof List) ) {
+				if ( !(sources[0] instanceof Iterable) ) {
 					logParameterError(caller, sources, ctx.isJavaScriptContext());
 					return "ERROR: First parameter must be a collection!".concat(usage(ctx.isJavaScriptContext()));
 				}
 
-				final List<GraphObject> nodes           = (List)sources[0];
+				final Iterable nodes                    = (Iterable)sources[0];
 				String delimiterChar                    = ";";
 				String quoteChar                        = "\"";
 				String recordSeparator                  = "\n";
@@ -72,15 +77,18 @@ public class ToCsvFunction extends UiFunction {
 				String headerLocalizationDomain         = null;
 				String propertyView                     = null;
 				List<String> properties                 = null;
+				Object target                           = null;
 
-				// we are using size() instead of isEmpty() because NativeArray.isEmpty() always returns true
-				if (nodes.size() == 0) {
+				// we are using size() instead of isEmpty() because NativeArray.isEmpty() always returns true,
+				// other iterables (e.g. lazily evaluated query results) must only be iterated once
+				if (nodes instanceof Collection && ((Collection)nodes).size() == 0) {
 					logger.warn("to_csv(): Can not create CSV if no nodes are given!");
 					logParameterError(caller, sources, ctx.isJavaScriptContext());
 					return "";
 				}
 
 				switch (sources.length) {
+					case 9: target = sources[8];
 					case 8: headerLocalizationDomain = (String)sources[7];
 					case 7: localizeHeader = (Boolean)sources[6];
 					case 6: includeHeader = (Boolean)sources[5];
@@ -109,6 +117,23 @@ public class ToCsvFunction extends UiFunction {
 						}
 					}
 				}
+				if (target != null) {
+
+					// stream the rows into a file
+					try (final OutputTarget output = OutputTarget.create(ctx.getSecurityContext(), target)) {
+
+						final Writer writer = new BufferedWriter(new OutputStreamWriter(output.getOutputStream(), StandardCharsets.UTF_8), 65536);
+
+						writeCsv(nodes, writer, propertyView, properties, quoteChar.charAt(0), delimiterChar.charAt(0), recordSeparator, includeHeader, localizeHeader, headerLocalizationDomain, ctx.getLocale());
+
+						return output.getResult();
+
+					} catch (IOException ioex) {
+						logger.warn("to_csv(): Exception occurred", ioex);
+						return "";
+					}
+				}
+
 				try {
 
 					final StringWriter writer = new StringWriter();
@@ -165,8 +190,14 @@ public class ToCsvFunction extends UiFunction {
 		writeCsv(list, out, propertyView, properties, quoteChar, delimiterChar, recordSeparator, includeHeader, localizeHeader, headerLocalizationDomain, locale);
 	}
 
+	/**
+	 * Writes the given objects as CSV to the given writer. The objects are
+	 * consumed in a single pass and each row is assembled in a reusable
+	 * string builder, so the input can be a lazily evaluated query result.
+	 * The writer is flushed after the last row.
+	 */
 	public static void writeCsv(
-			final List list,
+			final Iterable list,
 			final Writer out,
 			final String propertyView,
 			final List<String> properties,
@@ -180,6 +211,9 @@ public class ToCsvFunction extends UiFunction {
 	) throws IOException {
 
 		final StringBuilder row = new StringBuilder();
+		final Iterator iterator = list.iterator();
+		boolean hasFirst        = iterator.hasNext();
+		final Object first      = hasFirst ? iterator.next() : null;
 
 		if (includeHeader) {
 
@@ -189,10 +223,8 @@ public class ToCsvFunction extends UiFunction {
 
 			if (propertyView != null) {
 
-				final Object obj = list.get(0);
-
-				if (obj instanceof GraphObject) {
-					for (PropertyKey key : ((GraphObject)obj).getPropertyKeys(propertyView)) {
+				if (first instanceof GraphObject) {
+					for (PropertyKey key : ((GraphObject)first).getPropertyKeys(propertyView)) {
 						String value = key.dbName();
 						if (localizeHeader) {
 							try {
@@ -224,12 +256,15 @@ public class ToCsvFunction extends UiFunction {
 				}
 			}
 
-			out.append(row).append(recordSeparator).flush();
+			out.append(row).append(recordSeparator);
 
 		}
 
-		for (final Object obj : list) {
+		while (hasFirst || iterator.hasNext()) {
+
+			final Object obj = hasFirst ? first : iterator.next();
 
+			hasFirst = false;
 			row.setLength(0);
 
 			boolean isFirstCol = true;
@@ -270,12 +305,20 @@ public class ToCsvFunction extends UiFunction {
 				}
 			}
 
-			// Replace \r and \n so we dont get multi-line CSV (needs to be four backslashes because regex)
-			final String rowWithoutRecordSeparator = row.toString().replaceAll("\n", "\\\\n").replaceAll("\r", "\\\\r");
+			// replace \r and \n so we dont get multi-line CSV
+			for (int i=row.length()-1; i>=0; i--) {
+
+				final char c = row.charAt(i);
+				if (c == '\n' || c == '\r') {
+
+					row.replace(i, i+1, c == '\n' ? "\\n" : "\\r");
+				}
+			}
 
-			out.append(rowWithoutRecordSeparator).append(recordSeparator).flush();
+			out.append(row).append(recordSeparator);
 		}
 
+		out.flush();
 	}
 
 	private static boolean appendColumnString (final StringBuilder row, final Object value, boolean isFirstColumn, final char quoteChar, final char delimiter) {
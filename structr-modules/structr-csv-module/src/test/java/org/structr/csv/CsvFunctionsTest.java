@@ -18,16 +18,22 @@
  */
 package org.structr.csv;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.common.AccessMode;
+import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Localization;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyMap;
@@ -37,6 +43,9 @@ import org.structr.csv.entity.CsvTestEnum;
 import org.structr.csv.entity.CsvTestOne;
 import org.structr.csv.entity.CsvTestTwo;
 import org.structr.schema.action.ActionContext;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
+import org.structr.web.entity.User;
 
 public class CsvFunctionsTest extends StructrCsvModuleTest {
 
@@ -369,4 +378,111 @@ public class CsvFunctionsTest extends StructrCsvModuleTest {
 		}
 	}
 
+	@Test
+	public void testCsvStreamingToFile() {
+
+		try (final Tx tx = app.tx()) {
+
+			int index = 0;
+
+			for (final CsvTestOne csvTestOne : createTestNodes(CsvTestOne.class, 3)) {
+
+				csvTestOne.setProperty(CsvTestOne.name, "CSV Test Node " + StringUtils.leftPad(Integer.toString(index+1), 4, "0"));
+				csvTestOne.setProperty(CsvTestOne.index, index+1);
+
+				index++;
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext ctx = new ActionContext(securityContext, null);
+			final Object result     = Scripting.evaluate(ctx, null, "${to_csv(sort(find('CsvTestOne'), 'index'), merge('name', 'index'), ';', '\"', '\\n', true, false, '', 'export.csv')}", "test");
+
+			assertTrue("to_csv() with a file name should return the new file", result instanceof File);
+
+			final File file = (File)result;
+
+			assertEquals("Invalid name of exported file", "export.csv", file.getName());
+			assertEquals("Invalid content of exported file",
+					"\"name\";\"index\"\n"
+					+ "\"CSV Test Node 0001\";\"1\"\n"
+					+ "\"CSV Test Node 0002\";\"2\"\n"
+					+ "\"CSV Test Node 0003\";\"3\"\n",
+					FileUtils.readFileToString(file.getFileOnDisk(false), "UTF-8")
+			);
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.warn("", ex);
+
+			fail(ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testCsvStreamingToFileWithoutWritePermission() {
+
+		File file = null;
+		User user = null;
+
+		try (final Tx tx = app.tx()) {
+
+			for (final CsvTestOne csvTestOne : createTestNodes(CsvTestOne.class, 3)) {
+				csvTestOne.setProperty(AbstractNode.visibleToAuthenticatedUsers, true);
+			}
+
+			user = createTestNode(User.class, "tester");
+			file = FileHelper.createFile(securityContext, "original".getBytes("UTF-8"), "text/csv", File.class, "protected.csv");
+
+			// the user can read, but not write the file
+			file.setProperty(AbstractNode.visibleToAuthenticatedUsers, true);
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.warn("", ex);
+
+			fail("Unexpected exception");
+		}
+
+		final SecurityContext userContext = SecurityContext.getInstance(user, AccessMode.Backend);
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext ctx = new ActionContext(userContext, null);
+
+			Scripting.evaluate(ctx, null, "${to_csv(find('CsvTestOne'), merge('name'), ';', '\"', '\\n', true, false, '', first(find('File', 'name', 'protected.csv')))}", "test");
+
+			fail("to_csv() must not write to a file without write permission");
+
+		} catch (FrameworkException fex) {
+
+			assertEquals("Invalid status code", 403, fex.getStatus());
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals("File content must not be changed", "original", FileUtils.readFileToString(file.getFileOnDisk(false), "UTF-8"));
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.warn("", ex);
+
+			fail(ex.getMessage());
+		}
+	}
 }
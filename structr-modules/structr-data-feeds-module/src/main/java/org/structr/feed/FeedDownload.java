@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.feed;
+
+import com.rometools.rome.feed.synd.SyndFeed;
+import com.rometools.rome.io.FeedException;
+import com.rometools.rome.io.SyndFeedInput;
+import com.rometools.rome.io.XmlReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The result of a conditional download of a data feed.
+ *
+ * The entity tag and the last modification date of the previous response
+ * are sent with the request, so the server can answer with "304 Not
+ * Modified" instead of sending the whole feed again.
+ */
+public class FeedDownload {
+
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final int READ_TIMEOUT    = 30000;
+
+	private String lastModified = null;
+	private SyndFeed feed       = null;
+	private String etag         = null;
+	private String url          = null;
+	private int statusCode      = 0;
+
+	private FeedDownload(final String url) {
+		this.url = url;
+	}
+
+	/**
+	 * Downloads and parses the feed at the given URL, unless it has not
+	 * been modified since the response with the given entity tag and
+	 * last modification date.
+	 *
+	 * @param url the URL of the feed
+	 * @param etag the entity tag of the previous response, or null
+	 * @param lastModified the last modification date of the previous response, or null
+	 *
+	 * @return the download
+	 *
+	 * @throws IOException
+	 * @throws FeedException
+	 */
+	public static FeedDownload fetch(final String url, final String etag, final String lastModified) throws IOException, FeedException {
+
+		final FeedDownload download    = new FeedDownload(url);
+		final URLConnection connection = new URL(url).openConnection();
+
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+
+		if (connection instanceof HttpURLConnection) {
+
+			final HttpURLConnection http = (HttpURLConnection)connection;
+
+			if (StringUtils.isNotBlank(etag)) {
+				http.setRequestProperty("If-None-Match", etag);
+			}
+
+			if (StringUtils.isNotBlank(lastModified)) {
+				http.setRequestProperty("If-Modified-Since", lastModified);
+			}
+
+			download.statusCode = http.getResponseCode();
+
+			if (download.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+
+				// keep validators of the previous response unless the server sent new ones
+				download.etag         = StringUtils.defaultIfBlank(http.getHeaderField("ETag"), etag);
+				download.lastModified = StringUtils.defaultIfBlank(http.getHeaderField("Last-Modified"), lastModified);
+
+				http.disconnect();
+
+				return download;
+			}
+
+			if (download.statusCode >= 400) {
+
+				http.disconnect();
+
+				throw new IOException("Server returned HTTP status " + download.statusCode + " for " + url);
+			}
+
+		} else {
+
+			download.statusCode = HttpURLConnection.HTTP_OK;
+		}
+
+		download.etag         = connection.getHeaderField("ETag");
+		download.lastModified = connection.getHeaderField("Last-Modified");
+
+		try (final InputStream is = connection.getInputStream(); final Reader reader = new XmlReader(is, connection.getContentType(), true)) {
+
+			download.feed = new SyndFeedInput().build(reader);
+		}
+
+		return download;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public boolean isNotModified() {
+		return statusCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+	}
+
+	public SyndFeed getFeed() {
+		return feed;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+}
@@ -18,18 +18,35 @@
  */
 package org.structr.feed.cron;
 
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.agent.Agent;
 import org.structr.agent.ReturnValue;
 import org.structr.agent.Task;
+import org.structr.api.config.Settings;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.Tx;
+import org.structr.feed.FeedDownload;
 import org.structr.feed.entity.DataFeed;
 
 /**
- *
+ * Updates all data feeds that are due. The feeds are downloaded concurrently
+ * by a bounded pool of workers, with a limit on the number of concurrent
+ * downloads per host that is read at the start of each update run. Each
+ * download is applied in its own transaction, so no transaction is held open
+ * while waiting for a remote server.
  */
 public class UpdateFeedAgent<T extends DataFeed> extends Agent<T> {
 
@@ -40,19 +57,56 @@ public class UpdateFeedAgent<T extends DataFeed> extends Agent<T> {
 
 		logger.debug("Processing task {}", task.getClass().getName());
 
-		final App app = StructrApp.getInstance();
+		final List<FeedInfo> dueFeeds = new LinkedList<>();
+		final App app                 = StructrApp.getInstance();
+
 		try (final Tx tx = app.tx(true, true, false)) {
 
 			for (DataFeed feed : task.getWorkObjects()) {
 
-				logger.debug("Updating data feed {} if due", feed.getProperty(DataFeed.name));
+				if (StringUtils.isNotBlank(feed.getUrl()) && DataFeed.isDue(feed)) {
+
+					logger.debug("Data feed {} is due", feed.getProperty(DataFeed.name));
 
-				feed.updateIfDue();
+					dueFeeds.add(new FeedInfo(feed));
+				}
 			}
 
 			tx.success();
 		}
 
+		if (!dueFeeds.isEmpty()) {
+
+			final ExecutorService executor           = Executors.newFixedThreadPool(Math.max(1, Math.min(Settings.FeedUpdatePoolSize.getValue(), dueFeeds.size())));
+			final Map<String, Semaphore> hostPermits = new HashMap<>();
+			final int hostLimit                      = Math.max(1, Settings.FeedUpdateHostLimit.getValue());
+			final List<Future> futures               = new LinkedList<>();
+
+			try {
+
+				for (final FeedInfo info : dueFeeds) {
+
+					final Semaphore permits = hostPermits.computeIfAbsent(getHost(info.url), k -> new Semaphore(hostLimit));
+
+					futures.add(executor.submit(() -> update(info, permits)));
+				}
+
+				for (final Future future : futures) {
+
+					try {
+						future.get();
+
+					} catch (ExecutionException ex) {
+						logger.error("Error while updating feed", ex.getCause());
+					}
+				}
+
+			} finally {
+
+				executor.shutdownNow();
+			}
+		}
+
 		return ReturnValue.Success;
 	}
 
@@ -65,4 +119,73 @@ public class UpdateFeedAgent<T extends DataFeed> extends Agent<T> {
 	public boolean createEnclosingTransaction() {
 		return false;
 	}
+
+	// ----- private methods -----
+	private void update(final FeedInfo info, final Semaphore permits) {
+
+		FeedDownload download = null;
+
+		try {
+
+			permits.acquire();
+			try {
+
+				download = FeedDownload.fetch(info.url, info.etag, info.lastModified);
+
+			} finally {
+
+				permits.release();
+			}
+
+			final App app = StructrApp.getInstance();
+			try (final Tx tx = app.tx(true, true, false)) {
+
+				final DataFeed feed = app.get(DataFeed.class, info.uuid);
+				if (feed != null) {
+
+					logger.debug("Updating data feed {} ({})", feed.getProperty(DataFeed.name), download.isNotModified() ? "not modified" : "modified");
+
+					DataFeed.updateFeed(feed, download);
+					feed.cleanUp();
+				}
+
+				tx.success();
+			}
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+
+		} catch (Throwable t) {
+
+			logger.error("Error while updating feed {}: {}", info.url, t.getMessage());
+		}
+	}
+
+	private String getHost(final String url) {
+
+		try {
+			return new URL(url).getHost();
+
+		} catch (Throwable ignore) {}
+
+		return url;
+	}
+
+	// ----- nested classes -----
+	private static class FeedInfo {
+
+		private String uuid         = null;
+		private String url          = null;
+		private String etag         = null;
+		private String lastModified = null;
+
+		public FeedInfo(final DataFeed feed) {
+
+			this.uuid         = feed.getUuid();
+			this.url          = feed.getUrl();
+			this.etag         = feed.getEtag();
+			this.lastModified = feed.getRemoteLastModified();
+		}
+	}
 }
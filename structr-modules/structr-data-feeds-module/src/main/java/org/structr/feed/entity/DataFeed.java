@@ -24,15 +24,14 @@ import com.rometools.rome.feed.synd.SyndEnclosure;
 import com.rometools.rome.feed.synd.SyndEntry;
 import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.io.FeedException;
-import com.rometools.rome.io.SyndFeedInput;
-import com.rometools.rome.io.XmlReader;
 import java.io.IOException;
-import java.io.Reader;
 import java.net.URI;
-import java.net.URL;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.structr.api.util.Iterables;
 import org.structr.common.GraphObjectComparator;
@@ -40,11 +39,13 @@ import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
+import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Relation.Cardinality;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.feed.FeedDownload;
 import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
@@ -61,23 +62,27 @@ public interface DataFeed extends NodeInterface {
 
 		type.setImplements(URI.create("https://structr.org/v1.1/definitions/DataFeed"));
 
-		type.addStringProperty("url",          PropertyView.Public, PropertyView.Ui).setIndexed(true);
-		type.addStringProperty("feedType",     PropertyView.Public, PropertyView.Ui).setIndexed(true);
-		type.addStringProperty("description",  PropertyView.Public, PropertyView.Ui).setIndexed(true);
-
-		type.addLongProperty("updateInterval", PropertyView.Ui);  // update interval in milliseconds
-		type.addDateProperty("lastUpdated",    PropertyView.Ui);  // last updated
-		type.addLongProperty("maxAge",         PropertyView.Ui);  // maximum age of the oldest feed entry in milliseconds
-		type.addIntegerProperty("maxItems",    PropertyView.Ui);  // maximum number of feed entries to retain
-
-		type.addPropertyGetter("items",            Iterable.class);
-		type.addPropertyGetter("url",              String.class);
-		type.addPropertyGetter("feedType",         String.class);
-		type.addPropertyGetter("description",      String.class);
-		type.addPropertyGetter("updateInterval",   Long.class);
-		type.addPropertyGetter("lastUpdated",      Date.class);
-		type.addPropertyGetter("maxAge",           Long.class);
-		type.addPropertyGetter("maxItems",         Integer.class);
+		type.addStringProperty("url",                 PropertyView.Public, PropertyView.Ui).setIndexed(true);
+		type.addStringProperty("feedType",            PropertyView.Public, PropertyView.Ui).setIndexed(true);
+		type.addStringProperty("description",         PropertyView.Public, PropertyView.Ui).setIndexed(true);
+
+		type.addLongProperty("updateInterval",        PropertyView.Ui);  // update interval in milliseconds
+		type.addDateProperty("lastUpdated",           PropertyView.Ui);  // last updated
+		type.addLongProperty("maxAge",                PropertyView.Ui);  // maximum age of the oldest feed entry in milliseconds
+		type.addIntegerProperty("maxItems",           PropertyView.Ui);  // maximum number of feed entries to retain
+		type.addStringProperty("etag",                PropertyView.Ui);  // entity tag of the last response
+		type.addStringProperty("remoteLastModified",  PropertyView.Ui);  // last modification date of the last response
+
+		type.addPropertyGetter("items",               Iterable.class);
+		type.addPropertyGetter("url",                 String.class);
+		type.addPropertyGetter("feedType",            String.class);
+		type.addPropertyGetter("description",         String.class);
+		type.addPropertyGetter("updateInterval",      Long.class);
+		type.addPropertyGetter("lastUpdated",         Date.class);
+		type.addPropertyGetter("maxAge",              Long.class);
+		type.addPropertyGetter("maxItems",            Integer.class);
+		type.addPropertyGetter("etag",                String.class);
+		type.addPropertyGetter("remoteLastModified",  String.class);
 
 		type.overrideMethod("onCreation", true,  "updateFeed(true);");
 
@@ -112,6 +117,8 @@ public interface DataFeed extends NodeInterface {
 	Date getLastUpdated();
 	Long getMaxAge();
 	Integer getMaxItems();
+	String getEtag();
+	String getRemoteLastModified();
 
 	Iterable<FeedItem> getItems();
 
@@ -186,10 +193,7 @@ public interface DataFeed extends NodeInterface {
 
 	static void updateIfDue(final DataFeed thisFeed) {
 
-		final Date lastUpdate = thisFeed.getLastUpdated();
-		final Long interval   = thisFeed.getUpdateInterval();
-
-		if (lastUpdate == null || (interval != null && new Date().after(new Date(lastUpdate.getTime() + interval)))) {
+		if (isDue(thisFeed)) {
 
 			// Update feed and clean-up afterwards
 			thisFeed.updateFeed(true);
@@ -197,95 +201,165 @@ public interface DataFeed extends NodeInterface {
 
 	}
 
+	static boolean isDue(final DataFeed thisFeed) {
+
+		final Date lastUpdate = thisFeed.getLastUpdated();
+		final Long interval   = thisFeed.getUpdateInterval();
+
+		return lastUpdate == null || (interval != null && new Date().after(new Date(lastUpdate.getTime() + interval)));
+	}
+
 	static void updateFeed(final DataFeed thisFeed, final boolean cleanUp) {
 
 		final String remoteUrl = thisFeed.getUrl();
 		if (StringUtils.isNotBlank(remoteUrl)) {
 
-			final SecurityContext securityContext = thisFeed.getSecurityContext();
-			final App app                         = StructrApp.getInstance(securityContext);
-
 			try {
 
-				final PropertyKey<Date> dateKey  = StructrApp.key(FeedItem.class, "pubDate");
-				final PropertyKey<String> urlKey = StructrApp.key(FeedItem.class, "url");
-                                final URL remote                 = new URL(remoteUrl);
-                                final SyndFeedInput input        = new SyndFeedInput();
+				updateFeed(thisFeed, FeedDownload.fetch(remoteUrl, thisFeed.getEtag(), thisFeed.getRemoteLastModified()));
 
-				try (final Reader reader = new XmlReader(remote)) {
+			} catch (IllegalArgumentException | IOException | FeedException | FrameworkException ex) {
+				logger.error("Error while updating feed", ex);
+			}
+		}
 
-					final SyndFeed      feed      = input.build(reader);
-					final List<SyndEntry> entries = feed.getEntries();
+		if (cleanUp) {
+			thisFeed.cleanUp();
+		}
+	}
 
-					thisFeed.setProperty(StructrApp.key(DataFeed.class, "feedType"),    feed.getFeedType());
-					thisFeed.setProperty(StructrApp.key(DataFeed.class, "description"), feed.getDescription());
+	/**
+	 * Applies the given download to the given feed. Only items whose URL
+	 * does not exist yet are created, the existing URLs are looked up
+	 * with a single query per batch of entries.
+	 *
+	 * @param thisFeed the feed
+	 * @param download the (conditional) download of the feed
+	 * @throws FrameworkException
+	 */
+	static void updateFeed(final DataFeed thisFeed, final FeedDownload download) throws FrameworkException {
+
+		final SecurityContext securityContext = thisFeed.getSecurityContext();
+		final App app                         = StructrApp.getInstance(securityContext);
+
+		if (!download.isNotModified()) {
+
+			final PropertyKey<Date> dateKey  = StructrApp.key(FeedItem.class, "pubDate");
+			final PropertyKey<String> urlKey = StructrApp.key(FeedItem.class, "url");
+			final SyndFeed      feed         = download.getFeed();
+			final List<SyndEntry> entries    = feed.getEntries();
+			final List<String> links         = new ArrayList<>(entries.size());
+
+			thisFeed.setProperty(StructrApp.key(DataFeed.class, "feedType"),    feed.getFeedType());
+			thisFeed.setProperty(StructrApp.key(DataFeed.class, "description"), feed.getDescription());
+
+			for (final SyndEntry entry : entries) {
+				links.add(entry.getLink());
+			}
 
-					final List<FeedItem> newItems = Iterables.toList(thisFeed.getItems());
+			final Set<String> existingLinks = getExistingItemUrls(app, links);
 
-					for (final SyndEntry entry : entries) {
+			for (final SyndEntry entry : entries) {
 
-						final PropertyMap props = new PropertyMap();
+				final String link = entry.getLink();
 
-						final String link = entry.getLink();
+				// skip existing items and duplicate entries
+				if (link == null || !existingLinks.add(link)) {
+					continue;
+				}
 
-						// Check if item with this link already exists
-						if (app.nodeQuery(FeedItem.class).and(urlKey, link).getFirst() == null) {
+				final PropertyMap props         = new PropertyMap();
+				final SyndContent description   = entry.getDescription();
 
-							props.put(urlKey,                                        entry.getLink());
-							props.put(StructrApp.key(FeedItem.class, "name"),        entry.getTitle());
-							props.put(StructrApp.key(FeedItem.class, "author"),      entry.getAuthor());
-							props.put(StructrApp.key(FeedItem.class, "comments"),    entry.getComments());
-							props.put(StructrApp.key(FeedItem.class, "description"), entry.getDescription().getValue());
+				props.put(urlKey,                                        link);
+				props.put(StructrApp.key(FeedItem.class, "name"),        entry.getTitle());
+				props.put(StructrApp.key(FeedItem.class, "author"),      entry.getAuthor());
+				props.put(StructrApp.key(FeedItem.class, "comments"),    entry.getComments());
+				props.put(StructrApp.key(FeedItem.class, "description"), description != null ? description.getValue() : null);
+				props.put(dateKey,                                       entry.getPublishedDate());
+				props.put(StructrApp.key(FeedItem.class, "feed"),        thisFeed);
 
-							final FeedItem item = app.create(FeedItem.class, props);
-							item.setProperty(dateKey, entry.getPublishedDate());
+				final FeedItem item = app.create(FeedItem.class, props);
 
-							final List<FeedItemContent> itemContents = new LinkedList<>();
-							final List<FeedItemEnclosure> itemEnclosures = new LinkedList<>();
+				final List<FeedItemContent> itemContents = new LinkedList<>();
+				final List<FeedItemEnclosure> itemEnclosures = new LinkedList<>();
 
-							//Get and add all contents
-							final List<SyndContent> contents = entry.getContents();
-							for (final SyndContent content : contents) {
+				//Get and add all contents
+				final List<SyndContent> contents = entry.getContents();
+				for (final SyndContent content : contents) {
 
-								final FeedItemContent itemContent = app.create(FeedItemContent.class);
-								itemContent.setValue(content.getValue());
+					final FeedItemContent itemContent = app.create(FeedItemContent.class);
+					itemContent.setValue(content.getValue());
 
-								itemContents.add(itemContent);
-							}
+					itemContents.add(itemContent);
+				}
 
-							//Get and add all enclosures
-							final List<SyndEnclosure> enclosures = entry.getEnclosures();
-							for (final SyndEnclosure enclosure : enclosures){
+				//Get and add all enclosures
+				final List<SyndEnclosure> enclosures = entry.getEnclosures();
+				for (final SyndEnclosure enclosure : enclosures){
 
-								final FeedItemEnclosure itemEnclosure = app.create(FeedItemEnclosure.class);
+					final FeedItemEnclosure itemEnclosure = app.create(FeedItemEnclosure.class);
 
-								itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "url"),             enclosure.getUrl());
-								itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "enclosureLength"), enclosure.getLength());
-								itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "enclosureType"),   enclosure.getType());
+					itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "url"),             enclosure.getUrl());
+					itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "enclosureLength"), enclosure.getLength());
+					itemEnclosure.setProperty(StructrApp.key(FeedItemEnclosure.class, "enclosureType"),   enclosure.getType());
 
-								itemEnclosures.add(itemEnclosure);
-							}
+					itemEnclosures.add(itemEnclosure);
+				}
 
-							item.setProperty(StructrApp.key(FeedItem.class, "contents"),   itemContents);
-							item.setProperty(StructrApp.key(FeedItem.class, "enclosures"), itemEnclosures);
+				if (!itemContents.isEmpty()) {
+					item.setProperty(StructrApp.key(FeedItem.class, "contents"),   itemContents);
+				}
 
-							newItems.add(item);
+				if (!itemEnclosures.isEmpty()) {
+					item.setProperty(StructrApp.key(FeedItem.class, "enclosures"), itemEnclosures);
+				}
 
-							logger.debug("Created new item: {} ({}) ", item.getProperty(FeedItem.name), item.getProperty(dateKey));
-						}
-					}
+				logger.debug("Created new item: {} ({}) ", item.getProperty(FeedItem.name), item.getProperty(dateKey));
+			}
+		}
+
+		thisFeed.setProperty(StructrApp.key(DataFeed.class, "etag"),               download.getEtag());
+		thisFeed.setProperty(StructrApp.key(DataFeed.class, "remoteLastModified"), download.getLastModified());
+		thisFeed.setProperty(StructrApp.key(DataFeed.class, "lastUpdated"),        new Date());
+	}
+
+	/**
+	 * Returns the subset of the given URLs for which a feed item exists.
+	 *
+	 * @param app
+	 * @param urls
+	 * @return the URLs of the existing feed items
+	 * @throws FrameworkException
+	 */
+	static Set<String> getExistingItemUrls(final App app, final List<String> urls) throws FrameworkException {
+
+		final PropertyKey<String> urlKey = StructrApp.key(FeedItem.class, "url");
+		final Set<String> existing       = new HashSet<>();
+		final int batchSize              = 100;
+
+		for (int i=0; i<urls.size(); i+=batchSize) {
 
-					thisFeed.setProperty(StructrApp.key(DataFeed.class, "items"),       newItems);
-					thisFeed.setProperty(StructrApp.key(DataFeed.class, "lastUpdated"), new Date());
+			final Query<FeedItem> query = app.nodeQuery(FeedItem.class).and();
+			boolean hasUrls             = false;
+
+			for (final String url : urls.subList(i, Math.min(urls.size(), i + batchSize))) {
+
+				if (url != null) {
+
+					query.or(urlKey, url);
+					hasUrls = true;
 				}
+			}
 
-			} catch (IllegalArgumentException | IOException | FeedException | FrameworkException ex) {
-				logger.error("Error while updating feed", ex);
+			if (hasUrls) {
+
+				for (final FeedItem item : query.getAsList()) {
+					existing.add(item.getUrl());
+				}
 			}
 		}
 
-		if (cleanUp) {
-			thisFeed.cleanUp();
-		}
+		return existing;
 	}
 }
@@ -20,14 +20,22 @@ package org.structr.feed;
 
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
+import org.structr.api.util.Iterables;
 import org.structr.web.entity.User;
 import org.structr.feed.entity.DataFeed;
 
@@ -142,4 +150,121 @@ public class TestFeeds extends StructrDataFeedsModuleTest {
 				.get("/RemoteDocument");
 
 	}
+
+	@Test
+	public void testConditionalUpdate() {
+
+		final AtomicReference<String> document = new AtomicReference<>(rss("v1", 3));
+		final AtomicInteger requests           = new AtomicInteger();
+		final AtomicInteger notModified        = new AtomicInteger();
+		HttpServer server                      = null;
+
+		try {
+
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+			server.createContext("/rss", exchange -> {
+
+				final String content = document.get();
+				final String etag    = "\"" + content.hashCode() + "\"";
+
+				requests.incrementAndGet();
+
+				if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+
+					notModified.incrementAndGet();
+					exchange.sendResponseHeaders(304, -1);
+
+				} else {
+
+					final byte[] data = content.getBytes(StandardCharsets.UTF_8);
+
+					exchange.getResponseHeaders().add("Content-Type", "application/rss+xml; charset=UTF-8");
+					exchange.getResponseHeaders().add("ETag", etag);
+					exchange.sendResponseHeaders(200, data.length);
+
+					try (final OutputStream os = exchange.getResponseBody()) {
+						os.write(data);
+					}
+				}
+
+				exchange.close();
+			});
+
+			server.start();
+
+			final String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/rss";
+			DataFeed feed    = null;
+
+			try (final Tx tx = app.tx()) {
+
+				feed = (DataFeed)app.create(StructrApp.getConfiguration().getNodeEntityClass("DataFeed"), new NodeAttribute<>(StructrApp.key(DataFeed.class, "url"), url));
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Invalid number of feed items", 3, Iterables.count(feed.getItems()));
+				assertEquals("Invalid etag", "\"" + document.get().hashCode() + "\"", feed.getEtag());
+
+				// unchanged feed, server must answer with 304
+				feed.updateFeed(false);
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Invalid number of requests", 2, requests.get());
+				assertEquals("Feed was not requested conditionally", 1, notModified.get());
+				assertEquals("Invalid number of feed items", 3, Iterables.count(feed.getItems()));
+
+				// changed feed with one new entry
+				document.set(rss("v2", 4));
+				feed.updateFeed(false);
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Invalid number of requests", 3, requests.get());
+				assertEquals("Feed items must not be duplicated", 4, Iterables.count(feed.getItems()));
+				assertEquals("Feed items must not be duplicated", 4, app.nodeQuery(StructrApp.getConfiguration().getNodeEntityClass("FeedItem")).getAsList().size());
+
+				tx.success();
+			}
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception");
+
+		} finally {
+
+			if (server != null) {
+				server.stop(0);
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private String rss(final String version, final int count) {
+
+		final StringBuilder buf = new StringBuilder();
+
+		buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		buf.append("<rss version=\"2.0\"><channel>");
+		buf.append("<title>Test</title><link>http://127.0.0.1/</link><description>Test feed ").append(version).append("</description>");
+
+		for (int i=0; i<count; i++) {
+
+			buf.append("<item><title>Item ").append(i).append("</title>");
+			buf.append("<link>http://127.0.0.1/items/").append(i).append("</link>");
+			buf.append("<description>Item ").append(i).append("</description></item>");
+		}
+
+		buf.append("</channel></rss>");
+
+		return buf.toString();
+	}
 }
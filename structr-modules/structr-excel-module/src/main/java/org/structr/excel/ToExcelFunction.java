@@ -20,18 +20,20 @@ package org.structr.excel;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.app.StructrApp;
@@ -41,12 +43,18 @@ import org.structr.core.property.PropertyKey;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.action.Function;
 import org.structr.schema.parser.DatePropertyParser;
+import org.structr.web.common.OutputTarget;
 
 public class ToExcelFunction extends Function<Object, Object> {
 
-	public static final String ERROR_MESSAGE_TO_EXCEL    = "Usage: ${to_excel(nodes, propertiesOrView[, includeHeader[, localizeHeader[, headerLocalizationDomain]]])}. Example: ${to_csv(find('Page'), 'ui')}";
-	public static final String ERROR_MESSAGE_TO_EXCEL_JS = "Usage: ${{Structr.to_excel(nodes, propertiesOrView[, includeHeader[, localizeHeader[, headerLocalizationDomain]]])}}. Example: ${{Structr.to_csv(Structr.find('Page'), 'ui'))}}";
+	public static final String ERROR_MESSAGE_TO_EXCEL    = "Usage: ${to_excel(nodes, propertiesOrView[, includeHeader[, localizeHeader[, headerLocalizationDomain[, target]]]])}. Example: ${to_excel(find('Page'), 'ui')}";
+	public static final String ERROR_MESSAGE_TO_EXCEL_JS = "Usage: ${{Structr.to_excel(nodes, propertiesOrView[, includeHeader[, localizeHeader[, headerLocalizationDomain[, target]]]])}}. Example: ${{Structr.to_excel(Structr.find('Page'), 'ui'))}}";
 
+	/**
+	 * Number of rows kept in memory while writing, older rows are flushed
+	 * to a temporary file.
+	 */
+	public static final int ROW_WINDOW                   = 100;
 
 	@Override
 	public String getName() {
@@ -58,31 +66,34 @@ public class ToExcelFunction extends Function<Object, Object> {
 
 		try {
 
-			if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 2, 8)) {
+			if (arrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 2, 6)) {
 
-				if ( !(sources[0] instanceof List) ) {
+				if ( !(sources[0] instanceof Iterable) ) {
 					logParameterError(caller, sources, ctx.isJavaScriptContext());
 					return "ERROR: First parameter must be a collection! ".concat(usage(ctx.isJavaScriptContext()));
 				}
 
-				final List<GraphObject> nodes           = (List)sources[0];
+				final Iterable nodes                    = (Iterable)sources[0];
 				boolean includeHeader                   = true;
 				boolean localizeHeader                  = false;
 				String headerLocalizationDomain         = null;
 				String propertyView                     = null;
 				List<String> properties                 = null;
+				Object target                           = null;
 
-				// we are using size() instead of isEmpty() because NativeArray.isEmpty() always returns true
-				if (nodes.size() == 0) {
-					logger.warn("to_csv(): Can not create Excel if no nodes are given!");
+				// we are using size() instead of isEmpty() because NativeArray.isEmpty() always returns true,
+				// other iterables (e.g. lazily evaluated query results) must only be iterated once
+				if (nodes instanceof Collection && ((Collection)nodes).size() == 0) {
+					logger.warn("to_excel(): Can not create Excel if no nodes are given!");
 					logParameterError(caller, sources, ctx.isJavaScriptContext());
 					return "";
 				}
 
 				switch (sources.length) {
-					case 5: headerLocalizationDomain = (String)sources[7];
-					case 4: localizeHeader = (Boolean)sources[6];
-					case 3: includeHeader = (Boolean)sources[5];
+					case 6: target = sources[5];
+					case 5: headerLocalizationDomain = StringUtils.defaultIfBlank((String)sources[4], null);
+					case 4: localizeHeader = (Boolean)sources[3];
+					case 3: includeHeader = (Boolean)sources[2];
 					case 2: {
 						if (sources[1] instanceof String) {
 							// view is given
@@ -106,11 +117,25 @@ public class ToExcelFunction extends Function<Object, Object> {
 					}
 				}
 
+				if (target != null) {
+
+					// stream the workbook into a file
+					try (final OutputTarget output = OutputTarget.create(ctx.getSecurityContext(), target)) {
+
+						writeExcel(nodes, output.getOutputStream(), propertyView, properties, includeHeader, localizeHeader, headerLocalizationDomain, ctx.getLocale());
+
+						return output.getResult();
+
+					} catch (IOException ioex) {
+						logger.warn("to_excel(): Exception occurred", ioex);
+						return "";
+					}
+				}
+
 				try {
 
-					final Workbook wb = writeExcel(nodes, propertyView, properties, includeHeader, localizeHeader, headerLocalizationDomain, ctx.getLocale());
 					final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-					wb.write(baos);
+					writeExcel(nodes, baos, propertyView, properties, includeHeader, localizeHeader, headerLocalizationDomain, ctx.getLocale());
 					return baos.toString("ISO-8859-1");
 
 				} catch (Throwable t) {
@@ -124,7 +149,7 @@ public class ToExcelFunction extends Function<Object, Object> {
 				return usage(ctx.isJavaScriptContext());
 			}
 
-		} catch (final IllegalArgumentException e) {
+		} catch (final IllegalArgumentException | ClassCastException e) {
 
 			logParameterError(caller, sources, ctx.isJavaScriptContext());
 			return usage(ctx.isJavaScriptContext());
@@ -142,31 +167,102 @@ public class ToExcelFunction extends Function<Object, Object> {
 		return "Creates Excel from given data";
 	}
 
-	public Workbook writeExcel(final List list, final String propertyView, final List<String> properties, final boolean includeHeader, final boolean localizeHeader, final String headerLocalizationDomain, final Locale locale) throws IOException {
+	/**
+	 * Writes the given objects as an Excel workbook to the given output
+	 * stream. The objects are consumed in a single pass and only a window
+	 * of {@link #ROW_WINDOW} rows is kept in memory, so the input can be
+	 * a lazily evaluated query result.
+	 *
+	 * @param list the objects to export
+	 * @param out the output stream, will not be closed
+	 * @param propertyView
+	 * @param properties
+	 * @param includeHeader
+	 * @param localizeHeader
+	 * @param headerLocalizationDomain
+	 * @param locale
+	 *
+	 * @throws IOException
+	 */
+	public void writeExcel(final Iterable list, final OutputStream out, final String propertyView, final List<String> properties, final boolean includeHeader, final boolean localizeHeader, final String headerLocalizationDomain, final Locale locale) throws IOException {
+
+		final SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+
+		try {
+
+			workbook.setCompressTempFiles(true);
+
+			writeSheet(workbook.createSheet(), list, propertyView, properties, includeHeader, localizeHeader, headerLocalizationDomain, locale);
+
+			workbook.write(out);
+			out.flush();
+
+		} finally {
+
+			// remove temporary files
+			workbook.dispose();
+			workbook.close();
+		}
+	}
+
+	public String escapeForExcel(final Object value) {
+		String result;
+
+		if (value == null) {
+
+			result = "";
+
+		} else if (value instanceof String[]) {
+
+			List<String> quotedStrings = Arrays.asList((String[])value);
+			result = quotedStrings.toString();
 
-		final Workbook workbook = new XSSFWorkbook();
-		final XSSFSheet sheet = (XSSFSheet) workbook.createSheet();
+		} else if (value instanceof Collection) {
 
-		int rowCount = 0;
-		int cellCount = 0;
+			// Special handling for collections of nodes
+			ArrayList<String> quotedStrings = new ArrayList();
+			for (final Object obj : (Collection)value) {
+				quotedStrings.add(obj.toString());
+			}
 
-		XSSFRow currentRow = null;
-		XSSFCell cell = null;
+			result = quotedStrings.toString();
+
+		} else if (value instanceof Date) {
+
+			result = DatePropertyParser.format((Date) value, DateProperty.getDefaultFormat());
+
+		} else {
+
+			result = value.toString();
+
+		}
+
+		return result;
+	}
+
+	// ----- private methods -----
+	private void writeSheet(final Sheet sheet, final Iterable list, final String propertyView, final List<String> properties, final boolean includeHeader, final boolean localizeHeader, final String headerLocalizationDomain, final Locale locale) {
+
+		final Iterator iterator = list.iterator();
+		boolean hasFirst        = iterator.hasNext();
+		final Object first      = hasFirst ? iterator.next() : null;
+		int rowCount            = 0;
+		int cellCount           = 0;
+		Row currentRow          = null;
+		Cell cell               = null;
 
 		if (includeHeader) {
 
-			currentRow = (XSSFRow)sheet.createRow(rowCount++);
+			currentRow = sheet.createRow(rowCount++);
 			cellCount = 0;
 
 			if (propertyView != null) {
 
-				final Object obj = list.get(0);
-
-				if (obj instanceof GraphObject) {
+				if (first instanceof GraphObject) {
 
-					for (PropertyKey key : ((GraphObject)obj).getPropertyKeys(propertyView)) {
+					for (PropertyKey key : ((GraphObject)first).getPropertyKeys(propertyView)) {
 
-						cell = (XSSFCell)currentRow.createCell(cellCount++);
+						cell = currentRow.createCell(cellCount++);
 
 						String value = key.dbName();
 						if (localizeHeader) {
@@ -181,7 +277,7 @@ public class ToExcelFunction extends Function<Object, Object> {
 					}
 
 				} else {
-					cell = (XSSFCell)currentRow.createCell(cellCount++);
+					cell = currentRow.createCell(cellCount++);
 					cell.setCellValue("Error: Object is not of type GraphObject, can not determine properties of view for header row");
 				}
 
@@ -189,7 +285,7 @@ public class ToExcelFunction extends Function<Object, Object> {
 
 				for (final String colName : properties) {
 
-					cell = (XSSFCell)currentRow.createCell(cellCount++);
+					cell = currentRow.createCell(cellCount++);
 					String value = colName;
 					if (localizeHeader) {
 						try {
@@ -204,11 +300,13 @@ public class ToExcelFunction extends Function<Object, Object> {
 			}
 		}
 
+		while (hasFirst || iterator.hasNext()) {
 
-		for (final Object obj : list) {
+			final Object obj = hasFirst ? first : iterator.next();
 
-			currentRow = (XSSFRow)sheet.createRow(rowCount++);
-			cellCount = 0;
+			hasFirst   = false;
+			currentRow = sheet.createRow(rowCount++);
+			cellCount  = 0;
 
 			if (propertyView != null) {
 
@@ -218,12 +316,12 @@ public class ToExcelFunction extends Function<Object, Object> {
 
 						final Object value = ((GraphObject)obj).getProperty(key);
 
-						cell = (XSSFCell)currentRow.createCell(cellCount++);
+						cell = currentRow.createCell(cellCount++);
 						cell.setCellValue(escapeForExcel(value));
 					}
 
 				} else {
-					cell = (XSSFCell)currentRow.createCell(cellCount++);
+					cell = currentRow.createCell(cellCount++);
 					cell.setCellValue("Error: Object is not of type GraphObject, can not determine properties of object");
 				}
 
@@ -236,7 +334,7 @@ public class ToExcelFunction extends Function<Object, Object> {
 					for (final String colName : properties) {
 						final PropertyKey key = StructrApp.key(obj.getClass(), colName);
 						final Object value = castedObj.getProperty(key);
-						cell = (XSSFCell)currentRow.createCell(cellCount++);
+						cell = currentRow.createCell(cellCount++);
 						cell.setCellValue(escapeForExcel(value));
 					}
 
@@ -246,49 +344,11 @@ public class ToExcelFunction extends Function<Object, Object> {
 
 					for (final String colName : properties) {
 						final Object value = castedObj.get(colName);
-						cell = (XSSFCell)currentRow.createCell(cellCount++);
+						cell = currentRow.createCell(cellCount++);
 						cell.setCellValue(escapeForExcel(value));
 					}
 				}
 			}
 		}
-
-		return workbook;
-	}
-
-	public String escapeForExcel(final Object value) {
-
-		String result;
-
-		if (value == null) {
-
-			result = "";
-
-		} else if (value instanceof String[]) {
-
-			List<String> quotedStrings = Arrays.asList((String[])value);
-			result = quotedStrings.toString();
-
-		} else if (value instanceof Collection) {
-
-			// Special handling for collections of nodes
-			ArrayList<String> quotedStrings = new ArrayList();
-			for (final Object obj : (Collection)value) {
-				quotedStrings.add(obj.toString());
-			}
-
-			result = quotedStrings.toString();
-
-		} else if (value instanceof Date) {
-
-			result = DatePropertyParser.format((Date) value, DateProperty.getDefaultFormat());
-
-		} else {
-
-			result = value.toString();
-
-		}
-
-		return result;
 	}
 }
@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.messaging.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.error.FrameworkException;
+import org.structr.messaging.engine.entities.MessageClient;
+
+/**
+ * Delivers the messages received by a message client to its subscribers
+ * in micro-batches.
+ *
+ * Received messages are put into a bounded queue per client. A worker
+ * thread collects up to messaging.batch.size messages, or as many as
+ * arrive within messaging.batch.timeout milliseconds, and delivers them
+ * in a single transaction. If the queue is full, the receiving thread
+ * blocks, which passes the back pressure on to the broker connection.
+ *
+ * If the delivery of a batch fails, all changes of the batch are rolled
+ * back, so all of its messages are retried one by one in separate
+ * transactions. Callbacks that ran before the batch failed are invoked
+ * again in this case, only side effects outside of the database (like
+ * HTTP requests) happen twice.
+ */
+public class MessageDispatcher implements Runnable {
+
+	private static final Logger logger                              = LoggerFactory.getLogger(MessageDispatcher.class.getName());
+	private static final Map<String, MessageDispatcher> dispatchers = new ConcurrentHashMap<>();
+	private static final int QUEUE_SIZE                             = 10000;
+
+	private final BlockingQueue<ReceivedMessage> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+	private final LongAdder batches                    = new LongAdder();
+	private final LongAdder messages                   = new LongAdder();
+	private final LongAdder retries                    = new LongAdder();
+	private final LongAdder failures                   = new LongAdder();
+	private volatile MessageClient client              = null;
+	private volatile boolean running                   = true;
+	private String uuid                                = null;
+
+	private MessageDispatcher(final MessageClient client) {
+
+		this.client = client;
+		this.uuid   = client.getUuid();
+	}
+
+	/**
+	 * Queues the given message for delivery to the subscribers of the
+	 * given client.
+	 *
+	 * @param client the receiving client
+	 * @param topic the topic of the message
+	 * @param message the message
+	 *
+	 * @throws FrameworkException if the calling thread is interrupted
+	 */
+	public static void dispatch(final MessageClient client, final String topic, final String message) throws FrameworkException {
+
+		final MessageDispatcher dispatcher = getDispatcher(client);
+
+		try {
+
+			dispatcher.queue.put(new ReceivedMessage(topic, message));
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+			throw new FrameworkException(422, "Interrupted while dispatching message.");
+		}
+	}
+
+	/**
+	 * Stops the dispatcher of the client with the given UUID after all
+	 * queued messages were delivered.
+	 *
+	 * @param uuid the UUID of the client
+	 */
+	public static void shutdown(final String uuid) {
+
+		if (uuid != null) {
+
+			final MessageDispatcher dispatcher = dispatchers.remove(uuid);
+			if (dispatcher != null) {
+
+				dispatcher.running = false;
+			}
+		}
+	}
+
+	/**
+	 * Returns the delivery statistics of the client with the given UUID,
+	 * or null if there is no active dispatcher for this client.
+	 *
+	 * @param uuid the UUID of the client
+	 *
+	 * @return the number of delivered batches, delivered messages, retried
+	 * messages and failed messages
+	 */
+	public static Map<String, Object> getStatistics(final String uuid) {
+
+		final MessageDispatcher dispatcher = uuid != null ? dispatchers.get(uuid) : null;
+		if (dispatcher != null) {
+
+			final Map<String, Object> statistics = new LinkedHashMap<>();
+
+			statistics.put("queued",   dispatcher.queue.size());
+			statistics.put("batches",  dispatcher.batches.sum());
+			statistics.put("messages", dispatcher.messages.sum());
+			statistics.put("retries",  dispatcher.retries.sum());
+			statistics.put("failures", dispatcher.failures.sum());
+
+			return statistics;
+		}
+
+		return null;
+	}
+
+	@Override
+	public void run() {
+
+		final List<ReceivedMessage> batch = new ArrayList<>();
+
+		while (running || !queue.isEmpty()) {
+
+			try {
+
+				final ReceivedMessage first = queue.poll(1000L, TimeUnit.MILLISECONDS);
+				if (first != null) {
+
+					final int batchSize = Math.max(1, Settings.MessagingBatchSize.getValue());
+					final long deadline = System.currentTimeMillis() + Settings.MessagingBatchTimeout.getValue();
+
+					batch.add(first);
+
+					// collect more messages until the batch is full or the timeout is reached
+					while (batch.size() < batchSize) {
+
+						final long remaining = deadline - System.currentTimeMillis();
+						if (remaining <= 0) {
+							break;
+						}
+
+						final ReceivedMessage next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+						if (next == null) {
+							break;
+						}
+
+						batch.add(next);
+					}
+
+					deliver(batch);
+				}
+
+			} catch (InterruptedException iex) {
+
+				break;
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to deliver messages of client {}: {}", uuid, t.getMessage());
+
+			} finally {
+
+				batch.clear();
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private void deliver(final List<ReceivedMessage> batch) {
+
+		try {
+
+			MessageClient.deliverMessages(client, batch);
+
+			batches.increment();
+			messages.add(batch.size());
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to deliver batch of {} messages of client {}, retrying messages separately: {}", batch.size(), uuid, t.getMessage());
+
+			// the transaction of the batch was rolled back, so all messages are delivered
+			// again, separately so a single faulty message does not affect the others
+			for (final ReceivedMessage message : batch) {
+
+				retries.increment();
+
+				try {
+
+					MessageClient.deliverMessages(client, Collections.singletonList(message));
+
+					messages.increment();
+
+				} catch (Throwable ex) {
+
+					failures.increment();
+					logger.warn("Unable to deliver message of client {} on topic {}: {}", uuid, message.getTopic(), ex.getMessage());
+				}
+			}
+		}
+	}
+
+	private static MessageDispatcher getDispatcher(final MessageClient client) {
+
+		final String uuid = client.getUuid();
+
+		MessageDispatcher dispatcher = dispatchers.get(uuid);
+		if (dispatcher == null) {
+
+			synchronized (dispatchers) {
+
+				dispatcher = dispatchers.get(uuid);
+				if (dispatcher == null) {
+
+					dispatcher = new MessageDispatcher(client);
+					dispatchers.put(uuid, dispatcher);
+
+					final Thread thread = new Thread(dispatcher, "MessageDispatcher-" + uuid);
+
+					thread.setDaemon(true);
+					thread.start();
+				}
+			}
+		}
+
+		// always use the most recent instance of the client
+		dispatcher.client = client;
+
+		return dispatcher;
+	}
+
+	// ----- nested classes -----
+	public static class ReceivedMessage {
+
+		private String message = null;
+		private String topic   = null;
+
+		public ReceivedMessage(final String topic, final String message) {
+
+			this.message = message;
+			this.topic   = topic;
+		}
+
+		public String getTopic() {
+			return topic;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+	}
+}
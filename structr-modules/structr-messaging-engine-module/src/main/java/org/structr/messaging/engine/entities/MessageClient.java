@@ -25,13 +25,16 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Relation;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
+import org.structr.messaging.engine.MessageDispatcher.ReceivedMessage;
 import org.structr.rest.RestMethodResult;
 import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 
 import java.net.URI;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -85,30 +88,52 @@ public interface MessageClient extends NodeInterface {
 
     static RestMethodResult sendMessage(MessageClient thisClient, final String topic, final String message) throws FrameworkException {
 
+        deliverMessages(thisClient, Collections.singletonList(new ReceivedMessage(topic, message)));
+
+        return new RestMethodResult(200);
+    }
+
+    /**
+     * Delivers the given messages to the matching subscribers of the given
+     * client in a single transaction.
+     *
+     * @param thisClient the receiving client
+     * @param messages the messages to deliver
+     * @throws FrameworkException
+     */
+    static void deliverMessages(MessageClient thisClient, final List<ReceivedMessage> messages) throws FrameworkException {
+
         final App app = StructrApp.getInstance();
         try (final Tx tx = app.tx()) {
 
             List<MessageSubscriber> subscribers = thisClient.getSubscribers();
             if (subscribers != null) {
-                subscribers.forEach(sub -> {
-					String subTopic = sub.getProperty(StructrApp.key(MessageSubscriber.class,"topic"));
-                    if ( subTopic != null && (subTopic.equals(topic) || subTopic.equals("*"))) {
-                        Map<String, Object> params = new HashMap<>();
-                        params.put("topic", topic);
-                        params.put("message", message);
-                        try {
-                            sub.invokeMethod("onMessage", params, false);
-                        } catch (FrameworkException e) {
-                            logger.warn("Could not invoke 'onMessage' method on MessageSubscriber: " + e.getMessage());
+
+                // resolve the topics of the subscribers only once per batch
+                final Map<MessageSubscriber, String> topics = new LinkedHashMap<>();
+                subscribers.forEach(sub -> topics.put(sub, sub.getProperty(StructrApp.key(MessageSubscriber.class,"topic"))));
+
+                for (final ReceivedMessage received : messages) {
+
+                    final String topic = received.getTopic();
+
+                    topics.forEach((sub, subTopic) -> {
+                        if ( subTopic != null && (subTopic.equals(topic) || subTopic.equals("*"))) {
+                            Map<String, Object> params = new HashMap<>();
+                            params.put("topic", topic);
+                            params.put("message", received.getMessage());
+                            try {
+                                sub.invokeMethod("onMessage", params, false);
+                            } catch (FrameworkException e) {
+                                logger.warn("Could not invoke 'onMessage' method on MessageSubscriber: " + e.getMessage());
+                            }
                         }
-                    }
-                });
+                    });
+                }
             }
 
             tx.success();
         }
-
-        return new RestMethodResult(200);
     }
 
     static RestMethodResult subscribeTopic(MessageClient client, final String topic) throws FrameworkException {
@@ -39,6 +39,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.graph.ModificationQueue;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyMap;
+import org.structr.messaging.engine.MessageDispatcher;
 import org.structr.messaging.engine.entities.MessageClient;
 import org.structr.messaging.engine.entities.MessageSubscriber;
 import org.structr.rest.RestMethodResult;
@@ -140,6 +141,7 @@ public interface KafkaClient extends MessageClient {
 
 	static void onDeletion(final KafkaClient thisClient, final SecurityContext securityContext, final ErrorBuffer errorBuffer, final PropertyMap properties) throws FrameworkException {
 		close(thisClient);
+		MessageDispatcher.shutdown(properties.get(id));
 	}
 
 
@@ -152,7 +154,12 @@ public interface KafkaClient extends MessageClient {
 			return new RestMethodResult(422);
 		}
 		if(getProducer(thisClient) != null) {
-			getProducer(thisClient).send(new ProducerRecord<>(topic, message));
+			// asynchronous, the producer collects records into batches per partition
+			getProducer(thisClient).send(new ProducerRecord<>(topic, message), (metadata, exception) -> {
+				if (exception != null) {
+					logger.warn("Could not send message to topic {}: {}", topic, exception.getMessage());
+				}
+			});
 		}
 
 		return new RestMethodResult(200);
@@ -236,8 +243,9 @@ public interface KafkaClient extends MessageClient {
 		if(clazz == KafkaProducer.class) {
 			props.put("acks", "all");
 			props.put("retries", 0);
-			props.put("batch.size", 16384);
-			props.put("linger.ms", 1);
+			props.put("batch.size", 65536);
+			props.put("linger.ms", 5);
+			props.put("compression.type", "lz4");
 			props.put("buffer.memory", 33554432);
 			props.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
 			props.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
@@ -277,7 +285,7 @@ public interface KafkaClient extends MessageClient {
 	}
 
 	static void forwardReceivedMessage(KafkaClient thisClient, String topic, String message) throws FrameworkException {
-		MessageClient.sendMessage(thisClient, topic, message);
+		MessageDispatcher.dispatch(thisClient, topic, message);
 	}
 
 	class ConsumerWorker implements Runnable {
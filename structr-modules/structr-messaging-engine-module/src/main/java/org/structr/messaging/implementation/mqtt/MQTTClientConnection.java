@@ -18,33 +18,52 @@
  */
 package org.structr.messaging.implementation.mqtt;
 
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 
+/**
+ * Connection to an MQTT broker.
+ *
+ * Messages are published asynchronously. The number of messages that are
+ * not yet acknowledged by the broker is limited by the setting
+ * messaging.publish.maxinflight (at most 10, the fixed limit of the MQTT
+ * client library), callers block when the limit is reached.
+ */
 public class MQTTClientConnection implements MqttCallback {
 	private MemoryPersistence persistence = new MemoryPersistence();
 	private MqttConnectOptions connOpts;
-	private MqttClient client;
+	private MqttAsyncClient client;
+	private Semaphore inFlight;
 	private MQTTInfo info;
 
 	private static final Logger	logger = LoggerFactory.getLogger(MQTTClientConnection.class.getName());
+	private static final long PUBLISH_TIMEOUT = 30;
+
+	// Paho 1.0.2 rejects publishes beyond 10 unacknowledged messages and does not allow to raise the limit
+	private static final int MAX_INFLIGHT     = 10;
 
 	public MQTTClientConnection(MQTTInfo info) throws MqttException{
 
 		this.info = info;
 		String broker = info.getProtocol() + info.getUrl() + ":" + info.getPort();
-		client = new MqttClient(broker, info.getUuid(), persistence);
+		client = new MqttAsyncClient(broker, info.getUuid(), persistence);
 		client.setCallback(this);
 		connOpts = new MqttConnectOptions();
 		connOpts.setCleanSession(true);
+		inFlight = new Semaphore(Math.min(MAX_INFLIGHT, Math.max(1, Settings.MessagingMaxInFlight.getValue())));
 	}
 
 	public void connect() throws FrameworkException {
@@ -53,7 +72,7 @@ public class MQTTClientConnection implements MqttCallback {
 
 			if(!client.isConnected()){
 
-				client.connect(connOpts);
+				client.connect(connOpts).waitForCompletion();
 				info.connectionStatusCallback(true);
 			}
 		} catch (MqttException ex) {
@@ -68,7 +87,7 @@ public class MQTTClientConnection implements MqttCallback {
 
 			if(client.isConnected()){
 
-				client.disconnect();
+				client.disconnect().waitForCompletion();
 				info.connectionStatusCallback(false);
 			}
 		} catch (MqttException ex) {
@@ -92,11 +111,43 @@ public class MQTTClientConnection implements MqttCallback {
 
 				msg.setQos(info.getQoS());
 
-				client.publish(topic, msg);
+				// wait for a free slot in the in-flight window
+				if (!inFlight.tryAcquire(PUBLISH_TIMEOUT, TimeUnit.SECONDS)) {
+
+					throw new FrameworkException(422, "Timeout while waiting for acknowledgement of previous messages.");
+				}
+
+				try {
+
+					client.publish(topic, msg, null, new IMqttActionListener() {
+
+						@Override
+						public void onSuccess(IMqttToken token) {
+							inFlight.release();
+						}
+
+						@Override
+						public void onFailure(IMqttToken token, Throwable exception) {
+
+							inFlight.release();
+							logger.warn("Could not deliver message to topic {}: {}", topic, exception != null ? exception.getMessage() : "unknown error");
+						}
+					});
+
+				} catch (MqttException ex) {
+
+					inFlight.release();
+					throw ex;
+				}
 			}
 		} catch (MqttException ex) {
 
 			throw new FrameworkException(422, "Error while sending message.");
+
+		} catch (InterruptedException ex) {
+
+			Thread.currentThread().interrupt();
+			throw new FrameworkException(422, "Interrupted while sending message.");
 		}
 
 	}
@@ -107,7 +158,7 @@ public class MQTTClientConnection implements MqttCallback {
 
 			if(client.isConnected()){
 
-				client.subscribe(topic, info.getQoS());
+				client.subscribe(topic, info.getQoS()).waitForCompletion();
 
 			}
 		} catch (MqttException ex) {
@@ -123,7 +174,7 @@ public class MQTTClientConnection implements MqttCallback {
 
 		if(client.isConnected()){
 
-			client.unsubscribe(topic);
+			client.unsubscribe(topic).waitForCompletion();
 		}
 
 		} catch (MqttException ex) {
@@ -136,8 +187,14 @@ public class MQTTClientConnection implements MqttCallback {
 	@Override
 	public void messageArrived(String topic, MqttMessage msg) throws Exception {
 
-		Thread workerThread = new Thread(new CallbackWorker(info, topic, msg.toString()));
-		workerThread.start();
+		try {
+
+			// queues the message for batched delivery, blocks if the queue is full
+			info.messageCallback(topic, msg.toString());
+
+		} catch (FrameworkException e) {
+			logger.error("Error during MQTT message callback: " + e.getMessage());
+		}
 	}
 
 	@Override
@@ -165,28 +222,4 @@ public class MQTTClientConnection implements MqttCallback {
 	public void deliveryComplete(IMqttDeliveryToken token) {
 	}
 
-	private class CallbackWorker implements Runnable {
-		private final MQTTInfo info;
-		private final String topic;
-		private final String message;
-
-		public CallbackWorker(MQTTInfo info, String topic, String message){
-			this.info = info;
-			this.topic = topic;
-			this.message = message;
-		}
-
-		@Override
-		public void run() {
-
-			try {
-				info.messageCallback(topic, message);
-			} catch (FrameworkException e) {
-				logger.error("Error during MQTT message callback: " + e.getMessage());
-			}
-
-		}
-
-	}
-
 }
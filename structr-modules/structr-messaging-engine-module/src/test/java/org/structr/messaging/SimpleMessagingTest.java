@@ -19,6 +19,7 @@
 package org.structr.messaging;
 
 import org.junit.Test;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.RelationshipType;
 import org.structr.common.error.FrameworkException;
@@ -26,6 +27,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.script.Scripting;
+import org.structr.messaging.engine.MessageDispatcher;
 import org.structr.messaging.engine.entities.MessageClient;
 import org.structr.messaging.engine.entities.MessageSubscriber;
 import org.structr.schema.action.ActionContext;
@@ -33,8 +35,10 @@ import org.structr.schema.action.Actions;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class SimpleMessagingTest extends StructrMessagingEngineModuleTest {
@@ -65,4 +69,78 @@ public class SimpleMessagingTest extends StructrMessagingEngineModuleTest {
 
 	}
 
+	@Test
+	public void testBatchedDelivery() {
+
+		MessageClient client1 = null;
+		MessageSubscriber sub = null;
+		String uuid           = null;
+
+		Settings.MessagingBatchSize.setValue(50);
+
+		try(final Tx tx = app.tx()) {
+
+			client1 = app.create(MessageClient.class, "client1");
+			sub     = app.create(MessageSubscriber.class, "sub");
+
+			List<MessageSubscriber> subList = new ArrayList<>();
+			subList.add(sub);
+
+			client1.setProperty(StructrApp.key(MessageClient.class, "subscribers"), subList);
+			sub.setProperty(StructrApp.key(MessageSubscriber.class, "topic"), "test");
+			sub.setProperty(StructrApp.key(MessageSubscriber.class, "callback"), "set(this, 'name', concat(this.name, retrieve('message')))");
+			sub.setProperty(MessageSubscriber.name, "received:");
+
+			uuid = client1.getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+			fail("Exception during test: " + ex.getMessage());
+		}
+
+		try {
+
+			final StringBuilder expected = new StringBuilder("received:");
+
+			for (int i=0; i<500; i++) {
+
+				MessageDispatcher.dispatch(client1, "test", "[" + i + "]");
+				expected.append("[").append(i).append("]");
+			}
+
+			// messages are delivered asynchronously
+			Map<String, Object> statistics = MessageDispatcher.getStatistics(uuid);
+
+			for (int i=0; i<100 && !Long.valueOf(500L).equals(statistics.get("messages")); i++) {
+
+				Thread.sleep(100);
+
+				statistics = MessageDispatcher.getStatistics(uuid);
+			}
+
+			final long batches = (Long)statistics.get("batches");
+
+			assertEquals(500L, statistics.get("messages"));
+			assertEquals(0L, statistics.get("retries"));
+			assertTrue("Messages must be delivered in batches, got " + batches + " batches", batches < 500L);
+			assertTrue("Batches must not exceed the batch size, got " + batches + " batches", batches >= 10L);
+
+			// all messages are delivered exactly once, in order
+			try(final Tx tx = app.tx()) {
+
+				assertEquals(expected.toString(), sub.getName());
+				tx.success();
+			}
+
+		} catch (FrameworkException | InterruptedException ex) {
+			fail("Exception during test: " + ex.getMessage());
+
+		} finally {
+
+			MessageDispatcher.shutdown(uuid);
+			Settings.MessagingBatchSize.setValue(100);
+		}
+	}
+
 }
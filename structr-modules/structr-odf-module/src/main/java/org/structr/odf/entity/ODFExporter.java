@@ -35,6 +35,7 @@ import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.transform.VirtualType;
+import org.structr.web.common.ContentStore;
 import org.structr.web.common.FileHelper;
 import org.structr.web.entity.File;
 import org.structr.web.entity.Image;
@@ -196,6 +197,9 @@ public interface ODFExporter extends NodeInterface {
 
 			}
 			pkg.insert(new URI(result.getFileOnDisk().getAbsolutePath()), ODF_IMAGE_DIRECTORY + imageName, contentType);
+			// copy-on-write if the output shares its content with other files
+			ContentStore.prepareWrite(output, output.getFileOnDisk(), true);
+
 			pkg.save(output.getFileOnDisk().getAbsolutePath());
 			pkg.close();
 			doc.close();
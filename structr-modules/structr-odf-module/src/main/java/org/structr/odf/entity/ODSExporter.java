@@ -44,6 +44,7 @@ import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.transform.VirtualType;
+import org.structr.web.common.ContentStore;
 import org.structr.web.entity.File;
 
 /**
@@ -185,6 +186,9 @@ public interface ODSExporter extends ODFExporter {
 
 			}
 
+			// copy-on-write if the output shares its content with other files
+			ContentStore.prepareWrite(output, output.getFileOnDisk(), true);
+
 			spreadsheet.save(output.getFileOnDisk().getAbsolutePath());
 			spreadsheet.close();
 
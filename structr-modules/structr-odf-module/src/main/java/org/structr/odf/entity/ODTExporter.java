@@ -38,6 +38,7 @@ import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.transform.VirtualType;
+import org.structr.web.common.ContentStore;
 import org.structr.web.entity.File;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -129,6 +130,9 @@ public interface ODTExporter extends ODFExporter {
 
 			}
 
+			// copy-on-write if the output shares its content with other files
+			ContentStore.prepareWrite(output, output.getFileOnDisk(), true);
+
 			text.save(output.getFileOnDisk().getAbsolutePath());
 			text.close();
 
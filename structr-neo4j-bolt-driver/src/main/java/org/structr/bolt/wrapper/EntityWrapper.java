@@ -18,12 +18,8 @@
  */
 package org.structr.bolt.wrapper;
 
-import java.lang.reflect.Array;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 import org.neo4j.driver.v1.exceptions.NoSuchRecordException;
 import org.neo4j.driver.v1.types.Entity;
 import org.slf4j.Logger;
@@ -40,14 +36,14 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 	private static final Logger logger = LoggerFactory.getLogger(EntityWrapper.class.getName());
 
-	protected final Map<String, Object> data = new ConcurrentHashMap<>();
-	protected BoltDatabaseService db         = null;
-	protected boolean stale                  = false;
-	protected long id                        = -1L;
+	protected volatile PropertyData data = PropertyData.empty();
+	protected BoltDatabaseService db     = null;
+	protected boolean stale              = false;
+	protected long id                    = -1L;
 
 	public EntityWrapper(final BoltDatabaseService db, final T entity) {
 
-		this.data.putAll(entity.asMap());
+		this.data = PropertyData.of(entity.asMap());
 		this.id   = entity.id();
 		this.db   = db;
 	}
@@ -79,30 +75,7 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		final Object value = data.get(name);
-		if (value instanceof List) {
-
-			try {
-
-				final List list = (List)value;
-				if (!list.isEmpty()) {
-
-					final Object firstElement = ((List)value).get(0);
-					final Object[] arr        = (Object[])Array.newInstance(firstElement.getClass(), 0);
-
-					// convert list to array
-					return ((List)value).toArray(arr);
-				}
-
-				// empty array => return null?
-				return null;
-
-			} catch (Throwable t) {
-				logger.warn("", t);
-			}
-		}
-
-		return value;
+		return data.get(name);
 	}
 
 	@Override
@@ -183,7 +156,7 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		tx.set(query, map);
 
 		// remove key from data
-		data.remove(key);
+		update(key, null);
 
 		tx.modified(this);
 	}
@@ -193,7 +166,7 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		assertNotStale();
 
-		return data.keySet();
+		return data.keys();
 	}
 
 	@Override
@@ -244,8 +217,7 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 			try {
 
 				// update data
-				data.clear();
-				update(tx.getEntity(getQueryPrefix() + " WHERE ID(n) = {id} RETURN n", map).asMap());
+				data = PropertyData.of(tx.getEntity(getQueryPrefix() + " WHERE ID(n) = {id} RETURN n", map).asMap());
 
 			} catch (NoSuchRecordException nex) {
 				throw new NotFoundException(nex);
@@ -256,36 +228,15 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 	}
 
 	// ----- private methods -----
-	private void update(final Map<String, Object> values) {
-
-		for (final Entry<String, Object> entry : values.entrySet()) {
-
-			update(entry.getKey(), entry.getValue());
-		}
+	private synchronized void update(final Map<String, Object> values) {
+		data = data.withAll(values);
 	}
 
-	private void update(final String key, final Object value) {
-
-		if (value != null) {
-
-			data.put(key, value);
-
-		} else {
-
-			data.remove(key);
-		}
+	private synchronized void update(final String key, final Object value) {
+		data = data.with(key, value);
 	}
 
 	private boolean differentValue(final String key, final Object value) {
-
-		if (value == null && !data.containsKey(key)) {
-			return false;
-		}
-
-		if (value != null && value.equals(data.get(key))) {
-			return false;
-		}
-
-		return true;
+		return data.differs(key, value);
 	}
 }
@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt.wrapper;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact, immutable property storage for cached entities.
+ *
+ * The property values are stored in a flat array, the slot of each key is
+ * determined by a shared {@link PropertyLayout}. Array properties (which
+ * the driver returns as lists) are converted once and stored as arrays,
+ * the getter returns a copy. All modifications return a new instance, so
+ * a reference to an instance can be read without locking.
+ */
+final class PropertyData {
+
+	private static final Logger logger      = LoggerFactory.getLogger(PropertyData.class.getName());
+	private static final Object EMPTY_ARRAY = new Object();
+	private static final PropertyData EMPTY = new PropertyData(PropertyLayout.empty(), new Object[0]);
+
+	private final PropertyLayout layout;
+	private final Object[] values;
+
+	private PropertyData(final PropertyLayout layout, final Object[] values) {
+
+		this.layout = layout;
+		this.values = values;
+	}
+
+	public static PropertyData empty() {
+		return EMPTY;
+	}
+
+	public static PropertyData of(final Map<String, Object> data) {
+
+		final PropertyLayout layout = PropertyLayout.forKeys(data.keySet());
+		final Object[] values       = new Object[layout.size()];
+
+		for (final Entry<String, Object> entry : data.entrySet()) {
+
+			values[layout.getSlot(entry.getKey())] = convert(entry.getValue());
+		}
+
+		return new PropertyData(layout, values);
+	}
+
+	public boolean containsKey(final String key) {
+		return layout.getSlot(key) >= 0;
+	}
+
+	public Object get(final String key) {
+
+		final int slot = layout.getSlot(key);
+		if (slot >= 0) {
+
+			final Object value = values[slot];
+			if (value == EMPTY_ARRAY) {
+
+				// empty array => return null?
+				return null;
+			}
+
+			if (value != null && value.getClass().isArray()) {
+
+				return copyArray(value);
+			}
+
+			return value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Indicates whether the given value differs from the stored value
+	 * of the given key.
+	 *
+	 * @param key
+	 * @param value
+	 * @return whether the value differs
+	 */
+	public boolean differs(final String key, final Object value) {
+
+		final int slot = layout.getSlot(key);
+		if (slot < 0) {
+
+			return value != null;
+		}
+
+		if (value == null) {
+			return true;
+		}
+
+		// arrays can be compared directly, only lists need to be converted
+		return !Objects.deepEquals(value instanceof List ? convert(value) : value, values[slot]);
+	}
+
+	public List<String> keys() {
+		return layout.getKeys();
+	}
+
+	/**
+	 * Returns a copy of this instance with the given value set, or with
+	 * the given key removed if the value is null.
+	 *
+	 * @param key
+	 * @param value
+	 * @return the new instance
+	 */
+	public PropertyData with(final String key, final Object value) {
+
+		if (value == null) {
+			return without(key);
+		}
+
+		final int slot = layout.getSlot(key);
+		if (slot >= 0) {
+
+			final Object[] newValues = values.clone();
+			newValues[slot]          = convert(value);
+
+			return new PropertyData(layout, newValues);
+		}
+
+		final Object[] newValues = Arrays.copyOf(values, values.length + 1);
+		newValues[values.length] = convert(value);
+
+		return new PropertyData(layout.with(key), newValues);
+	}
+
+	public PropertyData withAll(final Map<String, Object> data) {
+
+		PropertyData result = this;
+
+		for (final Entry<String, Object> entry : data.entrySet()) {
+			result = result.with(entry.getKey(), entry.getValue());
+		}
+
+		return result;
+	}
+
+	public PropertyData without(final String key) {
+
+		final int slot = layout.getSlot(key);
+		if (slot < 0) {
+
+			return this;
+		}
+
+		final PropertyLayout newLayout = layout.without(key);
+		final Object[] newValues       = new Object[values.length - 1];
+
+		System.arraycopy(values, 0,        newValues, 0,    slot);
+		System.arraycopy(values, slot + 1, newValues, slot, values.length - slot - 1);
+
+		return new PropertyData(newLayout, newValues);
+	}
+
+	// ----- package-private methods -----
+	PropertyLayout getLayout() {
+		return layout;
+	}
+
+	// ----- private methods -----
+	private static Object convert(final Object value) {
+
+		if (value instanceof List) {
+
+			try {
+
+				final List list = (List)value;
+				if (!list.isEmpty()) {
+
+					final Object firstElement = list.get(0);
+					final Object[] arr        = (Object[])Array.newInstance(firstElement.getClass(), 0);
+
+					// convert list to array
+					return list.toArray(arr);
+				}
+
+				return EMPTY_ARRAY;
+
+			} catch (Throwable t) {
+				logger.warn("", t);
+			}
+		}
+
+		if (value != null && value.getClass().isArray()) {
+
+			// store a private copy of the array
+			return copyArray(value);
+		}
+
+		return value;
+	}
+
+	private static Object copyArray(final Object array) {
+
+		if (array instanceof Object[]) {
+
+			return ((Object[])array).clone();
+		}
+
+		final int length  = Array.getLength(array);
+		final Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+
+		System.arraycopy(array, 0, copy, 0, length);
+
+		return copy;
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt.wrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, immutable key dictionary for the properties of cached entities.
+ *
+ * A layout maps each property key to a slot index in the value array of a
+ * {@link PropertyData} instance. Layouts are created by adding keys to the
+ * empty layout one by one, and the resulting transitions are cached, so
+ * all entities with the same set of property keys share a single layout
+ * instance.
+ */
+final class PropertyLayout {
+
+	private static final PropertyLayout EMPTY = new PropertyLayout(new String[0]);
+
+	private final Map<String, PropertyLayout> transitions = new ConcurrentHashMap<>();
+	private final Map<String, Integer> slots              = new HashMap<>();
+	private final List<String> keyList;
+	private final String[] keys;
+
+	private PropertyLayout(final String[] keys) {
+
+		this.keys    = keys;
+		this.keyList = Collections.unmodifiableList(Arrays.asList(keys));
+
+		for (int i=0; i<keys.length; i++) {
+			slots.put(keys[i], i);
+		}
+	}
+
+	public static PropertyLayout empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns the shared layout for the given keys. The keys are sorted
+	 * so that the layout does not depend on their iteration order.
+	 *
+	 * @param keys
+	 * @return the layout
+	 */
+	public static PropertyLayout forKeys(final Collection<String> keys) {
+
+		final List<String> sortedKeys = new ArrayList<>(keys);
+		PropertyLayout layout         = EMPTY;
+
+		Collections.sort(sortedKeys);
+
+		for (final String key : sortedKeys) {
+			layout = layout.with(key);
+		}
+
+		return layout;
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	public int getSlot(final String key) {
+
+		final Integer slot = slots.get(key);
+		if (slot != null) {
+
+			return slot;
+		}
+
+		return -1;
+	}
+
+	public String getKey(final int slot) {
+		return keys[slot];
+	}
+
+	public List<String> getKeys() {
+		return keyList;
+	}
+
+	/**
+	 * Returns the layout with the given key appended as the last slot.
+	 *
+	 * @param key
+	 * @return the layout
+	 */
+	public PropertyLayout with(final String key) {
+
+		return transitions.computeIfAbsent(key, k -> {
+
+			final String[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+			newKeys[keys.length]   = k;
+
+			return new PropertyLayout(newKeys);
+		});
+	}
+
+	/**
+	 * Returns the layout without the given key, the order of the
+	 * remaining keys is preserved.
+	 *
+	 * @param key
+	 * @return the layout
+	 */
+	public PropertyLayout without(final String key) {
+
+		PropertyLayout layout = EMPTY;
+
+		for (final String existingKey : keys) {
+
+			if (!existingKey.equals(key)) {
+				layout = layout.with(existingKey);
+			}
+		}
+
+		return layout;
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt.wrapper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyDataTest {
+
+	private static final int NODES = 20000;
+	private static final int KEYS  = 40;
+
+	@Test
+	public void testSharedLayout() {
+
+		final Map<String, Object> map1 = new LinkedHashMap<>();
+		final Map<String, Object> map2 = new LinkedHashMap<>();
+
+		map1.put("name", "one");
+		map1.put("type", "Test");
+		map2.put("type", "Test");
+		map2.put("name", "two");
+
+		final PropertyData data1 = PropertyData.of(map1);
+		final PropertyData data2 = PropertyData.of(map2);
+
+		Assert.assertSame("Entities with the same keys should share a layout", data1.getLayout(), data2.getLayout());
+		Assert.assertEquals("Invalid property value", "one", data1.get("name"));
+		Assert.assertEquals("Invalid property value", "two", data2.get("name"));
+
+		// adding the same key to both must result in the same layout again
+		Assert.assertSame("Entities with the same keys should share a layout", data1.with("key", 1).getLayout(), data2.with("key", 2).getLayout());
+	}
+
+	@Test
+	public void testCopyOnWrite() {
+
+		final Map<String, Object> map = new HashMap<>();
+
+		map.put("name", "Test");
+
+		final PropertyData data1 = PropertyData.of(map);
+		final PropertyData data2 = data1.with("key1", "value1").with("key2", 2);
+		final PropertyData data3 = data2.with("name", null);
+
+		Assert.assertFalse("Modification must not change the original instance", data1.containsKey("key1"));
+		Assert.assertEquals("Invalid property keys", Arrays.asList("name", "key1", "key2"), data2.keys());
+		Assert.assertEquals("Invalid property keys", Arrays.asList("key1", "key2"), data3.keys());
+		Assert.assertEquals("Invalid property value", "Test", data2.get("name"));
+		Assert.assertNull("Invalid property value", data3.get("name"));
+		Assert.assertEquals("Invalid property value", 2, data3.get("key2"));
+
+		Assert.assertFalse("Equal values should not differ", data2.differs("key1", "value1"));
+		Assert.assertTrue("Different values should differ", data2.differs("key1", "value2"));
+		Assert.assertTrue("Removal should differ", data2.differs("key1", null));
+		Assert.assertFalse("Missing values should not differ", data2.differs("missing", null));
+	}
+
+	@Test
+	public void testArrayProperties() {
+
+		final Map<String, Object> map = new HashMap<>();
+
+		map.put("strings", Arrays.asList("a", "b", "c"));
+		map.put("empty",   Arrays.asList());
+
+		final PropertyData data = PropertyData.of(map);
+		final Object value      = data.get("strings");
+
+		Assert.assertTrue("Lists should be returned as arrays", value instanceof String[]);
+		Assert.assertArrayEquals("Invalid array property", new String[] { "a", "b", "c" }, (String[])value);
+		Assert.assertTrue("Empty lists should be stored", data.containsKey("empty"));
+		Assert.assertNull("Empty lists should be returned as null", data.get("empty"));
+
+		// modification of the returned array must not change the stored value
+		((String[])value)[0] = "x";
+
+		Assert.assertArrayEquals("Stored array must not be modifiable", new String[] { "a", "b", "c" }, (String[])data.get("strings"));
+		Assert.assertFalse("Equal arrays should not differ", data.differs("strings", new String[] { "a", "b", "c" }));
+		Assert.assertFalse("Equal lists should not differ", data.differs("strings", Arrays.asList("a", "b", "c")));
+	}
+
+	/**
+	 * Verifies the structural properties that make the compact storage
+	 * smaller than a map per cached node: all nodes with the same keys share
+	 * a single layout, and each node only stores one value slot per key.
+	 */
+	@Test
+	public void testCompactStorage() {
+
+		final String[] keys          = new String[KEYS];
+		final PropertyData[] compact = new PropertyData[NODES];
+
+		for (int i=0; i<KEYS; i++) {
+			keys[i] = "property" + i;
+		}
+
+		for (int i=0; i<NODES; i++) {
+
+			final Map<String, Object> map = new ConcurrentHashMap<>();
+
+			for (int j=0; j<KEYS; j++) {
+				map.put(keys[j], "value" + i + "-" + j);
+			}
+
+			compact[i] = PropertyData.of(map);
+		}
+
+		final PropertyLayout layout = compact[0].getLayout();
+
+		Assert.assertEquals("Invalid layout size", KEYS, layout.size());
+
+		for (int i=0; i<NODES; i++) {
+
+			final PropertyData data = compact[i];
+
+			Assert.assertSame("Entities with the same keys should share a layout", layout, data.getLayout());
+			Assert.assertEquals("Invalid number of keys", KEYS, data.keys().size());
+			Assert.assertEquals("Invalid property value", "value" + i + "-" + (i % KEYS), data.get(keys[i % KEYS]));
+		}
+	}
+}
@@ -22,27 +22,25 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.nio.charset.Charset;
 import java.security.KeyPair;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.net.PeerListener;
@@ -53,11 +51,12 @@ import org.structr.net.data.time.PseudoTemporalEnvironment;
 import org.structr.net.data.time.PseudoTime;
 import org.structr.net.data.time.ToplevelTemporalEnvironment;
 import org.structr.net.protocol.AbstractMessage;
+import org.structr.net.protocol.Batch;
 import org.structr.net.protocol.Callback;
 import org.structr.net.protocol.Delete;
 import org.structr.net.protocol.Discovery;
 import org.structr.net.protocol.Envelope;
-import org.structr.net.protocol.Inventory;
+import org.structr.net.protocol.HashTree;
 import org.structr.net.protocol.Update;
 import org.structr.net.repository.DefaultRepositoryObject;
 import org.structr.net.repository.InternalChangeListener;
@@ -75,12 +74,11 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 
 	private static final Logger logger = LoggerFactory.getLogger(Peer.class.getName());
 
-	private final Queue<Envelope> outputQueue         = new ConcurrentLinkedQueue<>();
-	private final Queue<Envelope> inputQueue          = new ConcurrentLinkedQueue<>();
+	private final BlockingQueue<Envelope> outputQueue = new LinkedBlockingQueue<>();
+	private final BlockingQueue<Envelope> inputQueue  = new LinkedBlockingQueue<>();
 	private final ExecutorService executorService     = Executors.newCachedThreadPool();
 	private final Map<String, PeerInfo> peers         = new ConcurrentHashMap<>();
 	private final Map<String, Callback> callbacks     = new ConcurrentHashMap<>();
-	private final Charset utf8                        = Charset.forName("utf-8");
 	private final List<PeerListener> listeners        = new LinkedList<>();
 	private Map<String, Object> data                  = new HashMap<>();
 	private KeyPair keyPair                           = null;
@@ -139,11 +137,15 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 				currentTime = System.currentTimeMillis();
 
 				// work on input queue, but interrupt for other tasks
-				while (!inputQueue.isEmpty() && currentTime < lastDiscovery + discoveryInterval && currentTime < lastCleanup + discoveryIntervalStep) {
+				final long nextTask = Math.min(lastDiscovery + discoveryInterval, lastCleanup + discoveryIntervalStep);
+
+				while (currentTime < nextTask) {
+
+					// wait for input until the next task is due
+					final Envelope envelope = inputQueue.poll(nextTask - currentTime, TimeUnit.MILLISECONDS);
 
 					currentTime = System.currentTimeMillis();
 
-					final Envelope envelope = inputQueue.poll();
 					if (envelope != null) {
 
 						final AbstractMessage message = envelope.getMessage();
@@ -163,7 +165,10 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 							message.onMessage(this, envelope.getPeer());
 
 							// send message to other peers
-							broadcast(message);
+							if (message.isRebroadcast()) {
+								broadcast(message);
+							}
+
 							setData(ackKey, true);
 						}
 					}
@@ -203,8 +208,6 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 					}
 				}
 
-				Thread.sleep(10L);
-
 			} catch (Throwable t) {
 				logger.warn("", t);
 			}
@@ -310,23 +313,17 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 			if (isNew || hasChanged) {
 
 				if (isNew) {
-					System.out.println("Peer is new, sending inventory..");
+					log("Peer is new, sending hash tree..");
 				}
 
 				if (hasChanged) {
-					System.out.println("Peer has different content hash, sending inventory..");
-
-					System.out.println(printHash(hash) + " / " + printHash(contentHash));
-				}
-
-				// send inventory
-				for (final RepositoryObject obj : repository.getObjects()) {
-
-					log("Inventory(", obj.getUuid(), ", ", obj.getUserId(), ")");
-
-					send(newPeer, new Inventory(repository.getUuid(), obj.getUuid(), obj.getDeviceId(), obj.getLastModificationTime()));
+					log("Peer has different content hash, sending hash tree..");
+					log(printHash(hash), " / ", printHash(contentHash));
 				}
 
+				// send the top level of the hash tree, the other peer will request
+				// the subtrees that differ, down to the inventory of single leaves
+				send(newPeer, new HashTree(repository.getUuid(), "", repository.getHashTree().getChildHashes("")));
 			}
 		}
 	}
@@ -488,47 +485,7 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 	}
 
 	public byte[] getContentHash() {
-
-		MessageDigest digest = null;
-
-		try {
-			digest = MessageDigest.getInstance("MD5");
-		} catch (NoSuchAlgorithmException nex) {
-			logger.warn("", nex);
-		}
-
-		if (digest != null) {
-
-			final long t0 = System.currentTimeMillis();
-
-			final List<RepositoryObject> objects = new LinkedList<>(repository.getObjects());
-			Collections.sort(objects, new UuidComparator());
-
-			for (final RepositoryObject node : objects) {
-
-				final String uuid = node.getUuid();
-				final String type = node.getType();
-				final String last = node.getLastModificationTime().toString();
-
-				digest.update(uuid.getBytes(utf8));
-				digest.update(type.getBytes(utf8));
-				digest.update(last.getBytes(utf8));
-			}
-
-			final long t1 = System.currentTimeMillis();
-			if ((t1-t0) > 100) {
-
-				System.out.println("Creation of content hash took " + (System.currentTimeMillis() - t0) + " ms!");
-			}
-
-			return digest.digest();
-
-		} else {
-
-			System.out.println("Cannot create hash value, algorithms not available.");
-		}
-
-		return new byte[0];
+		return repository.getHashTree().getRootHash();
 	}
 
 	public PrivateKey getPrivateKey() {
@@ -644,7 +601,7 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 	// ----- nested classes -----
 	private class InputHandler implements Runnable {
 
-		private final byte[] buffer = new byte[2048];
+		private final byte[] buffer = new byte[AbstractMessage.MAX_PACKET_SIZE];
 
 		@Override
 		public void run() {
@@ -653,7 +610,7 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 
 				try {
 
-					final DatagramPacket packet = new DatagramPacket(buffer, 2048);
+					final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
 
 					serverSocket.receive(packet);
 
@@ -674,9 +631,20 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 						// update last seen time
 						updatePeer(envelope.getPeer().getUuid(), (current + timeOffset) - senderTimestamp);
 
-						inputQueue.add(envelope);
+						if (msg instanceof Batch) {
+
+							// unpack batch
+							for (final AbstractMessage message : ((Batch)msg).getMessages()) {
 
-						received++;
+								inputQueue.add(new Envelope(envelope.getPeer(), message));
+								received++;
+							}
+
+						} else {
+
+							inputQueue.add(envelope);
+							received++;
+						}
 
 					}
 
@@ -689,6 +657,8 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 
 	private class OutputHandler implements Runnable {
 
+		private final List<Envelope> envelopes = new ArrayList<>();
+
 		@Override
 		public void run() {
 
@@ -696,39 +666,100 @@ public final class Peer implements Runnable, Clock, InternalChangeListener {
 
 				try {
 
-					while (!outputQueue.isEmpty()) {
+					// wait for the next message
+					final Envelope envelope = outputQueue.poll(100L, TimeUnit.MILLISECONDS);
+					if (envelope != null) {
 
-						final Envelope envelope = outputQueue.poll();
-						if (envelope != null) {
+						// send all pending messages along with it
+						envelopes.add(envelope);
+						outputQueue.drainTo(envelopes);
 
-							final AbstractMessage message = envelope.getMessage();
-							final PeerInfo recipient      = envelope.getPeer();
+						send(envelopes);
+					}
 
-							message.setSenderTimestamp(System.currentTimeMillis() + timeOffset);
-							message.onSend(Peer.this);
+				} catch (InterruptedException ignore) {
+				} catch (Throwable t) {
+					logger.warn("", t);
+				} finally {
 
-							serverSocket.send(AbstractMessage.forSending(Peer.this.getUuid(), recipient, message));
+					envelopes.clear();
+				}
+			}
+		}
 
-							sent++;
-						}
-					}
+		private void send(final List<Envelope> envelopes) throws IOException {
 
-					Thread.sleep(10L);
+			final Map<String, List<Envelope>> recipients = new LinkedHashMap<>();
 
-				} catch (IOException ignore1) {
-				} catch (InterruptedException ignore2) {
-				} catch (Throwable t) {
-					logger.warn("", t);
+			// group messages by recipient, keeping the order
+			for (final Envelope envelope : envelopes) {
+
+				final PeerInfo recipient = envelope.getPeer();
+				final String key         = recipient.getAddress() + ":" + recipient.getPort();
+
+				List<Envelope> list = recipients.get(key);
+				if (list == null) {
+
+					list = new LinkedList<>();
+					recipients.put(key, list);
+				}
+
+				list.add(envelope);
+			}
+
+			for (final List<Envelope> list : recipients.values()) {
+
+				final PeerInfo recipient = list.get(0).getPeer();
+				Batch batch              = new Batch();
+
+				for (final Envelope envelope : list) {
+
+					final AbstractMessage message = envelope.getMessage();
+
+					message.setSenderTimestamp(System.currentTimeMillis() + timeOffset);
+					message.onSend(Peer.this);
+
+					final byte[] payload = AbstractMessage.serializeMessage(message);
+
+					// fill datagrams up to the maximum payload size
+					if (!batch.isEmpty() && AbstractMessage.HEADER_SIZE + batch.getSize() + payload.length + 4 > AbstractMessage.MAX_PAYLOAD_SIZE) {
+
+						send(recipient, batch);
+						batch = new Batch();
+					}
+
+					batch.add(message, payload);
 				}
+
+				send(recipient, batch);
 			}
 		}
-	}
 
-	private class UuidComparator implements Comparator<RepositoryObject> {
+		private void send(final PeerInfo recipient, final Batch batch) {
 
-		@Override
-		public int compare(final RepositoryObject o1, final RepositoryObject o2) {
-			return o1.getUuid().compareTo(o2.getUuid());
+			final List<AbstractMessage> messages = batch.getMessages();
+			if (!messages.isEmpty()) {
+
+				try {
+
+					// send single messages as they are
+					final AbstractMessage message = messages.size() == 1 ? messages.get(0) : batch;
+
+					message.setSenderTimestamp(System.currentTimeMillis() + timeOffset);
+
+					final DatagramPacket packet = AbstractMessage.forSending(Peer.this.getUuid(), recipient, message);
+					if (packet != null) {
+
+						serverSocket.send(packet);
+
+						sent += messages.size();
+					}
+
+				} catch (IOException ignore) {
+				} catch (Throwable t) {
+					logger.warn("", t);
+				}
+			}
 		}
 	}
 }
@@ -52,6 +52,25 @@ import org.structr.net.peer.PeerInfo;
  */
 public abstract class AbstractMessage {
 
+	/**
+	 * The size of the receive buffer. Packets are decrypted in blocks of
+	 * 256 bytes, so the number of blocks per packet is limited to 8.
+	 */
+	public static final int MAX_PACKET_SIZE = 2048;
+
+	/**
+	 * The maximum size of the serialized form of a message (including the
+	 * header) that is guaranteed to fit into a single packet, leaving
+	 * room for the GZIP overhead.
+	 */
+	public static final int MAX_PAYLOAD_SIZE = ((MAX_PACKET_SIZE / 256) * 245) - 64;
+
+	/**
+	 * The size of the packet header (command, message id, peer id and
+	 * timestamp).
+	 */
+	public static final int HEADER_SIZE = 44;
+
 	private static final Logger logger = LoggerFactory.getLogger(AbstractMessage.class.getName());
 
 	private static final Map<Integer, Class<? extends AbstractMessage>> CommandMap = new HashMap<>();
@@ -77,6 +96,9 @@ public abstract class AbstractMessage {
 		CommandMap.put(15, GetHistory.class);
 		CommandMap.put(16, History.class);
 		CommandMap.put(17, Inventory.class);
+		CommandMap.put(18, HashTree.class);
+		CommandMap.put(19, GetHashTree.class);
+		CommandMap.put(20, Batch.class);
 
 
 		TypeMap.put(String.class,       1);
@@ -114,6 +136,17 @@ public abstract class AbstractMessage {
 	public void reBroadcast(final Peer peer, final PeerInfo sender) {
 	}
 
+	/**
+	 * Indicates whether this message should be re-broadcast to all other
+	 * peers after it was processed. Messages that are directed to a
+	 * single peer should return false here.
+	 *
+	 * @return whether this message should be re-broadcast
+	 */
+	public boolean isRebroadcast() {
+		return true;
+	}
+
 	public String getId() {
 		return uuid;
 	}
@@ -156,30 +189,18 @@ public abstract class AbstractMessage {
 				final String messageId    = deserializeUUID(dis);
 				final String peerId       = deserializeUUID(dis);
 				final long timestamp      = dis.readLong();
-				AbstractMessage msg       = null;
-
-				final Class<? extends AbstractMessage> type = CommandMap.get(command);
-				if (type != null) {
-
-					try {
 
-						msg = type.newInstance();
+				try {
 
-						msg.setSenderTimestamp(timestamp);
-						msg.setId(messageId);
-
-						msg.deserialize(dis);
+					final AbstractMessage msg = createMessage(command, messageId, timestamp, dis);
+					if (msg != null) {
 
 						// create envelope
 						return new Envelope(new PeerInfo(peer.getPublicKey(), peerId, packet.getAddress().getHostAddress(), packet.getPort()), msg);
-
-					} catch (Throwable t) {
-						logger.warn("", t);
 					}
 
-				} else {
-
-					System.out.println("Unknown command " + command);
+				} catch (Throwable t) {
+					logger.warn("", t);
 				}
 			}
 
@@ -230,6 +251,39 @@ public abstract class AbstractMessage {
 		return null;
 	}
 
+	/**
+	 * Serializes the given message including its command, id and sender
+	 * timestamp, so it can be embedded into a {@link Batch}.
+	 *
+	 * @param message
+	 * @return the serialized message
+	 * @throws IOException
+	 */
+	public static byte[] serializeMessage(final AbstractMessage message) throws IOException {
+
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+		final DataOutputStream dos         = new DataOutputStream(buffer);
+
+		dos.writeInt(message.getCommand());
+		serializeUUID(dos, message.getId());
+		dos.writeLong(message.getSenderTimestamp());
+
+		message.serialize(dos);
+
+		dos.flush();
+
+		return buffer.toByteArray();
+	}
+
+	public static AbstractMessage deserializeMessage(final DataInputStream dis) throws IOException {
+
+		final int command       = dis.readInt();
+		final String messageId  = deserializeUUID(dis);
+		final long timestamp    = dis.readLong();
+
+		return createMessage(command, messageId, timestamp, dis);
+	}
+
 	// ----- protected methods -----
 	protected void serializeObject(final DataOutputStream dos, final Object value) throws IOException {
 
@@ -355,6 +409,34 @@ public abstract class AbstractMessage {
 		return list;
 	}
 
+	private static AbstractMessage createMessage(final int command, final String messageId, final long timestamp, final DataInputStream dis) throws IOException {
+
+		final Class<? extends AbstractMessage> type = CommandMap.get(command);
+		if (type != null) {
+
+			try {
+
+				final AbstractMessage msg = type.newInstance();
+
+				msg.setSenderTimestamp(timestamp);
+				msg.setId(messageId);
+
+				msg.deserialize(dis);
+
+				return msg;
+
+			} catch (InstantiationException | IllegalAccessException ex) {
+				logger.warn("", ex);
+			}
+
+		} else {
+
+			logger.warn("Unknown command {}", command);
+		}
+
+		return null;
+	}
+
 	private static Cipher getCipher() throws NoSuchAlgorithmException, NoSuchPaddingException {
 		return Cipher.getInstance("RSA/ECB/PKCS1Padding");
 	}
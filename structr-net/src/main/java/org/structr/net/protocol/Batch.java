@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.net.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import org.structr.net.peer.Peer;
+import org.structr.net.peer.PeerInfo;
+
+/**
+ * A container for several messages to the same recipient, so they can
+ * be sent in a single datagram. Batches are unpacked by the receiving
+ * peer before the contained messages are processed.
+ */
+public class Batch extends AbstractMessage {
+
+	private final List<AbstractMessage> messages = new LinkedList<>();
+	private final List<byte[]> payloads          = new LinkedList<>();
+	private int size                             = 4;
+
+	public Batch() {
+		super(20);
+	}
+
+	/**
+	 * Adds the given message along with its serialized form, as returned
+	 * by {@link AbstractMessage#serializeMessage(AbstractMessage)}.
+	 *
+	 * @param message
+	 * @param payload
+	 */
+	public void add(final AbstractMessage message, final byte[] payload) {
+
+		messages.add(message);
+		payloads.add(payload);
+
+		size += payload.length + 4;
+	}
+
+	/**
+	 * Returns the size of the serialized form of this batch.
+	 *
+	 * @return the size in bytes
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return messages.isEmpty();
+	}
+
+	public List<AbstractMessage> getMessages() {
+		return messages;
+	}
+
+	@Override
+	public void onMessage(final Peer peer, final PeerInfo sender) {
+		// batches are unpacked by the receiving peer
+	}
+
+	@Override
+	public boolean isRebroadcast() {
+		return false;
+	}
+
+	@Override
+	public void serialize(final DataOutputStream dos) throws IOException {
+
+		dos.writeInt(payloads.size());
+
+		for (final byte[] payload : payloads) {
+
+			dos.writeInt(payload.length);
+			dos.write(payload, 0, payload.length);
+		}
+	}
+
+	@Override
+	public void deserialize(final DataInputStream dis) throws IOException {
+
+		final int count = dis.readInt();
+
+		for (int i=0; i<count; i++) {
+
+			final byte[] payload = new byte[dis.readInt()];
+			dis.readFully(payload);
+
+			final AbstractMessage message = deserializeMessage(new DataInputStream(new ByteArrayInputStream(payload)));
+			if (message != null) {
+
+				messages.add(message);
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.net.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.structr.net.peer.Peer;
+import org.structr.net.peer.PeerInfo;
+import org.structr.net.repository.Repository;
+import org.structr.net.repository.RepositoryHashTree;
+import org.structr.net.repository.RepositoryObject;
+
+/**
+ * Requests the hashes of the children of a subtree of the hash tree of
+ * the recipient's repository, or the inventory of the objects in a leaf.
+ */
+public class GetHashTree extends Message {
+
+	private String prefix = null;
+
+	public GetHashTree() {
+		this(null, null);
+	}
+
+	public GetHashTree(final String sender, final String prefix) {
+		super(19, sender);
+
+		this.prefix = prefix;
+	}
+
+	@Override
+	public void onMessage(final Peer peer, final PeerInfo sender) {
+
+		if (!peer.getUuid().equals(getSender())) {
+
+			final Repository repository   = peer.getRepository();
+			final RepositoryHashTree tree = repository.getHashTree();
+
+			if (RepositoryHashTree.isLeaf(prefix)) {
+
+				// send inventory of the objects in the leaf
+				for (final String id : tree.getObjectIds(prefix)) {
+
+					final RepositoryObject obj = repository.getObject(id);
+					if (obj != null) {
+
+						peer.log("Inventory(", obj.getUuid(), ", ", obj.getUserId(), ")");
+
+						peer.send(sender, new Inventory(peer.getUuid(), obj.getUuid(), obj.getDeviceId(), obj.getLastModificationTime()));
+					}
+				}
+
+			} else {
+
+				peer.send(sender, new HashTree(peer.getUuid(), prefix, tree.getChildHashes(prefix)));
+			}
+		}
+	}
+
+	@Override
+	public boolean isRebroadcast() {
+		return false;
+	}
+
+	@Override
+	public void serialize(final DataOutputStream dos) throws IOException {
+
+		super.serialize(dos);
+
+		dos.writeUTF(prefix);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream dis) throws IOException {
+
+		super.deserialize(dis);
+
+		this.prefix = dis.readUTF();
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.net.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.structr.net.peer.Peer;
+import org.structr.net.peer.PeerInfo;
+import org.structr.net.repository.RepositoryHashTree;
+
+/**
+ * Contains the hashes of the children of a subtree of the hash tree of
+ * the sender's repository. The recipient compares them to its own hashes
+ * and requests the next level (or the inventory) of differing subtrees.
+ */
+public class HashTree extends Message {
+
+	private byte[][] hashes = null;
+	private String prefix   = null;
+
+	public HashTree() {
+		this(null, null, null);
+	}
+
+	public HashTree(final String sender, final String prefix, final byte[][] hashes) {
+		super(18, sender);
+
+		this.prefix = prefix;
+		this.hashes = hashes;
+	}
+
+	@Override
+	public void onMessage(final Peer peer, final PeerInfo sender) {
+
+		if (!peer.getUuid().equals(getSender())) {
+
+			final RepositoryHashTree tree = peer.getRepository().getHashTree();
+			final byte[][] ownHashes      = tree.getChildHashes(prefix);
+
+			for (int i=0; i<hashes.length && i<ownHashes.length; i++) {
+
+				if (!Arrays.equals(hashes[i], ownHashes[i])) {
+
+					final String childPrefix = RepositoryHashTree.getChildPrefix(prefix, i);
+
+					peer.log("GetHashTree(", childPrefix, ")");
+
+					peer.send(sender, new GetHashTree(peer.getUuid(), childPrefix));
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean isRebroadcast() {
+		return false;
+	}
+
+	@Override
+	public void serialize(final DataOutputStream dos) throws IOException {
+
+		super.serialize(dos);
+
+		dos.writeUTF(prefix);
+		dos.writeInt(hashes.length);
+
+		for (final byte[] hash : hashes) {
+
+			dos.writeInt(hash.length);
+			dos.write(hash, 0, hash.length);
+		}
+	}
+
+	@Override
+	public void deserialize(final DataInputStream dis) throws IOException {
+
+		super.deserialize(dis);
+
+		this.prefix = dis.readUTF();
+		this.hashes = new byte[dis.readInt()][];
+
+		for (int i=0; i<hashes.length; i++) {
+
+			hashes[i] = new byte[dis.readInt()];
+			dis.readFully(hashes[i]);
+		}
+	}
+}
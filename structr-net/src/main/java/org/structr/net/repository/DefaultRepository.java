@@ -37,6 +37,7 @@ public class DefaultRepository implements Repository {
 	private final List<ExternalChangeListener> externalChangeListeners = new LinkedList<>();
 	private final Map<String, DefaultPossibility> possibilities        = new LinkedHashMap<>();
 	private final Map<String, RepositoryObject> objects                = new LinkedHashMap<>();
+	private final RepositoryHashTree hashTree                          = new RepositoryHashTree();
 	private Peer peer                                                  = null;
 	private String uuid                                                = null;
 
@@ -82,6 +83,7 @@ public class DefaultRepository implements Repository {
 			final RepositoryObject obj = new DefaultRepositoryObject(this, id, type, deviceId, userId, creationTime);
 
 			objects.put(id, obj);
+			hashTree.update(obj);
 
 			return obj;
 		}
@@ -105,6 +107,7 @@ public class DefaultRepository implements Repository {
 
 				complete(transactionId);
 				objects.put(id, obj);
+				hashTree.update(obj);
 			}
 
 			for (final InternalChangeListener listener : internalChangeListeners) {
@@ -140,6 +143,7 @@ public class DefaultRepository implements Repository {
 			if (obj != null) {
 
 				objects.remove(id);
+				hashTree.remove(id);
 				notifyDeletion(obj);
 			}
 
@@ -170,6 +174,7 @@ public class DefaultRepository implements Repository {
 				}
 
 				objects.put(id, obj);
+				hashTree.update(obj);
 
 				complete(transactionId);
 
@@ -189,6 +194,7 @@ public class DefaultRepository implements Repository {
 			if (obj != null) {
 
 				objects.remove(id);
+				hashTree.remove(id);
 				notifyDeletion(obj);
 			}
 		}
@@ -228,6 +234,11 @@ public class DefaultRepository implements Repository {
 		return list;
 	}
 
+	@Override
+	public RepositoryHashTree getHashTree() {
+		return hashTree;
+	}
+
 	@Override
 	public int objectCount() {
 		return objects.size();
@@ -275,7 +286,30 @@ public class DefaultRepository implements Repository {
 	}
 
 	public void clear() {
-		objects.clear();
+
+		synchronized (objects) {
+
+			objects.clear();
+			hashTree.clear();
+		}
+	}
+
+	/**
+	 * Called by the objects of this repository when their history changes,
+	 * to keep the hash tree up to date.
+	 *
+	 * @param obj the modified object
+	 */
+	void onHistoryChange(final RepositoryObject obj) {
+
+		synchronized (objects) {
+
+			// ignore objects that are not (yet) part of this repository
+			if (objects.get(obj.getUuid()) == obj) {
+
+				hashTree.update(obj);
+			}
+		}
 	}
 
 	// ----- private methods -----
@@ -150,6 +150,7 @@ public class DefaultRepositoryObject implements RepositoryObject {
 			}
 
 			history.put(instant, new PossibleValue(transactionId, key, value));
+			parent.onHistoryChange(this);
 		}
 	}
 
@@ -185,6 +186,7 @@ public class DefaultRepositoryObject implements RepositoryObject {
 					} else if (val.isAborted()) {
 
 						history.remove(time);
+						parent.onHistoryChange(this);
 					}
 				}
 			}
@@ -227,6 +229,7 @@ public class DefaultRepositoryObject implements RepositoryObject {
 
 					// remove aborted history entries
 					history.remove(time);
+					parent.onHistoryChange(this);
 				}
 			}
 		}
@@ -76,6 +76,12 @@ public interface Repository {
 	 */
 	Collection<RepositoryObject> getObjects();
 
+	/**
+	 * Returns the hash tree summary of the contents of this repository.
+	 *
+	 * @return the hash tree of this repository
+	 */
+	RepositoryHashTree getHashTree();
 
 	int objectCount();
 }
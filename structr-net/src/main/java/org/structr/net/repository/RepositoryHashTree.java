@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.net.repository;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hash tree summary of the contents of a repository.
+ *
+ * Objects are arranged in a tree of fixed depth by the leading hex digits
+ * of their UUID, so each level splits the UUID space into 16 ranges. The
+ * hash of a node is the XOR of the digests of all objects in its range,
+ * which allows the tree to be updated in constant time when an object
+ * changes, instead of rehashing the whole repository.
+ *
+ * Two peers can compare the root hashes and descend only into subtrees
+ * whose hashes differ, to find the ranges that need to be synchronized.
+ */
+public class RepositoryHashTree {
+
+	private static final Logger logger = LoggerFactory.getLogger(RepositoryHashTree.class.getName());
+
+	public static final int FANOUT     = 16;
+	public static final int DEPTH      = 3;
+	public static final int HASH_SIZE  = 16;
+
+	private final Map<String, long[]> digests = new HashMap<>();
+	private final Charset utf8                = Charset.forName("utf-8");
+	private final long[][] levels             = new long[DEPTH + 1][];
+	private final Set<String>[] leafMembers;
+
+	public RepositoryHashTree() {
+
+		int size = 1;
+
+		for (int i=0; i<=DEPTH; i++) {
+
+			levels[i] = new long[size * 2];
+			size     *= FANOUT;
+		}
+
+		this.leafMembers = new Set[size / FANOUT];
+	}
+
+	/**
+	 * Adds the given object to this tree, or updates its digest if the
+	 * object is already present.
+	 *
+	 * @param obj
+	 */
+	public synchronized void update(final RepositoryObject obj) {
+
+		final String uuid   = obj.getUuid();
+		final long[] digest = digest(obj);
+		final long[] old    = digests.put(uuid, digest);
+
+		if (old != null) {
+
+			apply(uuid, old);
+
+		} else {
+
+			final int leaf = getIndex(uuid, DEPTH);
+
+			Set<String> members = leafMembers[leaf];
+			if (members == null) {
+
+				members = new LinkedHashSet<>();
+				leafMembers[leaf] = members;
+			}
+
+			members.add(uuid);
+		}
+
+		apply(uuid, digest);
+	}
+
+	/**
+	 * Removes the object with the given UUID from this tree.
+	 *
+	 * @param uuid
+	 */
+	public synchronized void remove(final String uuid) {
+
+		final long[] old = digests.remove(uuid);
+		if (old != null) {
+
+			apply(uuid, old);
+
+			final Set<String> members = leafMembers[getIndex(uuid, DEPTH)];
+			if (members != null) {
+
+				members.remove(uuid);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+
+		digests.clear();
+
+		for (final long[] level : levels) {
+
+			for (int i=0; i<level.length; i++) {
+				level[i] = 0L;
+			}
+		}
+
+		for (int i=0; i<leafMembers.length; i++) {
+			leafMembers[i] = null;
+		}
+	}
+
+	/**
+	 * Returns the hash of the whole repository.
+	 *
+	 * @return the root hash
+	 */
+	public byte[] getRootHash() {
+		return getHash("");
+	}
+
+	/**
+	 * Returns the hash of the subtree with the given UUID prefix.
+	 *
+	 * @param prefix a prefix of at most DEPTH hex digits
+	 * @return the hash of the given subtree
+	 */
+	public synchronized byte[] getHash(final String prefix) {
+
+		final int level = prefix.length();
+		final int index = getIndex(prefix, level);
+
+		return toBytes(levels[level], index);
+	}
+
+	/**
+	 * Returns the hashes of the FANOUT children of the subtree with the
+	 * given UUID prefix, in the order of their hex digits.
+	 *
+	 * @param prefix a prefix of less than DEPTH hex digits
+	 * @return the hashes of the children of the given subtree
+	 */
+	public synchronized byte[][] getChildHashes(final String prefix) {
+
+		final byte[][] hashes = new byte[FANOUT][];
+		final int level       = prefix.length() + 1;
+		final int base        = getIndex(prefix, level - 1) * FANOUT;
+
+		for (int i=0; i<FANOUT; i++) {
+			hashes[i] = toBytes(levels[level], base + i);
+		}
+
+		return hashes;
+	}
+
+	/**
+	 * Returns the UUIDs of all objects in the leaf with the given prefix.
+	 *
+	 * @param prefix a prefix of exactly DEPTH hex digits
+	 * @return the UUIDs of the objects in the given leaf
+	 */
+	public synchronized List<String> getObjectIds(final String prefix) {
+
+		final List<String> ids    = new LinkedList<>();
+		final Set<String> members = leafMembers[getIndex(prefix, DEPTH)];
+
+		if (members != null) {
+			ids.addAll(members);
+		}
+
+		return ids;
+	}
+
+	public synchronized int size() {
+		return digests.size();
+	}
+
+	public static boolean isLeaf(final String prefix) {
+		return prefix.length() >= DEPTH;
+	}
+
+	public static String getChildPrefix(final String prefix, final int child) {
+		return prefix + Character.forDigit(child, FANOUT);
+	}
+
+	// ----- private methods -----
+	private void apply(final String uuid, final long[] digest) {
+
+		for (int level=0; level<=DEPTH; level++) {
+
+			final int index = getIndex(uuid, level) * 2;
+
+			levels[level][index]     ^= digest[0];
+			levels[level][index + 1] ^= digest[1];
+		}
+	}
+
+	private long[] digest(final RepositoryObject obj) {
+
+		try {
+
+			final MessageDigest digest = MessageDigest.getInstance("MD5");
+
+			digest.update(obj.getUuid().getBytes(utf8));
+			digest.update(obj.getType().getBytes(utf8));
+			digest.update(obj.getLastModificationTime().toString().getBytes(utf8));
+
+			final byte[] bytes = digest.digest();
+
+			return new long[] { toLong(bytes, 0), toLong(bytes, 8) };
+
+		} catch (NoSuchAlgorithmException nex) {
+			logger.warn("", nex);
+		}
+
+		return new long[2];
+	}
+
+	private int getIndex(final String id, final int level) {
+
+		int index = 0;
+
+		for (int i=0; i<level; i++) {
+
+			final char c  = i < id.length() ? id.charAt(i) : '0';
+			final int val = Character.digit(c, FANOUT);
+
+			index = index * FANOUT + (val >= 0 ? val : (c & (FANOUT - 1)));
+		}
+
+		return index;
+	}
+
+	private long toLong(final byte[] bytes, final int offset) {
+
+		long value = 0L;
+
+		for (int i=offset; i<offset+8; i++) {
+			value = (value << 8) | (bytes[i] & 0xff);
+		}
+
+		return value;
+	}
+
+	private byte[] toBytes(final long[] level, final int index) {
+
+		final byte[] bytes = new byte[HASH_SIZE];
+		long hi            = level[index * 2];
+		long lo            = level[index * 2 + 1];
+
+		for (int i=7; i>=0; i--) {
+
+			bytes[i]     = (byte)(hi & 0xff);
+			bytes[i + 8] = (byte)(lo & 0xff);
+
+			hi >>>= 8;
+			lo >>>= 8;
+		}
+
+		return bytes;
+	}
+}
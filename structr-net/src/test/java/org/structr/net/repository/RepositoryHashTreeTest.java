@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.net.repository;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.structr.net.data.time.PseudoTime;
+
+/**
+ *
+ */
+public class RepositoryHashTreeTest {
+
+	private static final byte[] EMPTY = new byte[RepositoryHashTree.HASH_SIZE];
+
+	@Test
+	public void testInsert() {
+
+		final List<RepositoryObject> objects = createObjects(100);
+		final RepositoryHashTree tree1       = new RepositoryHashTree();
+		final RepositoryHashTree tree2       = new RepositoryHashTree();
+
+		assertArrayEquals("Empty tree must have an empty root hash", EMPTY, tree1.getRootHash());
+
+		for (final RepositoryObject obj : objects) {
+			tree1.update(obj);
+		}
+
+		// insertion order must not matter
+		for (int i=objects.size()-1; i>=0; i--) {
+			tree2.update(objects.get(i));
+		}
+
+		assertEquals(100, tree1.size());
+		assertFalse(Arrays.equals(EMPTY, tree1.getRootHash()));
+		assertArrayEquals(tree1.getRootHash(), tree2.getRootHash());
+
+		// updating an unchanged object must not change the tree
+		final byte[] rootHash = tree1.getRootHash();
+		tree1.update(objects.get(0));
+
+		assertEquals(100, tree1.size());
+		assertArrayEquals(rootHash, tree1.getRootHash());
+
+		// objects are found in the leaf of their UUID prefix
+		for (final RepositoryObject obj : objects) {
+
+			final String leaf = obj.getUuid().substring(0, RepositoryHashTree.DEPTH);
+
+			assertTrue(RepositoryHashTree.isLeaf(leaf));
+			assertTrue(tree1.getObjectIds(leaf).contains(obj.getUuid()));
+		}
+	}
+
+	@Test
+	public void testRemove() {
+
+		final List<RepositoryObject> objects = createObjects(10);
+		final RepositoryHashTree tree        = new RepositoryHashTree();
+		final RepositoryHashTree expected    = new RepositoryHashTree();
+
+		for (final RepositoryObject obj : objects) {
+			tree.update(obj);
+		}
+
+		for (final RepositoryObject obj : objects.subList(0, 5)) {
+			expected.update(obj);
+		}
+
+		for (final RepositoryObject obj : objects.subList(5, 10)) {
+
+			tree.remove(obj.getUuid());
+
+			assertFalse(tree.getObjectIds(obj.getUuid().substring(0, RepositoryHashTree.DEPTH)).contains(obj.getUuid()));
+		}
+
+		assertEquals(5, tree.size());
+		assertArrayEquals("Removal must restore the hash of the remaining objects", expected.getRootHash(), tree.getRootHash());
+
+		// removing unknown objects must not change the tree
+		tree.remove(UUID.randomUUID().toString().replace("-", ""));
+		assertArrayEquals(expected.getRootHash(), tree.getRootHash());
+
+		for (final RepositoryObject obj : objects.subList(0, 5)) {
+			tree.remove(obj.getUuid());
+		}
+
+		assertEquals(0, tree.size());
+		assertArrayEquals("Empty tree must have an empty root hash", EMPTY, tree.getRootHash());
+	}
+
+	@Test
+	public void testDiff() {
+
+		final List<RepositoryObject> objects = createObjects(200);
+		final RepositoryHashTree local       = new RepositoryHashTree();
+		final RepositoryHashTree remote      = new RepositoryHashTree();
+
+		for (final RepositoryObject obj : objects) {
+
+			local.update(obj);
+			remote.update(obj);
+		}
+
+		assertTrue(diff(local, remote, "").isEmpty());
+
+		// modify one object on the remote side and add another one
+		final RepositoryObject modified = objects.get(42);
+		final RepositoryObject added    = createObject(UUID.randomUUID().toString().replace("-", ""), 2000L);
+
+		remote.update(createObject(modified.getUuid(), 3000L));
+		remote.update(added);
+
+		assertFalse(Arrays.equals(local.getRootHash(), remote.getRootHash()));
+
+		final List<String> leaves = diff(local, remote, "");
+		final String modifiedLeaf = modified.getUuid().substring(0, RepositoryHashTree.DEPTH);
+		final String addedLeaf    = added.getUuid().substring(0, RepositoryHashTree.DEPTH);
+
+		// only the leaves of the modified and the added object differ
+		assertTrue(leaves.contains(modifiedLeaf));
+		assertTrue(leaves.contains(addedLeaf));
+		assertEquals(modifiedLeaf.equals(addedLeaf) ? 1 : 2, leaves.size());
+		assertTrue(remote.getObjectIds(addedLeaf).contains(added.getUuid()));
+	}
+
+	// ----- private methods -----
+	private List<String> diff(final RepositoryHashTree local, final RepositoryHashTree remote, final String prefix) {
+
+		final List<String> leaves = new LinkedList<>();
+
+		if (!Arrays.equals(local.getHash(prefix), remote.getHash(prefix))) {
+
+			if (RepositoryHashTree.isLeaf(prefix)) {
+
+				leaves.add(prefix);
+
+			} else {
+
+				final byte[][] localChildren  = local.getChildHashes(prefix);
+				final byte[][] remoteChildren = remote.getChildHashes(prefix);
+
+				for (int i=0; i<RepositoryHashTree.FANOUT; i++) {
+
+					if (!Arrays.equals(localChildren[i], remoteChildren[i])) {
+
+						leaves.addAll(diff(local, remote, RepositoryHashTree.getChildPrefix(prefix, i)));
+					}
+				}
+			}
+		}
+
+		return leaves;
+	}
+
+	private List<RepositoryObject> createObjects(final int count) {
+
+		final List<RepositoryObject> objects = new LinkedList<>();
+
+		for (int i=0; i<count; i++) {
+			objects.add(createObject(UUID.randomUUID().toString().replace("-", ""), 1000L + i));
+		}
+
+		return objects;
+	}
+
+	private RepositoryObject createObject(final String uuid, final long time) {
+		return new DefaultRepositoryObject(null, uuid, "Test", "device", "user", new PseudoTime(time, "device", 0L));
+	}
+}
@@ -59,6 +59,7 @@ public class DefaultResourceProvider implements ResourceProvider {
 
 		resourceMap.put(Pattern.compile("_schema"),		SchemaResource.class);			// special resource for schema information
 		resourceMap.put(Pattern.compile("_schemaJson"), SchemaJsonResource.class);	// special resource for schema json import and export !needs to be below any type match
+		resourceMap.put(Pattern.compile("_cron"), CronResource.class);	// special resource for cron task statistics
 		resourceMap.put(Pattern.compile("[a-z_A-Z][a-z_A-Z0-9]*"), TypeResource.class);			// any type match
 
 
@@ -20,17 +20,21 @@ package org.structr.rest.auth;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedException;
+import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.auth.SessionIndex;
 import org.structr.core.auth.exception.AuthenticationException;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
 import org.structr.core.entity.SuperUser;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.PropertyKey;
 import org.structr.schema.action.Actions;
 
@@ -187,8 +191,41 @@ public class AuthHelper {
 
 	public static Principal getPrincipalForSessionId(final String sessionId, final boolean isPing) {
 
-		return getPrincipalForCredential(StructrApp.key(Principal.class, "sessionIds"), new String[]{ sessionId }, isPing);
+		if (sessionId == null) {
+			return null;
+		}
+
+		final PropertyKey<String[]> key = StructrApp.key(Principal.class, "sessionIds");
+		final String principalId        = SessionIndex.get(sessionId);
+
+		if (principalId != null) {
+
+			try {
 
+				final App app            = StructrApp.getInstance();
+				final NodeInterface node = isPing ? app.nodeQuery(Principal.class).uuid(principalId).disableSorting().isPing(true).getFirst() : app.getNodeById(Principal.class, principalId);
+
+				// the index is only a hint, the principal must still hold the session id
+				if (node instanceof Principal && ArrayUtils.contains(node.getProperty(key), sessionId)) {
+
+					return (Principal)node;
+				}
+
+			} catch (FrameworkException fex) {
+
+				logger.warn("Error while fetching principal for session id: {}", fex.getMessage());
+			}
+
+			SessionIndex.remove(sessionId);
+		}
+
+		final Principal principal = getPrincipalForCredential(key, new String[]{ sessionId }, isPing);
+		if (principal != null) {
+
+			SessionIndex.put(sessionId, principal.getUuid());
+		}
+
+		return principal;
 	}
 
 	public static void doLogin(final HttpServletRequest request, final Principal user) throws FrameworkException {
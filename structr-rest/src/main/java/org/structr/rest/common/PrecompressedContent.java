@@ -0,0 +1,356 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.common;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Creates pre-compressed (gzip) variants of static content.
+ *
+ * The compressed variant of a file is stored next to the file with the
+ * suffix ".gz", so unchanging content is compressed only once instead of on
+ * every request. Only static assets (CSS, JavaScript, SVG etc.) between
+ * MIN_SIZE and MAX_SIZE bytes are compressed.
+ *
+ * A variant is only used if it was created by this instance for the same
+ * size, modification time and checksum of the original file, because the
+ * modification time alone does not detect changes on file systems with a
+ * coarse timestamp resolution. Missing or outdated variants requested by
+ * getGzipVariant() are created in the background, the original file is
+ * served uncompressed until the variant exists.
+ */
+public class PrecompressedContent {
+
+	private static final Logger logger                    = LoggerFactory.getLogger(PrecompressedContent.class.getName());
+	private static final Set<String> compressibleSuffixes = new HashSet<>(Arrays.asList("css", "js", "html", "htm", "json", "svg", "txt", "xml", "map"));
+	private static final Set<String> compressibleTypes    = new HashSet<>(Arrays.asList("text/css", "text/javascript", "text/html", "text/plain", "text/xml", "application/javascript", "application/x-javascript", "application/json", "application/xml", "image/svg+xml"));
+	private static final Map<String, Version> versions    = new ConcurrentHashMap<>();
+	private static final Set<String> pending              = ConcurrentHashMap.newKeySet();
+	private static final String GZIP_SUFFIX               = ".gz";
+	private static final int MIN_SIZE                     = 256;
+	private static final int MAX_SIZE                     = 10 * 1024 * 1024;
+	private static ExecutorService executor               = null;
+
+	/**
+	 * Indicates whether content of the given type should be compressed.
+	 *
+	 * @param contentType the content type (with optional parameters)
+	 * @return whether the content is compressible
+	 */
+	public static boolean isCompressible(final String contentType) {
+
+		if (contentType == null) {
+			return false;
+		}
+
+		return compressibleTypes.contains(StringUtils.substringBefore(contentType, ";").trim().toLowerCase());
+	}
+
+	/**
+	 * Indicates whether the client accepts gzip-encoded content.
+	 *
+	 * @param request the request
+	 * @return whether the client accepts gzip
+	 */
+	public static boolean acceptsGzip(final HttpServletRequest request) {
+
+		final String acceptEncoding = request.getHeader("Accept-Encoding");
+		if (acceptEncoding != null) {
+
+			for (final String part : acceptEncoding.split(",")) {
+
+				final String[] encoding = part.trim().split(";");
+				if ("gzip".equalsIgnoreCase(encoding[0].trim())) {
+
+					return encoding.length == 1 || !encoding[1].trim().matches("q=0(\\.0*)?");
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the up-to-date gzip variant of the given file without
+	 * blocking. If there is none, the variant is created in the background
+	 * and null is returned.
+	 *
+	 * @param file the original file
+	 * @param checksum the checksum of the original file, or null
+	 * @return the gzip variant or null
+	 */
+	public static File getGzipVariant(final File file, final Long checksum) {
+
+		if (!isEligible(file)) {
+			return null;
+		}
+
+		final File variant = getVariantFile(file);
+		if (isCurrent(file, variant, checksum)) {
+
+			return variant;
+		}
+
+		// only one compression per file at a time
+		final String path = file.getPath();
+		if (pending.add(path)) {
+
+			try {
+
+				getExecutor().submit(() -> {
+
+					try {
+
+						createGzipVariant(file, checksum);
+
+					} finally {
+
+						pending.remove(path);
+					}
+				});
+
+			} catch (Throwable t) {
+
+				pending.remove(path);
+				logger.warn("Unable to schedule compression of {}: {}", path, t.getMessage());
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Creates or updates the gzip variant of the given file in the calling
+	 * thread, or returns null if the file is not eligible or the variant
+	 * can not be created.
+	 *
+	 * @param file the original file
+	 * @param checksum the checksum of the original file, or null
+	 * @return the gzip variant or null
+	 */
+	public static File createGzipVariant(final File file, final Long checksum) {
+
+		if (!isEligible(file)) {
+			return null;
+		}
+
+		final File variant = getVariantFile(file);
+		File temp          = null;
+
+		try {
+
+			final Version version = new Version(file, checksum);
+
+			// compress into a temporary file first, concurrent requests must never see a partial variant
+			temp = File.createTempFile(".precompress-" + file.getName(), GZIP_SUFFIX, file.getParentFile());
+
+			try (final OutputStream out = new CompressingOutputStream(new FileOutputStream(temp))) {
+
+				Files.copy(file.toPath(), out);
+			}
+
+			Files.move(temp.toPath(), variant.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			// the original could have been modified while it was compressed
+			if (version.equals(new Version(file, checksum))) {
+
+				versions.put(variant.getPath(), version);
+
+			} else {
+
+				versions.remove(variant.getPath());
+			}
+
+			return variant;
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to create compressed variant of {}: {}", file.getPath(), ioex.getMessage());
+
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Deletes the compressed variants of the given file.
+	 *
+	 * @param file the original file
+	 */
+	public static void deleteVariants(final File file) {
+
+		final File variant = getVariantFile(file);
+
+		versions.remove(variant.getPath());
+
+		if (variant.isFile()) {
+
+			variant.delete();
+		}
+	}
+
+	/**
+	 * Creates the gzip variants of all compressible files in the given
+	 * directory and its subdirectories.
+	 *
+	 * @param directory the directory
+	 * @return the number of compressed variants
+	 */
+	public static int precompressDirectory(final File directory) {
+
+		int count = 0;
+
+		final File[] files = directory.listFiles();
+		if (files != null) {
+
+			for (final File file : files) {
+
+				if (file.isDirectory()) {
+
+					count += precompressDirectory(file);
+
+				} else if (compressibleSuffixes.contains(StringUtils.substringAfterLast(file.getName(), ".").toLowerCase()) && createGzipVariant(file, null) != null) {
+
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Stops the background compression. A new worker is created on the
+	 * next request for a missing variant.
+	 */
+	public static synchronized void shutdown() {
+
+		if (executor != null) {
+
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	// ----- private methods -----
+	private static boolean isEligible(final File file) {
+
+		if (!Settings.Precompression.getValue() || file == null || !file.isFile()) {
+			return false;
+		}
+
+		final long length = file.length();
+
+		return length >= MIN_SIZE && length <= MAX_SIZE;
+	}
+
+	private static File getVariantFile(final File file) {
+		return new File(file.getPath() + GZIP_SUFFIX);
+	}
+
+	private static boolean isCurrent(final File file, final File variant, final Long checksum) {
+
+		final Version version = versions.get(variant.getPath());
+
+		return version != null && variant.isFile() && version.equals(new Version(file, checksum));
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+
+		if (executor == null) {
+
+			executor = Executors.newSingleThreadExecutor(r -> {
+
+				final Thread thread = new Thread(r, "PrecompressedContent");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+		}
+
+		return executor;
+	}
+
+	// ----- nested classes -----
+	private static class CompressingOutputStream extends GZIPOutputStream {
+
+		public CompressingOutputStream(final OutputStream out) throws IOException {
+
+			super(out);
+
+			// compression happens only once, so use the best compression level
+			def.setLevel(Deflater.BEST_COMPRESSION);
+		}
+	}
+
+	private static class Version {
+
+		private long length       = 0L;
+		private long lastModified = 0L;
+		private Long checksum     = null;
+
+		public Version(final File file, final Long checksum) {
+
+			this.length       = file.length();
+			this.lastModified = file.lastModified();
+			this.checksum     = checksum;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (other instanceof Version) {
+
+				final Version version = (Version)other;
+
+				return length == version.length && lastModified == version.lastModified && Objects.equals(checksum, version.checksum);
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(length, lastModified, checksum);
+		}
+	}
+}
@@ -35,6 +35,7 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.ResultStream;
 import org.structr.core.Services;
 import org.structr.core.Value;
 import org.structr.core.app.App;
@@ -81,6 +82,23 @@ public abstract class Resource {
 	public abstract Result doGet(PropertyKey sortKey, boolean sortDescending, int pageSize, int page) throws FrameworkException;
 	public abstract RestMethodResult doPost(final Map<String, Object> propertySet) throws FrameworkException;
 
+	/**
+	 * Returns the results of a GET request as an iterable that can be
+	 * serialized while it is being filled. The default implementation
+	 * returns the materialized results of {@link #doGet}, resources that
+	 * can stream their results from the index should override this method.
+	 *
+	 * @param sortKey
+	 * @param sortDescending
+	 * @param pageSize
+	 * @param page
+	 * @return the results
+	 * @throws FrameworkException
+	 */
+	public ResultStream<? extends GraphObject> doGetStream(final PropertyKey sortKey, final boolean sortDescending, final int pageSize, final int page) throws FrameworkException {
+		return ResultStream.of(doGet(sortKey, sortDescending, pageSize, page));
+	}
+
 	@Override
 	public String toString() {
 		return getClass().getName() + "(" + getResourceSignature() + ")";
@@ -34,6 +34,7 @@ import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.ResultStream;
 import org.structr.core.app.App;
 import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
@@ -119,64 +120,22 @@ public class TypeResource extends SortableResource {
 	@Override
 	public Result doGet(final PropertyKey sortKey, final boolean sortDescending, final int pageSize, final int page) throws FrameworkException {
 
-		boolean includeDeletedAndHidden        = true;
-		boolean publicOnly                     = false;
-		PropertyKey actualSortKey              = sortKey;
-		boolean actualSortOrder                = sortDescending;
-
 		if (rawType != null) {
 
 			if (entityClass == null) {
 				throw new NotFoundException("Type " + rawType + " does not exist");
 			}
 
-			collectSearchAttributes(query);
-
-			// default sort key & order
-			if (actualSortKey == null) {
-
-				try {
-
-					GraphObject templateEntity  = ((GraphObject)entityClass.newInstance());
-					PropertyKey sortKeyProperty = templateEntity.getDefaultSortKey();
-					actualSortOrder             = GraphObjectComparator.DESCENDING.equals(templateEntity.getDefaultSortOrder());
-
-					if (sortKeyProperty != null) {
-
-						actualSortKey = sortKeyProperty;
-
-					} else {
-
-						actualSortKey = AbstractNode.name;
-					}
-
-				} catch(Throwable t) {
-
-					// fallback to name
-					actualSortKey = AbstractNode.name;
-				}
-			}
-
 			if (virtualType != null) {
 
-				final Result untransformedResult = query
-					.includeDeletedAndHidden(includeDeletedAndHidden)
-					.publicOnly(publicOnly)
-					.sort(actualSortKey)
-					.order(actualSortOrder)
-					.getResult();
-
-				final Result result = virtualType.transformOutput(securityContext, entityClass, untransformedResult);
+				final Result untransformedResult = configureQuery(sortKey, sortDescending).getResult();
+				final Result result              = virtualType.transformOutput(securityContext, entityClass, untransformedResult);
 
 				return PagingHelper.subResult(result, pageSize, page);
 
 			} else {
 
-				return query
-					.includeDeletedAndHidden(includeDeletedAndHidden)
-					.publicOnly(publicOnly)
-					.sort(actualSortKey)
-					.order(actualSortOrder)
+				return configureQuery(sortKey, sortDescending)
 					.pageSize(pageSize)
 					.page(page)
 					.getResult();
@@ -191,6 +150,21 @@ public class TypeResource extends SortableResource {
 		return new Result(emptyList, null, isCollectionResource(), isPrimitiveArray());
 	}
 
+	@Override
+	public ResultStream<? extends GraphObject> doGetStream(final PropertyKey sortKey, final boolean sortDescending, final int pageSize, final int page) throws FrameworkException {
+
+		// virtual types transform the whole result
+		if (rawType != null && entityClass != null && virtualType == null) {
+
+			return configureQuery(sortKey, sortDescending)
+				.pageSize(pageSize)
+				.page(page)
+				.getResultStream();
+		}
+
+		return super.doGetStream(sortKey, sortDescending, pageSize, page);
+	}
+
 	@Override
 	public RestMethodResult doPost(final Map<String, Object> propertySet) throws FrameworkException {
 
@@ -352,6 +326,47 @@ public class TypeResource extends SortableResource {
 	}
 
 	// ----- private methods -----
+	private Query configureQuery(final PropertyKey sortKey, final boolean sortDescending) throws FrameworkException {
+
+		boolean includeDeletedAndHidden        = true;
+		boolean publicOnly                     = false;
+		PropertyKey actualSortKey              = sortKey;
+		boolean actualSortOrder                = sortDescending;
+
+		collectSearchAttributes(query);
+
+		// default sort key & order
+		if (actualSortKey == null) {
+
+			try {
+
+				GraphObject templateEntity  = ((GraphObject)entityClass.newInstance());
+				PropertyKey sortKeyProperty = templateEntity.getDefaultSortKey();
+				actualSortOrder             = GraphObjectComparator.DESCENDING.equals(templateEntity.getDefaultSortOrder());
+
+				if (sortKeyProperty != null) {
+
+					actualSortKey = sortKeyProperty;
+
+				} else {
+
+					actualSortKey = AbstractNode.name;
+				}
+
+			} catch(Throwable t) {
+
+				// fallback to name
+				actualSortKey = AbstractNode.name;
+			}
+		}
+
+		return query
+			.includeDeletedAndHidden(includeDeletedAndHidden)
+			.publicOnly(publicOnly)
+			.sort(actualSortKey)
+			.order(actualSortOrder);
+	}
+
 	private Relation getRelationshipTemplate() {
 
 		try {
@@ -27,7 +27,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.ResultStream;
 import org.structr.core.Value;
 import org.structr.core.property.PropertyKey;
 import org.structr.rest.RestMethodResult;
@@ -83,6 +85,18 @@ public class ViewFilterResource extends WrappingResource {
 		throw new IllegalPathException("GET not allowed on " + getResourceSignature());
 	}
 
+	@Override
+	public ResultStream<? extends GraphObject> doGetStream(PropertyKey sortKey, boolean sortDescending, int pageSize, int page) throws FrameworkException {
+
+		if (wrappedResource != null) {
+
+			return wrappedResource.doGetStream(sortKey, sortDescending, pageSize, page);
+
+		}
+
+		throw new IllegalPathException("GET not allowed on " + getResourceSignature());
+	}
+
 	@Override
 	public RestMethodResult doPost(Map<String, Object> propertySet) throws FrameworkException {
 
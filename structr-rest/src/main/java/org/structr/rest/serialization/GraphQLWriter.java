@@ -34,11 +34,13 @@ import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Predicate;
+import org.structr.api.config.Settings;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.function.Functions;
+import org.structr.core.graphql.GraphQLDataLoader;
 import org.structr.core.graphql.GraphQLQueryConfiguration;
 import org.structr.core.graphql.GraphQLRequest;
 import org.structr.core.property.PropertyKey;
@@ -57,6 +59,7 @@ public class GraphQLWriter {
 	private final Serializer<GraphObject> root            = new RootSerializer();
 	private final Set<String> nonSerializerClasses        = new LinkedHashSet<>();
 	private final Set<Integer> visitedObjects             = ConcurrentHashMap.newKeySet();
+	private GraphQLDataLoader dataLoader                  = null;
 	protected boolean indent                              = true;
 
 	public GraphQLWriter(final boolean indent) {
@@ -138,15 +141,26 @@ public class GraphQLWriter {
 
 				} else {
 
+					final Iterable<GraphObject> entities = query.getEntities(securityContext);
+
+					if (Settings.GraphQLBatchLoading.getValue()) {
+
+						// resolve relationship fields level by level instead of once per object
+						dataLoader = new GraphQLDataLoader(securityContext, query);
+						dataLoader.prefetch(query.getRootPath(), entities);
+					}
+
 					writer.name(query.getFieldName());
 					writer.beginArray();
 
-					for (final GraphObject object : query.getEntities(securityContext)) {
+					for (final GraphObject object : entities) {
 
 						root.serialize(writer, null, object, query, query.getRootPath());
 					}
 
 					writer.endArray();
+
+					dataLoader = null;
 				}
 			}
 
@@ -322,13 +336,14 @@ public class GraphQLWriter {
 				for (final PropertyKey key : propertyConfig.getPropertyKeys()) {
 
 					final String name                      = key.jsonName();
-					final Predicate<GraphObject> predicate = getPredicate(graphQLQuery, path + "/" + name, key);
-					final Object value                     = source.getProperty(key, predicate);
+					final String childPath                 = path + "/" + name;
+					final Predicate<GraphObject> predicate = getPredicate(graphQLQuery, childPath, key);
+					final Object value                     = getValue(source, key, predicate, childPath);
 
 					if (value != null) {
 
 						writer.name(name);
-						serializeProperty(writer, key, value, graphQLQuery, path + "/" + name);
+						serializeProperty(writer, key, value, graphQLQuery, childPath);
 
 					} else {
 
@@ -344,6 +359,20 @@ public class GraphQLWriter {
 		}
 	}
 
+	private Object getValue(final GraphObject source, final PropertyKey key, final Predicate<GraphObject> predicate, final String path) {
+
+		if (dataLoader != null) {
+
+			final Object value = dataLoader.get(path, source, key, predicate);
+			if (value != null) {
+
+				return value;
+			}
+		}
+
+		return source.getProperty(key, predicate);
+	}
+
 	public class IterableSerializer extends Serializer<Iterable> {
 
 		@Override
@@ -20,13 +20,12 @@ package org.structr.rest.serialization;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -44,6 +43,7 @@ import org.structr.core.Value;
 import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.function.Functions;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -56,7 +56,9 @@ public abstract class StreamingWriter {
 
 	private static final Logger logger                   = LoggerFactory.getLogger(StreamingWriter.class.getName());
 	private static final long MAX_SERIALIZATION_TIME     = TimeUnit.SECONDS.toMillis(300);
+	private static final int FLUSH_INTERVAL              = 100;
 	private static final Set<PropertyKey> idTypeNameOnly = new LinkedHashSet<>();
+	private static final Map<Class, Boolean> staticKeySets = new ConcurrentHashMap<>();
 
 	static {
 
@@ -65,12 +67,13 @@ public abstract class StreamingWriter {
 		idTypeNameOnly.add(AbstractNode.name);
 	}
 
-	private final Map<String, Serializer> serializerCache = new LinkedHashMap<>();
-	private final Map<String, Serializer> serializers     = new LinkedHashMap<>();
+	private final Map<Class, Map<String, SerializationPlan>> plans = new HashMap<>();
+	private final Map<Class, Serializer> serializerCache  = new HashMap<>();
+	private final Map<Class, Serializer> serializers      = new HashMap<>();
 	private final Serializer<GraphObject> root            = new RootSerializer();
-	private final Set<String> nonSerializerClasses        = new LinkedHashSet<>();
-	private final Set<Integer> visitedObjects             = ConcurrentHashMap.newKeySet();
-	private final DecimalFormat decimalFormat             = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+	private final Serializer noSerializer                 = new PrimitiveSerializer();
+	private final Set<Class> nonSerializerClasses         = new HashSet<>();
+	private final Set<Integer> visitedObjects             = new HashSet<>();
 	private String resultKeyName                          = "result";
 	private boolean renderSerializationTime               = true;
 	private boolean renderResultCount                     = true;
@@ -89,21 +92,21 @@ public abstract class StreamingWriter {
 		this.propertyView       = propertyView;
 		this.indent             = indent;
 
-		serializers.put(GraphObject.class.getName(), root);
-		serializers.put(PropertyMap.class.getName(), new PropertyMapSerializer());
-		serializers.put(Iterable.class.getName(),    new IterableSerializer());
-		serializers.put(Map.class.getName(),         new MapSerializer());
+		serializers.put(GraphObject.class, root);
+		serializers.put(PropertyMap.class, new PropertyMapSerializer());
+		serializers.put(Iterable.class,    new IterableSerializer());
+		serializers.put(Map.class,         new MapSerializer());
 
-		nonSerializerClasses.add(Object.class.getName());
-		nonSerializerClasses.add(String.class.getName());
-		nonSerializerClasses.add(Integer.class.getName());
-		nonSerializerClasses.add(Long.class.getName());
-		nonSerializerClasses.add(Double.class.getName());
-		nonSerializerClasses.add(Float.class.getName());
-		nonSerializerClasses.add(Byte.class.getName());
-		nonSerializerClasses.add(Character.class.getName());
-		nonSerializerClasses.add(StringBuffer.class.getName());
-		nonSerializerClasses.add(Boolean.class.getName());
+		nonSerializerClasses.add(Object.class);
+		nonSerializerClasses.add(String.class);
+		nonSerializerClasses.add(Integer.class);
+		nonSerializerClasses.add(Long.class);
+		nonSerializerClasses.add(Double.class);
+		nonSerializerClasses.add(Float.class);
+		nonSerializerClasses.add(Byte.class);
+		nonSerializerClasses.add(Character.class);
+		nonSerializerClasses.add(StringBuffer.class);
+		nonSerializerClasses.add(Boolean.class);
 
 
 		//this.writer = new StructrWriter(writer);
@@ -115,6 +118,9 @@ public abstract class StreamingWriter {
 		final RestWriter writer = getRestWriter(securityContext, output);
 		final String view       = propertyView.get(securityContext);
 
+		// serialization plans contain converters bound to the security context
+		plans.clear();
+
 		if (indent) {
 			writer.setIndent("	");
 		}
@@ -131,6 +137,9 @@ public abstract class StreamingWriter {
 
 		RestWriter writer = getRestWriter(securityContext, output);
 
+		// serialization plans contain converters bound to the security context
+		plans.clear();
+
 		if (indent) {
 			writer.setIndent("	");
 		}
@@ -301,7 +310,7 @@ public abstract class StreamingWriter {
 		}
 
 		if (renderSerializationTime) {
-			writer.name("serialization_time").value(decimalFormat.format((System.nanoTime() - t0) / 1000000000.0));
+			writer.name("serialization_time").value(formatSeconds(System.nanoTime() - t0));
 		}
 
 		// finished
@@ -309,6 +318,106 @@ public abstract class StreamingWriter {
 		writer.endDocument();
 	}
 
+	/**
+	 * Writes the given objects as JSON Lines, i.e. one JSON object per line,
+	 * while the given iterable is being consumed, flushing the output
+	 * periodically so clients can process the results as they arrive.
+	 *
+	 * @param securityContext
+	 * @param output
+	 * @param results
+	 *
+	 * @return the number of objects written
+	 *
+	 * @throws IOException
+	 */
+	public int streamLines(final SecurityContext securityContext, final Writer output, final Iterable<? extends GraphObject> results) throws IOException {
+
+		final String localPropertyView = propertyView.get(securityContext);
+		final long startTime           = System.currentTimeMillis();
+		int count                      = 0;
+
+		// serialization plans contain converters bound to the security context
+		plans.clear();
+
+		for (final GraphObject obj : results) {
+
+			final RestWriter writer = getRestWriter(securityContext, output);
+
+			writer.beginDocument(null, localPropertyView);
+			root.serialize(writer, obj, localPropertyView, 0);
+			writer.endDocument();
+
+			output.write("\n");
+
+			if (++count % FLUSH_INTERVAL == 0) {
+				output.flush();
+			}
+
+			// check for timeout
+			if (System.currentTimeMillis() > startTime + MAX_SERIALIZATION_TIME) {
+
+				logger.error("JSON Lines serialization of {} took more than {} ms after {} results, aborted. Please review output view size or adjust timeout.", new Object[] { securityContext.getCompoundRequestURI(), MAX_SERIALIZATION_TIME, count } );
+				break;
+			}
+		}
+
+		output.flush();
+
+		return count;
+	}
+
+	/**
+	 * Writes the final line of a JSON Lines output, containing the paging
+	 * and sorting information and the result count of the given result,
+	 * with the same names as in the JSON envelope of a regular response.
+	 *
+	 * @param securityContext
+	 * @param output
+	 * @param result the result metadata
+	 * @param serializationTime the serialization time in nanoseconds
+	 *
+	 * @throws IOException
+	 */
+	public void streamLinesMetadata(final SecurityContext securityContext, final Writer output, final Result result, final long serializationTime) throws IOException {
+
+		final RestWriter writer = getRestWriter(securityContext, output);
+
+		writer.beginDocument(null, propertyView.get(securityContext));
+		writer.beginObject();
+
+		if (result.getPage() != null) {
+			writer.name("page").value(result.getPage());
+		}
+
+		if (result.getPageCount() != null) {
+			writer.name("page_count").value(result.getPageCount());
+		}
+
+		if (result.getPageSize() != null) {
+			writer.name("page_size").value(result.getPageSize());
+		}
+
+		if (result.getRawResultCount() != null) {
+			writer.name("result_count").value(result.getRawResultCount());
+		}
+
+		if (result.getSortKey() != null) {
+			writer.name("sort_key").value(result.getSortKey());
+		}
+
+		if (result.getSortOrder() != null) {
+			writer.name("sort_order").value(result.getSortOrder());
+		}
+
+		writer.name("serialization_time").value(formatSeconds(serializationTime));
+		writer.endObject();
+		writer.endDocument();
+
+		output.write("\n");
+		output.flush();
+	}
+
 	public void setResultKeyName(final String resultKeyName) {
 		this.resultKeyName = resultKeyName;
 	}
@@ -321,43 +430,162 @@ public abstract class StreamingWriter {
 		this.renderResultCount = doRender;
 	}
 
-	private Serializer getSerializerForType(Class type) {
+	private Serializer getSerializerForType(final Class type) {
 
-		Class localType       = type;
-		Serializer serializer = serializerCache.get(type.getName());
+		Serializer serializer = serializerCache.get(type);
+		if (serializer == null) {
 
-		if (serializer == null && !nonSerializerClasses.contains(type.getName())) {
+			if (!nonSerializerClasses.contains(type)) {
 
-			do {
-				serializer = serializers.get(localType.getName());
+				Class localType = type;
 
-				if (serializer == null) {
+				do {
+					serializer = serializers.get(localType);
 
-					Set<Class> interfaces = new LinkedHashSet<>();
-					collectAllInterfaces(localType, interfaces);
+					if (serializer == null) {
 
-					for (Class interfaceType : interfaces) {
+						Set<Class> interfaces = new LinkedHashSet<>();
+						collectAllInterfaces(localType, interfaces);
 
-						serializer = serializers.get(interfaceType.getName());
+						for (Class interfaceType : interfaces) {
 
-						if (serializer != null) {
-							break;
+							serializer = serializers.get(interfaceType);
+
+							if (serializer != null) {
+								break;
+							}
 						}
 					}
+
+					localType = localType.getSuperclass();
+
+				} while (serializer == null && localType != null && !localType.equals(Object.class));
+			}
+
+			// cache negative results as well, so the lookup runs only once per type
+			if (serializer == null) {
+				serializer = noSerializer;
+			}
+
+			serializerCache.put(type, serializer);
+		}
+
+		return serializer != noSerializer ? serializer : null;
+	}
+
+	/**
+	 * Returns the serialization plan for the given object and view, i.e. the
+	 * property keys to serialize, the keys to read the values from, their
+	 * JSON names and input converters. Plans are cached per type and view
+	 * for all types whose property set does not depend on the instance.
+	 */
+	private SerializationPlan getSerializationPlan(final SecurityContext securityContext, final GraphObject source, final String localPropertyView, final boolean compact) {
+
+		final Class type = source.getClass();
+
+		if (!hasStaticPropertyKeys(type)) {
+			return createSerializationPlan(securityContext, source, localPropertyView, compact);
+		}
+
+		Map<String, SerializationPlan> plansForType = plans.get(type);
+		if (plansForType == null) {
+
+			plansForType = new HashMap<>();
+			plans.put(type, plansForType);
+		}
+
+		final String planKey   = compact ? localPropertyView + "/compact" : localPropertyView;
+		SerializationPlan plan = plansForType.get(planKey);
+
+		if (plan == null) {
+
+			plan = createSerializationPlan(securityContext, source, localPropertyView, compact);
+			plansForType.put(planKey, plan);
+		}
+
+		return plan;
+	}
+
+	private SerializationPlan createSerializationPlan(final SecurityContext securityContext, final GraphObject source, final String localPropertyView, final boolean compact) {
+
+		final Iterable<PropertyKey> keys = compact ? idTypeNameOnly : source.getPropertyKeys(localPropertyView);
+		if (keys == null) {
+			return null;
+		}
+
+		final List<PropertyPlan> properties = new ArrayList<>();
+
+		for (final PropertyKey key : keys) {
+
+			// special handling for the internal _graph view: replace name with
+			// the name property from the ui view, in case it was overwritten
+			PropertyKey localKey = key;
+
+			if (View.INTERNAL_GRAPH_VIEW.equals(localPropertyView)) {
+
+				if (AbstractNode.name.equals(localKey)) {
+
+					// replace key
+					localKey = StructrApp.key(source.getClass(), AbstractNode.name.jsonName());
 				}
+			}
 
-				localType = localType.getSuperclass();
+			properties.add(new PropertyPlan(key, localKey, localKey.inputConverter(securityContext)));
+		}
 
-			} while (serializer == null && !localType.equals(Object.class));
+		return new SerializationPlan(properties.toArray(new PropertyPlan[0]));
+	}
 
+	/**
+	 * Indicates whether the property set of the given type only depends on
+	 * the type and the view (and not on the instance), so its serialization
+	 * plan can be cached.
+	 */
+	private static boolean hasStaticPropertyKeys(final Class type) {
 
-			// cache found serializer
-			if (serializer != null) {
-				serializerCache.put(type.getName(), serializer);
+		Boolean value = staticKeySets.get(type);
+		if (value == null) {
+
+			try {
+
+				final Class declaringClass = type.getMethod("getPropertyKeys", String.class).getDeclaringClass();
+
+				value = AbstractNode.class.equals(declaringClass) || AbstractRelationship.class.equals(declaringClass);
+
+			} catch (NoSuchMethodException nsmex) {
+
+				value = false;
 			}
+
+			staticKeySets.put(type, value);
 		}
 
-		return serializer;
+		return value;
+	}
+
+	/**
+	 * Formats the given number of nanoseconds as seconds with nine decimal
+	 * places without using a (non-threadsafe and slow) DecimalFormat.
+	 */
+	static String formatSeconds(final long nanos) {
+
+		final StringBuilder buf = new StringBuilder(20);
+		final String fraction   = Long.toString(Math.abs(nanos % 1000000000L));
+
+		if (nanos < 0) {
+			buf.append("-");
+		}
+
+		buf.append(Math.abs(nanos / 1000000000L));
+		buf.append(".");
+
+		for (int i=fraction.length(); i<9; i++) {
+			buf.append("0");
+		}
+
+		buf.append(fraction);
+
+		return buf.toString();
 	}
 
 	private void collectAllInterfaces(Class type, Set<Class> interfaces) {
@@ -417,11 +645,13 @@ public abstract class StreamingWriter {
 		}
 
 		public void serializeProperty(RestWriter writer, PropertyKey key, Object value, String localPropertyView, int depth) {
+			serializeProperty(writer, key, key.inputConverter(writer.getSecurityContext()), value, localPropertyView, depth);
+		}
 
-			final SecurityContext securityContext = writer.getSecurityContext();
+		public void serializeProperty(RestWriter writer, PropertyKey key, PropertyConverter converter, Object value, String localPropertyView, int depth) {
 
 			try {
-				final PropertyConverter converter = key.inputConverter(securityContext);
+
 				if (converter != null) {
 
 					Object convertedValue = null;
@@ -460,6 +690,8 @@ public abstract class StreamingWriter {
 			// mark object as visited
 			if (source != null) {
 
+				final SecurityContext securityContext = writer.getSecurityContext();
+
 				hashCode = source.hashCode();
 				visitedObjects.add(hashCode);
 
@@ -468,49 +700,33 @@ public abstract class StreamingWriter {
 				// prevent endless recursion by pruning at depth n
 				if (depth <= outputNestingDepth) {
 
-					// property keys
-					Iterable<PropertyKey> keys = source.getPropertyKeys(localPropertyView);
-					if (keys != null) {
+					// speciality for the Ui view: limit recursive rendering to (id, name)
+					final boolean compact        = compactNestedProperties && depth > 0 && PropertyView.Ui.equals(localPropertyView);
+					final SerializationPlan plan = getSerializationPlan(securityContext, source, localPropertyView, compact);
 
-						// speciality for the Ui view: limit recursive rendering to (id, name)
-						if (compactNestedProperties && depth > 0 && PropertyView.Ui.equals(localPropertyView)) {
-							keys = idTypeNameOnly;
-						}
+					if (plan != null) {
 
-						for (final PropertyKey key : keys) {
+						for (final PropertyPlan property : plan.properties) {
 
-							final QueryRange range = writer.getSecurityContext().getRange(key.jsonName());
+							final QueryRange range = securityContext.getRange(property.jsonName);
 							if (range != null) {
 								// Reset count for each key
 								range.resetCount();
 							}
 
-							// special handling for the internal _graph view: replace name with
-							// the name property from the ui view, in case it was overwritten
-							PropertyKey localKey = key;
-
-							if (View.INTERNAL_GRAPH_VIEW.equals(localPropertyView)) {
-
-								if (AbstractNode.name.equals(localKey)) {
-
-									// replace key
-									localKey = StructrApp.key(source.getClass(), AbstractNode.name.jsonName());
-								}
-							}
-
-
-							final Object value = source.getProperty(localKey, range);
+							final Object value = source.getProperty(property.localKey, range);
 							if (value != null) {
 
-								if (!(reduceRedundancy && visitedObjects.contains(value.hashCode()))) {
+								// only graph objects can be visited, no need to compute hash codes of collections etc.
+								if (!(reduceRedundancy && value instanceof GraphObject && visitedObjects.contains(value.hashCode()))) {
 
-									writer.name(key.jsonName());
-									serializeProperty(writer, localKey, value, localPropertyView, depth+1);
+									writer.name(property.jsonName);
+									serializeProperty(writer, property.localKey, property.converter, value, localPropertyView, depth+1);
 								}
 
 							} else {
 
-								writer.name(localKey.jsonName()).nullValue();
+								writer.name(property.jsonName).nullValue();
 							}
 						}
 					}
@@ -593,4 +809,36 @@ public abstract class StreamingWriter {
 			writer.endObject();
 		}
 	}
+
+	public class PrimitiveSerializer extends Serializer<Object> {
+
+		@Override
+		public void serialize(RestWriter writer, Object value, String localPropertyView, int depth) throws IOException {
+			serializePrimitive(writer, value);
+		}
+	}
+
+	// ----- nested classes -----
+	private static class SerializationPlan {
+
+		private PropertyPlan[] properties = null;
+
+		public SerializationPlan(final PropertyPlan[] properties) {
+			this.properties = properties;
+		}
+	}
+
+	private static class PropertyPlan {
+
+		private PropertyConverter converter = null;
+		private PropertyKey localKey        = null;
+		private String jsonName             = null;
+
+		public PropertyPlan(final PropertyKey key, final PropertyKey localKey, final PropertyConverter converter) {
+
+			this.jsonName  = key.jsonName();
+			this.converter = converter;
+			this.localKey  = localKey;
+		}
+	}
 }
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Stores session data in one file per session in a local directory.
+ *
+ * File names are derived from a hash of the session id, so the session
+ * ids can not be read from the directory listing. The directory and the
+ * files are only accessible by the owner of the process.
+ */
+public class FileSessionStorage implements SessionStorage {
+
+	private static final String SUFFIX = ".session";
+
+	private FileAttribute<Set<PosixFilePermission>> fileAttributes = null;
+	private Path directory                                         = null;
+
+	public FileSessionStorage(final Path directory) throws Exception {
+
+		this.directory = directory;
+
+		Files.createDirectories(directory);
+
+		if (Files.getFileStore(directory).supportsFileAttributeView("posix")) {
+
+			this.fileAttributes = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+
+			Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+
+		} else {
+
+			restrictToOwner(directory);
+		}
+	}
+
+	@Override
+	public void store(final String id, final byte[] data) throws Exception {
+
+		final Path file = getPath(id);
+		final Path tmp  = createTempFile();
+
+		try {
+
+			// write to temporary file first so readers never see partial data
+			try (final OutputStream out = Files.newOutputStream(tmp)) {
+				out.write(data);
+			}
+
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} finally {
+
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	@Override
+	public byte[] load(final String id) throws Exception {
+
+		final Path file = getPath(id);
+		if (Files.exists(file)) {
+
+			return Files.readAllBytes(file);
+		}
+
+		return null;
+	}
+
+	@Override
+	public void delete(final String id) throws Exception {
+		Files.deleteIfExists(getPath(id));
+	}
+
+	@Override
+	public void deleteExpired(final long timestamp) throws Exception {
+
+		try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+
+			for (final Path file : files) {
+
+				try {
+
+					if (Files.getLastModifiedTime(file).toMillis() < timestamp) {
+
+						Files.deleteIfExists(file);
+					}
+
+				} catch (IOException ignore) {
+					// file was removed concurrently
+				}
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private Path getPath(final String id) {
+		return directory.resolve(DigestUtils.sha256Hex(id) + SUFFIX);
+	}
+
+	private Path createTempFile() throws IOException {
+
+		if (fileAttributes != null) {
+
+			return Files.createTempFile(directory, "session", ".tmp", fileAttributes);
+		}
+
+		final Path tmp = Files.createTempFile(directory, "session", ".tmp");
+
+		restrictToOwner(tmp);
+
+		return tmp;
+	}
+
+	private void restrictToOwner(final Path path) {
+
+		final File file = path.toFile();
+
+		file.setReadable(false, false);
+		file.setReadable(true, true);
+		file.setWritable(false, false);
+		file.setWritable(true, true);
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.service;
+
+import org.apache.xerces.impl.dv.util.Base64;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.Tx;
+import org.structr.rest.auth.AuthHelper;
+
+/**
+ * Stores session data Base64-encoded on the principal node the session
+ * belongs to.
+ */
+public class GraphSessionStorage implements SessionStorage {
+
+	@Override
+	public void store(final String id, final byte[] data) throws Exception {
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			final Principal user = AuthHelper.getPrincipalForSessionId(id);
+			if (user != null) {
+
+				user.setSessionData(Base64.encode(data));
+			}
+
+			tx.success();
+		}
+	}
+
+	@Override
+	public byte[] load(final String id) throws Exception {
+
+		byte[] data = null;
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			final Principal user = AuthHelper.getPrincipalForSessionId(id);
+			if (user != null) {
+
+				final String sessionDataString = user.getSessionData();
+				if (sessionDataString != null) {
+
+					data = Base64.decode(sessionDataString);
+				}
+			}
+
+			tx.success();
+		}
+
+		return data;
+	}
+
+	@Override
+	public void delete(final String id) throws Exception {
+		// session data is removed together with the principal
+	}
+
+	@Override
+	public void deleteExpired(final long timestamp) throws Exception {
+		// session data is removed together with the principal
+	}
+}
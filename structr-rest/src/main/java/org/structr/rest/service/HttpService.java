@@ -37,6 +37,12 @@ import org.apache.chemistry.opencmis.server.impl.browser.CmisBrowserBindingServl
 import org.apache.chemistry.opencmis.server.shared.BasicAuthCallContextHandler;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
@@ -71,6 +77,7 @@ import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
 import org.structr.core.Services;
 import org.structr.rest.ResourceProvider;
+import org.structr.rest.common.PrecompressedContent;
 import org.tuckey.web.filters.urlrewrite.UrlRewriteFilter;
 
 /**
@@ -182,6 +189,7 @@ public class HttpService implements RunnableService {
 		final String contextPath            = System.getProperty("contextPath", "/");
 		final boolean enableHttps           = Settings.HttpsEnabled.getValue();
 		final boolean enableGzipCompression = Settings.GzipCompression.getValue();
+		final boolean enableHttp2           = Settings.Http2Enabled.getValue();
 		final boolean logRequests           = Settings.RequestLogging.getValue();
 		final String logPrefix              = Settings.LogPrefix.getValue();
 		final String host                   = Settings.ApplicationHost.getValue();
@@ -402,7 +410,17 @@ public class HttpService implements RunnableService {
 			//httpConfig.setOutputBufferSize(8192);
 			httpConfig.setRequestHeaderSize(requestHeaderSize);
 
-			final ServerConnector httpConnector = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+			final ServerConnector httpConnector;
+
+			if (enableHttp2) {
+
+				// HTTP/1.1 with upgrade to cleartext HTTP/2 (h2c)
+				httpConnector = new ServerConnector(server, new HttpConnectionFactory(httpConfig), new HTTP2CServerConnectionFactory(httpConfig));
+
+			} else {
+
+				httpConnector = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+			}
 
 			httpConnector.setHost(host);
 			httpConnector.setPort(Settings.HttpPort.getValue());
@@ -425,9 +443,37 @@ public class HttpService implements RunnableService {
 				sslContextFactory.setKeyStorePath(keyStorePath);
 				sslContextFactory.setKeyStorePassword(keyStorePassword);
 
-				final ServerConnector https = new ServerConnector(server,
-					new SslConnectionFactory(sslContextFactory, "http/1.1"),
-					new HttpConnectionFactory(httpsConfig));
+				ServerConnector https = null;
+
+				if (enableHttp2) {
+
+					try {
+
+						// HTTP/2 over TLS, negotiated via ALPN with a fallback to HTTP/1.1
+						final ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory();
+						alpn.setDefaultProtocol(HttpVersion.HTTP_1_1.asString());
+
+						sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+						sslContextFactory.setUseCipherSuitesOrder(true);
+
+						https = new ServerConnector(server,
+							new SslConnectionFactory(sslContextFactory, alpn.getProtocol()),
+							alpn,
+							new HTTP2ServerConnectionFactory(httpsConfig),
+							new HttpConnectionFactory(httpsConfig));
+
+					} catch (Throwable t) {
+
+						logger.warn("Unable to enable HTTP/2 for HTTPS, ALPN is not available: {}", t.getMessage());
+					}
+				}
+
+				if (https == null) {
+
+					https = new ServerConnector(server,
+						new SslConnectionFactory(sslContextFactory, "http/1.1"),
+						new HttpConnectionFactory(httpsConfig));
+				}
 
 				https.setPort(httpsPort);
 				https.setIdleTimeout(500000);
@@ -480,6 +526,8 @@ public class HttpService implements RunnableService {
 			}
 		}
 
+		PrecompressedContent.shutdown();
+
 		// send lifecycle event that the server has been stopped
 		sendLifecycleEvent(LifecycleEvent.Stopped);
 	}
@@ -542,6 +590,18 @@ public class HttpService implements RunnableService {
 
 							resourceHandler.setResourceBase(resourceBase);
 							resourceHandler.setCacheControl("max-age=0");
+
+							if (Settings.Precompression.getValue()) {
+
+								// serve pre-compressed variants (foo.css.br, foo.css.gz) if the client accepts them
+								resourceHandler.setPrecompressedFormats(new CompressedContentFormat[] { CompressedContentFormat.BR, CompressedContentFormat.GZIP });
+
+								final File resourceDirectory = new File(resourceBase);
+								if (resourceDirectory.isDirectory() && resourceDirectory.canWrite()) {
+
+									logger.info("{} static resources in {} are available pre-compressed", PrecompressedContent.precompressDirectory(resourceDirectory), resourceBase);
+								}
+							}
 							//resourceHandler.setEtags(true);
 
 							final ContextHandler staticResourceHandler = new ContextHandler();
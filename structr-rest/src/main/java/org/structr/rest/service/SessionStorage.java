@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.service;
+
+/**
+ * Persistent tier of the {@link StructrSessionDataStore}.
+ */
+public interface SessionStorage {
+
+	void store(final String id, final byte[] data) throws Exception;
+	byte[] load(final String id) throws Exception;
+	void delete(final String id) throws Exception;
+
+	/**
+	 * Deletes the data of all sessions that were last stored before the
+	 * given timestamp.
+	 *
+	 * @param timestamp
+	 *
+	 * @throws Exception
+	 */
+	void deleteExpired(final long timestamp) throws Exception;
+}
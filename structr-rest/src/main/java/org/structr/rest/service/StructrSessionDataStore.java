@@ -18,30 +18,48 @@
  */
 package org.structr.rest.service;
 
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang3.SerializationUtils;
-import org.apache.xerces.impl.dv.util.Base64;
 import org.eclipse.jetty.server.session.AbstractSessionDataStore;
 import org.eclipse.jetty.server.session.SessionData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Services;
 import org.structr.core.app.StructrApp;
-import org.structr.core.entity.Principal;
 import org.structr.core.graph.Tx;
 import org.structr.rest.auth.AuthHelper;
 import org.structr.rest.auth.SessionHelper;
 
 /**
+ * Session data store with an in-memory tier and an optional persistent
+ * tier, see {@link SessionStorage}.
  *
- *
+ * Session data is only stored for sessions of authenticated users. The
+ * in-memory tier answers loads of known sessions without accessing the
+ * persistent tier, so the persistent tier is only read for sessions
+ * that were stored before a restart.
  */
 public class StructrSessionDataStore extends AbstractSessionDataStore {
 
 	private static final Logger logger = LoggerFactory.getLogger(StructrSessionDataStore.class.getName());
 
+	private final Map<String, SessionData> sessions = new ConcurrentHashMap<>();
+	private SessionStorage storage                  = null;
+
 	public StructrSessionDataStore() {
+		this(createSessionStorage());
+	}
+
+	public StructrSessionDataStore(final SessionStorage storage) {
+		this.storage = storage;
 	}
 
 	@Override
@@ -49,82 +67,114 @@ public class StructrSessionDataStore extends AbstractSessionDataStore {
 
 		assertInitialized();
 
-		try (final Tx tx = StructrApp.getInstance().tx()) {
+		// store sessions only for authenticated users
+		if (isAuthenticated(id)) {
 
-			final Principal user = AuthHelper.getPrincipalForSessionId(id);
+			sessions.put(id, data);
 
-			// store sessions only for authenticated users
-			if (user != null) {
+			if (storage != null) {
 
-				user.setSessionData(Base64.encode(SerializationUtils.serialize(data)));
-			}
+				try {
 
-			tx.success();
+					storage.store(id, SerializationUtils.serialize(data));
 
-		} catch (FrameworkException ex) {
+				} catch (Throwable t) {
 
-			logger.info("Unable to store session data for session id " + id + ".", ex);
+					logger.info("Unable to store session data for session id " + id + ".", t);
+				}
+			}
 		}
 	}
 
 	@Override
 	public Set<String> doGetExpired(final Set<String> candidates) {
-		return candidates;
-	}
 
-	@Override
-	public boolean isPassivating() {
-		return true;
-	}
+		final Set<String> expired = new HashSet<>(candidates);
+		final long now            = System.currentTimeMillis();
 
-	@Override
-	public boolean exists(final String id) throws Exception {
+		// remove sessions that expired while not in the session cache, they
+		// are not necessarily loadable any more, so delete() might not be called
+		for (final Iterator<Entry<String, SessionData>> it = sessions.entrySet().iterator(); it.hasNext();) {
 
-		assertInitialized();
+			final Entry<String, SessionData> entry = it.next();
+			if (entry.getValue().isExpiredAt(now)) {
 
-		try (final Tx tx = StructrApp.getInstance().tx()) {
+				final String id = entry.getKey();
 
-			final boolean exists = AuthHelper.getPrincipalForSessionId(id) != null;
+				it.remove();
+				expired.add(id);
 
-			tx.success();
+				if (storage != null) {
 
-			return exists;
+					try {
 
-		} catch (FrameworkException ex) {
+						storage.delete(id);
 
-			logger.info("Unable to determine if session " + id + " exists.", ex);
+					} catch (Throwable t) {
+
+						logger.info("Unable to delete session data for session id " + id + ".", t);
+					}
+				}
+			}
 		}
 
-		return false;
+		final long timeout = Services.getGlobalSessionTimeout() * 1000L;
+		if (storage != null && timeout > 0) {
+
+			// persisted sessions are rewritten on every access, so sessions
+			// that were not stored within the timeout have expired
+			try {
+
+				storage.deleteExpired(now - timeout);
+
+			} catch (Throwable t) {
+
+				logger.info("Unable to delete expired session data.", t);
+			}
+		}
+
+		return expired;
 	}
 
 	@Override
-	public SessionData load(final String id) throws Exception {
+	public boolean isPassivating() {
+		return true;
+	}
+
+	@Override
+	public boolean exists(final String id) throws Exception {
 
 		assertInitialized();
 
-		SessionData sessionData = null;
+		return isAuthenticated(id);
+	}
 
-		try (final Tx tx = StructrApp.getInstance().tx()) {
+	@Override
+	public SessionData load(final String id) throws Exception {
 
-			final Principal user = AuthHelper.getPrincipalForSessionId(id);
+		assertInitialized();
 
+		// load sessions only for authenticated users
+		if (!isAuthenticated(id)) {
+			return null;
+		}
 
-			// store sessions only for authenticated users
-			if (user != null) {
+		SessionData sessionData = sessions.get(id);
+		if (sessionData == null && storage != null) {
 
-				final String sessionDataString = user.getSessionData();
-				if (sessionDataString != null) {
+			try {
 
-					sessionData = SerializationUtils.deserialize(Base64.decode(sessionDataString));
-				}
-			}
+				final byte[] data = storage.load(id);
+				if (data != null) {
 
-			tx.success();
+					sessionData = SerializationUtils.deserialize(data);
+					sessions.put(id, sessionData);
+				}
 
-		} catch (FrameworkException ex) {
+			} catch (Throwable t) {
 
-			logger.info("Unable to load session data for session id " + id + ".", ex);
+				logger.info("Unable to load session data for session id " + id + ".", t);
+			}
 		}
 
 		return sessionData;
@@ -135,6 +185,20 @@ public class StructrSessionDataStore extends AbstractSessionDataStore {
 
 		assertInitialized();
 
+		sessions.remove(id);
+
+		if (storage != null) {
+
+			try {
+
+				storage.delete(id);
+
+			} catch (Throwable t) {
+
+				logger.info("Unable to delete session data for session id " + id + ".", t);
+			}
+		}
+
 		try (final Tx tx = StructrApp.getInstance().tx()) {
 
 			SessionHelper.clearSession(id);
@@ -159,4 +223,51 @@ public class StructrSessionDataStore extends AbstractSessionDataStore {
 			try { Thread.sleep(1000); } catch (Throwable t) {}
 		}
 	}
+
+	private boolean isAuthenticated(final String id) {
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			final boolean exists = AuthHelper.getPrincipalForSessionId(id) != null;
+
+			tx.success();
+
+			return exists;
+
+		} catch (FrameworkException ex) {
+
+			logger.info("Unable to determine if session " + id + " exists.", ex);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Creates the persistent tier configured in application.session.store,
+	 * or null if session data is only kept in memory.
+	 */
+	private static SessionStorage createSessionStorage() {
+
+		switch (Settings.SessionStore.getValue()) {
+
+			case "memory":
+				return null;
+
+			case "graph":
+				return new GraphSessionStorage();
+
+			default:
+
+				try {
+
+					return new FileSessionStorage(Paths.get(Settings.getFullSettingPath(Settings.SessionStorePath)));
+
+				} catch (Exception ex) {
+
+					logger.warn("Unable to create session store directory, session data will not be persisted: {}", ex.getMessage());
+				}
+		}
+
+		return null;
+	}
 }
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -49,6 +50,7 @@ import org.structr.core.IJsonInput;
 import org.structr.core.JsonInput;
 import org.structr.core.JsonSingleInput;
 import org.structr.core.Result;
+import org.structr.core.ResultStream;
 import org.structr.core.Services;
 import org.structr.core.Value;
 import org.structr.core.app.App;
@@ -86,6 +88,10 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	public static final String REQUEST_PARAMETER_SORT_KEY               = "sort";
 	public static final String REQUEST_PARAMETER_SORT_ORDER             = "order";
 	public static final String REQUEST_PARAMTER_OUTPUT_DEPTH            = "outputNestingDepth";
+	public static final String REQUEST_PARAMETER_OUTPUT_FORMAT          = "outputFormat";
+	public static final String REQUEST_PARAMETER_RESULT_COUNT           = "resultCount";
+	public static final String OUTPUT_FORMAT_NDJSON                     = "ndjson";
+	public static final String CONTENT_TYPE_NDJSON                      = "application/x-ndjson";
 	public static final Set<String> commonRequestParameters             = new LinkedHashSet<>();
 	private static final Logger logger                                  = LoggerFactory.getLogger(JsonRestServlet.class.getName());
 
@@ -97,6 +103,8 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_KEY);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_ORDER);
 		commonRequestParameters.add(REQUEST_PARAMTER_OUTPUT_DEPTH);
+		commonRequestParameters.add(REQUEST_PARAMETER_OUTPUT_FORMAT);
+		commonRequestParameters.add(REQUEST_PARAMETER_RESULT_COUNT);
 		commonRequestParameters.add("debugLoggingEnabled");
 		commonRequestParameters.add("ignoreResultCount");
 
@@ -821,6 +829,44 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 				sortKey = StructrApp.getConfiguration().getPropertyKeyForDatabaseName(type, sortKeyName, false);
 			}
 
+			// stream results as JSON Lines while they are being fetched
+			if (returnContent && isJsonLinesRequest(request)) {
+
+				final StreamingJsonWriter jsonStreamer = new StreamingJsonWriter(this.propertyView, false, depth);
+				final boolean renderResultCount        = Boolean.parseBoolean(request.getParameter(REQUEST_PARAMETER_RESULT_COUNT));
+
+				// the remaining results are only read if they need to be counted
+				securityContext.ignoreResultCount(!renderResultCount);
+
+				// query and output need to share a transaction since the results are read lazily
+				try (final Tx tx = app.tx()) {
+
+					final ResultStream<? extends GraphObject> results = resource.doGetStream(sortKey, sortDescending, pageSize, page);
+					final long t0                                     = System.nanoTime();
+
+					response.setContentType(CONTENT_TYPE_NDJSON + "; charset=utf-8");
+					response.setStatus(HttpServletResponse.SC_OK);
+
+					jsonStreamer.streamLines(securityContext, response.getWriter(), results);
+
+					if (renderResultCount) {
+
+						final Result metadata = new Result(Collections.emptyList(), results.getResultCount(), true, false);
+
+						PagingHelper.addPagingParameter(metadata, pageSize, page);
+
+						// allow resource to modify result metadata
+						resource.postProcessResultSet(metadata);
+
+						jsonStreamer.streamLinesMetadata(securityContext, response.getWriter(), metadata, System.nanoTime() - t0);
+					}
+
+					tx.success();
+				}
+
+				return;
+			}
+
 			// isolate doGet
 			boolean retry = true;
 			while (retry) {
@@ -961,6 +1007,13 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+	private boolean isJsonLinesRequest(final HttpServletRequest request) {
+
+		final String accept = request.getHeader("Accept");
+
+		return OUTPUT_FORMAT_NDJSON.equals(request.getParameter(REQUEST_PARAMETER_OUTPUT_FORMAT)) || (accept != null && accept.contains(CONTENT_TYPE_NDJSON));
+	}
+
 	private void assertInitialized() throws FrameworkException {
 
 		if (!Services.getInstance().isInitialized()) {
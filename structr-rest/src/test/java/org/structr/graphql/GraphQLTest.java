@@ -33,6 +33,7 @@ import static org.junit.Assert.fail;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
@@ -587,6 +588,95 @@ public class GraphQLTest extends StructrGraphQLTest {
 				.post("/");
 	}
 
+	@Test
+	public void testBatchLoading() {
+
+		RestAssured.basePath = "/structr/graphql";
+
+		try (final Tx tx = app.tx()) {
+
+			final PropertyKey<List> membersKey = StructrApp.key(Group.class, "members");
+
+			for (int i=0; i<5; i++) {
+
+				final List<Principal> members = new LinkedList<>();
+
+				for (int j=0; j<3; j++) {
+					members.add(app.create(Principal.class, new NodeAttribute<>(Principal.name, "member" + i + "-" + j)));
+				}
+
+				app.create(Group.class,
+					new NodeAttribute<>(Group.name, "group" + i),
+					new NodeAttribute<>(membersKey, members)
+				);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final String query = "{ Group(_sort: \"name\", _pageSize: 10) { id, name, members(_sort: \"name\") { id, name, groups { name } } } }";
+
+		try {
+
+			Settings.GraphQLBatchLoading.setValue(false);
+
+			final Map<String, Object> expected = fetchGraphQL(query);
+
+			Settings.GraphQLBatchLoading.setValue(true);
+
+			final Map<String, Object> result = fetchGraphQL(query);
+
+			assertEquals("Batch loading must not change the result", expected, result);
+
+			assertMapPathValueIs(result, "Group.#",                          5);
+			assertMapPathValueIs(result, "Group.2.name",                     "group2");
+			assertMapPathValueIs(result, "Group.2.members.#",                3);
+			assertMapPathValueIs(result, "Group.2.members.1.name",           "member2-1");
+			assertMapPathValueIs(result, "Group.2.members.1.groups.#",       1);
+			assertMapPathValueIs(result, "Group.2.members.1.groups.0.name",  "group2");
+			assertMapPathValueIs(result, "Group.4.members.2.name",           "member4-2");
+
+		} finally {
+
+			Settings.GraphQLBatchLoading.setValue(true);
+		}
+	}
+
+	@Test
+	public void testQueryComplexityLimits() {
+
+		RestAssured.basePath = "/structr/graphql";
+
+		final int maxCost  = Settings.GraphQLMaxQueryCost.getValue();
+		final int maxDepth = Settings.GraphQLMaxQueryDepth.getValue();
+
+		try {
+
+			Settings.GraphQLMaxQueryCost.setValue(1000);
+			Settings.GraphQLMaxQueryDepth.setValue(3);
+
+			// 10 groups with 3 fields each, 10 members per group with 1 field each: 130
+			fetchGraphQL("{ Group(_pageSize: 10) { id, name, members(_pageSize: 10) { id } } }");
+
+			// explicit page sizes must be counted as they are
+			assertRejected("{ Group(_pageSize: 100000) { id } }", "Estimated query cost 100000 exceeds the maximum cost of 1000, please use pageSize arguments to limit the result.");
+
+			// unpaged lists are counted with the default fan-out of 100: 100 + 100 + 100 * 100 * 2
+			assertRejected("{ Group { id, members { id, name } } }", "Estimated query cost 20200 exceeds the maximum cost of 1000, please use pageSize arguments to limit the result.");
+
+			assertRejected("{ Group(_pageSize: 1) { members(_pageSize: 1) { groups(_pageSize: 1) { members(_pageSize: 1) { id } } } } }", "Query depth 4 of Group exceeds the maximum depth of 3.");
+
+		} finally {
+
+			Settings.GraphQLMaxQueryCost.setValue(maxCost);
+			Settings.GraphQLMaxQueryDepth.setValue(maxDepth);
+		}
+	}
+
 	// ----- private methods -----
 	private Map<String, Object> fetchGraphQL(final String query) {
 
@@ -606,6 +696,25 @@ public class GraphQLTest extends StructrGraphQLTest {
 			.as(Map.class);
 	}
 
+	private void assertRejected(final String query, final String message) {
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseTo(System.out))
+				.body(query)
+
+			.expect()
+				.statusCode(422)
+				.body("code",    equalTo(422))
+				.body("message", equalTo(message))
+				.body("query",   equalTo(query))
+
+			.when()
+				.post("/");
+	}
+
 	private void assertMapPathValueIs(final Map<String, Object> map, final String mapPath, final Object value) {
 
 		final String[] parts = mapPath.split("[\\.]+");
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the creation of pre-compressed variants of static content.
+ */
+public class PrecompressedContentTest {
+
+	@Test
+	public void testGzipVariant() throws IOException {
+
+		final File directory = Files.createTempDirectory("structr-precompression").toFile();
+
+		try {
+
+			final File small = new File(directory, "small.css");
+			final File large = new File(directory, "large.css");
+			final File file  = new File(directory, "test.css");
+
+			FileUtils.writeStringToFile(small, "body { margin: 0; }", StandardCharsets.UTF_8);
+			FileUtils.writeStringToFile(file, createContent("body"), StandardCharsets.UTF_8);
+
+			try (final RandomAccessFile raf = new RandomAccessFile(large, "rw")) {
+				raf.setLength(20 * 1024 * 1024);
+			}
+
+			assertNull("Small files should not be compressed", PrecompressedContent.createGzipVariant(small, null));
+			assertNull("Large files should not be compressed", PrecompressedContent.createGzipVariant(large, null));
+
+			large.delete();
+
+			// variant is created in the background, the first request is served uncompressed
+			assertNull("Compressed variant must not be created in the requesting thread", PrecompressedContent.getGzipVariant(file, 1L));
+
+			final File variant = waitForGzipVariant(file, 1L);
+
+			assertNotNull("Compressed variant was not created", variant);
+			assertEquals("Invalid compressed variant name", "test.css.gz", variant.getName());
+			assertTrue("Compressed variant should be smaller than the original file", variant.length() < file.length());
+			assertEquals("Invalid compressed variant content", createContent("body"), decompress(variant));
+
+			// modification with identical size and modification time (coarse timestamps) must be detected by the checksum
+			final long lastModified = file.lastModified();
+
+			FileUtils.writeStringToFile(file, createContent("span"), StandardCharsets.UTF_8);
+			file.setLastModified(lastModified);
+
+			assertNull("Outdated compressed variant must not be served", PrecompressedContent.getGzipVariant(file, 2L));
+			assertEquals("Compressed variant was not updated", createContent("span"), decompress(waitForGzipVariant(file, 2L)));
+
+			// modification of the original file must update the variant
+			FileUtils.writeStringToFile(file, createContent("div"), StandardCharsets.UTF_8);
+
+			assertEquals("Compressed variant was not updated", createContent("div"), decompress(PrecompressedContent.createGzipVariant(file, 3L)));
+
+			// directory pass compresses only files with known suffixes
+			FileUtils.writeStringToFile(new File(directory, "test.bin"), createContent("bin"), StandardCharsets.UTF_8);
+
+			assertEquals("Invalid number of pre-compressed files", 1, PrecompressedContent.precompressDirectory(directory));
+			assertFalse("Binary file should not be compressed", new File(directory, "test.bin.gz").exists());
+
+			PrecompressedContent.deleteVariants(file);
+
+			assertFalse("Compressed variant was not deleted", variant.exists());
+
+		} finally {
+
+			FileUtils.deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void testCompressibleContentTypes() {
+
+		assertTrue("CSS should be compressible",                       PrecompressedContent.isCompressible("text/css"));
+		assertTrue("HTML with charset should be compressible",         PrecompressedContent.isCompressible("text/html; charset=utf-8"));
+		assertTrue("JavaScript should be compressible",                PrecompressedContent.isCompressible("application/javascript"));
+		assertTrue("SVG images should be compressible",                PrecompressedContent.isCompressible("image/svg+xml"));
+		assertFalse("CSV data should not be compressible",             PrecompressedContent.isCompressible("text/csv"));
+		assertFalse("PNG images should not be compressible",           PrecompressedContent.isCompressible("image/png"));
+		assertFalse("Unknown content type should not be compressible", PrecompressedContent.isCompressible(null));
+	}
+
+	// ----- private methods -----
+	private String createContent(final String selector) {
+
+		final StringBuilder buf = new StringBuilder();
+
+		for (int i=0; i<100; i++) {
+			buf.append(selector).append(".class").append(i).append(" { margin: 0; padding: 0; }\n");
+		}
+
+		return buf.toString();
+	}
+
+	private File waitForGzipVariant(final File file, final Long checksum) {
+
+		for (int i=0; i<100; i++) {
+
+			final File variant = PrecompressedContent.getGzipVariant(file, checksum);
+			if (variant != null) {
+
+				return variant;
+			}
+
+			try { Thread.sleep(50); } catch (InterruptedException iex) {}
+		}
+
+		return null;
+	}
+
+	private String decompress(final File file) throws IOException {
+
+		try (final GZIPInputStream in = new GZIPInputStream(new FileInputStream(file))) {
+
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		}
+	}
+}
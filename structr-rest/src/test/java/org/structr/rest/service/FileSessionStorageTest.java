@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.service;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class FileSessionStorageTest {
+
+	private static final Charset UTF8 = Charset.forName("utf-8");
+
+	private Path directory = null;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("structr-sessions");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory.toFile());
+	}
+
+	@Test
+	public void testStoreLoadDelete() {
+
+		try {
+
+			final FileSessionStorage storage = new FileSessionStorage(directory);
+
+			storage.store("session1", "data1".getBytes(UTF8));
+			storage.store("session2", "data2".getBytes(UTF8));
+			storage.store("session1", "data3".getBytes(UTF8));
+
+			assertArrayEquals("data3".getBytes(UTF8), storage.load("session1"));
+			assertArrayEquals("data2".getBytes(UTF8), storage.load("session2"));
+			assertNull(storage.load("session3"));
+			assertEquals("Temporary files must be removed", 2, list().size());
+
+			storage.delete("session1");
+
+			assertNull(storage.load("session1"));
+			assertEquals(1, list().size());
+
+		} catch (Exception ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testFileNamesAndPermissions() {
+
+		try {
+
+			final String sessionId           = "node0abc123.node0";
+			final FileSessionStorage storage = new FileSessionStorage(directory);
+
+			storage.store(sessionId, "data".getBytes(UTF8));
+
+			for (final Path file : list()) {
+
+				assertFalse("File name must not contain the session id", file.getFileName().toString().contains("abc123"));
+
+				if (Files.getFileStore(file).supportsFileAttributeView("posix")) {
+
+					assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE), Files.getPosixFilePermissions(file));
+				}
+			}
+
+			if (Files.getFileStore(directory).supportsFileAttributeView("posix")) {
+
+				assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE), Files.getPosixFilePermissions(directory));
+			}
+
+		} catch (Exception ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testDeleteExpired() {
+
+		try {
+
+			final FileSessionStorage storage = new FileSessionStorage(directory);
+			final long now                   = System.currentTimeMillis();
+
+			storage.store("old", "old".getBytes(UTF8));
+			storage.store("new", "new".getBytes(UTF8));
+
+			// make the first session look like it was last stored an hour ago
+			for (final Path file : list()) {
+
+				if (Files.size(file) == 3 && new String(Files.readAllBytes(file), UTF8).equals("old")) {
+
+					Files.setLastModifiedTime(file, FileTime.fromMillis(now - 3600000L));
+				}
+			}
+
+			storage.deleteExpired(now - 1800000L);
+
+			assertNull(storage.load("old"));
+			assertArrayEquals("new".getBytes(UTF8), storage.load("new"));
+
+		} catch (Exception ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	// ----- private methods -----
+	private List<Path> list() throws IOException {
+
+		final List<Path> files = new ArrayList<>();
+
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+
+			for (final Path file : stream) {
+				files.add(file);
+			}
+		}
+
+		return files;
+	}
+}
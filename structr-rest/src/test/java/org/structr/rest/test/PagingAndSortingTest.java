@@ -24,6 +24,7 @@ import java.text.SimpleDateFormat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -469,4 +470,76 @@ public class PagingAndSortingTest extends StructrRestTest {
 
 
 	}
+
+	@Test
+	public void testJsonLinesOutput() {
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(TestOne.class, "TestOne-3");
+			app.create(TestOne.class, "TestOne-1");
+			app.create(TestOne.class, "TestOne-4");
+			app.create(TestOne.class, "TestOne-2");
+			app.create(TestOne.class, "TestOne-5");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+		}
+
+		final String body = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("/test_one?outputFormat=ndjson&sort=name&pageSize=2&page=2&resultCount=true")
+				.asString();
+
+		final String[] lines = body.trim().split("\n");
+
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].contains("\"name\":\"TestOne-3\""));
+		assertTrue(lines[1].contains("\"name\":\"TestOne-4\""));
+		assertTrue(lines[2].contains("\"result_count\":5"));
+		assertTrue(lines[2].contains("\"page_count\":3"));
+		assertTrue(lines[2].contains("\"page_size\":2"));
+		assertTrue(lines[2].contains("\"page\":2"));
+
+		// negative page numbers count from the end
+		final String lastPage = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("/test_one?outputFormat=ndjson&sort=name&pageSize=2&page=-1")
+				.asString();
+
+		final String[] lastLines = lastPage.trim().split("\n");
+
+		assertEquals(2, lastLines.length);
+		assertTrue(lastLines[0].contains("\"name\":\"TestOne-4\""));
+		assertTrue(lastLines[1].contains("\"name\":\"TestOne-5\""));
+
+		// Accept header selects the same output
+		final String acceptBody = RestAssured
+
+			.given()
+				.header("Accept", "application/x-ndjson")
+
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("/test_one?sort=name")
+				.asString();
+
+		assertEquals(5, acceptBody.trim().split("\n").length);
+	}
 }
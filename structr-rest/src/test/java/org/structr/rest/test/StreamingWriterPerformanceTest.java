@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.List;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.PropertyView;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.Result;
+import org.structr.core.StaticValue;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyMap;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.entity.TestOne;
+import org.structr.rest.serialization.StreamingJsonWriter;
+
+/**
+ * Measures the throughput of the JSON serialization of a large result in
+ * the public and the ui view.
+ *
+ * Note that this is just a very rough test as performance is heavily
+ * depending on hardware and setup, the asserted rate is low so if this test
+ * fails, there may be issues with the test setup.
+ */
+public class StreamingWriterPerformanceTest extends StructrRestTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(StreamingWriterPerformanceTest.class);
+	private static final int NUMBER    = 10000;
+	private static final int WARMUP    = 3;
+	private static final int RUNS      = 5;
+
+	@Test
+	public void testSerializationPerformance() {
+
+		try {
+
+			final List<TestOne> nodes = createTestNodes(TestOne.class, NUMBER);
+
+			try (final Tx tx = app.tx()) {
+
+				int i = 0;
+
+				for (final TestOne node : nodes) {
+
+					final PropertyMap properties = new PropertyMap();
+
+					properties.put(TestOne.name,   "TestOne" + i);
+					properties.put(TestOne.anInt,  i);
+					properties.put(TestOne.aLong,  i * 1000L);
+					properties.put(TestOne.aDate,  new Date());
+
+					node.setProperties(securityContext, properties);
+					i++;
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final Result<GraphObject> result = new Result(nodes, nodes.size(), true, false);
+
+				for (final String view : new String[] { PropertyView.Public, PropertyView.Ui }) {
+
+					// warm up
+					for (int i=0; i<WARMUP; i++) {
+						stream(result, view);
+					}
+
+					final long t0 = System.nanoTime();
+					int length    = 0;
+
+					for (int i=0; i<RUNS; i++) {
+						length = stream(result, view);
+					}
+
+					final double seconds = (System.nanoTime() - t0) / 1000000000.0;
+					final double rate    = (NUMBER * RUNS) / seconds;
+
+					logger.info("Serialized {} nodes in {} view {} times in {} s ({} nodes per s, {} characters)", NUMBER, view, RUNS, seconds, (long)rate, length);
+
+					assertTrue("Serialization rate too low, expected > 1000, was " + rate, rate > 1000);
+				}
+
+				tx.success();
+			}
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.error("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
+	@Test
+	public void testSerializationOfSingleObject() {
+
+		try {
+
+			final List<TestOne> nodes = createTestNodes(TestOne.class, 1);
+
+			try (final Tx tx = app.tx()) {
+
+				final StreamingJsonWriter writer = new StreamingJsonWriter(new StaticValue<>(PropertyView.Public), false, 3);
+				final StringWriter output        = new StringWriter();
+				final TestOne node               = nodes.get(0);
+
+				node.setProperty(TestOne.anInt, 123);
+
+				writer.streamSingle(securityContext, output, node);
+
+				final String json = output.toString();
+
+				assertTrue("Serialized object does not contain id", json.contains("\"id\":\"" + node.getUuid() + "\""));
+				assertTrue("Serialized object does not contain anInt", json.contains("\"anInt\":123"));
+
+				tx.success();
+			}
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.error("", ex);
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private int stream(final Result result, final String view) throws IOException {
+
+		final StreamingJsonWriter writer = new StreamingJsonWriter(new StaticValue<>(view), false, 3);
+		final StringWriter output        = new StringWriter();
+
+		writer.stream(securityContext, output, result, null);
+
+		return output.getBuffer().length();
+	}
+}
@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * State of a chunked, resumable upload of a single file.
+ *
+ * The chunks of an upload are written to their position in a temporary file
+ * next to the target file through a shared file channel, so they can arrive
+ * in any order and in parallel. The received byte ranges are tracked in
+ * memory, and the upload is complete as soon as the received ranges cover
+ * the whole file. The completed file atomically replaces the target file, so
+ * the previous content stays available until then. Uploads that do not
+ * receive any data for a configurable time are discarded by a background
+ * task that runs once per minute while uploads are running.
+ */
+public class ChunkedUpload {
+
+	private static final Logger logger                      = LoggerFactory.getLogger(ChunkedUpload.class.getName());
+	private static final Map<String, ChunkedUpload> uploads = new ConcurrentHashMap<>();
+	private static ScheduledExecutorService executor        = null;
+
+	private final TreeMap<Long, Long> ranges = new TreeMap<>();
+	private FileChannel channel              = null;
+	private Path target                      = null;
+	private Path temp                        = null;
+	private String uuid                      = null;
+	private long length                      = 0L;
+	private volatile long lastAccess         = 0L;
+	private boolean complete                 = false;
+
+	private ChunkedUpload(final String uuid, final File target, final long length) throws IOException {
+
+		this.target     = target.toPath();
+
+		Files.createDirectories(this.target.getParent());
+
+		this.temp       = Files.createTempFile(this.target.getParent(), "." + target.getName() + "-", ".upload");
+		this.channel    = FileChannel.open(temp, StandardOpenOption.WRITE);
+		this.uuid       = uuid;
+		this.length     = length;
+		this.lastAccess = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the running upload for the file with the given UUID, or null.
+	 *
+	 * @param uuid the UUID of the file
+	 * @return the upload or null
+	 */
+	public static ChunkedUpload get(final String uuid) {
+		return uploads.get(uuid);
+	}
+
+	/**
+	 * Returns the running upload for the file with the given UUID, or starts
+	 * a new upload into the given target file. The target file is replaced
+	 * when the upload is complete.
+	 *
+	 * @param uuid the UUID of the file
+	 * @param target the file on disk
+	 * @param length the total length of the upload
+	 *
+	 * @return the upload
+	 * @throws IOException
+	 */
+	public static ChunkedUpload getOrCreate(final String uuid, final File target, final long length) throws IOException {
+
+		startExpiry();
+
+		synchronized (uploads) {
+
+			ChunkedUpload upload = uploads.get(uuid);
+			if (upload == null) {
+
+				upload = new ChunkedUpload(uuid, target, length);
+				uploads.put(uuid, upload);
+
+				logger.debug("Starting chunked upload of {} bytes into {}", length, uuid);
+			}
+
+			return upload;
+		}
+	}
+
+	public String getUuid() {
+		return uuid;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Writes the given data at the given position of the file. This method
+	 * can be called concurrently for different chunks.
+	 *
+	 * @param buffer the data
+	 * @param position the position in the file
+	 * @throws IOException
+	 */
+	public void write(final ByteBuffer buffer, final long position) throws IOException {
+
+		long pos = position;
+
+		while (buffer.hasRemaining()) {
+			pos += channel.write(buffer, pos);
+		}
+
+		lastAccess = System.currentTimeMillis();
+	}
+
+	/**
+	 * Registers the given byte range (end exclusive) as received.
+	 *
+	 * @param start the start of the range
+	 * @param end the end of the range (exclusive)
+	 *
+	 * @return true if this range completed the upload, false otherwise
+	 */
+	public synchronized boolean addRange(final long start, final long end) {
+
+		if (complete || end <= start) {
+			return false;
+		}
+
+		long from = start;
+		long to   = end;
+
+		// merge with the preceding range
+		final Map.Entry<Long, Long> previous = ranges.floorEntry(from);
+		if (previous != null && previous.getValue() >= from) {
+
+			from = previous.getKey();
+			to   = Math.max(to, previous.getValue());
+		}
+
+		// merge with all following ranges that overlap or touch this range
+		Map.Entry<Long, Long> next = ranges.ceilingEntry(from);
+		while (next != null && next.getKey() <= to) {
+
+			to = Math.max(to, next.getValue());
+
+			ranges.remove(next.getKey());
+			next = ranges.ceilingEntry(from);
+		}
+
+		ranges.put(from, to);
+
+		complete = from == 0L && to >= length;
+
+		return complete;
+	}
+
+	/**
+	 * Returns the number of contiguous bytes received from the start of the
+	 * file.
+	 *
+	 * @return the offset
+	 */
+	public synchronized long getOffset() {
+
+		final Map.Entry<Long, Long> first = ranges.firstEntry();
+		if (first != null && first.getKey() == 0L) {
+
+			return first.getValue();
+		}
+
+		return 0L;
+	}
+
+	/**
+	 * Returns the received byte ranges in the format of the HTTP Range
+	 * header (inclusive ends), e.g. "0-1023,4096-8191".
+	 *
+	 * @return the received ranges
+	 */
+	public synchronized String getReceivedRanges() {
+
+		final StringBuilder buf = new StringBuilder();
+
+		for (final Map.Entry<Long, Long> range : ranges.entrySet()) {
+
+			if (buf.length() > 0) {
+				buf.append(",");
+			}
+
+			buf.append(range.getKey()).append("-").append(range.getValue() - 1);
+		}
+
+		return buf.toString();
+	}
+
+	/**
+	 * Flushes the assembled file to disk, moves it to the target file and
+	 * removes this upload.
+	 *
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+
+		uploads.remove(uuid);
+
+		try {
+
+			try {
+
+				channel.force(true);
+
+			} finally {
+
+				channel.close();
+			}
+
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} finally {
+
+			Files.deleteIfExists(temp);
+		}
+
+		logger.debug("Chunked upload of {} bytes into {} complete", length, uuid);
+	}
+
+	/**
+	 * Closes the channel, deletes the partial file and removes this upload
+	 * without completing it. The target file is not modified.
+	 */
+	public void discard() {
+
+		uploads.remove(uuid);
+
+		try {
+
+			channel.close();
+			Files.deleteIfExists(temp);
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to discard chunked upload {}: {}", uuid, ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Stops the background expiry and discards all running uploads.
+	 */
+	public static void shutdown() {
+
+		synchronized (ChunkedUpload.class) {
+
+			if (executor != null) {
+
+				executor.shutdownNow();
+				executor = null;
+			}
+		}
+
+		for (final ChunkedUpload upload : uploads.values()) {
+			upload.discard();
+		}
+	}
+
+	// ----- private methods -----
+	private static synchronized void startExpiry() {
+
+		if (executor == null) {
+
+			executor = Executors.newSingleThreadScheduledExecutor(r -> {
+
+				final Thread thread = new Thread(r, "ChunkedUploadExpiry");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+			executor.scheduleWithFixedDelay(() -> {
+
+				// an exception would cancel all further executions
+				try {
+					expire();
+
+				} catch (Throwable t) {
+					logger.warn("Unable to expire chunked uploads: {}", t.getMessage());
+				}
+
+			}, 1L, 1L, TimeUnit.MINUTES);
+		}
+	}
+
+	private static void expire() {
+
+		final long timeout = Settings.UploadChunkedTimeout.getValue() * 60L * 1000L;
+		final long now     = System.currentTimeMillis();
+
+		for (final ChunkedUpload upload : uploads.values()) {
+
+			if (now - upload.lastAccess > timeout && !upload.isComplete()) {
+
+				logger.info("Discarding incomplete chunked upload {} after {} minutes of inactivity", upload.uuid, Settings.UploadChunkedTimeout.getValue());
+
+				upload.discard();
+			}
+		}
+	}
+
+	private synchronized boolean isComplete() {
+		return complete;
+	}
+}
@@ -43,7 +43,7 @@ public class ClosingFileOutputStream extends FileOutputStream {
 
 	public ClosingFileOutputStream(final File thisFile, final boolean append, final boolean notifyIndexerAfterClosing) throws IOException {
 
-		super(thisFile.getFileOnDisk(), append);
+		super(getWritableFile(thisFile, append), append);
 
 		this.notifyIndexerAfterClosing = notifyIndexerAfterClosing;
 		this.thisFile                  = thisFile;
@@ -63,8 +63,12 @@ public class ClosingFileOutputStream extends FileOutputStream {
 
 			final String _contentType           = FileHelper.getContentMimeType(thisFile);
 			final PropertyMap changedProperties = new PropertyMap();
+			final Long checksum                 = FileHelper.getChecksum(file);
 
-			changedProperties.put(StructrApp.key(File.class, "checksum"),     FileHelper.getChecksum(file));
+			ContentStore.store(thisFile, file, checksum);
+			FileCache.written(file);
+
+			changedProperties.put(StructrApp.key(File.class, "checksum"),     checksum);
 			changedProperties.put(StructrApp.key(File.class, "size"),         file.length());
 			changedProperties.put(StructrApp.key(File.class, "contentType"), _contentType);
 
@@ -91,4 +95,15 @@ public class ClosingFileOutputStream extends FileOutputStream {
 
 		closed = true;
 	}
+
+	// ----- private methods -----
+	private static java.io.File getWritableFile(final File thisFile, final boolean append) throws IOException {
+
+		final java.io.File fileOnDisk = thisFile.getFileOnDisk();
+
+		// copy-on-write for files that share their content
+		ContentStore.prepareWrite(thisFile, fileOnDisk, append);
+
+		return fileOnDisk;
+	}
 }
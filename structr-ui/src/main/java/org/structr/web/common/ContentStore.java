@@ -0,0 +1,380 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.web.entity.File;
+
+/**
+ * Content-addressed store for file contents.
+ *
+ * If deduplication is enabled, the content of each file is registered in a
+ * store directory below files.path under its xxHash checksum. Files with the
+ * same content are replaced by hard links to the stored content, after the
+ * content has been verified byte for byte, so identical files occupy disk
+ * space only once. The UUID-based file paths stay valid, so reading a file
+ * works exactly as before.
+ *
+ * Reference counting is done by the file system: a stored content is removed
+ * as soon as the store holds the only remaining link to it. Stored contents
+ * are read-only, files that share their content with other files are copied
+ * before they are modified (copy-on-write).
+ */
+public class ContentStore {
+
+	private static final Logger logger             = LoggerFactory.getLogger(ContentStore.class.getName());
+	private static final String STORE_NAME         = ".content";
+	private static final int LOCK_COUNT            = 64;
+	private static final Object[] locks            = new Object[LOCK_COUNT];
+	private static volatile Boolean linksSupported = null;
+
+	static {
+
+		for (int i=0; i<LOCK_COUNT; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Indicates whether deduplication is enabled and supported by the
+	 * file system.
+	 *
+	 * @return whether new contents are stored in the content store
+	 */
+	public static boolean isEnabled() {
+		return Settings.DeduplicateFiles.getValue() && supportsLinks();
+	}
+
+	/**
+	 * Registers the content of the given file in the store. If the store
+	 * already contains the same content, the file is replaced by a link to
+	 * the stored content. This method must only be called with the
+	 * checksum of the current content of the file.
+	 *
+	 * @param file the file node
+	 * @param fileOnDisk the file on disk
+	 * @param checksum the xxHash checksum of the content
+	 */
+	public static void store(final File file, final java.io.File fileOnDisk, final Long checksum) {
+
+		if (checksum == null || !isEnabled() || !isEligible(file, fileOnDisk) || fileOnDisk.length() == 0L) {
+			return;
+		}
+
+		final Path path = fileOnDisk.toPath();
+		final Path blob = getBlobPath(checksum);
+
+		try {
+
+			// compare outside of the lock, stored contents never change
+			final boolean exists = Files.exists(blob);
+			if (exists) {
+
+				if (Files.isSameFile(blob, path)) {
+					return;
+				}
+
+				if (!FileUtils.contentEquals(blob.toFile(), fileOnDisk)) {
+
+					logger.debug("Checksum collision for {}, content is not deduplicated", fileOnDisk);
+					return;
+				}
+			}
+
+			synchronized (getLock(checksum)) {
+
+				if (exists && Files.exists(blob)) {
+
+					// replace file with a link to the stored content
+					replaceWithLink(path, blob);
+
+					logger.debug("Replaced {} with stored content {}", path, blob);
+
+				} else if (!Files.exists(blob)) {
+
+					Files.createDirectories(blob.getParent());
+					Files.createLink(blob, path);
+
+					blob.toFile().setWritable(false, false);
+
+					logger.debug("Stored content of {} as {}", path, blob);
+				}
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to store content of {}: {}", fileOnDisk, ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Prepares the given file for modification. If the file shares its
+	 * content with other files or the store, its content is copied (or
+	 * removed if it will be overwritten anyway), so that the modification
+	 * doesn't affect any other file.
+	 *
+	 * @param file the file node
+	 * @param fileOnDisk the file on disk
+	 * @param keepContent whether the current content must be preserved, e.g. for appending writes
+	 *
+	 * @throws IOException
+	 */
+	public static void prepareWrite(final File file, final java.io.File fileOnDisk, final boolean keepContent) throws IOException {
+
+		final Path path = fileOnDisk.toPath();
+
+		if (getLinkCount(path) <= 1) {
+			return;
+		}
+
+		final Path blob = findBlob(file, fileOnDisk);
+
+		synchronized (getLock(blob)) {
+
+			final int linkCount = getLinkCount(path);
+
+			if (linkCount <= 1) {
+
+				// another thread was faster
+				return;
+			}
+
+			if (!keepContent) {
+
+				Files.deleteIfExists(path);
+
+			} else if (blob != null && linkCount == 2) {
+
+				// no other file shares this content, remove it from the store
+				Files.delete(blob);
+
+				fileOnDisk.setWritable(true);
+
+				return;
+
+			} else {
+
+				final Path tmp = Files.createTempFile(path.getParent(), ".cow-", ".tmp");
+
+				Files.copy(path, tmp, StandardCopyOption.REPLACE_EXISTING);
+				Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+				// the copy inherits the permissions of the stored content
+				fileOnDisk.setWritable(true);
+			}
+
+			releaseBlob(blob);
+		}
+	}
+
+	/**
+	 * Makes the target file share the content of the source file, without
+	 * copying it, if possible.
+	 *
+	 * @param source the source file node
+	 * @param sourceOnDisk the source file on disk
+	 * @param target the target file node
+	 * @param targetOnDisk the target file on disk
+	 *
+	 * @return the checksum of the shared content, or null if the content could not be linked
+	 * @throws IOException
+	 */
+	public static Long link(final File source, final java.io.File sourceOnDisk, final File target, final java.io.File targetOnDisk) throws IOException {
+
+		if (!isEnabled() || !isEligible(source, sourceOnDisk) || !isEligible(target, targetOnDisk)) {
+			return null;
+		}
+
+		Long checksum = source.getChecksum();
+		Path blob     = checksum != null ? getBlobPath(checksum) : null;
+
+		if (blob == null || !isSameFile(blob, sourceOnDisk.toPath())) {
+
+			// source content is not stored (yet)
+			checksum = FileHelper.getChecksum(sourceOnDisk);
+
+			store(source, sourceOnDisk, checksum);
+
+			blob = getBlobPath(checksum);
+		}
+
+		prepareWrite(target, targetOnDisk, false);
+
+		synchronized (getLock(checksum)) {
+
+			if (!isSameFile(blob, sourceOnDisk.toPath())) {
+				return null;
+			}
+
+			replaceWithLink(targetOnDisk.toPath(), blob);
+		}
+
+		return checksum;
+	}
+
+	/**
+	 * Deletes the given file and removes its content from the store if no
+	 * other file references it.
+	 *
+	 * @param file the file node
+	 * @param fileOnDisk the file on disk
+	 *
+	 * @throws IOException
+	 */
+	public static void release(final File file, final java.io.File fileOnDisk) throws IOException {
+
+		final Path path = fileOnDisk.toPath();
+		final Path blob = getLinkCount(path) > 1 ? findBlob(file, fileOnDisk) : null;
+
+		synchronized (getLock(blob)) {
+
+			Files.deleteIfExists(path);
+
+			releaseBlob(blob);
+		}
+	}
+
+	// ----- private methods -----
+	private static boolean isEligible(final File file, final java.io.File fileOnDisk) {
+
+		if (fileOnDisk == null || file.isExternal() || file.isMounted()) {
+			return false;
+		}
+
+		final Path filesPath = Paths.get(Settings.FilesPath.getValue()).toAbsolutePath().normalize();
+		final Path path      = fileOnDisk.toPath().toAbsolutePath().normalize();
+
+		return path.startsWith(filesPath) && !path.startsWith(filesPath.resolve(STORE_NAME));
+	}
+
+	private static Path findBlob(final File file, final java.io.File fileOnDisk) throws IOException {
+
+		final Path path = fileOnDisk.toPath();
+
+		// try the checksum property first, and the actual content if it is outdated
+		final Long checksum = file.getChecksum();
+		if (checksum != null) {
+
+			final Path blob = getBlobPath(checksum);
+			if (isSameFile(blob, path)) {
+
+				return blob;
+			}
+		}
+
+		final Path blob = getBlobPath(FileHelper.getChecksum(fileOnDisk));
+		if (isSameFile(blob, path)) {
+
+			return blob;
+		}
+
+		return null;
+	}
+
+	private static void releaseBlob(final Path blob) throws IOException {
+
+		if (blob != null && Files.exists(blob) && getLinkCount(blob) <= 1) {
+
+			Files.delete(blob);
+
+			logger.debug("Removed unreferenced content {}", blob);
+		}
+	}
+
+	private static void replaceWithLink(final Path path, final Path blob) throws IOException {
+
+		final Path tmp = path.resolveSibling("." + UUID.randomUUID().toString().replaceAll("[\\-]+", "") + ".tmp");
+
+		Files.createDirectories(path.getParent());
+		Files.createLink(tmp, blob);
+		Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static Path getBlobPath(final long checksum) {
+
+		final String hex = String.format("%016x", checksum);
+
+		return Paths.get(Settings.FilesPath.getValue(), STORE_NAME, hex.substring(0, 2), hex.substring(2, 4), hex);
+	}
+
+	private static boolean isSameFile(final Path blob, final Path path) throws IOException {
+		return Files.exists(blob) && Files.exists(path) && Files.isSameFile(blob, path);
+	}
+
+	private static int getLinkCount(final Path path) throws IOException {
+
+		if (!supportsLinks()) {
+			return 1;
+		}
+
+		try {
+
+			return (Integer)Files.getAttribute(path, "unix:nlink");
+
+		} catch (NoSuchFileException nsfex) {
+			return 0;
+		}
+	}
+
+	private static Object getLock(final Long checksum) {
+
+		if (checksum == null) {
+			return locks[0];
+		}
+
+		return locks[(int)(checksum ^ (checksum >>> 32)) & (LOCK_COUNT - 1)];
+	}
+
+	private static Object getLock(final Path blob) {
+
+		if (blob == null) {
+			return locks[0];
+		}
+
+		return getLock(Long.parseUnsignedLong(blob.getFileName().toString(), 16));
+	}
+
+	private static boolean supportsLinks() {
+
+		if (linksSupported == null) {
+
+			try {
+
+				Files.getAttribute(Paths.get(System.getProperty("java.io.tmpdir")), "unix:nlink");
+				linksSupported = true;
+
+			} catch (UnsupportedOperationException | IllegalArgumentException | IOException ex) {
+
+				logger.info("File system doesn't support link counts, file deduplication is not available");
+				linksSupported = false;
+			}
+		}
+
+		return linksSupported;
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.error.FrameworkException;
+import org.structr.web.common.RenderContext.EditMode;
+
+/**
+ * Memoizes the results of the data sources of DOM nodes.
+ *
+ * An instance of this class is shared by a render context and its copies
+ * in the same thread, so identical queries (f.e. in a shared component that
+ * is used several times on the same page) are evaluated only once per
+ * request. The results contain entities that belong to the transaction and
+ * the security context of the request, so they are never shared across
+ * requests.
+ *
+ * Function queries are not memoized because their result can depend on
+ * the state of the render context (f.e. store() and request parameters)
+ * and the script can have side effects.
+ */
+public class DataSourceCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(DataSourceCache.class.getName());
+
+	private final Map<String, Object> entries = new ConcurrentHashMap<>();
+	private final AtomicInteger hits          = new AtomicInteger();
+	private final AtomicInteger misses        = new AtomicInteger();
+
+	/**
+	 * Returns the memoized value for the given key, or loads and stores
+	 * the value if there is none.
+	 *
+	 * @param renderContext the render context
+	 * @param key the cache key, must contain the type of the data source and the evaluated query
+	 * @param loader the loader
+	 *
+	 * @return the value
+	 * @throws FrameworkException
+	 */
+	public <T> T get(final RenderContext renderContext, final String key, final Loader<T> loader) throws FrameworkException {
+
+		if (!Settings.HtmlDataSourceCache.getValue() || !EditMode.NONE.equals(renderContext.getEditMode(renderContext.getSecurityContext().getUser(false)))) {
+			return loader.load();
+		}
+
+		Object value = entries.get(key);
+		if (value != null) {
+
+			hits.incrementAndGet();
+			logger.debug("Data source cache hit for {}", key);
+
+			return (T)value;
+		}
+
+		final long t0 = System.currentTimeMillis();
+
+		value = loader.load();
+
+		misses.incrementAndGet();
+		logger.debug("Data source cache miss for {}, query took {} ms", key, System.currentTimeMillis() - t0);
+
+		if (value != null) {
+
+			entries.put(key, value);
+		}
+
+		return (T)value;
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	// ----- nested classes -----
+	@FunctionalInterface
+	public interface Loader<T> {
+
+		T load() throws FrameworkException;
+	}
+}
@@ -0,0 +1,648 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Size-bounded cache for file contents on a fast local volume, in front of
+ * the (possibly slow or remote) volume in files.path.
+ *
+ * The cache mirrors the directory layout of files.path. A cached copy is
+ * only used if its size and modification time match the file in files.path,
+ * so files that are modified without going through this class are never
+ * served from the cache. Files are copied into the cache asynchronously
+ * after a cache miss, files larger than an eighth of the cache size are not
+ * cached at all.
+ *
+ * When the cache exceeds its maximum size, the least recently used (lru)
+ * or least frequently used (lfu) entries are removed until it is below 90%
+ * of the maximum size. In lfu mode, the access counts are halved on every
+ * eviction run, so that formerly popular files can age out of the cache.
+ *
+ * Written content is either copied into the cache immediately (write-through)
+ * or only removed from the cache (write-around). The file in files.path is
+ * always written synchronously, so it remains the authoritative copy.
+ */
+public class FileCache {
+
+	private static final Logger logger          = LoggerFactory.getLogger(FileCache.class.getName());
+	private static final String TMP_SUFFIX      = ".tmp";
+	private static final int ADMISSION_RATIO    = 8;
+	private static final int QUEUE_SIZE         = 1000;
+	private static volatile FileCache instance  = null;
+
+	private final Map<Path, Entry> entries      = new ConcurrentHashMap<>();
+	private final Set<Path> pending             = ConcurrentHashMap.newKeySet();
+	private final AtomicLong clock              = new AtomicLong();
+	private final AtomicLong size               = new AtomicLong();
+	private final LongAdder hits                = new LongAdder();
+	private final LongAdder misses              = new LongAdder();
+	private final LongAdder evictions           = new LongAdder();
+	private final LongAdder invalidations       = new LongAdder();
+	private final Object evictionLock           = new Object();
+	private ThreadPoolExecutor executor         = null;
+	private String configuration                = null;
+	private Path filesPath                      = null;
+	private Path cachePath                      = null;
+	private boolean writeThrough                = true;
+	private boolean lfu                         = false;
+	private long maxSize                        = 0L;
+
+	private FileCache(final String configuration, final Path filesPath, final Path cachePath, final long maxSize, final boolean lfu, final boolean writeThrough) {
+
+		this.configuration = configuration;
+		this.filesPath     = filesPath;
+		this.cachePath     = cachePath;
+		this.maxSize       = maxSize;
+		this.lfu           = lfu;
+		this.writeThrough  = writeThrough;
+		this.executor      = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(QUEUE_SIZE), runnable -> {
+
+			final Thread thread = new Thread(runnable, "FileCache");
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+	}
+
+	/**
+	 * Indicates whether the file cache is enabled.
+	 *
+	 * @return whether files.cache.path is set
+	 */
+	public static boolean isEnabled() {
+		return getInstance() != null;
+	}
+
+	/**
+	 * Returns the file to read the content of the given file from: the
+	 * cached copy if it is up to date, or the file itself. On a cache miss,
+	 * the file is copied into the cache in the background.
+	 *
+	 * @param fileOnDisk the file in files.path
+	 *
+	 * @return the file to read from
+	 */
+	public static java.io.File getFile(final java.io.File fileOnDisk) {
+
+		final FileCache cache = getInstance();
+		if (cache != null && fileOnDisk != null) {
+
+			return cache.read(fileOnDisk);
+		}
+
+		return fileOnDisk;
+	}
+
+	/**
+	 * Opens the content of the given file, preferably from the cache.
+	 *
+	 * @param fileOnDisk the file in files.path
+	 *
+	 * @return an input stream
+	 * @throws FileNotFoundException
+	 */
+	public static InputStream getInputStream(final java.io.File fileOnDisk) throws FileNotFoundException {
+
+		final java.io.File file = getFile(fileOnDisk);
+		if (file != fileOnDisk) {
+
+			try {
+
+				return new FileInputStream(file);
+
+			} catch (FileNotFoundException fnfex) {
+
+				// cached copy was evicted in the meantime
+			}
+		}
+
+		return new FileInputStream(fileOnDisk);
+	}
+
+	/**
+	 * Opens a channel on the content of the given file, preferably from
+	 * the cache.
+	 *
+	 * @param fileOnDisk the file in files.path
+	 *
+	 * @return a readable file channel
+	 * @throws IOException
+	 */
+	public static FileChannel getChannel(final java.io.File fileOnDisk) throws IOException {
+
+		final java.io.File file = getFile(fileOnDisk);
+		if (file != fileOnDisk) {
+
+			try {
+
+				return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+			} catch (NoSuchFileException nsfex) {
+
+				// cached copy was evicted in the meantime
+			}
+		}
+
+		return FileChannel.open(fileOnDisk.toPath(), StandardOpenOption.READ);
+	}
+
+	/**
+	 * Notifies the cache that the given file was written. Depending on
+	 * the write policy, the new content is copied into the cache or the
+	 * cached copy is removed.
+	 *
+	 * @param fileOnDisk the file in files.path
+	 */
+	public static void written(final java.io.File fileOnDisk) {
+
+		final FileCache cache = getInstance();
+		if (cache != null && fileOnDisk != null) {
+
+			cache.write(fileOnDisk);
+		}
+	}
+
+	/**
+	 * Removes the cached copy of the given file.
+	 *
+	 * @param fileOnDisk the file in files.path
+	 */
+	public static void remove(final java.io.File fileOnDisk) {
+
+		final FileCache cache = getInstance();
+		if (cache != null && fileOnDisk != null) {
+
+			final Path key = cache.getKey(fileOnDisk);
+			if (key != null) {
+
+				cache.invalidate(key);
+			}
+		}
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final FileCache cache                = getInstance();
+
+		statistics.put("enabled", cache != null);
+
+		if (cache != null) {
+
+			statistics.put("policy",        cache.lfu ? "lfu" : "lru");
+			statistics.put("writes",        cache.writeThrough ? "through" : "around");
+			statistics.put("maxSize",       cache.maxSize);
+			statistics.put("size",          cache.size.get());
+			statistics.put("entries",       cache.entries.size());
+			statistics.put("hits",          cache.hits.sum());
+			statistics.put("misses",        cache.misses.sum());
+			statistics.put("evictions",     cache.evictions.sum());
+			statistics.put("invalidations", cache.invalidations.sum());
+		}
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private static FileCache getInstance() {
+
+		final String path = Settings.FilesCachePath.getValue();
+		if (StringUtils.isBlank(path)) {
+
+			if (instance != null) {
+
+				synchronized (FileCache.class) {
+
+					if (instance != null) {
+
+						instance.shutdown();
+						instance = null;
+					}
+				}
+			}
+
+			return null;
+		}
+
+		final String filesPath     = Settings.FilesPath.getValue();
+		final Integer size         = Settings.FilesCacheSize.getValue();
+		final String policy        = Settings.FilesCachePolicy.getValue();
+		final String writes        = Settings.FilesCacheWrites.getValue();
+		final String configuration = path + "|" + filesPath + "|" + size + "|" + policy + "|" + writes;
+
+		FileCache cache = instance;
+		if (cache == null || !configuration.equals(cache.configuration)) {
+
+			synchronized (FileCache.class) {
+
+				cache = instance;
+				if (cache == null || !configuration.equals(cache.configuration)) {
+
+					if (cache != null) {
+						cache.shutdown();
+					}
+
+					cache = new FileCache(
+						configuration,
+						Paths.get(filesPath).toAbsolutePath().normalize(),
+						Paths.get(path).toAbsolutePath().normalize(),
+						Math.max(0L, size != null ? size : 0L) * 1024L * 1024L,
+						"lfu".equalsIgnoreCase(StringUtils.trim(policy)),
+						!"around".equalsIgnoreCase(StringUtils.trim(writes))
+					);
+
+					cache.init();
+
+					instance = cache;
+				}
+			}
+		}
+
+		return cache;
+	}
+
+	private void init() {
+
+		try {
+
+			Files.createDirectories(cachePath);
+
+			// rebuild the index from the previous run
+			try (final Stream<Path> stream = Files.walk(cachePath)) {
+
+				stream.filter(Files::isRegularFile).forEach(path -> {
+
+					try {
+
+						if (path.getFileName().toString().endsWith(TMP_SUFFIX)) {
+
+							Files.deleteIfExists(path);
+
+						} else {
+
+							final long length = Files.size(path);
+
+							entries.put(cachePath.relativize(path), new Entry(length, clock.incrementAndGet()));
+							size.addAndGet(length);
+						}
+
+					} catch (IOException ioex) {
+						logger.warn("Unable to index cached file {}: {}", path, ioex.getMessage());
+					}
+				});
+			}
+
+			logger.info("File cache initialized in {} with {} entries ({} bytes)", cachePath, entries.size(), size.get());
+
+			evict();
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to initialize file cache in {}: {}", cachePath, ioex.getMessage());
+		}
+	}
+
+	private void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private java.io.File read(final java.io.File fileOnDisk) {
+
+		final Path key = getKey(fileOnDisk);
+		if (key == null) {
+
+			return fileOnDisk;
+		}
+
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+
+			final Path cached = cachePath.resolve(key);
+
+			if (isUpToDate(cached, fileOnDisk.toPath())) {
+
+				entry.access(clock.incrementAndGet());
+				hits.increment();
+
+				return cached.toFile();
+			}
+
+			invalidate(key);
+		}
+
+		misses.increment();
+
+		populate(key, fileOnDisk.toPath());
+
+		return fileOnDisk;
+	}
+
+	private void write(final java.io.File fileOnDisk) {
+
+		final Path key = getKey(fileOnDisk);
+		if (key != null) {
+
+			if (writeThrough) {
+
+				try {
+
+					if (!copy(key, fileOnDisk.toPath())) {
+						invalidate(key);
+					}
+
+				} catch (IOException ioex) {
+
+					logger.warn("Unable to write {} to file cache: {}", fileOnDisk, ioex.getMessage());
+					invalidate(key);
+				}
+
+			} else {
+
+				invalidate(key);
+			}
+		}
+	}
+
+	private void populate(final Path key, final Path source) {
+
+		if (pending.add(key)) {
+
+			try {
+
+				executor.execute(() -> {
+
+					try {
+
+						copy(key, source);
+
+					} catch (IOException ioex) {
+
+						logger.warn("Unable to copy {} to file cache: {}", source, ioex.getMessage());
+
+					} finally {
+
+						pending.remove(key);
+					}
+				});
+
+			} catch (RejectedExecutionException rex) {
+
+				// queue is full, try again on the next miss
+				pending.remove(key);
+			}
+		}
+	}
+
+	private boolean copy(final Path key, final Path source) throws IOException {
+
+		final BasicFileAttributes before = getAttributes(source);
+		if (before == null || !before.isRegularFile() || before.size() > maxSize / ADMISSION_RATIO) {
+
+			return false;
+		}
+
+		final Path target = cachePath.resolve(key);
+		final Path tmp    = target.resolveSibling("." + UUID.randomUUID().toString().replaceAll("[\\-]+", "") + TMP_SUFFIX);
+
+		try {
+
+			Files.createDirectories(target.getParent());
+			Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+			Files.setLastModifiedTime(tmp, before.lastModifiedTime());
+
+			// discard the copy if the file was modified while it was copied
+			final BasicFileAttributes after = getAttributes(source);
+			if (after == null || !isSameVersion(before, after)) {
+
+				return false;
+			}
+
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		} finally {
+
+			Files.deleteIfExists(tmp);
+		}
+
+		final long length = before.size();
+
+		entries.compute(key, (k, existing) -> {
+
+			size.addAndGet(length - (existing != null ? existing.size : 0L));
+
+			return new Entry(length, clock.incrementAndGet());
+		});
+
+		evict();
+
+		return true;
+	}
+
+	private void invalidate(final Path key) {
+
+		final Entry entry = entries.remove(key);
+		if (entry != null) {
+
+			size.addAndGet(-entry.size);
+			invalidations.increment();
+		}
+
+		try {
+
+			Files.deleteIfExists(cachePath.resolve(key));
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to remove {} from file cache: {}", key, ioex.getMessage());
+		}
+	}
+
+	private void evict() {
+
+		if (size.get() <= maxSize) {
+			return;
+		}
+
+		synchronized (evictionLock) {
+
+			if (size.get() <= maxSize) {
+				return;
+			}
+
+			final long target                = maxSize - maxSize / 10;
+			final List<Candidate> candidates = new ArrayList<>(entries.size());
+
+			// take a snapshot, the entries are modified concurrently
+			for (final Map.Entry<Path, Entry> entry : entries.entrySet()) {
+				candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+			}
+
+			if (lfu) {
+
+				candidates.sort(Comparator.comparingInt((Candidate c) -> c.hits).thenComparingLong(c -> c.lastAccess));
+
+			} else {
+
+				candidates.sort(Comparator.comparingLong(c -> c.lastAccess));
+			}
+
+			for (final Candidate candidate : candidates) {
+
+				if (size.get() <= target) {
+					break;
+				}
+
+				if (entries.remove(candidate.key, candidate.entry)) {
+
+					size.addAndGet(-candidate.entry.size);
+					evictions.increment();
+
+					try {
+
+						Files.deleteIfExists(cachePath.resolve(candidate.key));
+
+					} catch (IOException ioex) {
+						logger.warn("Unable to evict {} from file cache: {}", candidate.key, ioex.getMessage());
+					}
+				}
+			}
+
+			if (lfu) {
+
+				for (final Entry entry : entries.values()) {
+					entry.age();
+				}
+			}
+		}
+	}
+
+	private Path getKey(final java.io.File fileOnDisk) {
+
+		final Path path = fileOnDisk.toPath().toAbsolutePath().normalize();
+
+		if (path.startsWith(filesPath) && !path.startsWith(cachePath) && !path.equals(filesPath)) {
+
+			return filesPath.relativize(path);
+		}
+
+		return null;
+	}
+
+	private boolean isUpToDate(final Path cached, final Path source) {
+
+		final BasicFileAttributes cachedAttributes = getAttributes(cached);
+		final BasicFileAttributes sourceAttributes = getAttributes(source);
+
+		return cachedAttributes != null && sourceAttributes != null && isSameVersion(cachedAttributes, sourceAttributes);
+	}
+
+	private boolean isSameVersion(final BasicFileAttributes a, final BasicFileAttributes b) {
+		return a.size() == b.size() && a.lastModifiedTime().toMillis() == b.lastModifiedTime().toMillis();
+	}
+
+	private BasicFileAttributes getAttributes(final Path path) {
+
+		try {
+
+			return Files.readAttributes(path, BasicFileAttributes.class);
+
+		} catch (NoSuchFileException nsfex) {
+
+			return null;
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to read attributes of {}: {}", path, ioex.getMessage());
+		}
+
+		return null;
+	}
+
+	// ----- nested classes -----
+	private static class Entry {
+
+		private final AtomicInteger hits = new AtomicInteger();
+		private volatile long lastAccess = 0L;
+		private long size                = 0L;
+
+		public Entry(final long size, final long lastAccess) {
+
+			this.size       = size;
+			this.lastAccess = lastAccess;
+		}
+
+		public void access(final long time) {
+
+			this.lastAccess = time;
+			hits.incrementAndGet();
+		}
+
+		public void age() {
+			hits.updateAndGet(value -> value >> 1);
+		}
+	}
+
+	private static class Candidate {
+
+		private Path key        = null;
+		private Entry entry     = null;
+		private long lastAccess = 0L;
+		private int hits        = 0;
+
+		public Candidate(final Path key, final Entry entry) {
+
+			this.key        = key;
+			this.entry      = entry;
+			this.lastAccess = entry.lastAccess;
+			this.hits       = entry.hits.get();
+		}
+	}
+}
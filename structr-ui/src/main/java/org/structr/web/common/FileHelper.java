@@ -285,6 +285,8 @@ public class FileHelper {
 
 		map.putAll(getChecksums(file, fileOnDisk));
 
+		ContentStore.store(file, fileOnDisk, map.get(StructrApp.key(File.class, "checksum")));
+
 		file.setProperties(file.getSecurityContext(), map);
 	}
 
@@ -408,7 +410,10 @@ public class FileHelper {
 				map.put(fileModificationDateKey, fileOnDisk.lastModified());
 
 				if (calcChecksums) {
+
 					map.putAll(getChecksums(file, fileOnDisk));
+
+					ContentStore.store(file, fileOnDisk, map.get(StructrApp.key(File.class, "checksum")));
 				}
 
 				if (contentType != null) {
@@ -520,8 +525,11 @@ public class FileHelper {
 
 		setFileProperties(fileNode);
 
+		ContentStore.prepareWrite(fileNode, fileNode.getFileOnDisk(false), false);
+
 		FileUtils.writeByteArrayToFile(fileNode.getFileOnDisk(), data);
 
+		FileCache.written(fileNode.getFileOnDisk(false));
 	}
 
 	/**
@@ -536,10 +544,14 @@ public class FileHelper {
 
 		setFileProperties(fileNode);
 
+		ContentStore.prepareWrite(fileNode, fileNode.getFileOnDisk(false), false);
+
 		try (final FileOutputStream out = new FileOutputStream(fileNode.getFileOnDisk())) {
 
 			IOUtils.copy(data, out);
 		}
+
+		FileCache.written(fileNode.getFileOnDisk(false));
 	}
 
 	/**
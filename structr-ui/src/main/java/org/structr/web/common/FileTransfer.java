@@ -0,0 +1,630 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.UUID;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.util.Callback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends files from disk to the client, with support for single and multiple
+ * byte ranges (Range / If-Range) and strong entity tags.
+ *
+ * If the response is written by Jetty and the request supports asynchronous
+ * processing, the content is written asynchronously, so no thread is blocked
+ * for the duration of the download. Ranges up to a certain size are sent as
+ * memory-mapped buffers, larger content is read through a file channel. In
+ * all other cases, the file is transferred with FileChannel.transferTo.
+ */
+public class FileTransfer {
+
+	private static final Logger logger          = LoggerFactory.getLogger(FileTransfer.class.getName());
+	private static final long MAX_MAPPED_LENGTH = 64 * 1024 * 1024;
+	private static final int MAX_RANGES         = 16;
+
+	/**
+	 * Returns a strong entity tag for the given checksum.
+	 *
+	 * @param checksum the checksum of the file content
+	 * @return the entity tag or null
+	 */
+	public static String getETag(final Long checksum) {
+
+		if (checksum == null) {
+			return null;
+		}
+
+		return "\"" + Long.toHexString(checksum) + "\"";
+	}
+
+	/**
+	 * Returns the entity tag of an encoded representation (f.e. gzip)
+	 * of the content with the given entity tag.
+	 *
+	 * @param etag the entity tag of the original content
+	 * @param encoding the content encoding
+	 * @return the entity tag or null
+	 */
+	public static String getETag(final String etag, final String encoding) {
+
+		if (etag == null) {
+			return null;
+		}
+
+		return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+	}
+
+	/**
+	 * Indicates whether the given If-None-Match header value matches the
+	 * given entity tag.
+	 *
+	 * @param header the header value
+	 * @param etag the entity tag
+	 * @return whether the header matches
+	 */
+	public static boolean matchesETag(final String header, final String etag) {
+
+		if (header == null || etag == null) {
+			return false;
+		}
+
+		for (final String value : header.split(",")) {
+
+			final String tag = StringUtils.removeStart(value.trim(), "W/");
+			if ("*".equals(tag) || etag.equals(tag)) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Sends the content of the given channel, or the ranges of the content
+	 * requested in the Range header. The content type must be set on the
+	 * response before. The channel is closed when the transfer is complete
+	 * or has failed.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param channel the opened file
+	 * @param etag the entity tag of the content, or null
+	 * @param lastModified the modification date of the content, or null
+	 *
+	 * @return the HTTP status code of the response
+	 * @throws IOException
+	 */
+	public static int send(final HttpServletRequest request, final HttpServletResponse response, final FileChannel channel, final String etag, final Date lastModified) throws IOException {
+
+		try {
+
+			return sendRanges(request, response, channel, etag, lastModified);
+
+		} catch (IOException | RuntimeException ex) {
+
+			close(channel);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Sends the complete content of the given channel without range support,
+	 * f.e. for an encoded representation of the content. The content type
+	 * and the encoding must be set on the response before. The channel is
+	 * closed when the transfer is complete or has failed.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param channel the opened file
+	 *
+	 * @throws IOException
+	 */
+	public static void sendAll(final HttpServletRequest request, final HttpServletResponse response, final FileChannel channel) throws IOException {
+
+		try {
+
+			final long length = channel.size();
+
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.setContentLengthLong(length);
+
+			send(request, response, channel, Collections.singletonList(new Part(null, 0, length)));
+
+		} catch (IOException | RuntimeException ex) {
+
+			close(channel);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Parses the Range header of the given request.
+	 *
+	 * @param request the request
+	 * @param length the length of the content
+	 * @param etag the entity tag of the content, or null
+	 * @param lastModified the modification date of the content, or null
+	 *
+	 * @return the requested ranges, null if the whole content should be sent, or an empty list if no range is satisfiable
+	 */
+	static List<Range> getRanges(final HttpServletRequest request, final long length, final String etag, final Date lastModified) {
+
+		final String header = request.getHeader("Range");
+		if (StringUtils.isBlank(header) || !header.trim().startsWith("bytes=")) {
+			return null;
+		}
+
+		// send the whole content if the validator of the client does not match
+		final String ifRange = request.getHeader("If-Range");
+		if (StringUtils.isNotBlank(ifRange) && !matchesIfRange(ifRange.trim(), etag, lastModified)) {
+			return null;
+		}
+
+		final List<Range> ranges = new ArrayList<>();
+
+		for (final String spec : StringUtils.substringAfter(header, "=").split(",")) {
+
+			final String value = spec.trim();
+			final int pos      = value.indexOf('-');
+
+			if (pos < 0) {
+
+				// syntactically invalid, ignore header
+				return null;
+			}
+
+			try {
+
+				final String first = value.substring(0, pos).trim();
+				final String last  = value.substring(pos + 1).trim();
+
+				if (first.isEmpty()) {
+
+					// suffix range
+					final long suffix = Long.parseLong(last);
+					if (suffix > 0 && length > 0) {
+
+						ranges.add(new Range(Math.max(0, length - suffix), length - 1));
+					}
+
+				} else {
+
+					final long start = Long.parseLong(first);
+					final long end   = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+
+					if (!last.isEmpty() && Long.parseLong(last) < start) {
+
+						// syntactically invalid, ignore header
+						return null;
+					}
+
+					if (start < length) {
+
+						ranges.add(new Range(start, end));
+					}
+				}
+
+			} catch (NumberFormatException nfex) {
+
+				// syntactically invalid, ignore header
+				return null;
+			}
+		}
+
+		if (ranges.size() > 1) {
+
+			final List<Range> coalesced = coalesce(ranges);
+
+			// too many ranges, send the whole content instead
+			if (coalesced.size() > MAX_RANGES) {
+				return null;
+			}
+
+			return coalesced;
+		}
+
+		return ranges;
+	}
+
+	// ----- private methods -----
+	private static int sendRanges(final HttpServletRequest request, final HttpServletResponse response, final FileChannel channel, final String etag, final Date lastModified) throws IOException {
+
+		final long length        = channel.size();
+		final List<Range> ranges = getRanges(request, length, etag, lastModified);
+
+		response.setHeader("Accept-Ranges", "bytes");
+
+		if (ranges == null) {
+
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.setContentLengthLong(length);
+
+			send(request, response, channel, Collections.singletonList(new Part(null, 0, length)));
+
+			return HttpServletResponse.SC_OK;
+		}
+
+		if (ranges.isEmpty()) {
+
+			close(channel);
+
+			response.setHeader("Content-Range", "bytes */" + length);
+			response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+
+			return HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+		}
+
+		response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+		if (ranges.size() == 1) {
+
+			final Range range = ranges.get(0);
+
+			response.setHeader("Content-Range", "bytes " + range.start + "-" + range.end + "/" + length);
+			response.setContentLengthLong(range.length());
+
+			send(request, response, channel, Collections.singletonList(new Part(null, range.start, range.length())));
+
+		} else {
+
+			// multipart/byteranges
+			final String boundary    = UUID.randomUUID().toString().replace("-", "");
+			final String contentType = response.getContentType();
+			final List<Part> parts   = new LinkedList<>();
+			long contentLength       = 0L;
+
+			for (final Range range : ranges) {
+
+				final StringBuilder header = new StringBuilder();
+
+				header.append("\r\n--").append(boundary).append("\r\n");
+
+				if (contentType != null) {
+					header.append("Content-Type: ").append(contentType).append("\r\n");
+				}
+
+				header.append("Content-Range: bytes ").append(range.start).append("-").append(range.end).append("/").append(length).append("\r\n\r\n");
+
+				final Part part = new Part(header.toString().getBytes(StandardCharsets.US_ASCII), range.start, range.length());
+
+				contentLength += part.length();
+				parts.add(part);
+			}
+
+			final Part trailer = new Part(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII), 0, 0);
+
+			contentLength += trailer.length();
+			parts.add(trailer);
+
+			response.setContentType("multipart/byteranges; boundary=" + boundary);
+			response.setContentLengthLong(contentLength);
+
+			send(request, response, channel, parts);
+		}
+
+		return HttpServletResponse.SC_PARTIAL_CONTENT;
+	}
+
+	private static boolean matchesIfRange(final String ifRange, final String etag, final Date lastModified) {
+
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+
+			// only strong entity tags can be used with If-Range
+			return etag != null && etag.equals(ifRange);
+		}
+
+		if (lastModified != null) {
+
+			final DateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+			httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+			try {
+
+				return httpDateFormat.parse(ifRange).getTime() / 1000L == lastModified.getTime() / 1000L;
+
+			} catch (ParseException ignore) {}
+		}
+
+		return false;
+	}
+
+	private static List<Range> coalesce(final List<Range> ranges) {
+
+		final List<Range> sorted = new ArrayList<>(ranges);
+		final List<Range> result = new ArrayList<>();
+
+		Collections.sort(sorted, (a, b) -> Long.compare(a.start, b.start));
+
+		Range current = null;
+
+		for (final Range range : sorted) {
+
+			if (current != null && range.start <= current.end + 1) {
+
+				current = new Range(current.start, Math.max(current.end, range.end));
+
+			} else {
+
+				if (current != null) {
+					result.add(current);
+				}
+
+				current = range;
+			}
+		}
+
+		if (current != null) {
+			result.add(current);
+		}
+
+		return result;
+	}
+
+	private static void send(final HttpServletRequest request, final HttpServletResponse response, final FileChannel channel, final List<Part> parts) throws IOException {
+
+		final ServletOutputStream out = response.getOutputStream();
+
+		if (out instanceof HttpOutput && request.isAsyncSupported() && !request.isAsyncStarted()) {
+
+			sendAsync(request, (HttpOutput)out, channel, parts);
+
+		} else {
+
+			sendBlocking(out, channel, parts);
+		}
+	}
+
+	private static void sendAsync(final HttpServletRequest request, final HttpOutput out, final FileChannel channel, final List<Part> parts) throws IOException {
+
+		final AsyncContext async = request.startAsync();
+
+		// the transfer is not limited by the async timeout
+		async.setTimeout(0);
+
+		final Callback callback = new Callback() {
+
+			@Override
+			public void succeeded() {
+				complete();
+			}
+
+			@Override
+			public void failed(final Throwable t) {
+
+				logger.debug("File transfer failed: {}", t.getMessage());
+				complete();
+			}
+
+			private void complete() {
+
+				try {
+					channel.close();
+				} catch (IOException ignore) {}
+
+				async.complete();
+			}
+		};
+
+		try {
+
+			if (parts.size() == 1 && parts.get(0).header == null && parts.get(0).length <= MAX_MAPPED_LENGTH) {
+
+				final Part part = parts.get(0);
+
+				// memory-mapped buffer, written without copying the content into the heap
+				out.sendContent(channel.map(FileChannel.MapMode.READ_ONLY, part.position, part.length), callback);
+
+			} else {
+
+				out.sendContent(new PartsChannel(channel, parts), callback);
+			}
+
+		} catch (Throwable t) {
+
+			callback.failed(t);
+		}
+	}
+
+	private static void sendBlocking(final OutputStream out, final FileChannel channel, final List<Part> parts) throws IOException {
+
+		final WritableByteChannel target = Channels.newChannel(out);
+
+		try {
+
+			for (final Part part : parts) {
+
+				if (part.header != null) {
+					out.write(part.header);
+				}
+
+				long position  = part.position;
+				long remaining = part.length;
+
+				while (remaining > 0) {
+
+					final long count = channel.transferTo(position, remaining, target);
+					if (count <= 0) {
+						break;
+					}
+
+					position  += count;
+					remaining -= count;
+				}
+			}
+
+			out.flush();
+
+		} finally {
+
+			channel.close();
+		}
+	}
+
+	private static void close(final FileChannel channel) {
+
+		try {
+			channel.close();
+		} catch (IOException ignore) {}
+	}
+
+	// ----- nested classes -----
+	static class Range {
+
+		final long start;
+		final long end;
+
+		Range(final long start, final long end) {
+
+			this.start = start;
+			this.end   = end;
+		}
+
+		long length() {
+			return end - start + 1;
+		}
+	}
+
+	private static class Part {
+
+		private byte[] header = null;
+		private long position = 0L;
+		private long length   = 0L;
+
+		public Part(final byte[] header, final long position, final long length) {
+
+			this.header   = header;
+			this.position = position;
+			this.length   = length;
+		}
+
+		public long length() {
+			return (header != null ? header.length : 0) + length;
+		}
+	}
+
+	/**
+	 * Readable channel that returns the headers and file regions of a list
+	 * of parts in order.
+	 */
+	private static class PartsChannel implements ReadableByteChannel {
+
+		private final List<Part> parts = new LinkedList<>();
+		private FileChannel channel    = null;
+		private ByteBuffer header      = null;
+		private long position          = 0L;
+		private long remaining         = 0L;
+
+		public PartsChannel(final FileChannel channel, final List<Part> parts) {
+
+			this.channel = channel;
+			this.parts.addAll(parts);
+		}
+
+		@Override
+		public int read(final ByteBuffer dst) throws IOException {
+
+			while (true) {
+
+				if (header != null && header.hasRemaining()) {
+
+					final int count = Math.min(header.remaining(), dst.remaining());
+					final int limit = header.limit();
+
+					header.limit(header.position() + count);
+					dst.put(header);
+					header.limit(limit);
+
+					return count;
+				}
+
+				if (remaining > 0) {
+
+					final int limit = dst.limit();
+
+					if (dst.remaining() > remaining) {
+						dst.limit(dst.position() + (int)remaining);
+					}
+
+					try {
+
+						final int count = channel.read(dst, position);
+						if (count < 0) {
+							return -1;
+						}
+
+						position  += count;
+						remaining -= count;
+
+						return count;
+
+					} finally {
+
+						dst.limit(limit);
+					}
+				}
+
+				if (parts.isEmpty()) {
+					return -1;
+				}
+
+				final Part part = parts.remove(0);
+
+				header    = part.header != null ? ByteBuffer.wrap(part.header) : null;
+				position  = part.position;
+				remaining = part.length;
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
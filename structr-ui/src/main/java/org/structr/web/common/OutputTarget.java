@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.structr.common.Permission;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.web.entity.File;
+
+/**
+ * Output target for functions that stream large results (e.g. exports)
+ * instead of returning them as a string.
+ *
+ * The target is either an existing file whose content is replaced, or the
+ * name of a new file. Files are only written if the current user has write
+ * permission.
+ */
+public class OutputTarget implements AutoCloseable {
+
+	private OutputStream outputStream = null;
+	private File file                 = null;
+
+	private OutputTarget(final OutputStream outputStream, final File file) {
+
+		this.outputStream = outputStream;
+		this.file         = file;
+	}
+
+	/**
+	 * Creates an output target for the given target parameter.
+	 *
+	 * @param securityContext
+	 * @param target a file or the name of a new file
+	 *
+	 * @return the output target
+	 *
+	 * @throws FrameworkException
+	 * @throws IOException
+	 */
+	public static OutputTarget create(final SecurityContext securityContext, final Object target) throws FrameworkException, IOException {
+
+		if (target instanceof File) {
+
+			final File file = (File)target;
+
+			return new OutputTarget(openFile(securityContext, file), file);
+		}
+
+		if (target instanceof String) {
+
+			final File file = StructrApp.getInstance(securityContext).create(File.class, (String)target);
+
+			return new OutputTarget(openFile(securityContext, file), file);
+		}
+
+		throw new FrameworkException(422, "Invalid output target, expected a file or a file name");
+	}
+
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	/**
+	 * Returns the value the function should return after writing to
+	 * this target.
+	 *
+	 * @return the file
+	 */
+	public Object getResult() {
+		return file;
+	}
+
+	@Override
+	public void close() throws IOException {
+		outputStream.close();
+	}
+
+	// ----- private methods -----
+	private static OutputStream openFile(final SecurityContext securityContext, final File file) throws FrameworkException {
+
+		// getOutputStream() does not check permissions, so check them here like the upload servlet does
+		if (!file.isGranted(Permission.write, securityContext)) {
+
+			throw new FrameworkException(403, "Write access to file " + file.getPath() + " forbidden");
+		}
+
+		final OutputStream out = file.getOutputStream(true, false);
+		if (out == null) {
+
+			throw new FrameworkException(422, "Cannot write to file " + file.getPath());
+		}
+
+		return new BufferedOutputStream(out, 65536);
+	}
+}
@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.ContextStore;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.ErrorToken;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.Tx;
+import org.structr.web.entity.dom.DOMNode;
+
+/**
+ * Renders independent sibling subtrees of a page concurrently.
+ *
+ * Each subtree is rendered into a separate buffer, either inline in the
+ * current thread or, for subtrees that are flagged as independent, in a
+ * worker thread with its own transaction and a copy of the render context.
+ * The buffers are appended to the output in document order by finish().
+ *
+ * Workers use a copy of the security context with a copy of the context
+ * store, and a separate error buffer and data source cache. Subtrees that
+ * are rendered inline after a worker was started record their changes of
+ * the context store and their errors as well. After all subtrees are
+ * rendered, finish() applies the recorded changes (stored values, counters
+ * etc.) and errors to the render context in document order, so the result
+ * is the same as with serial rendering. Subtrees do not see the values
+ * stored by preceding siblings that were rendered in a worker.
+ *
+ * Subtrees rendered in a worker thread must not modify data, the worker
+ * transaction is never committed. Nested independent subtrees are rendered
+ * inline to avoid exhausting the worker pool.
+ */
+public class ParallelRenderer {
+
+	private static final Logger logger                 = LoggerFactory.getLogger(ParallelRenderer.class.getName());
+	private static final ThreadLocal<Boolean> isWorker = new ThreadLocal<>();
+	private static ExecutorService executor            = null;
+
+	private final List<Segment> segments = new ArrayList<>();
+	private RenderContext renderContext  = null;
+	private boolean hasWorkers           = false;
+
+	public ParallelRenderer(final RenderContext renderContext) {
+		this.renderContext = renderContext;
+	}
+
+	/**
+	 * Indicates whether subtrees can be rendered concurrently in the
+	 * current thread.
+	 *
+	 * @return whether concurrent rendering is possible
+	 */
+	public static boolean isAvailable() {
+		return !Boolean.TRUE.equals(isWorker.get()) && Settings.HtmlRenderThreads.getValue() > 0;
+	}
+
+	/**
+	 * Renders the given node, concurrently if the node is flagged as
+	 * independent.
+	 *
+	 * @param node the node to render
+	 * @param depth the depth
+	 * @throws FrameworkException
+	 */
+	public void render(final DOMNode node, final int depth) throws FrameworkException {
+
+		final String uuid = node.getUuid();
+
+		if (node.renderInParallel()) {
+
+			submit((app, context) -> {
+
+				final DOMNode localNode = app.get(DOMNode.class, uuid);
+				if (localNode != null) {
+
+					localNode.render(context, depth);
+				}
+			});
+
+		} else {
+
+			inline(context -> node.render(context, depth));
+		}
+	}
+
+	/**
+	 * Renders the content of the given node for the given data object of
+	 * a repeater, concurrently if the node is flagged as independent.
+	 *
+	 * @param node the repeater node
+	 * @param dataKey the data key
+	 * @param dataObject the data object
+	 * @param depth the depth
+	 * @throws FrameworkException
+	 */
+	public void renderItem(final DOMNode node, final String dataKey, final GraphObject dataObject, final int depth) throws FrameworkException {
+
+		final String uuid = node.getUuid();
+
+		if (node.renderInParallel()) {
+
+			submit((app, context) -> {
+
+				final DOMNode localNode = app.get(DOMNode.class, uuid);
+				if (localNode != null) {
+
+					context.putDataObject(dataKey, getLocalDataObject(app, dataObject));
+					localNode.renderContent(context, depth);
+				}
+			});
+
+		} else {
+
+			inline(context -> {
+
+				context.putDataObject(dataKey, dataObject);
+				node.renderContent(context, depth);
+			});
+		}
+	}
+
+	/**
+	 * Waits for all concurrently rendered subtrees, appends all buffers
+	 * to the output and applies the changes of the workers to the render
+	 * context, in document order.
+	 */
+	public void finish() {
+
+		final AsyncBuffer out = renderContext.getBuffer();
+
+		for (final Segment segment : segments) {
+
+			try {
+
+				for (final String part : segment.buffer.get().getQueue()) {
+					out.append(part);
+				}
+
+				if (segment.initialStore != null) {
+
+					renderContext.getContextStore().applyChanges(segment.initialStore, segment.changedStore);
+					renderContext.getErrorBuffer().getErrorTokens().addAll(segment.errorTokens);
+				}
+
+			} catch (ExecutionException ex) {
+
+				out.append("Error while rendering node: ").append(ex.getCause().getMessage());
+				logger.warn("", ex.getCause());
+
+			} catch (InterruptedException iex) {
+
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private void inline(final InlineTask task) throws FrameworkException {
+
+		final AsyncBuffer buffer        = renderContext.getBuffer();
+		final AsyncBuffer segment       = new AsyncBuffer();
+		final ContextStore store        = renderContext.getContextStore();
+		final List<ErrorToken> errors   = renderContext.getErrorBuffer().getErrorTokens();
+		final int errorCount            = errors.size();
+
+		// changes of subtrees that follow a worker must be applied again after the changes of the worker
+		final ContextStore initialStore = hasWorkers ? new ContextStore(store) : null;
+
+		renderContext.setBuffer(segment);
+
+		try {
+
+			task.render(renderContext);
+
+		} finally {
+
+			renderContext.setBuffer(buffer);
+		}
+
+		if (initialStore != null) {
+
+			final List<ErrorToken> added = errors.subList(errorCount, errors.size());
+			final List<ErrorToken> copy  = new ArrayList<>(added);
+
+			// errors are added again by finish() in document order
+			added.clear();
+
+			segments.add(new Segment(CompletableFuture.completedFuture(segment), initialStore, new ContextStore(store), copy));
+
+		} else {
+
+			segments.add(new Segment(CompletableFuture.completedFuture(segment), null, null, null));
+		}
+	}
+
+	private void submit(final ConcurrentTask task) {
+
+		final SecurityContext securityContext = renderContext.getSecurityContext().copy();
+		final RenderContext context           = new RenderContext(renderContext, securityContext);
+		final ContextStore initialStore       = new ContextStore(securityContext.getContextStore());
+		final AsyncBuffer segment             = new AsyncBuffer();
+
+		context.setBuffer(segment);
+
+		hasWorkers = true;
+
+		segments.add(new Segment(getExecutor().submit(() -> {
+
+			final App app = StructrApp.getInstance(context.getSecurityContext());
+
+			isWorker.set(true);
+
+			// read-only transaction, is never committed
+			try (final Tx tx = app.tx()) {
+
+				task.render(app, context);
+
+			} finally {
+
+				isWorker.remove();
+			}
+
+			return segment;
+
+		}), initialStore, securityContext.getContextStore(), context.getErrorBuffer().getErrorTokens()));
+	}
+
+	private GraphObject getLocalDataObject(final App app, final GraphObject dataObject) throws FrameworkException {
+
+		// database objects are loaded again in the transaction of the worker
+		if (dataObject instanceof NodeInterface) {
+
+			final GraphObject localObject = app.getNodeById(dataObject.getUuid());
+			if (localObject != null) {
+
+				return localObject;
+			}
+		}
+
+		if (dataObject instanceof RelationshipInterface) {
+
+			final GraphObject localObject = app.getRelationshipById(dataObject.getUuid());
+			if (localObject != null) {
+
+				return localObject;
+			}
+		}
+
+		return dataObject;
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+
+		if (executor == null) {
+
+			executor = Executors.newFixedThreadPool(Math.max(1, Settings.HtmlRenderThreads.getValue()), r -> {
+
+				final Thread thread = new Thread(r, "ParallelRenderer");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+		}
+
+		return executor;
+	}
+
+	/**
+	 * Stops the worker threads. A new pool is created on the next
+	 * concurrent render.
+	 */
+	public static synchronized void shutdown() {
+
+		if (executor != null) {
+
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	// ----- nested interfaces -----
+	@FunctionalInterface
+	private interface InlineTask {
+
+		void render(final RenderContext context) throws FrameworkException;
+	}
+
+	@FunctionalInterface
+	private interface ConcurrentTask {
+
+		void render(final App app, final RenderContext context) throws FrameworkException;
+	}
+
+	// ----- nested classes -----
+	private static class Segment {
+
+		private Future<AsyncBuffer> buffer   = null;
+		private ContextStore initialStore    = null;
+		private ContextStore changedStore    = null;
+		private List<ErrorToken> errorTokens = null;
+
+		public Segment(final Future<AsyncBuffer> buffer, final ContextStore initialStore, final ContextStore changedStore, final List<ErrorToken> errorTokens) {
+
+			this.buffer       = buffer;
+			this.initialStore = initialStore;
+			this.changedStore = changedStore;
+			this.errorTokens  = errorTokens;
+		}
+	}
+}
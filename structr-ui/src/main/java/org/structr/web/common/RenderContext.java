@@ -26,6 +26,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.structr.api.config.Settings;
 import org.structr.common.SecurityContext;
+import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
@@ -65,6 +66,7 @@ public class RenderContext extends ActionContext {
 	private Result result                              = null;
 	private boolean anyChildNodeCreatesNewLine         = false;
 	private boolean indentHtml                         = true;
+	private DataSourceCache dataSourceCache            = new DataSourceCache();
 
 	public enum EditMode {
 
@@ -104,9 +106,27 @@ public class RenderContext extends ActionContext {
 		this.anyChildNodeCreatesNewLine = other.anyChildNodeCreatesNewLine;
 		this.locale = other.locale;
 		this.indentHtml = other.indentHtml;
+		this.dataSourceCache = other.dataSourceCache;
 
 	}
 
+	/**
+	 * Create a copy of this render context with a clean buffer for use in
+	 * a different thread, with the given security context, a separate
+	 * error buffer and a separate data source cache.
+	 *
+	 * @param other The render context to copy from
+	 * @param securityContext The security context of the copy
+	 */
+	public RenderContext(final RenderContext other, final SecurityContext securityContext) {
+
+		this(other);
+
+		this.securityContext = securityContext;
+		this.errorBuffer = new ErrorBuffer();
+		this.dataSourceCache = new DataSourceCache();
+	}
+
 	public RenderContext(final SecurityContext securityContext, final HttpServletRequest request, HttpServletResponse response, final EditMode editMode) {
 
 		super(securityContext);
@@ -329,6 +349,10 @@ public class RenderContext extends ActionContext {
 		setDataObject(null);
 	}
 
+	public DataSourceCache getDataSourceCache() {
+		return dataSourceCache;
+	}
+
 	public boolean hasDataForKey(String key) {
 		return dataObjects.containsKey(key);
 	}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+import org.structr.common.PropertyView;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.StringProperty;
+import org.structr.core.script.Scripting;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.dom.Content;
+import org.structr.web.entity.dom.DOMElement;
+import org.structr.web.entity.dom.DOMNode;
+import org.structr.web.entity.dom.Template;
+import org.structr.web.entity.html.Html;
+
+/**
+ * Compiled render plan for the static parts of pages.
+ *
+ * For each DOM node that is rendered in {@link EditMode#NONE}, the plan
+ * records whether the node and its complete subtree are static, i.e. visible
+ * for all users, without data bindings, conditions, locale restrictions or
+ * scripting expressions. The markup of a static subtree is rendered once and
+ * served from memory afterwards, so static parts of a page are rendered
+ * without accessing the database. Dynamic nodes are rendered as before.
+ *
+ * The plan is discarded as a whole whenever a DOM node is created, modified
+ * or deleted.
+ */
+public class RenderPlan {
+
+	private static final int MAX_ENTRIES                = 100000;
+	private static final Map<String, PlanEntry> entries = new ConcurrentHashMap<>();
+	private static final ThreadLocal<Boolean> capturing = new ThreadLocal<>();
+	private static final AtomicLong epoch               = new AtomicLong();
+
+	/**
+	 * Discards all compiled render plans.
+	 */
+	public static void invalidate() {
+
+		epoch.incrementAndGet();
+		entries.clear();
+	}
+
+	/**
+	 * Renders the given node from the compiled render plan if the node
+	 * is static.
+	 *
+	 * @param node the node to render
+	 * @param renderContext the render context
+	 * @param depth the depth of the node
+	 *
+	 * @return true if the node was rendered, false if it must be rendered normally
+	 * @throws FrameworkException
+	 */
+	public static boolean render(final DOMNode node, final RenderContext renderContext, final int depth) throws FrameworkException {
+
+		if (!EditMode.NONE.equals(renderContext.getEditMode(renderContext.getSecurityContext().getUser(false))) || Boolean.TRUE.equals(capturing.get())) {
+			return false;
+		}
+
+		final long currentEpoch = epoch.get();
+		final PlanEntry entry   = getEntry(node, currentEpoch);
+
+		if (!entry.isStatic()) {
+			return false;
+		}
+
+		// markup depends on the depth and on the indentation setting
+		final int key = renderContext.shouldIndentHtml() ? depth : -depth - 1;
+		String markup = entry.getMarkup(key);
+
+		if (markup == null) {
+
+			final AsyncBuffer buffer  = renderContext.getBuffer();
+			final AsyncBuffer capture = new AsyncBuffer();
+
+			renderContext.setBuffer(capture);
+			capturing.set(true);
+
+			try {
+
+				node.renderContent(renderContext, depth);
+
+			} finally {
+
+				capturing.remove();
+				renderContext.setBuffer(buffer);
+			}
+
+			markup = StringUtils.join(capture.getQueue(), "");
+
+			// do not store markup that was rendered from outdated data
+			if (epoch.get() == currentEpoch) {
+				entry.setMarkup(key, markup);
+			}
+		}
+
+		renderContext.getBuffer().append(markup);
+
+		return true;
+	}
+
+	// ----- private static methods -----
+	private static PlanEntry getEntry(final DOMNode node, final long currentEpoch) throws FrameworkException {
+
+		final String uuid = node.getUuid();
+		PlanEntry entry   = entries.get(uuid);
+
+		if (entry == null || entry.getEpoch() != currentEpoch) {
+
+			entry = new PlanEntry(currentEpoch, isStatic(node, currentEpoch));
+
+			if (entries.size() >= MAX_ENTRIES) {
+				entries.clear();
+			}
+
+			entries.put(uuid, entry);
+		}
+
+		return entry;
+	}
+
+	private static boolean isStatic(final DOMNode node, final long currentEpoch) throws FrameworkException {
+
+		// only plain elements and content nodes, special node types have their own render methods
+		if (node instanceof Html || node instanceof Template || !(node instanceof DOMElement || "Content".equals(node.getType()))) {
+			return false;
+		}
+
+		// must be visible for everyone
+		if (!node.isVisibleToPublicUsers() || !node.isVisibleToAuthenticatedUsers() || node.isHidden() || node.isDeleted()) {
+			return false;
+		}
+
+		if (node.hideOnIndex() || node.hideOnDetail() || node.renderDetails() || node.dontCache() || node.getSharedComponent() != null) {
+			return false;
+		}
+
+		for (final String name : new String[] { "dataKey", "restQuery", "cypherQuery", "xpathQuery", "functionQuery", "showForLocales", "hideForLocales", "showConditions", "hideConditions", "sharedComponentConfiguration" }) {
+
+			if (StringUtils.isNotBlank((String)node.getProperty(StructrApp.key(DOMNode.class, name)))) {
+				return false;
+			}
+		}
+
+		for (final PropertyKey key : node.getDataPropertyKeys()) {
+
+			if (!isStaticValue(node.getProperty(key))) {
+				return false;
+			}
+		}
+
+		if (node instanceof Content) {
+
+			return isStaticValue(((Content)node).getContent());
+		}
+
+		if (node.getProperty(new StringProperty(DOMElement.STRUCTR_ACTION_PROPERTY)) != null) {
+			return false;
+		}
+
+		for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(node.getEntityType(), PropertyView.Html)) {
+
+			if (!isStaticValue(node.getProperty(key))) {
+				return false;
+			}
+		}
+
+		// all children must be static as well
+		for (final RelationshipInterface rel : node.getChildRelationships()) {
+
+			final DOMNode child = (DOMNode)rel.getTargetNode();
+			if (child == null || !getEntry(child, currentEpoch).isStatic()) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isStaticValue(final Object value) {
+
+		if (value == null) {
+			return true;
+		}
+
+		if (value instanceof String) {
+			return Scripting.extractScripts((String)value).isEmpty();
+		}
+
+		return true;
+	}
+
+	// ----- nested classes -----
+	private static class PlanEntry {
+
+		private final Map<Integer, String> markup = new ConcurrentHashMap<>();
+		private boolean isStatic                  = false;
+		private long epoch                        = 0L;
+
+		public PlanEntry(final long epoch, final boolean isStatic) {
+
+			this.epoch    = epoch;
+			this.isStatic = isStatic;
+		}
+
+		public long getEpoch() {
+			return epoch;
+		}
+
+		public boolean isStatic() {
+			return isStatic;
+		}
+
+		public String getMarkup(final int key) {
+			return markup.get(key);
+		}
+
+		public void setMarkup(final int key, final String value) {
+			markup.put(key, value);
+		}
+	}
+}
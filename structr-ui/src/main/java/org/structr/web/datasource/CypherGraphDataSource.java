@@ -45,6 +45,9 @@ public class CypherGraphDataSource implements GraphDataSource<Iterable<GraphObje
 			return null;
 		}
 
-		return StructrApp.getInstance(renderContext.getSecurityContext()).command(CypherQueryCommand.class).execute(cypherQuery);
+		// the evaluated query fully describes the result
+		return renderContext.getDataSourceCache().get(renderContext, "cypher:" + cypherQuery, () -> {
+			return StructrApp.getInstance(renderContext.getSecurityContext()).command(CypherQueryCommand.class).execute(cypherQuery);
+		});
 	}
 }
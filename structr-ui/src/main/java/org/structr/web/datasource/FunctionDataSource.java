@@ -48,6 +48,8 @@ public class FunctionDataSource implements GraphDataSource<Iterable<GraphObject>
 			return null;
 		}
 
+		// function queries are not memoized, their result can depend on the
+		// state of the render context and the script can have side effects
 		try {
 
 			final Object result = Scripting.evaluate(renderContext, referenceNode, "${" + functionQuery + "}", "function query");
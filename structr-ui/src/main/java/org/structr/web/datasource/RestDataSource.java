@@ -74,11 +74,32 @@ public class RestDataSource implements GraphDataSource<Iterable<GraphObject>> {
 			return Collections.EMPTY_LIST;
 		}
 
-		return getData(renderContext, restQuery);
+		// the evaluated query fully describes the result
+		final Result result = renderContext.getDataSourceCache().get(renderContext, "rest:" + restQuery, () -> getResult(renderContext, restQuery));
+
+		return getData(renderContext, result);
 	}
 
 	// FIXME: this method is needed by the websocket search command because there is no reference node for the above method
 	public List<GraphObject> getData(final RenderContext renderContext, final String restQuery) throws FrameworkException {
+		return getData(renderContext, getResult(renderContext, restQuery));
+	}
+
+	// ----- private methods -----
+	private List<GraphObject> getData(final RenderContext renderContext, final Result result) {
+
+		if (result == null) {
+			return Collections.EMPTY_LIST;
+		}
+
+		final List<GraphObject> res = result.getResults();
+
+		renderContext.setResult(result);
+
+		return res != null ? res : Collections.EMPTY_LIST;
+	}
+
+	private Result getResult(final RenderContext renderContext, final String restQuery) throws FrameworkException {
 
 		final Map<Pattern, Class<? extends Resource>> resourceMap = new LinkedHashMap<>();
 		final SecurityContext securityContext                     = renderContext.getSecurityContext();
@@ -89,7 +110,7 @@ public class RestDataSource implements GraphDataSource<Iterable<GraphObject>> {
 				resourceProvider = UiResourceProvider.class.newInstance();
 			} catch (Throwable t) {
 				logger.error("Couldn't establish a resource provider", t);
-				return Collections.EMPTY_LIST;
+				return null;
 			}
 		}
 
@@ -176,7 +197,7 @@ public class RestDataSource implements GraphDataSource<Iterable<GraphObject>> {
 
 		if (resource == null) {
 
-			return Collections.EMPTY_LIST;
+			return null;
 
 		}
 
@@ -230,11 +251,7 @@ public class RestDataSource implements GraphDataSource<Iterable<GraphObject>> {
 		//Integer rawResultCount = (Integer) Services.getAttribute(NodeFactory.RAW_RESULT_COUNT + Thread.currentThread().getId());
 		PagingHelper.addPagingParameter(result, pageSize, page);
 
-		List<GraphObject> res = result.getResults();
-
-		renderContext.setResult(result);
-
-		return res != null ? res : Collections.EMPTY_LIST;
+		return result;
 
 	}
 
@@ -53,7 +53,15 @@ public class XPathGraphDataSource implements GraphDataSource<Iterable<GraphObjec
 			return null;
 		}
 
-		final Document document    = ((DOMNode) referenceNode).getOwnerDocument();
+		final Document document = ((DOMNode) referenceNode).getOwnerDocument();
+		final String key        = "xpath:" + (document != null ? ((DOMNode)document).getUuid() : null) + ":" + xpathQuery;
+
+		return renderContext.getDataSourceCache().get(renderContext, key, () -> getData(document, xpathQuery));
+	}
+
+	// ----- private methods -----
+	private List<GraphObject> getData(final Document document, final String xpathQuery) {
+
 		final XPathFactory factory = XPathFactory.newInstance();
 		final XPath xpath          = factory.newXPath();
 
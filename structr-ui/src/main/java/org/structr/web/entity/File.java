@@ -21,7 +21,6 @@ package org.structr.web.entity;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -64,6 +63,7 @@ import org.structr.core.property.PropertyKey;
 import org.structr.core.scheduler.JobQueueManager;
 import org.structr.core.script.Scripting;
 import org.structr.files.cmis.config.StructrFileActions;
+import org.structr.rest.common.PrecompressedContent;
 import org.structr.rest.common.XMLStructureAnalyzer;
 import org.structr.schema.SchemaService;
 import org.structr.schema.action.ActionContext;
@@ -73,6 +73,8 @@ import org.structr.schema.json.JsonMethod;
 import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.ClosingFileOutputStream;
+import org.structr.web.common.ContentStore;
+import org.structr.web.common.FileCache;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.RenderContext;
 import org.structr.web.importer.CSVFileImportJob;
@@ -301,9 +303,14 @@ public interface File extends AbstractFile, Indexable, Linkable, JavaScriptSourc
 
 				if (toDelete.exists() && toDelete.isFile()) {
 
-					toDelete.delete();
+					// removes the stored content as well if no other file references it
+					ContentStore.release(thisFile, toDelete);
 				}
 
+				FileCache.remove(toDelete);
+
+				PrecompressedContent.deleteVariants(toDelete);
+
 			} catch (Throwable t) {
 				logger.debug("Exception while trying to delete file {}: {}", toDelete.getPath(), t.getMessage());
 			}
@@ -418,7 +425,7 @@ public interface File extends AbstractFile, Indexable, Linkable, JavaScriptSourc
 
 		try {
 
-			final FileInputStream fis             = new FileInputStream(fileOnDisk);
+			final InputStream fis                 = FileCache.getInputStream(fileOnDisk);
 			final SecurityContext securityContext = thisFile.getSecurityContext();
 
 			if (thisFile.isTemplate()) {
@@ -34,6 +34,7 @@ import org.structr.common.PropertyView;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.ModificationEvent;
+import org.structr.rest.common.PrecompressedContent;
 import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonSchema;
 import org.structr.schema.json.JsonType;
@@ -83,6 +84,9 @@ public interface MinifiedCssFile extends AbstractMinifiedFile {
 
 			FileHelper.setFileData(thisFile, FileUtils.readFileToString(temp, Charset.forName("utf-8")).getBytes(), null);
 		}
+
+		// pre-compress the minified output
+		PrecompressedContent.createGzipVariant(thisFile.getFileOnDisk(), thisFile.getChecksum());
 	}
 
 
@@ -39,6 +39,7 @@ import org.structr.core.entity.Relation;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.rest.common.PrecompressedContent;
 import org.structr.schema.SchemaService;
 import org.structr.schema.json.JsonSchema;
 import org.structr.schema.json.JsonType;
@@ -112,6 +113,9 @@ public interface MinifiedJavaScriptFile extends AbstractMinifiedFile {
 		changedProperties.put(StructrApp.key(MinifiedJavaScriptFile.class, "errors"),   StringUtils.join(compiler.getErrors(), System.lineSeparator()));
 
 		thisFile.setProperties(securityContext, changedProperties);
+
+		// pre-compress the minified output
+		PrecompressedContent.createGzipVariant(thisFile.getFileOnDisk(), thisFile.getChecksum());
 	}
 
 	static ArrayList<SourceFile> getSourceFileList(final MinifiedJavaScriptFile thisFile) throws FrameworkException, IOException {
@@ -43,6 +43,7 @@ import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.AsyncBuffer;
 import org.structr.web.common.HtmlProperty;
+import org.structr.web.common.ParallelRenderer;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
 import static org.structr.web.entity.dom.DOMNode.escapeForHtmlAttributes;
@@ -410,6 +411,9 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 						Scripting.evaluate(renderContext, thisElement, "${" + _sharedComponentConfiguration + "}", "shared component configuration");
 					}
 
+					// independent children are rendered concurrently, the output is assembled in document order
+					final ParallelRenderer renderer = getParallelRenderer(renderContext, rels);
+
 					for (final RelationshipInterface rel : rels) {
 
 						final DOMNode subNode = (DOMNode) rel.getTargetNode();
@@ -418,10 +422,21 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 							anyChildNodeCreatesNewLine = (anyChildNodeCreatesNewLine || !(subNode.avoidWhitespace()));
 						}
 
-						subNode.render(renderContext, depth + 1);
+						if (renderer != null) {
+
+							renderer.render(subNode, depth + 1);
+
+						} else {
+
+							subNode.render(renderContext, depth + 1);
+						}
 
 					}
 
+					if (renderer != null) {
+						renderer.finish();
+					}
+
 				}
 
 			} catch (Throwable t) {
@@ -466,6 +481,23 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 		}
 	}
 
+	static ParallelRenderer getParallelRenderer(final RenderContext renderContext, final List<RelationshipInterface> rels) {
+
+		if (rels.size() > 1 && ParallelRenderer.isAvailable()) {
+
+			for (final RelationshipInterface rel : rels) {
+
+				final DOMNode subNode = (DOMNode) rel.getTargetNode();
+				if (subNode != null && subNode.renderInParallel()) {
+
+					return new ParallelRenderer(renderContext);
+				}
+			}
+		}
+
+		return null;
+	}
+
 	static void renderStructrAppLib(final DOMElement thisElement, final AsyncBuffer out, final SecurityContext securityContext, final RenderContext renderContext, final int depth) throws FrameworkException {
 
 		EditMode editMode = renderContext.getEditMode(securityContext.getUser(false));
@@ -65,8 +65,10 @@ import org.structr.schema.json.JsonReferenceType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.AsyncBuffer;
 import org.structr.web.common.GraphDataSource;
+import org.structr.web.common.ParallelRenderer;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.RenderPlan;
 import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.datasource.CypherGraphDataSource;
 import org.structr.web.datasource.FunctionDataSource;
@@ -119,6 +121,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		type.addBooleanProperty("hideOnIndex").setCategory(QUERY_CATEGORY);
 		type.addBooleanProperty("hideOnDetail").setCategory(QUERY_CATEGORY);
 		type.addBooleanProperty("dontCache").setDefaultValue("false");
+		type.addBooleanProperty("renderInParallel").setCategory(QUERY_CATEGORY).setHint("Render this element (or each of its repetitions) concurrently. Only use for elements that do not modify data and do not depend on their siblings.");
 		type.addBooleanProperty("isDOMNode").setReadOnly(true).addTransformer(ConstantBooleanTrue.class.getName()).setCategory(PAGE_CATEGORY);
 
 		type.addIntegerProperty("domSortPosition").setCategory(PAGE_CATEGORY);
@@ -142,6 +145,9 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 
 		type.overrideMethod("onCreation",                  true,  DOMNode.class.getName() + ".onCreation(this, arg0, arg1);");
 		type.overrideMethod("onModification",              true,  DOMNode.class.getName() + ".onModification(this, arg0, arg1, arg2);");
+		type.overrideMethod("afterCreation",               true,  RenderPlan.class.getName() + ".invalidate();");
+		type.overrideMethod("afterModification",           true,  RenderPlan.class.getName() + ".invalidate();");
+		type.overrideMethod("afterDeletion",               true,  RenderPlan.class.getName() + ".invalidate();");
 
 		type.overrideMethod("getPositionProperty",         false, "return DOMNodeCONTAINSDOMNode.positionProperty;");
 
@@ -170,6 +176,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 
 		type.overrideMethod("inTrash",                     false, "return getParent() == null && getOwnerDocumentAsSuperUser() == null;");
 		type.overrideMethod("dontCache",                   false, "return getProperty(dontCacheProperty);");
+		type.overrideMethod("renderInParallel",            false, "return getProperty(renderInParallelProperty);");
 		type.overrideMethod("renderDetails",               false, "return getProperty(renderDetailsProperty);");
 		type.overrideMethod("hideOnIndex",                 false, "return getProperty(hideOnIndexProperty);");
 		type.overrideMethod("hideOnDetail",                false, "return getProperty(hideOnDetailProperty);");
@@ -312,6 +319,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	boolean avoidWhitespace();
 	boolean inTrash();
 	boolean dontCache();
+	boolean renderInParallel();
 	boolean hideOnIndex();
 	boolean hideOnDetail();
 	boolean renderDetails();
@@ -387,11 +395,13 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	// ----- static methods -----
 	static void onCreation(final DOMNode thisNode, final SecurityContext securityContext, final ErrorBuffer errorBuffer) throws FrameworkException {
 
+		RenderPlan.invalidate();
 		DOMNode.checkName(thisNode, errorBuffer);
 	}
 
 	static void onModification(final DOMNode thisNode, final SecurityContext securityContext, final ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
 
+		RenderPlan.invalidate();
 		DOMNode.increasePageVersion(thisNode);
 		DOMNode.checkName(thisNode, errorBuffer);
 	}
@@ -477,12 +487,26 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		final Iterable<GraphObject> listSource = renderContext.getListSource();
 		if (listSource != null) {
 
-			for (final GraphObject dataObject : listSource) {
+			if (node.renderInParallel() && ParallelRenderer.isAvailable()) {
 
-				// make current data object available in renderContext
-				renderContext.putDataObject(dataKey, dataObject);
-				node.renderContent(renderContext, depth + 1);
+				final ParallelRenderer renderer = new ParallelRenderer(renderContext);
 
+				for (final GraphObject dataObject : listSource) {
+
+					renderer.renderItem(node, dataKey, dataObject, depth + 1);
+				}
+
+				renderer.finish();
+
+			} else {
+
+				for (final GraphObject dataObject : listSource) {
+
+					// make current data object available in renderContext
+					renderContext.putDataObject(dataKey, dataObject);
+					node.renderContent(renderContext, depth + 1);
+
+				}
 			}
 
 			renderContext.clearDataObject(dataKey);
@@ -1526,7 +1550,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 
 				}
 
-			} else {
+			} else if (!RenderPlan.render(thisNode, renderContext, depth)) {
 
 				thisNode.renderContent(renderContext, depth);
 			}
@@ -24,6 +24,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang3.StringUtils;
 import org.structr.api.Predicate;
 import org.structr.common.ConstantBooleanTrue;
@@ -195,6 +196,10 @@ public interface Page extends DOMNode, Linkable, Document, DOMImplementation {
 
 	public static final Set<String> nonBodyTags = new HashSet<>(Arrays.asList(new String[] { "html", "head", "body", "meta", "link" } ));
 
+	// resolved element types and negative cache for tags without a corresponding type
+	static final Map<String, Class> elementTypes        = new ConcurrentHashMap<>();
+	static final Set<String> unknownElementTypes        = ConcurrentHashMap.newKeySet();
+
 	Element createElement(final String tag, final boolean suppressException);
 	Integer getCacheForSeconds();
 
@@ -338,8 +343,7 @@ public interface Page extends DOMNode, Linkable, Document, DOMImplementation {
 
 		try {
 
-			//final Class entityClass = Class.forName("org.structr.web.entity.html." + elementType);
-			final Class entityClass = Class.forName("org.structr.web.entity.html." + elementType);
+			final Class entityClass = getElementType(elementType);
 			if (entityClass != null) {
 
 				final ConfigurationProvider config = StructrApp.getConfiguration();
@@ -353,6 +357,9 @@ public interface Page extends DOMNode, Linkable, Document, DOMImplementation {
 				element.doAdopt(page);
 
 				return element;
+			} else if (!suppressException) {
+
+				logger.error("Unable to instantiate element of type {}, no such type", elementType);
 			}
 
 		} catch (Throwable t) {
@@ -365,6 +372,29 @@ public interface Page extends DOMNode, Linkable, Document, DOMImplementation {
 		return null;
 	}
 
+	/**
+	 * Returns the element type for the given (capitalized) tag name, or null if
+	 * no such type exists. Lookups are cached so that the importer doesn't
+	 * probe the class loader (and throw an exception) for every element.
+	 */
+	static Class getElementType(final String elementType) {
+
+		Class type = elementTypes.get(elementType);
+		if (type == null && !unknownElementTypes.contains(elementType)) {
+
+			try {
+
+				type = Class.forName("org.structr.web.entity.html." + elementType);
+				elementTypes.put(elementType, type);
+
+			} catch (ClassNotFoundException cnfex) {
+				unknownElementTypes.add(elementType);
+			}
+		}
+
+		return type;
+	}
+
 	public static NodeList getElementsByTagName(final Page thisPage, final String tagName) {
 
 		DOMNodeList results = new DOMNodeList();
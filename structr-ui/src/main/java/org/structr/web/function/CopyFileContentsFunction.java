@@ -27,6 +27,8 @@ import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.action.Function;
+import org.structr.web.common.ContentStore;
+import org.structr.web.common.FileCache;
 import org.structr.web.common.FileHelper;
 import org.structr.web.entity.File;
 
@@ -67,14 +69,24 @@ public class CopyFileContentsFunction extends Function<Object, Object> {
 
 					}
 
-					Files.copy(fileToCopy, fileToBeReplaced);
+					// share the stored content if possible, copy otherwise
+					Long checksum = ContentStore.link(nodeToCopy, fileToCopy, nodeToBeReplaced, fileToBeReplaced);
+					if (checksum == null) {
+
+						ContentStore.prepareWrite(nodeToBeReplaced, fileToBeReplaced, false);
+						Files.copy(fileToCopy, fileToBeReplaced);
+
+						checksum = FileHelper.getChecksum(fileToBeReplaced);
+					}
+
+					FileCache.written(fileToBeReplaced);
 
 					final PropertyKey<Integer> versionKey = StructrApp.key(File.class, "version");
 					final PropertyKey<Long> checksumKey   = StructrApp.key(File.class, "checksum");
 					final PropertyKey<Long> sizeKey       = StructrApp.key(File.class, "size");
 					final PropertyMap changedProperties   = new PropertyMap();
 
-					changedProperties.put(checksumKey, FileHelper.getChecksum(fileToBeReplaced));
+					changedProperties.put(checksumKey, checksum);
 					changedProperties.put(versionKey, 0);
 					changedProperties.put(new StringProperty("contentType"), nodeToCopy.getProperty(new StringProperty("contentType")));
 
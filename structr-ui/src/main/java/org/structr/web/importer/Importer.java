@@ -59,6 +59,7 @@ import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedException;
 import org.structr.core.GraphObject;
 import org.structr.core.app.App;
+import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
@@ -72,6 +73,7 @@ import org.structr.rest.common.HttpHelper;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.schema.action.Actions;
 import org.structr.schema.importer.SchemaJsonImporter;
+import org.structr.web.common.ContentStore;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.ImageHelper;
 import org.structr.web.diff.CreateOperation;
@@ -113,6 +115,7 @@ public class Importer {
 
 	private final static String DATA_STRUCTR_PREFIX = "data-structr-";
 	private final static String DATA_META_PREFIX    = "data-structr-meta-";
+	private final static int PREFETCH_BATCH_SIZE    = 100;
 
 	static {
 
@@ -136,6 +139,9 @@ public class Importer {
 	private String code;
 
 	private Map<String, Linkable> alreadyDownloaded = new HashMap<>();
+	private Map<String, NodeInterface> resolvedNodes = new HashMap<>();
+	private Map<String, DOMNode> sharedComponents    = new HashMap<>();
+	private Map<String, DOMNode> templates           = new HashMap<>();
 
 	/**
 	 * Construct an instance of the importer to either read the given code, or download code from the given address.
@@ -521,6 +527,12 @@ public class Importer {
 		Linkable res            = null;
 		String instructions     = null;
 
+		if (depth == 0) {
+
+			// resolve all templates and shared components referenced by UUID in this subtree at once
+			prefetchReferencedNodes(startNode);
+		}
+
 		final List<Node> children = startNode.childNodes();
 		for (Node node : children) {
 
@@ -672,7 +684,7 @@ public class Importer {
 
 					if (DeployCommand.isUuid(src)) {
 
-						template = (DOMNode)StructrApp.getInstance().nodeQuery(NodeInterface.class).and(GraphObject.id, src).getFirst();
+						template = (DOMNode)resolveNode(StructrApp.getInstance(), src);
 
 						if (template == null) {
 
@@ -682,7 +694,7 @@ public class Importer {
 
 					} else if ( DeployCommand.endsWithUuid(src) ) {
 						final String uuid = src.substring(src.length() - 32);
-						template = (DOMNode)StructrApp.getInstance().nodeQuery(NodeInterface.class).and(GraphObject.id, uuid).getFirst();
+						template = (DOMNode)resolveNode(StructrApp.getInstance(), uuid);
 
 						if (template == null) {
 
@@ -692,10 +704,10 @@ public class Importer {
 
 					} else {
 
-						template = Importer.findSharedComponentByName(src);
+						template = findSharedComponentByNameCached(src);
 						if (template == null) {
 
-							template = Importer.findTemplateByName(src);
+							template = findTemplateByNameCached(src);
 
 								if(template == null){
 
@@ -740,16 +752,16 @@ public class Importer {
 					DOMNode component = null;
 					if (DeployCommand.isUuid(src)) {
 
-						component = app.nodeQuery(DOMNode.class).and(GraphObject.id, src).getFirst();
+						component = asDOMNode(resolveNode(app, src));
 
 					} else if (DeployCommand.endsWithUuid(src)) {
 
 						final String uuid = src.substring(src.length() - 32);
-						component = app.nodeQuery(DOMNode.class).and(GraphObject.id, uuid).getFirst();
+						component = asDOMNode(resolveNode(app, uuid));
 
 					} else {
 
-						component = Importer.findSharedComponentByName(src);
+						component = findSharedComponentByNameCached(src);
 					}
 
 					if(component == null){
@@ -1077,6 +1089,128 @@ public class Importer {
 		return rootElement;
 	}
 
+	/**
+	 * Collects the UUIDs of all templates and shared components referenced
+	 * in the given subtree and resolves them with a few batched queries
+	 * instead of one query per occurrence.
+	 */
+	private void prefetchReferencedNodes(final Node startNode) throws FrameworkException {
+
+		final Set<String> uuids = new LinkedHashSet<>();
+
+		collectReferencedUuids(startNode, uuids);
+
+		// ignore nodes we already know
+		uuids.removeAll(resolvedNodes.keySet());
+
+		final List<String> batch = new LinkedList<>();
+
+		for (final String uuid : uuids) {
+
+			batch.add(uuid);
+
+			if (batch.size() >= PREFETCH_BATCH_SIZE) {
+
+				prefetchBatch(batch);
+				batch.clear();
+			}
+		}
+
+		if (!batch.isEmpty()) {
+
+			prefetchBatch(batch);
+		}
+	}
+
+	private void collectReferencedUuids(final Node node, final Set<String> uuids) {
+
+		for (final Node child : node.childNodes()) {
+
+			final String tag = child.nodeName();
+
+			if ("structr:template".equals(tag) || "structr:component".equals(tag)) {
+
+				final String src = child.attr("src");
+				if (src != null) {
+
+					if (DeployCommand.isUuid(src)) {
+
+						uuids.add(src);
+
+					} else if (DeployCommand.endsWithUuid(src)) {
+
+						uuids.add(src.substring(src.length() - 32));
+					}
+				}
+			}
+
+			collectReferencedUuids(child, uuids);
+		}
+	}
+
+	private void prefetchBatch(final List<String> uuids) throws FrameworkException {
+
+		final Query<NodeInterface> query = app.nodeQuery(NodeInterface.class);
+
+		for (final String uuid : uuids) {
+			query.or(GraphObject.id, uuid);
+		}
+
+		for (final NodeInterface node : query.getAsList()) {
+			resolvedNodes.put(node.getUuid(), node);
+		}
+	}
+
+	private NodeInterface resolveNode(final App app, final String uuid) throws FrameworkException {
+
+		final NodeInterface node = resolvedNodes.get(uuid);
+		if (node == null) {
+
+			return app.nodeQuery(NodeInterface.class).and(GraphObject.id, uuid).getFirst();
+		}
+
+		return node;
+	}
+
+	private DOMNode asDOMNode(final NodeInterface node) {
+
+		if (node instanceof DOMNode) {
+			return (DOMNode)node;
+		}
+
+		return null;
+	}
+
+	private DOMNode findSharedComponentByNameCached(final String name) throws FrameworkException {
+
+		DOMNode component = sharedComponents.get(name);
+		if (component == null) {
+
+			component = Importer.findSharedComponentByName(name);
+			if (component != null) {
+
+				sharedComponents.put(name, component);
+			}
+		}
+
+		return component;
+	}
+
+	private DOMNode findTemplateByNameCached(final String name) throws FrameworkException {
+
+		DOMNode template = templates.get(name);
+		if (template == null) {
+
+			template = Importer.findTemplateByName(name);
+			if (template != null) {
+
+				templates.put(name, template);
+			}
+		}
+
+		return template;
+	}
+
 	/**
 	 * Check whether a file with given path and checksum already exists
 	 */
@@ -1245,6 +1379,8 @@ public class Importer {
 				// rename / move file to final location
 				Files.move(tmpFile.toPath(), imagePath);
 
+				ContentStore.store(fileNode, imageFile, checksum);
+
 				if (contentType.equals("text/css")) {
 
 					processCssFileNode(fileNode, downloadUrl);
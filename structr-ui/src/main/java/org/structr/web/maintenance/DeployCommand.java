@@ -20,12 +20,8 @@ package org.structr.web.maintenance;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -45,6 +41,12 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -55,6 +57,7 @@ import org.structr.common.GraphObjectComparator;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
@@ -99,6 +102,7 @@ import org.structr.web.entity.dom.Page;
 import org.structr.web.entity.dom.ShadowDocument;
 import org.structr.web.entity.dom.Template;
 import org.structr.web.maintenance.deploy.ComponentImportVisitor;
+import org.structr.web.maintenance.deploy.DeploymentHashes;
 import org.structr.web.maintenance.deploy.FileImportVisitor;
 import org.structr.web.maintenance.deploy.PageImportVisitor;
 import org.structr.web.maintenance.deploy.SchemaImportVisitor;
@@ -111,10 +115,14 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 
 	private static final Logger logger                     = LoggerFactory.getLogger(DeployCommand.class.getName());
 	private static final Pattern pattern                   = Pattern.compile("[a-f0-9]{32}");
+	private static final Gson gson                         = new GsonBuilder().setPrettyPrinting().create();
 
 	private static final Map<String, String> deferredPageLinks = new LinkedHashMap<>();
 
-	private Integer stepCounter                            = 0;
+	private final AtomicInteger stepCounter                = new AtomicInteger(0);
+	private DeploymentHashes exportHashes                  = null;
+	private long exportWatermark                           = 0L;
+	private volatile boolean exportIncomplete              = false;
 	private final static String DEPLOYMENT_IMPORT_STATUS   = "DEPLOYMENT_IMPORT_STATUS";
 	private final static String DEPLOYMENT_EXPORT_STATUS   = "DEPLOYMENT_EXPORT_STATUS";
 	private final static String DEPLOYMENT_STATUS_BEGIN    = "BEGIN";
@@ -169,7 +177,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 	}
 
 	public Gson getGson() {
-		return new GsonBuilder().setPrettyPrinting().create();
+		return gson;
 	}
 
 	// ----- public static methods -----
@@ -385,7 +393,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 				info("Importing files (unchanged files will be skipped)");
 				publishDeploymentProgressMessage(DEPLOYMENT_IMPORT_STATUS, "Importing files");
 
-				FileImportVisitor fiv = new FileImportVisitor(files, filesConf);
+				FileImportVisitor fiv = new FileImportVisitor(files, filesConf, DeploymentHashes.read(source, getGson()));
 				Files.walkFileTree(files, fiv);
 				fiv.handleDeferredFiles();
 
@@ -564,7 +572,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 		msgData.put("type", type);
 		msgData.put("subtype", DEPLOYMENT_STATUS_PROGRESS);
 		msgData.put("message", message);
-		msgData.put("step", ++stepCounter);
+		msgData.put("step", stepCounter.incrementAndGet());
 
 		TransactionCommand.simpleBroadcastGenericMessage(msgData);
 
@@ -590,7 +598,9 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			throw new FrameworkException(422, "Please provide target path for deployment export.");
 		}
 
-		final Path target  = Paths.get(path);
+		final Path target         = Paths.get(path);
+		final boolean incremental = parseBoolean(attributes.get("incremental"));
+		final int threads         = parseThreadCount(attributes.get("threads"));
 
 		try {
 
@@ -606,6 +616,16 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 
 			Files.createDirectories(target);
 
+			// content hashes of the last export allow us to skip unchanged files
+			// without reading them, the watermark allows incremental exports
+			exportHashes     = DeploymentHashes.read(target, getGson());
+			exportWatermark  = incremental ? exportHashes.getWatermark() : 0L;
+			exportIncomplete = false;
+
+			if (incremental) {
+				info("Incremental export, only nodes modified since {} will be rendered", new Date(exportWatermark));
+			}
+
 			final Path components     = Files.createDirectories(target.resolve("components"));
 			final Path files          = Files.createDirectories(target.resolve("files"));
 			final Path pages          = Files.createDirectories(target.resolve("pages"));
@@ -623,32 +643,21 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			final Path localizations  = target.resolve("localizations.json");
 			final Path widgets		  = target.resolve("widgets.json");
 
-			publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting Files");
-			exportFiles(files, filesConf);
-
-			publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting Pages");
-			exportPages(pages, pagesConf);
-
-			publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting Components");
-			exportComponents(components, componentsConf);
-
-			publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting Templates");
-			exportTemplates(templates, templatesConf);
-
-			publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting Resource Access Grants");
-			exportResourceAccessGrants(grants);
+			// the export subsystems are independent of each other, so we run them in parallel,
+			// each of them in its own transaction
+			final Map<String, Callable<Void>> tasks = new LinkedHashMap<>();
 
-			publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting Schema");
-			exportSchema(schemaJson);
+			tasks.put("Files",                   () -> { exportFiles(files, filesConf); return null; });
+			tasks.put("Pages",                   () -> { exportPages(pages, pagesConf); return null; });
+			tasks.put("Components",              () -> { exportComponents(components, componentsConf); return null; });
+			tasks.put("Templates",               () -> { exportTemplates(templates, templatesConf); return null; });
+			tasks.put("Resource Access Grants",  () -> { exportResourceAccessGrants(grants); return null; });
+			tasks.put("Schema",                  () -> { exportSchema(schemaJson); return null; });
+			tasks.put("Mail Templates",          () -> { exportMailTemplates(mailTemplates); return null; });
+			tasks.put("Localizations",           () -> { exportLocalizations(localizations); return null; });
+			tasks.put("Widgets",                 () -> { exportWidgets(widgets); return null; });
 
-			publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting Mail Templates");
-			exportMailTemplates(mailTemplates);
-
-			publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting Localizations");
-			exportLocalizations(localizations);
-
-			publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting Widgets");
-			exportWidgets(widgets);
+			runExportTasks(tasks, threads);
 
 			for (StructrModule module : StructrApp.getConfiguration().getModules().values()) {
 
@@ -666,6 +675,14 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			// config import order is "users, grants, pages, components, templates"
 			// data import order is "schema, files, templates, components, pages"
 
+			// the next incremental export would skip everything that failed to export
+			if (exportIncomplete) {
+				throw new FrameworkException(500, "Deployment export to " + target + " is incomplete, not all files could be written.");
+			}
+
+			exportHashes.setWatermark(startTime);
+			exportHashes.write(getGson());
+
 			logger.info("Export finished.");
 
 			final long endTime = System.currentTimeMillis();
@@ -687,6 +704,184 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 		}
 	}
 
+	private void runExportTasks(final Map<String, Callable<Void>> tasks, final int threads) throws FrameworkException {
+
+		final ExecutorService executor          = Executors.newFixedThreadPool(threads);
+		final Map<String, Future<Void>> futures = new LinkedHashMap<>();
+		FrameworkException failure              = null;
+
+		try {
+
+			for (final Map.Entry<String, Callable<Void>> entry : tasks.entrySet()) {
+
+				final String name         = entry.getKey();
+				final Callable<Void> task = entry.getValue();
+
+				futures.put(name, executor.submit(() -> {
+
+					publishDeploymentProgressMessage(DEPLOYMENT_EXPORT_STATUS, "Exporting " + name);
+					return task.call();
+				}));
+			}
+
+			for (final Map.Entry<String, Future<Void>> entry : futures.entrySet()) {
+
+				try {
+
+					entry.getValue().get();
+
+				} catch (ExecutionException eex) {
+
+					final Throwable cause = eex.getCause();
+
+					logger.warn("Exception while exporting {}: {}", entry.getKey(), cause.getMessage());
+					publishDeploymentWarningMessage("Exception caught while exporting " + entry.getKey(), cause.toString());
+
+					// wait for the other tasks, then fail the export so that the watermark is not advanced
+					if (failure == null) {
+
+						if (cause instanceof FrameworkException) {
+
+							failure = (FrameworkException)cause;
+
+						} else {
+
+							failure = new FrameworkException(500, "Exception while exporting " + entry.getKey() + ": " + cause.getMessage());
+						}
+					}
+
+				} catch (InterruptedException iex) {
+
+					Thread.currentThread().interrupt();
+					throw new FrameworkException(500, "Deployment export was interrupted.");
+				}
+			}
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private boolean parseBoolean(final Object value) {
+		return value != null && Boolean.parseBoolean(value.toString());
+	}
+
+	private int parseThreadCount(final Object value) {
+
+		if (value != null) {
+
+			try {
+
+				return Math.max(1, Integer.parseInt(value.toString()));
+
+			} catch (NumberFormatException ignore) {}
+		}
+
+		return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+	}
+
+	/**
+	 * Returns whether the given node was modified since the watermark of the
+	 * last export, or true if this is not an incremental export.
+	 */
+	private boolean modifiedSinceLastExport(final GraphObject node) {
+
+		if (exportWatermark > 0L) {
+
+			final Date lastModified = node.getProperty(GraphObject.lastModifiedDate);
+
+			return lastModified == null || lastModified.getTime() >= exportWatermark;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the UUIDs of the DOM nodes that contain at least one node that
+	 * was modified since the watermark of the last export, i.e. the pages
+	 * and top-level shared components that need to be rendered again.
+	 */
+	private Set<String> getModifiedDocumentRoots(final App app) throws FrameworkException {
+
+		final Set<String> roots = new HashSet<>();
+
+		for (final DOMNode node : app.nodeQuery(DOMNode.class).andRange(GraphObject.lastModifiedDate, new Date(exportWatermark), new Date()).getAsList()) {
+
+			DOMNode root = node;
+
+			while (root.getParent() != null) {
+				root = root.getParent();
+			}
+
+			roots.add(root.getUuid());
+
+			final Page ownerDocument = node.getOwnerDocument();
+			if (ownerDocument != null) {
+
+				roots.add(ownerDocument.getUuid());
+			}
+		}
+
+		return roots;
+	}
+
+	/**
+	 * Records the structure of the given document root and returns whether
+	 * it changed since the last export. Moving, reordering or removing child
+	 * nodes doesn't modify any of the remaining nodes, so these changes are
+	 * not detected by the watermark.
+	 */
+	private boolean structureChanged(final DOMNode root) {
+
+		final StringBuilder structure = new StringBuilder();
+
+		collectStructure(root, structure);
+
+		return exportHashes.structureChanged(root.getUuid(), DeploymentHashes.hash(structure.toString().getBytes(Charset.forName("utf-8"))));
+	}
+
+	private void collectStructure(final DOMNode node, final StringBuilder structure) {
+
+		structure.append(node.getUuid()).append('(');
+
+		for (final DOMNode child : node.getChildren()) {
+			collectStructure(child, structure);
+		}
+
+		structure.append(')');
+	}
+
+	private void writeConfig(final Path target, final Object config) {
+
+		try {
+
+			exportHashes.writeIfChanged(target, getGson().toJson(config));
+
+		} catch (IOException ioex) {
+
+			logger.warn("", ioex);
+			exportIncomplete = true;
+		}
+	}
+
+	private void writeContent(final Path target, final String content) {
+
+		try {
+
+			exportHashes.writeIfChanged(target, content);
+
+		} catch (IOException ioex) {
+
+			logger.warn("", ioex);
+			exportIncomplete = true;
+		}
+	}
+
 	private void exportFiles(final Path target, final Path configTarget) throws FrameworkException {
 
 		logger.info("Exporting files (unchanged files will be skipped)");
@@ -722,13 +917,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			logger.warn("", ioex);
 		}
 
-		try (final Writer fos = new OutputStreamWriter(new FileOutputStream(configTarget.toFile()))) {
-
-			getGson().toJson(config, fos);
-
-		} catch (IOException ioex) {
-			logger.warn("", ioex);
-		}
+		writeConfig(configTarget, config);
 	}
 
 	private void exportFilesAndFolders(final Path target, final Folder folder, final Map<String, Object> config) throws IOException {
@@ -783,12 +972,21 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 		Path targetPath                      = target.resolve(name);
 		boolean doExport                     = true;
 
-		if (Files.exists(targetPath)) {
+		if (Files.exists(targetPath) && !modifiedSinceLastExport(file)) {
+
+			// incremental export: file was not modified since the last export
+			doExport = false;
 
-			// compare checksum
-			final Long checksumOfExistingFile = FileHelper.getChecksum(targetPath.toFile());
+		} else if (Files.exists(targetPath)) {
+
+			// compare checksum, use the hash recorded in the last export if possible
+			Long checksumOfExistingFile       = exportHashes.get(targetPath);
 			final Long checksumOfExportFile   = file.getChecksum();
 
+			if (checksumOfExistingFile == null) {
+				checksumOfExistingFile = FileHelper.getChecksum(targetPath.toFile());
+			}
+
 			doExport = !checksumOfExistingFile.equals(checksumOfExportFile);
 		}
 
@@ -802,6 +1000,12 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			}
 		}
 
+		final Long checksum = file.getChecksum();
+		if (checksum != null) {
+
+			exportHashes.put(targetPath, checksum);
+		}
+
 		exportFileConfiguration(file, properties);
 
 		if (!properties.isEmpty()) {
@@ -818,45 +1022,31 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 
 		try (final Tx tx = app.tx()) {
 
+			final Set<String> modified = exportWatermark > 0L ? getModifiedDocumentRoots(app) : null;
+
 			for (final Page page : app.nodeQuery(Page.class).sort(Page.name).getAsList()) {
 
 				if (!(page instanceof ShadowDocument)) {
 
-					final String content = page.getContent(RenderContext.EditMode.DEPLOYMENT);
-					if (content != null) {
-
-						final Map<String, Object> properties = new TreeMap<>();
-						final String name                    = page.getName();
-						final Path pageFile                  = target.resolve(name + ".html");
-						boolean doExport                     = true;
-
-						if (Files.exists(pageFile)) {
+					final String name     = page.getName();
+					final Path pageFile   = target.resolve(name + ".html");
 
-							try {
+					// incremental export: skip rendering of pages that were not modified since the last export
+					final boolean changed = structureChanged(page);
+					final boolean render  = modified == null || changed || modified.contains(page.getUuid()) || modifiedSinceLastExport(page) || !Files.exists(pageFile);
+					final String content  = render ? page.getContent(RenderContext.EditMode.DEPLOYMENT) : null;
 
-								final String existingContent = new String(Files.readAllBytes(pageFile), "utf-8");
-								doExport = !existingContent.equals(content);
+					if (content != null || !render) {
 
-							} catch (IOException ignore) {
-								logger.warn("", ignore);
-							}
-						}
+						final Map<String, Object> properties = new TreeMap<>();
 
 						pagesConfig.put(name, properties);
 						exportConfiguration(page, properties);
 						exportOwnershipAndSecurity(page, properties);
 
-						if (doExport) {
-
-							try (final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(pageFile.toFile()))) {
+						if (content != null) {
 
-								writer.write(content);
-								writer.flush();
-								writer.close();
-
-							} catch (IOException ioex) {
-								logger.warn("", ioex);
-							}
+							writeContent(pageFile, content);
 						}
 					}
 				}
@@ -865,13 +1055,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			tx.success();
 		}
 
-		try (final Writer fos = new OutputStreamWriter(new FileOutputStream(configTarget.toFile()))) {
-
-			getGson().toJson(pagesConfig, fos);
-
-		} catch (IOException ioex) {
-			logger.warn("", ioex);
-		}
+		writeConfig(configTarget, pagesConfig);
 	}
 
 	private void exportComponents(final Path target, final Path configTarget) throws FrameworkException {
@@ -886,60 +1070,47 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			final ShadowDocument shadowDocument = app.nodeQuery(ShadowDocument.class).getFirst();
 			if (shadowDocument != null) {
 
+				final Set<String> modified = exportWatermark > 0L ? getModifiedDocumentRoots(app) : null;
+
 				for (final DOMNode node : shadowDocument.getElements()) {
 
 					final boolean hasParent = node.getParent() != null;
 					final boolean inTrash   = node.inTrash();
-					boolean doExport        = true;
 
 					// skip nodes in trash and non-toplevel nodes
 					if (inTrash || hasParent) {
 						continue;
 					}
 
-					final String content = node.getContent(RenderContext.EditMode.DEPLOYMENT);
-					if (content != null) {
-
-						// name with uuid or just uuid
-						String name = node.getProperty(AbstractNode.name);
-
-						if (name != null) {
+					// name with uuid or just uuid
+					String name = node.getProperty(AbstractNode.name);
 
-							name += "-" + node.getUuid();
+					if (name != null) {
 
-						} else {
-
-							name = node.getUuid();
-						}
+						name += "-" + node.getUuid();
 
+					} else {
 
-						final Map<String, Object> properties = new TreeMap<>();
-						final Path targetFile = target.resolve(name + ".html");
+						name = node.getUuid();
+					}
 
-						if (Files.exists(targetFile)) {
+					final Path targetFile = target.resolve(name + ".html");
 
-							try {
+					// incremental export: skip rendering of components that were not modified since the last export
+					final boolean changed = structureChanged(node);
+					final boolean render  = modified == null || changed || modified.contains(node.getUuid()) || !Files.exists(targetFile);
+					final String content  = render ? node.getContent(RenderContext.EditMode.DEPLOYMENT) : null;
 
-								final String existingContent = new String(Files.readAllBytes(targetFile), "utf-8");
-								doExport = !existingContent.equals(content);
+					if (content != null || !render) {
 
-							} catch (IOException ignore) {}
-						}
+						final Map<String, Object> properties = new TreeMap<>();
 
 						configuration.put(name, properties);
 						exportConfiguration(node, properties);
 
-						if (doExport) {
-
-							try (final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(targetFile.toFile()))) {
+						if (content != null) {
 
-								writer.write(content);
-								writer.flush();
-								writer.close();
-
-							} catch (IOException ioex) {
-								logger.warn("", ioex);
-							}
+							writeContent(targetFile, content);
 						}
 					}
 				}
@@ -948,13 +1119,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			tx.success();
 		}
 
-		try (final Writer fos = new OutputStreamWriter(new FileOutputStream(configTarget.toFile()))) {
-
-			getGson().toJson(configuration, fos);
-
-		} catch (IOException ioex) {
-			logger.warn("", ioex);
-		}
+		writeConfig(configTarget, configuration);
 	}
 
 	private void exportTemplates(final Path target, final Path configTarget) throws FrameworkException {
@@ -982,19 +1147,12 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			tx.success();
 		}
 
-		try (final Writer fos = new OutputStreamWriter(new FileOutputStream(configTarget.toFile()))) {
-
-			getGson().toJson(configuration, fos);
-
-		} catch (IOException ioex) {
-			logger.warn("", ioex);
-		}
+		writeConfig(configTarget, configuration);
 	}
 
 	private void exportTemplateSource(final Path target, final DOMNode template, final Map<String, Object> configuration) throws FrameworkException {
 
 		final Map<String, Object> properties = new TreeMap<>();
-		boolean doExport                     = true;
 
 		final String content = template.getProperty(StructrApp.key(Template.class, "content"));
 		if (content != null) {
@@ -1013,31 +1171,10 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 
 			final Path targetFile = target.resolve(name + ".html");
 
-			if (Files.exists(targetFile)) {
-
-				try {
-
-					final String existingContent = new String(Files.readAllBytes(targetFile), "utf-8");
-					doExport = !existingContent.equals(content);
-
-				} catch (IOException ignore) {}
-			}
-
 			configuration.put(name, properties);
 			exportConfiguration(template, properties);
 
-			if (doExport) {
-
-				try (final OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(targetFile.toFile()))) {
-
-					writer.write(content);
-					writer.flush();
-					writer.close();
-
-				} catch (IOException ioex) {
-					logger.warn("", ioex);
-				}
-			}
+			writeContent(targetFile, content);
 		}
 	}
 
@@ -1062,13 +1199,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			tx.success();
 		}
 
-		try (final Writer fos = new OutputStreamWriter(new FileOutputStream(target.toFile()))) {
-
-			getGson().toJson(grants, fos);
-
-		} catch (IOException ioex) {
-			logger.warn("", ioex);
-		}
+		writeConfig(target, grants);
 	}
 
 	private void exportSchema(final Path target) throws FrameworkException {
@@ -1079,15 +1210,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 
 			final JsonSchema schema = StructrSchema.createFromDatabase(StructrApp.getInstance());
 
-			try (final Writer writer = new FileWriter(target.toFile())) {
-
-				writer.append(schema.toString());
-				writer.append("\n");
-				writer.flush();
-
-			} catch (IOException ioex) {
-				logger.warn("", ioex);
-			}
+			writeContent(target, schema.toString() + "\n");
 
 		} catch (Throwable t) {
 			t.printStackTrace();
@@ -1267,13 +1390,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			tx.success();
 		}
 
-		try (final Writer fos = new OutputStreamWriter(new FileOutputStream(target.toFile()))) {
-
-			getGson().toJson(mailTemplates, fos);
-
-		} catch (IOException ioex) {
-			logger.warn("", ioex);
-		}
+		writeConfig(target, mailTemplates);
 	}
 
 	private void exportWidgets(final Path target) throws FrameworkException {
@@ -1304,13 +1421,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			tx.success();
 		}
 
-		try (final Writer fos = new OutputStreamWriter(new FileOutputStream(target.toFile()))) {
-
-			getGson().toJson(widgets, fos);
-
-		} catch (IOException ioex) {
-			logger.warn("", ioex);
-		}
+		writeConfig(target, widgets);
 	}
 
 	private void exportLocalizations(final Path target) throws FrameworkException {
@@ -1343,13 +1454,7 @@ public class DeployCommand extends NodeServiceCommand implements MaintenanceComm
 			tx.success();
 		}
 
-		try (final Writer fos = new OutputStreamWriter(new FileOutputStream(target.toFile()))) {
-
-			getGson().toJson(localizations, fos);
-
-		} catch (IOException ioex) {
-			logger.warn("", ioex);
-		}
+		writeConfig(target, localizations);
 	}
 
 	private void putIf(final Map<String, Object> target, final String key, final Object value) {
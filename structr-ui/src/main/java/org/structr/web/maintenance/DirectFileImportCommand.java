@@ -50,6 +50,8 @@ import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
 import org.structr.rest.resource.MaintenanceParameterResource;
 import org.structr.schema.SchemaHelper;
+import org.structr.web.common.ContentStore;
+import org.structr.web.common.FileCache;
 import org.structr.web.common.FileHelper;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.Folder;
@@ -333,7 +335,10 @@ public class DirectFileImportCommand extends NodeServiceCommand implements Maint
 						break;
 				}
 
-				FileHelper.updateMetadata(newFile);
+				FileCache.written(fileOnDisk);
+
+				// checksums are required to deduplicate imported content
+				FileHelper.updateMetadata(newFile, ContentStore.isEnabled());
 
 				if (doIndex) {
 					indexer.addToFulltextIndex(newFile);
@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.maintenance.deploy;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import net.openhft.hashing.LongHashFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content hash manifest of a deployment export directory.
+ *
+ * Stores the xxHash (the same hash function that is used for the checksum
+ * property of files) of every file written by the export, keyed by the path
+ * relative to the export directory, and the start timestamp of the last
+ * export which is used as the watermark for incremental exports. Recorded
+ * hashes are only trusted for files that were not modified after the last
+ * export completed.
+ *
+ * In addition, the manifest records a hash of the structure (the nesting
+ * and order of all child nodes) of each exported page and component, so
+ * that incremental exports detect moved, reordered or removed children,
+ * which don't change the modification date of the remaining nodes.
+ */
+public class DeploymentHashes {
+
+	public static final String FILE_NAME    = "deployment-hashes.json";
+
+	private static final Logger logger      = LoggerFactory.getLogger(DeploymentHashes.class.getName());
+	private static final Charset utf8       = Charset.forName("utf-8");
+
+	private final Map<String, Long> hashes     = new ConcurrentHashMap<>();
+	private final Map<String, Long> structures = new ConcurrentHashMap<>();
+	private Path basePath                      = null;
+	private long watermark                     = 0L;
+	private long completed                     = 0L;
+
+	private DeploymentHashes(final Path basePath) {
+		this.basePath = basePath;
+	}
+
+	/**
+	 * Reads the hash manifest from the given deployment directory, or returns
+	 * an empty manifest if no (readable) manifest exists.
+	 *
+	 * @param basePath the deployment directory
+	 * @param gson the gson instance to read the manifest with
+	 *
+	 * @return the manifest
+	 */
+	public static DeploymentHashes read(final Path basePath, final Gson gson) {
+
+		final DeploymentHashes manifest = new DeploymentHashes(basePath);
+		final Path source               = basePath.resolve(FILE_NAME);
+
+		if (Files.exists(source)) {
+
+			try (final Reader reader = Files.newBufferedReader(source, utf8)) {
+
+				final Map<String, Object> data = gson.fromJson(reader, Map.class);
+				if (data != null) {
+
+					final Object watermark = data.get("watermark");
+					if (watermark != null) {
+
+						manifest.watermark = Long.parseLong(watermark.toString());
+					}
+
+					final Object completed = data.get("completed");
+					if (completed != null) {
+
+						manifest.completed = Long.parseLong(completed.toString());
+					}
+
+					final Object hashes = data.get("hashes");
+					if (hashes instanceof Map) {
+
+						for (final Map.Entry<String, Object> entry : ((Map<String, Object>)hashes).entrySet()) {
+
+							manifest.hashes.put(entry.getKey(), Long.parseUnsignedLong(entry.getValue().toString(), 16));
+						}
+					}
+
+					final Object structures = data.get("structures");
+					if (structures instanceof Map) {
+
+						for (final Map.Entry<String, Object> entry : ((Map<String, Object>)structures).entrySet()) {
+
+							manifest.structures.put(entry.getKey(), Long.parseUnsignedLong(entry.getValue().toString(), 16));
+						}
+					}
+				}
+
+			} catch (Throwable t) {
+				logger.warn("Unable to read deployment hashes from {}, ignoring: {}", source, t.getMessage());
+			}
+		}
+
+		return manifest;
+	}
+
+	public static long hash(final byte[] data) {
+		return LongHashFunction.xx().hashBytes(data);
+	}
+
+	public long getWatermark() {
+		return watermark;
+	}
+
+	public void setWatermark(final long watermark) {
+		this.watermark = watermark;
+	}
+
+	/**
+	 * Returns the recorded hash for the given file, or null if the
+	 * manifest does not contain the file or the file was modified
+	 * after the last export completed.
+	 *
+	 * @param path the file
+	 * @return the hash or null
+	 */
+	public Long get(final Path path) {
+
+		final Long hash = hashes.get(relativize(path));
+		if (hash != null) {
+
+			try {
+
+				if (Files.getLastModifiedTime(path).toMillis() <= completed) {
+					return hash;
+				}
+
+			} catch (IOException ignore) {}
+		}
+
+		return null;
+	}
+
+	public void put(final Path path, final long hash) {
+		hashes.put(relativize(path), hash);
+	}
+
+	/**
+	 * Records the structure hash of the given document root and returns
+	 * whether it differs from the hash recorded by the last export.
+	 *
+	 * @param uuid the UUID of the page or component
+	 * @param hash the structure hash
+	 *
+	 * @return whether the structure changed (or was not recorded)
+	 */
+	public boolean structureChanged(final String uuid, final long hash) {
+
+		final Long previous = structures.put(uuid, hash);
+
+		return previous == null || previous != hash;
+	}
+
+	/**
+	 * Writes the given content to the given path unless the file exists and
+	 * its recorded (or, if no hash was recorded, its actual) content hash is
+	 * equal to the hash of the new content.
+	 *
+	 * @param path the target file
+	 * @param content the content to write
+	 *
+	 * @return whether the file was written
+	 *
+	 * @throws IOException
+	 */
+	public boolean writeIfChanged(final Path path, final String content) throws IOException {
+
+		final byte[] data   = content.getBytes(utf8);
+		final long newHash  = hash(data);
+
+		if (Files.exists(path)) {
+
+			Long existingHash = get(path);
+			if (existingHash == null) {
+
+				existingHash = hash(Files.readAllBytes(path));
+			}
+
+			if (existingHash == newHash) {
+
+				put(path, newHash);
+				return false;
+			}
+		}
+
+		Files.write(path, data);
+		put(path, newHash);
+
+		return true;
+	}
+
+	public void write(final Gson gson) {
+
+		this.completed = System.currentTimeMillis();
+
+		final Map<String, Object> data       = new TreeMap<>();
+		final Map<String, String> hashes     = new TreeMap<>();
+		final Map<String, String> structures = new TreeMap<>();
+
+		for (final Map.Entry<String, Long> entry : this.hashes.entrySet()) {
+			hashes.put(entry.getKey(), Long.toHexString(entry.getValue()));
+		}
+
+		for (final Map.Entry<String, Long> entry : this.structures.entrySet()) {
+			structures.put(entry.getKey(), Long.toHexString(entry.getValue()));
+		}
+
+		data.put("watermark",  Long.toString(watermark));
+		data.put("completed",  Long.toString(completed));
+		data.put("hashes",     hashes);
+		data.put("structures", structures);
+
+		try (final Writer writer = Files.newBufferedWriter(basePath.resolve(FILE_NAME), utf8)) {
+
+			gson.toJson(data, writer);
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to write deployment hashes: {}", ioex.getMessage());
+		}
+	}
+
+	// ----- private methods -----
+	private String relativize(final Path path) {
+		return basePath.relativize(path).toString();
+	}
+}
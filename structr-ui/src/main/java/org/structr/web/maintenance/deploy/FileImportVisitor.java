@@ -63,8 +63,9 @@ public class FileImportVisitor implements FileVisitor<Path> {
 	private App app                         = null;
 	private List<File> deferredFiles        = null;
 	private Map<String, Folder> folderCache = null;
+	private DeploymentHashes hashes         = null;
 
-	public FileImportVisitor(final Path basePath, final Map<String, Object> config) {
+	public FileImportVisitor(final Path basePath, final Map<String, Object> config, final DeploymentHashes hashes) {
 
 		this.securityContext = SecurityContext.getSuperUserInstance();
 		this.securityContext.setDoTransactionNotifications(false);
@@ -73,6 +74,7 @@ public class FileImportVisitor implements FileVisitor<Path> {
 		this.app             = StructrApp.getInstance(this.securityContext);
 		this.deferredFiles   = new ArrayList<>();
 		this.folderCache     = new HashMap<>();
+		this.hashes          = hashes;
 	}
 
 	@Override
@@ -236,7 +238,7 @@ public class FileImportVisitor implements FileVisitor<Path> {
 				if (file != null) {
 
 					final Long checksumOfExistingFile = file.getChecksum();
-					final Long checksumOfNewFile      = FileHelper.getChecksum(path.toFile());
+					final Long checksumOfNewFile      = getChecksum(path);
 
 					if (checksumOfExistingFile != null && checksumOfNewFile != null && checksumOfExistingFile.equals(checksumOfNewFile)) {
 
@@ -308,6 +310,18 @@ public class FileImportVisitor implements FileVisitor<Path> {
 		}
 	}
 
+	private Long getChecksum(final Path path) throws IOException {
+
+		// use the content hash recorded by the export if the file was not modified since
+		final Long recordedHash = hashes != null ? hashes.get(path) : null;
+		if (recordedHash != null) {
+
+			return recordedHash;
+		}
+
+		return FileHelper.getChecksum(path.toFile());
+	}
+
 	private void handleThumbnails(final Image img) {
 
 		final Class<Relation> thumbnailRel = StructrApp.getConfiguration().getRelationshipEntityClass("ImageTHUMBNAILImage");
@@ -79,12 +79,16 @@ import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.rest.auth.AuthHelper;
+import org.structr.rest.common.PrecompressedContent;
 import org.structr.rest.service.HttpServiceServlet;
 import org.structr.rest.service.StructrHttpServiceConfig;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.util.Base64;
 import org.structr.web.auth.UiAuthenticator;
+import org.structr.web.common.FileCache;
 import org.structr.web.common.FileHelper;
+import org.structr.web.common.FileTransfer;
+import org.structr.web.common.ParallelRenderer;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
 import org.structr.web.common.StringRenderBuffer;
@@ -160,6 +164,9 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 	@Override
 	public void destroy() {
+
+		// stop the worker threads of the concurrent renderer
+		ParallelRenderer.shutdown();
 	}
 
 	@Override
@@ -468,6 +475,8 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 										rootNode.render(renderContext, 0);
 										finished.set(true);
 
+										logger.debug("Rendered page {}, data source cache: {} hits, {} misses", rootNode.getName(), renderContext.getDataSourceCache().getHits(), renderContext.getDataSourceCache().getMisses());
+
 										tx.success();
 
 									} catch (Throwable t) {
@@ -1402,6 +1411,85 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 		return notModified;
 	}
 
+	private java.io.File getCompressedVariant(final File file, final String contentType, final HttpServletRequest request) {
+
+		// templates are evaluated on every request, mounted files must not get additional files next to them
+		if (file.isTemplate() || file.isExternal() || file.isMounted() || !PrecompressedContent.isCompressible(contentType) || !PrecompressedContent.acceptsGzip(request)) {
+			return null;
+		}
+
+		// served uncompressed until the variant was created in the background
+		return PrecompressedContent.getGzipVariant(file.getFileOnDisk(false), file.getChecksum());
+	}
+
+	private void streamContent(final File file, final HttpServletRequest request, final HttpServletResponse response, final ServletOutputStream out, final Map<String, Object> callbackMap) throws IOException {
+
+		final InputStream in = file.getInputStream();
+		final String range   = request.getHeader("Range");
+
+		try {
+
+			if (StringUtils.isNotEmpty(range)) {
+
+				final long len = file.getSize();
+				long start     = 0;
+				long end       = len - 1;
+
+				final Matcher matcher = Pattern.compile("bytes=(?<start>\\d*)-(?<end>\\d*)").matcher(range);
+
+				if (matcher.matches()) {
+					String startGroup = matcher.group("start");
+					start = startGroup.isEmpty() ? start : Long.valueOf(startGroup);
+					start = Math.max(0, start);
+
+					String endGroup = matcher.group("end");
+					end = endGroup.isEmpty() ? end : Long.valueOf(endGroup);
+					end = end > len - 1 ? len - 1 : end;
+				}
+
+				long contentLength = end - start + 1;
+
+				// Tell the client that we support byte ranges
+				response.setHeader("Accept-Ranges", "bytes");
+				response.setHeader("Content-Range", String.format("bytes %s-%s/%s", start, end, len));
+				response.setHeader("Content-Length", String.format("%s", contentLength));
+
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
+
+				IOUtils.copyLarge(in, out, start, contentLength);
+
+			} else {
+
+				response.setStatus(HttpServletResponse.SC_OK);
+				callbackMap.put("statusCode", HttpServletResponse.SC_OK);
+
+				IOUtils.copyLarge(in, out);
+			}
+
+		} catch (Throwable t) {
+
+		} finally {
+
+			if (out != null) {
+
+				try {
+					// 3: output content
+					out.flush();
+					out.close();
+
+				} catch (Throwable t) {
+				}
+			}
+
+			if (in != null) {
+				in.close();
+			}
+
+			response.setStatus(HttpServletResponse.SC_OK);
+		}
+	}
+
 	private void streamFile(SecurityContext securityContext, final File file, HttpServletRequest request, HttpServletResponse response, final EditMode edit) throws IOException {
 
 		if (!securityContext.isVisible(file)) {
@@ -1432,7 +1520,30 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 			callbackMap.put("requestedFileName", downloadAsFilename);
 		}
 
-		if (!EditMode.WIDGET.equals(edit) && notModifiedSince(request, response, file, false)) {
+		// strong entity tag, based on the checksum of the file content (templates are evaluated on every request)
+		final String etag = file.isTemplate() ? null : FileTransfer.getETag(file.getChecksum());
+		if (etag != null) {
+
+			response.setHeader("ETag", etag);
+		}
+
+		final String ifNoneMatch = request.getHeader("If-None-Match");
+		final boolean notModified;
+
+		if (ifNoneMatch != null) {
+
+			// If-None-Match takes precedence over If-Modified-Since
+			notModifiedSince(request, response, file, false);
+			notModified = FileTransfer.matchesETag(ifNoneMatch, etag) || FileTransfer.matchesETag(ifNoneMatch, FileTransfer.getETag(etag, "gzip"));
+
+		} else {
+
+			notModified = notModifiedSince(request, response, file, false);
+		}
+
+		if (!EditMode.WIDGET.equals(edit) && notModified) {
+
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
 
 			out.flush();
 			out.close();
@@ -1455,9 +1566,8 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 			} else {
 
-				// 2b: stream file to response
-				final InputStream in = file.getInputStream();
-				final String contentType = file.getContentType();
+				final String contentType      = file.getContentType();
+				final java.io.File fileOnDisk = file.isTemplate() ? null : file.getFileOnDisk(false);
 
 				if (contentType != null) {
 
@@ -1469,68 +1579,36 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 					response.setContentType("application/octet-stream");
 				}
 
-				final String range = request.getHeader("Range");
+				if (fileOnDisk != null && fileOnDisk.isFile()) {
 
-				try {
+					// 2a: send file from disk, with range support and asynchronous completion
+					try {
 
-					if (StringUtils.isNotEmpty(range)) {
+						// serve the pre-compressed variant of static text files (CSS, JavaScript etc.) if possible
+						final java.io.File compressed = StringUtils.isEmpty(request.getHeader("Range")) ? getCompressedVariant(file, contentType, request) : null;
+						if (compressed != null) {
 
-						final long len = file.getSize();
-						long start     = 0;
-						long end       = len - 1;
+							response.setHeader("Content-Encoding", "gzip");
+							response.setHeader("Vary", "Accept-Encoding");
+							response.setHeader("ETag", FileTransfer.getETag(etag, "gzip"));
 
-						final Matcher matcher = Pattern.compile("bytes=(?<start>\\d*)-(?<end>\\d*)").matcher(range);
+							FileTransfer.sendAll(request, response, FileCache.getChannel(compressed));
+							callbackMap.put("statusCode", HttpServletResponse.SC_OK);
 
-						if (matcher.matches()) {
-							String startGroup = matcher.group("start");
-							start = startGroup.isEmpty() ? start : Long.valueOf(startGroup);
-							start = Math.max(0, start);
+						} else {
 
-							String endGroup = matcher.group("end");
-							end = endGroup.isEmpty() ? end : Long.valueOf(endGroup);
-							end = end > len - 1 ? len - 1 : end;
+							callbackMap.put("statusCode", FileTransfer.send(request, response, FileCache.getChannel(fileOnDisk), etag, file.getLastModifiedDate()));
 						}
 
-						long contentLength = end - start + 1;
-
-						// Tell the client that we support byte ranges
-						response.setHeader("Accept-Ranges", "bytes");
-						response.setHeader("Content-Range", String.format("bytes %s-%s/%s", start, end, len));
-						response.setHeader("Content-Length", String.format("%s", contentLength));
-
-						response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-						callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
-
-						IOUtils.copyLarge(in, out, start, contentLength);
-
-					} else {
-
-						response.setStatus(HttpServletResponse.SC_OK);
-						callbackMap.put("statusCode", HttpServletResponse.SC_OK);
-
-						IOUtils.copyLarge(in, out);
-					}
-
-				} catch (Throwable t) {
-
-				} finally {
+					} catch (IOException ioex) {
 
-					if (out != null) {
-
-						try {
-							// 3: output content
-							out.flush();
-							out.close();
-
-						} catch (Throwable t) {
-						}
+						logger.debug("Unable to send file {}: {}", file.getUuid(), ioex.getMessage());
 					}
 
-					if (in != null) {
-						in.close();
-					}
+				} else {
 
-					response.setStatus(HttpServletResponse.SC_OK);
+					// 2b: stream file to response
+					streamContent(file, request, response, out, callbackMap);
 				}
 			}
 		}
@@ -21,10 +21,15 @@ package org.structr.web.servlet;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -57,6 +62,9 @@ import org.structr.rest.service.HttpServiceServlet;
 import org.structr.rest.service.StructrHttpServiceConfig;
 import org.structr.schema.SchemaHelper;
 import org.structr.web.auth.UiAuthenticator;
+import org.structr.web.common.ChunkedUpload;
+import org.structr.web.common.ContentStore;
+import org.structr.web.common.FileCache;
 import org.structr.web.common.FileHelper;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.Folder;
@@ -75,7 +83,9 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 	private static final String REDIRECT_AFTER_UPLOAD_PARAMETER    = "redirectOnSuccess";
 	private static final String APPEND_UUID_ON_REDIRECT_PARAMETER  = "appendUuidOnRedirect";
 	private static final String UPLOAD_FOLDER_PATH_PARAMETER       = "uploadFolderPath";
+	private static final Pattern CONTENT_RANGE_PATTERN             = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+)");
 	private static final long MEGABYTE                              = 1024 * 1024;
+	private static final int CHUNK_BUFFER_SIZE                      = 64 * 1024;
 
 	// non-static fields
 	private final StructrHttpServiceConfig config = new StructrHttpServiceConfig();
@@ -105,6 +115,21 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 
 	@Override
 	public void destroy() {
+		ChunkedUpload.shutdown();
+	}
+
+	@Override
+	protected void service(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
+
+		// HttpServlet doesn't dispatch PATCH requests
+		if ("PATCH".equals(request.getMethod())) {
+
+			doPatch(request, response);
+
+		} else {
+
+			super.service(request, response);
+		}
 	}
 
 	@Override
@@ -467,6 +492,310 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+	/**
+	 * Receives a single chunk of a chunked upload into an existing file. The
+	 * position of the chunk and the total size of the file are taken from the
+	 * Content-Range header (e.g. "bytes 0-1048575/5368709120"), the request
+	 * body contains the raw chunk data.
+	 *
+	 * The chunks of a file can be sent in any order and in parallel, each
+	 * chunk is written to its position in the file directly. Failed chunks
+	 * can be sent again, the state of a running upload can be requested with
+	 * a HEAD request. Once all chunks are received, the file metadata is
+	 * updated and the upload trigger is called, exactly once.
+	 *
+	 * @param request
+	 * @param response
+	 * @throws IOException
+	 */
+	protected void doPatch(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+
+		final String uuid = getUuid(request, response);
+		if (uuid == null) {
+			return;
+		}
+
+		final Matcher rangeMatcher = CONTENT_RANGE_PATTERN.matcher(StringUtils.defaultString(request.getHeader("Content-Range")).trim());
+		if (!rangeMatcher.matches()) {
+
+			writeError(response, HttpServletResponse.SC_BAD_REQUEST, "ERROR (400): Missing or invalid Content-Range header.");
+			return;
+		}
+
+		final long start  = Long.parseLong(rangeMatcher.group(1));
+		final long end    = Long.parseLong(rangeMatcher.group(2)) + 1;
+		final long length = Long.parseLong(rangeMatcher.group(3));
+
+		if (start >= end || end > length) {
+
+			writeError(response, HttpServletResponse.SC_BAD_REQUEST, "ERROR (400): Invalid Content-Range header.");
+			return;
+		}
+
+		if (length > MEGABYTE * Settings.UploadMaxFileSize.getValue() || end - start > MEGABYTE * Settings.UploadMaxRequestSize.getValue()) {
+
+			writeError(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "ERROR (413): Upload too large.");
+			return;
+		}
+
+		final long contentLength = request.getContentLengthLong();
+		if (contentLength >= 0 && contentLength != end - start) {
+
+			writeError(response, HttpServletResponse.SC_BAD_REQUEST, "ERROR (400): Content-Length doesn't match Content-Range.");
+			return;
+		}
+
+		SecurityContext securityContext = null;
+		ChunkedUpload upload            = null;
+
+		try (final Tx tx = StructrApp.getInstance().tx(true, false, false)) {
+
+			securityContext = getConfig().getAuthenticator().initializeAndExamineRequest(request, response);
+
+			// Ensure access mode is frontend
+			securityContext.setAccessMode(AccessMode.Frontend);
+
+			final File file = getWritableFile(securityContext, uuid, response);
+			if (file == null) {
+				return;
+			}
+
+			upload = ChunkedUpload.get(uuid);
+			if (upload == null) {
+
+				// the content of the file is replaced when the upload is complete
+				upload = ChunkedUpload.getOrCreate(uuid, file.getFileOnDisk(false), length);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.error("Exception while processing request", fex);
+			UiAuthenticator.writeInternalServerError(response);
+			return;
+		}
+
+		if (upload.getLength() != length) {
+
+			writeError(response, HttpServletResponse.SC_CONFLICT, "ERROR (409): Content-Range doesn't match the length of the running upload.");
+			return;
+		}
+
+		final ServletInputStream input = request.getInputStream();
+
+		if (request.isAsyncSupported()) {
+
+			// read the chunk without blocking a thread while waiting for data
+			final AsyncContext async = request.startAsync();
+
+			async.setTimeout(0);
+
+			input.setReadListener(new ChunkReader(async, input, securityContext, upload, start, end));
+
+		} else {
+
+			final byte[] buffer = new byte[CHUNK_BUFFER_SIZE];
+			long position       = start;
+			int count           = 0;
+
+			try {
+
+				while (position < end && (count = input.read(buffer, 0, (int)Math.min(buffer.length, end - position))) >= 0) {
+
+					upload.write(ByteBuffer.wrap(buffer, 0, count), position);
+					position += count;
+				}
+
+			} finally {
+
+				chunkReceived(response, securityContext, upload, start, position, end);
+			}
+		}
+	}
+
+	/**
+	 * Returns the state of a running chunked upload in the headers
+	 * Upload-Length, Upload-Offset (number of contiguous bytes received from
+	 * the start of the file) and Upload-Ranges (all received byte ranges).
+	 *
+	 * @param request
+	 * @param response
+	 * @throws ServletException
+	 */
+	@Override
+	protected void doHead(final HttpServletRequest request, final HttpServletResponse response) throws ServletException {
+
+		final String uuid = getUuid(request, response);
+		if (uuid == null) {
+			return;
+		}
+
+		try (final Tx tx = StructrApp.getInstance().tx(true, false, false)) {
+
+			final SecurityContext securityContext = getConfig().getAuthenticator().initializeAndExamineRequest(request, response);
+
+			// Ensure access mode is frontend
+			securityContext.setAccessMode(AccessMode.Frontend);
+
+			if (getWritableFile(securityContext, uuid, response) != null) {
+
+				final ChunkedUpload upload = ChunkedUpload.get(uuid);
+
+				response.setHeader("Cache-Control", "no-store");
+
+				if (upload != null) {
+
+					setUploadHeaders(response, upload);
+					response.setStatus(HttpServletResponse.SC_OK);
+
+				} else {
+
+					response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.error("Exception while processing request", fex);
+			UiAuthenticator.writeInternalServerError(response);
+		}
+	}
+
+	// ----- private methods -----
+	private void chunkReceived(final HttpServletResponse response, final SecurityContext securityContext, final ChunkedUpload upload, final long start, final long received, final long end) throws IOException {
+
+		// register partially received chunks too, so a resumed upload can continue where it stopped
+		final boolean complete = upload.addRange(start, received);
+
+		if (complete) {
+
+			try {
+
+				File file = null;
+
+				try (final Tx tx = StructrApp.getInstance(securityContext).tx()) {
+
+					file = StructrApp.getInstance(securityContext).get(File.class, upload.getUuid());
+					if (file != null) {
+
+						// the upload replaces the content, so shared content can simply be unlinked
+						ContentStore.prepareWrite(file, file.getFileOnDisk(false), false);
+
+						upload.finish();
+
+						FileCache.written(file.getFileOnDisk(false));
+
+						file.increaseVersion();
+
+					} else {
+
+						// file was deleted during the upload
+						upload.discard();
+					}
+
+					tx.success();
+				}
+
+				// upload trigger (checksums, size, indexing), once per upload
+				if (file != null) {
+					file.notifyUploadCompletion();
+				}
+
+			} catch (FrameworkException | IOException ex) {
+
+				logger.error("Unable to complete chunked upload " + upload.getUuid(), ex);
+				UiAuthenticator.writeInternalServerError(response);
+				return;
+			}
+		}
+
+		if (received < end) {
+
+			writeError(response, HttpServletResponse.SC_BAD_REQUEST, "ERROR (400): Incomplete chunk, received " + (received - start) + " of " + (end - start) + " bytes.");
+			return;
+		}
+
+		setUploadHeaders(response, upload);
+
+		if (complete) {
+
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.getWriter().write(upload.getUuid());
+
+		} else {
+
+			response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+		}
+	}
+
+	private void setUploadHeaders(final HttpServletResponse response, final ChunkedUpload upload) {
+
+		response.setHeader("Upload-Length", Long.toString(upload.getLength()));
+		response.setHeader("Upload-Offset", Long.toString(upload.getOffset()));
+		response.setHeader("Upload-Ranges", upload.getReceivedRanges());
+	}
+
+	private String getUuid(final HttpServletRequest request, final HttpServletResponse response) {
+
+		final String uuid = PathHelper.getName(request.getPathInfo());
+
+		if (uuid != null) {
+
+			final Matcher matcher = threadLocalUUIDMatcher.get();
+			matcher.reset(uuid);
+
+			if (matcher.matches()) {
+				return uuid;
+			}
+		}
+
+		writeError(response, HttpServletResponse.SC_BAD_REQUEST, "ERROR (400): URL path doesn't end with UUID.");
+
+		return null;
+	}
+
+	private File getWritableFile(final SecurityContext securityContext, final String uuid, final HttpServletResponse response) throws FrameworkException {
+
+		final GraphObject node = StructrApp.getInstance().getNodeById(uuid);
+
+		if (!(node instanceof File)) {
+
+			writeError(response, HttpServletResponse.SC_NOT_FOUND, "ERROR (404): File not found.");
+			return null;
+		}
+
+		final File file = (File) node;
+
+		if (file.isTemplate()) {
+
+			writeError(response, HttpServletResponse.SC_BAD_REQUEST, "ERROR (400): File is in template mode.");
+			return null;
+		}
+
+		if (!file.isGranted(Permission.write, securityContext)) {
+
+			writeError(response, HttpServletResponse.SC_FORBIDDEN, "ERROR (403): Write access forbidden.");
+			return null;
+		}
+
+		return file;
+	}
+
+	private void writeError(final HttpServletResponse response, final int status, final String message) {
+
+		try {
+
+			response.setStatus(status);
+			response.getOutputStream().write((message + "\n").getBytes("UTF-8"));
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to send response", ioex);
+		}
+	}
+
 	private synchronized Folder getOrCreateFolderPath(SecurityContext securityContext, String path) {
 
 		try (final Tx tx = StructrApp.getInstance().tx()) {
@@ -486,4 +815,76 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 	private String errorPage(final Throwable t) {
 		return "<html><head><title>Error in Upload</title></head><body><h1>Error in Upload</h1><p>" + t.toString() + "</p>\n<!--" + ExceptionUtils.getStackTrace(t) + "--></body></html>";
 	}
+
+	// ----- nested classes -----
+	private class ChunkReader implements ReadListener {
+
+		private final byte[] buffer             = new byte[CHUNK_BUFFER_SIZE];
+		private SecurityContext securityContext = null;
+		private ChunkedUpload upload            = null;
+		private ServletInputStream input        = null;
+		private AsyncContext async              = null;
+		private long position                   = 0L;
+		private long start                      = 0L;
+		private long end                        = 0L;
+
+		public ChunkReader(final AsyncContext async, final ServletInputStream input, final SecurityContext securityContext, final ChunkedUpload upload, final long start, final long end) {
+
+			this.securityContext = securityContext;
+			this.upload          = upload;
+			this.input           = input;
+			this.async           = async;
+			this.position        = start;
+			this.start           = start;
+			this.end             = end;
+		}
+
+		@Override
+		public void onDataAvailable() throws IOException {
+
+			while (input.isReady()) {
+
+				final int count = input.read(buffer);
+				if (count < 0) {
+					return;
+				}
+
+				if (position + count > end) {
+					throw new IOException("Chunk larger than announced in Content-Range");
+				}
+
+				upload.write(ByteBuffer.wrap(buffer, 0, count), position);
+				position += count;
+			}
+		}
+
+		@Override
+		public void onAllDataRead() throws IOException {
+
+			try {
+
+				chunkReceived((HttpServletResponse)async.getResponse(), securityContext, upload, start, position, end);
+
+			} finally {
+
+				async.complete();
+			}
+		}
+
+		@Override
+		public void onError(final Throwable t) {
+
+			logger.warn("Unable to receive chunk of upload {}: {}", upload.getUuid(), t.getMessage());
+
+			try {
+
+				chunkReceived((HttpServletResponse)async.getResponse(), securityContext, upload, start, position, end);
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to send response", ioex);
+			}
+
+			async.complete();
+		}
+	}
 }
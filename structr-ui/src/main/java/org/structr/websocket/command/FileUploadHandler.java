@@ -26,6 +26,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
+import org.structr.web.common.ContentStore;
+import org.structr.web.common.FileCache;
 import org.structr.web.entity.File;
 
 /**
@@ -117,6 +119,8 @@ public class FileUploadHandler {
 
 				this.privateFileChannel = null;
 
+				FileCache.written(file.getFileOnDisk(false));
+
 				//file.increaseVersion();
 				file.notifyUploadCompletion();
 			}
@@ -136,6 +140,12 @@ public class FileUploadHandler {
 
 			fileOnDisk.getParentFile().mkdirs();
 
+			// copy-on-write for files that share their content
+			ContentStore.prepareWrite(file, fileOnDisk, append);
+
+			// the cached copy is outdated as soon as the first chunk is written
+			FileCache.remove(fileOnDisk);
+
 			this.privateFileChannel = new FileOutputStream(fileOnDisk, append).getChannel();
 		}
 
@@ -137,7 +137,7 @@ public abstract class StructrUiTest {
 		Settings.ApplicationHost.setValue(host);
 		Settings.HttpPort.setValue(httpPort);
 
-		Settings.Servlets.setValue("JsonRestServlet WebSocketServlet HtmlServlet");
+		Settings.Servlets.setValue("JsonRestServlet WebSocketServlet HtmlServlet UploadServlet");
 
 		Settings.NodeCacheSize.setValue(10000);
 		Settings.RelationshipCacheSize.setValue(10000);
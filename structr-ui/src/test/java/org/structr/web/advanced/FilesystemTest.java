@@ -18,10 +18,19 @@
  */
 package org.structr.web.advanced;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import org.junit.Test;
@@ -33,6 +42,9 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.web.StructrUiTest;
+import org.structr.web.common.FileCache;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
 import org.structr.web.entity.Folder;
 import org.structr.web.entity.Image;
 import org.structr.web.entity.User;
@@ -195,4 +207,202 @@ public class FilesystemTest extends StructrUiTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	@Test
+	public void test04FileDeduplication() {
+
+		Settings.DeduplicateFiles.setValue(true);
+
+		try {
+
+			File file1 = null;
+			File file2 = null;
+
+			try (final Tx tx = app.tx()) {
+
+				file1 = FileHelper.createFile(securityContext, "identical content".getBytes(), "text/plain", File.class, "file1.txt");
+				file2 = FileHelper.createFile(securityContext, "identical content".getBytes(), "text/plain", File.class, "file2.txt");
+
+				tx.success();
+
+			} catch (FrameworkException | IOException ex) {
+				ex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertTrue("Identical files should share their content", Files.isSameFile(file1.getFileOnDisk(false).toPath(), file2.getFileOnDisk(false).toPath()));
+
+				// modification of a shared file must not affect the other file
+				FileHelper.setFileData(file2, "modified content".getBytes(), "text/plain");
+
+				assertFalse("Modified file should not share its content any more", Files.isSameFile(file1.getFileOnDisk(false).toPath(), file2.getFileOnDisk(false).toPath()));
+				assertEquals("Content of unmodified file was changed", "identical content", IOUtils.toString(file1.getInputStream(), "UTF-8"));
+				assertEquals("Content of modified file was not changed", "modified content", IOUtils.toString(file2.getInputStream(), "UTF-8"));
+
+				tx.success();
+
+			} catch (FrameworkException | IOException ex) {
+				ex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				app.delete(file1);
+				app.delete(file2);
+
+				tx.success();
+
+			} catch (FrameworkException ex) {
+				ex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+			// stored contents must be removed when the last file is deleted
+			final Path store = Paths.get(Settings.FilesPath.getValue(), ".content");
+			if (Files.exists(store)) {
+
+				try (final Stream<Path> stream = Files.walk(store)) {
+
+					assertEquals("Unreferenced contents were not removed from the store", 0, stream.filter(Files::isRegularFile).count());
+				}
+			}
+
+		} catch (IOException ioex) {
+
+			ioex.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.DeduplicateFiles.setValue(false);
+		}
+	}
+
+	@Test
+	public void test05FileCache() {
+
+		Path cachePath = null;
+
+		try {
+
+			cachePath = Files.createTempDirectory("structr-file-cache");
+
+			Settings.FilesCachePath.setValue(cachePath.toString());
+			Settings.FilesCacheSize.setValue(1);
+			Settings.FilesCacheWrites.setValue("through");
+
+			final byte[] data      = new byte[100 * 1024];
+			final List<File> files = new LinkedList<>();
+			File file              = null;
+
+			try (final Tx tx = app.tx()) {
+
+				file = FileHelper.createFile(securityContext, "cached content".getBytes(), "text/plain", File.class, "cached.txt");
+
+				tx.success();
+
+			} catch (FrameworkException | IOException ex) {
+				ex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final java.io.File fileOnDisk = file.getFileOnDisk(false);
+
+				// written content is stored in both directories
+				assertFalse("Written file should be read from the cache", FileCache.getFile(fileOnDisk).equals(fileOnDisk));
+				assertEquals("Invalid content", "cached content", IOUtils.toString(file.getInputStream(), "UTF-8"));
+				assertTrue("Cache hits must be counted", (Long)FileCache.getStatistics().get("hits") > 0);
+
+				tx.success();
+
+			} catch (FrameworkException | IOException ex) {
+				ex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+			Settings.FilesCacheWrites.setValue("around");
+
+			try (final Tx tx = app.tx()) {
+
+				FileHelper.setFileData(file, "modified content".getBytes(), "text/plain");
+
+				final java.io.File fileOnDisk = file.getFileOnDisk(false);
+
+				// written content is stored in files.path only and cached on the first read
+				assertEquals("Invalid content", "modified content", IOUtils.toString(file.getInputStream(), "UTF-8"));
+				assertTrue("Cache misses must be counted", (Long)FileCache.getStatistics().get("misses") > 0);
+
+				for (int i=0; i<100 && FileCache.getFile(fileOnDisk).equals(fileOnDisk); i++) {
+					Thread.sleep(50);
+				}
+
+				assertFalse("File should be read from the cache after a miss", FileCache.getFile(fileOnDisk).equals(fileOnDisk));
+				assertEquals("Invalid content", "modified content", IOUtils.toString(file.getInputStream(), "UTF-8"));
+
+				tx.success();
+
+			} catch (FrameworkException | IOException | InterruptedException ex) {
+				ex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+			Settings.FilesCacheWrites.setValue("through");
+
+			try (final Tx tx = app.tx()) {
+
+				for (int i=0; i<20; i++) {
+					files.add(FileHelper.createFile(securityContext, data, "application/octet-stream", File.class, "file" + i + ".bin"));
+				}
+
+				tx.success();
+
+			} catch (FrameworkException | IOException ex) {
+				ex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+			// the cache must not grow beyond its maximum size
+			try (final Stream<Path> stream = Files.walk(cachePath)) {
+
+				final long size = stream.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+
+				assertTrue("File cache exceeds its maximum size", size <= 1024L * 1024L);
+				assertTrue("Evictions must be counted", (Long)FileCache.getStatistics().get("evictions") > 0);
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				// evicted files are read from files.path
+				for (final File binary : files) {
+					assertEquals("Invalid content size", data.length, IOUtils.toByteArray(binary.getInputStream()).length);
+				}
+
+				tx.success();
+
+			} catch (FrameworkException | IOException ex) {
+				ex.printStackTrace();
+				fail("Unexpected exception.");
+			}
+
+		} catch (IOException ioex) {
+
+			ioex.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.FilesCachePath.setValue("");
+			Settings.FilesCacheSize.setValue(1024);
+			Settings.FilesCacheWrites.setValue("through");
+
+			if (cachePath != null) {
+				FileUtils.deleteQuietly(cachePath.toFile());
+			}
+		}
+	}
 }
@@ -20,6 +20,8 @@ package org.structr.web.advanced;
 
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import java.util.LinkedList;
+import java.util.List;
 import org.hamcrest.Matchers;
 import static org.junit.Assert.fail;
 import org.junit.Test;
@@ -32,6 +34,7 @@ import org.structr.core.graph.Tx;
 import org.structr.web.StructrUiTest;
 import org.structr.web.entity.User;
 import org.structr.web.entity.dom.Content;
+import org.structr.web.entity.dom.DOMNode;
 import org.structr.web.entity.dom.Page;
 import org.w3c.dom.Element;
 
@@ -105,6 +108,255 @@ public class RendererTest extends StructrUiTest {
 			.get("/html/page1");
 	}
 
+	@Test
+	public void testStaticRenderPlan() {
+
+		Content content = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page1 = Page.createSimplePage(securityContext, "page1");
+
+			final Element div = (Element)page1.getElementsByTagName("div").item(0);
+			content           = (Content)div.getFirstChild();
+
+			for (final DOMNode node : app.nodeQuery(DOMNode.class).getAsList()) {
+				node.setVisibility(true, true);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+			logger.warn("", fex);
+		}
+
+		RestAssured.basePath = "/";
+
+		// render twice, the second request is served from the render plan
+		for (int i=0; i<2; i++) {
+
+			RestAssured
+				.given()
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+				.expect()
+				.statusCode(200)
+				.body("html.head.title", Matchers.equalTo("Page1"))
+				.body("html.body.h1",    Matchers.equalTo("Page1"))
+				.body("html.body.div",   Matchers.equalTo("Initial body text"))
+				.when()
+				.get("/html/page1");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			content.setProperty(StructrApp.key(Content.class, "content"), "Modified body text");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+			logger.warn("", fex);
+		}
+
+		// modification must invalidate the render plan
+		RestAssured
+			.given()
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+			.statusCode(200)
+			.body("html.body.h1",  Matchers.equalTo("Page1"))
+			.body("html.body.div", Matchers.equalTo("Modified body text"))
+			.when()
+			.get("/html/page1");
+	}
+
+	@Test
+	public void testParallelRepeater() {
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page       = Page.createSimplePage(securityContext, "page1");
+			final Element div     = (Element)page.getElementsByTagName("div").item(0);
+			final Content content = (Content)div.getFirstChild();
+
+			// setup repeater that is rendered concurrently
+			content.setProperty(StructrApp.key(DOMNode.class, "functionQuery"), "{ var arr = []; for (var i=0; i<20; i++) { arr.push({ name: 'test' + i }); }; return arr; }");
+			content.setProperty(StructrApp.key(DOMNode.class, "dataKey"), "test");
+			content.setProperty(StructrApp.key(DOMNode.class, "renderInParallel"), true);
+			content.setProperty(StructrApp.key(Content.class, "content"), "${test.name}");
+
+			createTestNode(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"),  true)
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+			logger.warn("", fex);
+		}
+
+		final StringBuilder expected = new StringBuilder();
+		for (int i=0; i<20; i++) {
+			expected.append("test").append(i);
+		}
+
+		RestAssured.basePath = "/";
+
+		// output must be assembled in document order
+		RestAssured
+			.given()
+			.headers("X-User", "admin" , "X-Password", "admin")
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+			.statusCode(200)
+			.body("html.body.h1",  Matchers.equalTo("Page1"))
+			.body("html.body.div", Matchers.equalTo(expected.toString()))
+			.when()
+			.get("/html/page1");
+	}
+
+	@Test
+	public void testParallelRepeaterContextStore() {
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page       = Page.createSimplePage(securityContext, "page1");
+			final Element body    = (Element)page.getElementsByTagName("body").item(0);
+			final Element h1      = (Element)page.getElementsByTagName("h1").item(0);
+			final Element div     = (Element)page.getElementsByTagName("div").item(0);
+			final Element p       = page.createElement("p");
+			final Content content = (Content)div.getFirstChild();
+
+			body.appendChild(p);
+			p.appendChild(page.createTextNode("${retrieve('last')}"));
+
+			// value stored before the repeater is visible to all workers
+			((Content)h1.getFirstChild()).setProperty(StructrApp.key(Content.class, "content"), "${store('last', 'none')}Page1");
+
+			// each repetition stores a value that must neither be visible to its siblings nor get lost
+			content.setProperty(StructrApp.key(DOMNode.class, "functionQuery"), "{ var arr = []; for (var i=0; i<20; i++) { arr.push({ name: 'test' + i }); }; return arr; }");
+			content.setProperty(StructrApp.key(DOMNode.class, "dataKey"), "test");
+			content.setProperty(StructrApp.key(DOMNode.class, "renderInParallel"), true);
+			content.setProperty(StructrApp.key(Content.class, "content"), "${retrieve('last')}-${test.name};${store('last', test.name)}");
+
+			createTestNode(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"),  true)
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+			logger.warn("", fex);
+		}
+
+		final StringBuilder expected = new StringBuilder();
+		for (int i=0; i<20; i++) {
+			expected.append("none-test").append(i).append(";");
+		}
+
+		RestAssured.basePath = "/";
+
+		// the stored values are applied in document order, so the result must not depend on the scheduling
+		for (int i=0; i<5; i++) {
+
+			RestAssured
+				.given()
+				.headers("X-User", "admin" , "X-Password", "admin")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+				.expect()
+				.statusCode(200)
+				.body("html.body.h1",  Matchers.equalTo("Page1"))
+				.body("html.body.div", Matchers.equalTo(expected.toString()))
+				.body("html.body.p",   Matchers.equalTo("test19"))
+				.when()
+				.get("/html/page1");
+		}
+	}
+
+	@Test
+	public void testParallelSiblingsContextStore() {
+
+		final List<Content> siblings = new LinkedList<>();
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page       = Page.createSimplePage(securityContext, "page1");
+			final Element body    = (Element)page.getElementsByTagName("body").item(0);
+			final Element div     = (Element)page.getElementsByTagName("div").item(0);
+			final Element p       = page.createElement("p");
+			final Content first   = (Content)div.getFirstChild();
+			final Content second  = (Content)page.createTextNode("${store('x', 'second')}B");
+			final Content third   = (Content)page.createTextNode("${store('y', 'third')}C");
+
+			body.appendChild(p);
+			p.appendChild(page.createTextNode("${retrieve('x')}-${retrieve('y')}"));
+
+			first.setProperty(StructrApp.key(Content.class, "content"), "${store('x', 'first')}${store('y', 'first')}A");
+
+			div.appendChild(second);
+			div.appendChild(third);
+
+			siblings.add(first);
+			siblings.add(second);
+			siblings.add(third);
+
+			createTestNode(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"),  true)
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("Unexpected exception");
+			logger.warn("", fex);
+		}
+
+		RestAssured.basePath = "/";
+
+		// serial rendering, then the first and the third sibling in a worker thread, the inline
+		// sibling in between must overwrite the value of the first and keep the value of the third
+		for (final boolean parallel : new boolean[] { false, true }) {
+
+			try (final Tx tx = app.tx()) {
+
+				siblings.get(0).setProperty(StructrApp.key(DOMNode.class, "renderInParallel"), parallel);
+				siblings.get(2).setProperty(StructrApp.key(DOMNode.class, "renderInParallel"), parallel);
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+
+				fail("Unexpected exception");
+				logger.warn("", fex);
+			}
+
+			RestAssured
+				.given()
+				.headers("X-User", "admin" , "X-Password", "admin")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+				.expect()
+				.statusCode(200)
+				.body("html.body.div", Matchers.equalTo("ABC"))
+				.body("html.body.p",   Matchers.equalTo("second-third"))
+				.when()
+				.get("/html/page1");
+		}
+	}
+
 	/*
 	@Test
 	public void testTextileRenderer() {
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.basic;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.commons.io.IOUtils;
+import org.hamcrest.Matchers;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.Tx;
+import org.structr.web.StructrUiTest;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
+
+/**
+ * Tests chunked, resumable uploads with offset-addressed PATCH requests.
+ */
+public class ChunkedUploadTest extends StructrUiTest {
+
+	@Test
+	public void testChunkedUpload() {
+
+		RestAssured.basePath = "/";
+
+		String uuid = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final File file = FileHelper.createFile(securityContext, "previous content".getBytes(), "text/plain", File.class, "chunked.txt");
+
+			uuid = file.getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException | IOException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final String path = "structr/upload/" + uuid;
+
+		// second chunk first
+		RestAssured
+			.given()
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.header("X-User",     "superadmin")
+			.header("X-Password", "sehrgeheim")
+			.header("Content-Range", "bytes 10-19/30")
+			.contentType("application/octet-stream")
+			.body("abcdefghij".getBytes())
+			.expect()
+			.statusCode(204)
+			.header("Upload-Length", "30")
+			.header("Upload-Offset", "0")
+			.header("Upload-Ranges", "10-19")
+			.when()
+			.patch(path);
+
+		// previous content is available until the upload is complete
+		try (final Tx tx = app.tx()) {
+
+			try (final InputStream is = app.get(File.class, uuid).getInputStream()) {
+
+				assertEquals("File content was modified by an incomplete upload", "previous content", IOUtils.toString(is, "UTF-8"));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException | IOException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		// state of the running upload
+		RestAssured
+			.given()
+			.header("X-User",     "superadmin")
+			.header("X-Password", "sehrgeheim")
+			.expect()
+			.statusCode(200)
+			.header("Upload-Offset", "0")
+			.header("Upload-Ranges", "10-19")
+			.when()
+			.head(path);
+
+		// chunk that doesn't match the length of the running upload
+		RestAssured
+			.given()
+			.header("X-User",     "superadmin")
+			.header("X-Password", "sehrgeheim")
+			.header("Content-Range", "bytes 0-9/40")
+			.contentType("application/octet-stream")
+			.body("0123456789".getBytes())
+			.expect()
+			.statusCode(409)
+			.when()
+			.patch(path);
+
+		// first chunk
+		RestAssured
+			.given()
+			.header("X-User",     "superadmin")
+			.header("X-Password", "sehrgeheim")
+			.header("Content-Range", "bytes 0-9/30")
+			.contentType("application/octet-stream")
+			.body("0123456789".getBytes())
+			.expect()
+			.statusCode(204)
+			.header("Upload-Offset", "20")
+			.header("Upload-Ranges", "0-19")
+			.when()
+			.patch(path);
+
+		// last chunk completes the upload
+		RestAssured
+			.given()
+			.header("X-User",     "superadmin")
+			.header("X-Password", "sehrgeheim")
+			.header("Content-Range", "bytes 20-29/30")
+			.contentType("application/octet-stream")
+			.body("klmnopqrst".getBytes())
+			.expect()
+			.statusCode(200)
+			.header("Upload-Offset", "30")
+			.body(Matchers.equalTo(uuid))
+			.when()
+			.patch(path);
+
+		// no running upload any more
+		RestAssured
+			.given()
+			.header("X-User",     "superadmin")
+			.header("X-Password", "sehrgeheim")
+			.expect()
+			.statusCode(404)
+			.when()
+			.head(path);
+
+		try (final Tx tx = app.tx()) {
+
+			final File file = app.get(File.class, uuid);
+
+			assertNotNull("File metadata was not updated after upload", file.getChecksum());
+			assertEquals("Invalid file size after upload", Long.valueOf(30L), file.getSize());
+
+			try (final InputStream is = file.getInputStream()) {
+
+				assertEquals("Invalid file content after upload", "0123456789abcdefghijklmnopqrst", IOUtils.toString(is, "UTF-8"));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException | IOException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testInvalidChunks() {
+
+		RestAssured.basePath = "/";
+
+		String uuid = null;
+
+		try (final Tx tx = app.tx()) {
+
+			uuid = FileHelper.createFile(securityContext, new byte[0], "text/plain", File.class, "invalid.txt").getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException | IOException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		// missing Content-Range
+		RestAssured
+			.given()
+			.header("X-User",     "superadmin")
+			.header("X-Password", "sehrgeheim")
+			.contentType("application/octet-stream")
+			.body("0123456789".getBytes())
+			.expect()
+			.statusCode(400)
+			.when()
+			.patch("structr/upload/" + uuid);
+
+		// Content-Length doesn't match Content-Range
+		RestAssured
+			.given()
+			.header("X-User",     "superadmin")
+			.header("X-Password", "sehrgeheim")
+			.header("Content-Range", "bytes 0-4/10")
+			.contentType("application/octet-stream")
+			.body("0123456789".getBytes())
+			.expect()
+			.statusCode(400)
+			.when()
+			.patch("structr/upload/" + uuid);
+
+		// unknown file
+		RestAssured
+			.given()
+			.header("X-User",     "superadmin")
+			.header("X-Password", "sehrgeheim")
+			.header("Content-Range", "bytes 0-9/10")
+			.contentType("application/octet-stream")
+			.body("0123456789".getBytes())
+			.expect()
+			.statusCode(404)
+			.when()
+			.patch("structr/upload/00000000000000000000000000000000");
+	}
+}
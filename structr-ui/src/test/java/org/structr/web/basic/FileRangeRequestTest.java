@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.basic;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import java.io.IOException;
+import org.hamcrest.Matchers;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.web.StructrUiTest;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
+
+/**
+ * Tests range requests and entity tags for file downloads.
+ */
+public class FileRangeRequestTest extends StructrUiTest {
+
+	@Test
+	public void testRangeRequests() {
+
+		RestAssured.basePath = "/";
+
+		try (final Tx tx = app.tx()) {
+
+			final File file = FileHelper.createFile(securityContext, "0123456789abcdefghij".getBytes(), "text/plain", File.class, "test.txt");
+
+			file.setProperty(StructrApp.key(File.class, "visibleToPublicUsers"), true);
+
+			tx.success();
+
+		} catch (FrameworkException | IOException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		// complete file
+		final String etag = RestAssured
+			.given()
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+			.statusCode(200)
+			.header("Accept-Ranges", "bytes")
+			.header("ETag", Matchers.notNullValue())
+			.body(Matchers.equalTo("0123456789abcdefghij"))
+			.when()
+			.get("test.txt")
+			.getHeader("ETag");
+
+		// single range
+		RestAssured
+			.given()
+			.header("Range", "bytes=2-5")
+			.expect()
+			.statusCode(206)
+			.header("Content-Range", "bytes 2-5/20")
+			.body(Matchers.equalTo("2345"))
+			.when()
+			.get("test.txt");
+
+		// suffix range
+		RestAssured
+			.given()
+			.header("Range", "bytes=-3")
+			.expect()
+			.statusCode(206)
+			.header("Content-Range", "bytes 17-19/20")
+			.body(Matchers.equalTo("hij"))
+			.when()
+			.get("test.txt");
+
+		// multiple ranges
+		RestAssured
+			.given()
+			.header("Range", "bytes=0-1,10-12")
+			.expect()
+			.statusCode(206)
+			.contentType(Matchers.startsWith("multipart/byteranges"))
+			.body(Matchers.containsString("Content-Range: bytes 0-1/20"))
+			.body(Matchers.containsString("Content-Range: bytes 10-12/20"))
+			.body(Matchers.containsString("abc"))
+			.when()
+			.get("test.txt");
+
+		// unsatisfiable range
+		RestAssured
+			.given()
+			.header("Range", "bytes=50-60")
+			.expect()
+			.statusCode(416)
+			.header("Content-Range", "bytes */20")
+			.when()
+			.get("test.txt");
+
+		// If-Range with matching entity tag
+		RestAssured
+			.given()
+			.header("Range", "bytes=2-5")
+			.header("If-Range", etag)
+			.expect()
+			.statusCode(206)
+			.body(Matchers.equalTo("2345"))
+			.when()
+			.get("test.txt");
+
+		// If-Range with outdated entity tag returns the complete file
+		RestAssured
+			.given()
+			.header("Range", "bytes=2-5")
+			.header("If-Range", "\"outdated\"")
+			.expect()
+			.statusCode(200)
+			.body(Matchers.equalTo("0123456789abcdefghij"))
+			.when()
+			.get("test.txt");
+
+		// conditional request with current entity tag
+		RestAssured
+			.given()
+			.header("If-None-Match", etag)
+			.expect()
+			.statusCode(304)
+			.when()
+			.get("test.txt");
+	}
+}
@@ -32,6 +32,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
+import org.structr.api.util.Iterables;
 import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -53,6 +54,8 @@ import org.structr.schema.ConfigurationProvider;
 import org.structr.schema.action.ActionContext;
 import org.structr.web.StructrUiTest;
 import org.structr.web.common.RenderContext;
+import org.structr.web.datasource.CypherGraphDataSource;
+import org.structr.web.datasource.FunctionDataSource;
 import org.structr.web.entity.TestOne;
 import org.structr.web.entity.User;
 import org.structr.web.entity.dom.DOMElement;
@@ -815,4 +818,49 @@ public class RenderContextTest extends StructrUiTest {
                 }
 
 	}
+
+	@Test
+	public void testDataSourceMemoization() {
+
+		try (final Tx tx = app.tx()) {
+
+			final PropertyKey<String> cypherQuery   = StructrApp.key(DOMNode.class, "cypherQuery");
+			final PropertyKey<String> functionQuery = StructrApp.key(DOMNode.class, "functionQuery");
+			final Page page                         = Page.createSimplePage(securityContext, "test");
+			final DOMNode div                       = (DOMNode)page.getElementsByTagName("div").item(0);
+
+			div.setProperty(cypherQuery,   "MATCH (n:TestOne) RETURN n");
+			div.setProperty(functionQuery, "find('TestOne')");
+
+			createTestNodes(TestOne.class, 3);
+
+			final CypherGraphDataSource cypherSource = new CypherGraphDataSource();
+			final FunctionDataSource functionSource  = new FunctionDataSource();
+			final RenderContext renderContext        = new RenderContext(securityContext);
+			final RenderContext copy                 = new RenderContext(renderContext);
+
+			assertEquals("Invalid data source result", 3, Iterables.toList(cypherSource.getData(renderContext, div)).size());
+			assertEquals("Invalid data source result", 3, Iterables.toList(functionSource.getData(renderContext, div)).size());
+
+			createTestNodes(TestOne.class, 1);
+
+			// identical query in the same request (and copies of its render context) is served from the cache
+			assertEquals("Data source result was not memoized", 3, Iterables.toList(cypherSource.getData(copy, div)).size());
+			assertEquals("Invalid number of cache hits",   1, renderContext.getDataSourceCache().getHits());
+			assertEquals("Invalid number of cache misses", 1, renderContext.getDataSourceCache().getMisses());
+
+			// function queries are evaluated every time
+			assertEquals("Function query result must not be memoized", 4, Iterables.toList(functionSource.getData(copy, div)).size());
+
+			// a new request evaluates the query again
+			assertEquals("Invalid data source result", 4, Iterables.toList(cypherSource.getData(new RenderContext(securityContext), div)).size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
 }